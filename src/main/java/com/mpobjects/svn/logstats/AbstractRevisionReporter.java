@@ -3,23 +3,31 @@ package com.mpobjects.svn.logstats;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 import javax.annotation.Nonnull;
 
 import org.apache.commons.configuration2.Configuration;
 import org.apache.commons.lang3.ObjectUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.mutable.MutableInt;
 
+import com.mpobjects.svn.logstats.model.ChangeType;
+import com.mpobjects.svn.logstats.model.FileChange;
 import com.mpobjects.svn.logstats.model.MergeStatus;
 import com.mpobjects.svn.logstats.model.Revision;
 
 public abstract class AbstractRevisionReporter implements RevisionReporter {
 
 	protected static class FileGroup {
+		protected boolean lineTyped;
 		protected String name;
 		protected Set<String> suffixes;
 
@@ -38,6 +46,13 @@ public abstract class AbstractRevisionReporter implements RevisionReporter {
 			return suffixes;
 		}
 
+		/**
+		 * @return true if the changed lines of the group are classified by line type
+		 */
+		public boolean isLineTyped() {
+			return lineTyped;
+		}
+
 		public boolean matches(String aFilename) {
 			for (String suffix : suffixes) {
 				if (StringUtils.endsWithIgnoreCase(aFilename, suffix)) {
@@ -48,8 +63,19 @@ public abstract class AbstractRevisionReporter implements RevisionReporter {
 		}
 	}
 
+	protected static final String UNKNOWN_BRANCH = "?unknown?";
+
+	protected Set<Pattern> branchNames;
+
+	protected Set<String> branchPaths;
+
 	protected final Configuration config;
 
+	/**
+	 * Skip the revisions which were merged to another branch, see {@link #isExcludedMergeSource(Revision)}
+	 */
+	protected boolean excludeMergeSources;
+
 	protected List<FileGroup> fileGroups;
 
 	protected Pattern issuePattern;
@@ -68,7 +94,49 @@ public abstract class AbstractRevisionReporter implements RevisionReporter {
 		processRevisionComment(aRevision);
 	}
 
+	/**
+	 * Determine the branch the revision was made on using the "branchpath" settings.
+	 */
+	@Nonnull
+	public String determineBranchName(@Nonnull Revision aRevision) {
+		String commonPrefix = StringUtils.getCommonPrefix(aRevision.getFileChanges().keySet().toArray(new String[0]));
+		return determineBranchName(commonPrefix);
+	}
+
+	/**
+	 * Determine the branch a path belongs to using the "branchpath" settings.
+	 */
+	@Nonnull
+	public String determineBranchName(String aPath) {
+		if (!StringUtils.isBlank(aPath)) {
+			if (aPath.startsWith("trunk")) {
+				return "trunk";
+			} else {
+				for (Pattern pat : branchNames) {
+					Matcher match = pat.matcher(aPath);
+					if (match.matches()) {
+						return match.group(1);
+					}
+				}
+			}
+		}
+		return UNKNOWN_BRANCH;
+	}
+
+	/**
+	 * @return the path relative to its branch, or the path itself when the branch is unknown
+	 */
+	@Nonnull
+	public String stripBranchPrefix(@Nonnull String aPath) {
+		String branch = determineBranchName(aPath);
+		if (UNKNOWN_BRANCH.equals(branch) || !aPath.startsWith(branch)) {
+			return aPath;
+		}
+		return StringUtils.removeStart(aPath.substring(branch.length()), "/");
+	}
+
 	protected void initConfig() {
+		excludeMergeSources = config.getBoolean("merge.exclude", false);
 		if (config.containsKey("pattern.issue")) {
 			issuePattern = Pattern.compile(config.getString("pattern.issue"));
 		}
@@ -87,12 +155,93 @@ public abstract class AbstractRevisionReporter implements RevisionReporter {
 		for (String pattern : config.getList(String.class, "pattern.no-issue", Collections.emptyList())) {
 			notAnIssuePatterns.add(Pattern.compile(pattern));
 		}
+
+		branchPaths = new HashSet<>();
+		branchNames = new HashSet<>();
+		for (String pattern : config.getList(String.class, "branchpath", Collections.emptyList())) {
+			// very basic, not ant-pattern like
+			pattern = pattern.replace("*", "[^/]*");
+			branchPaths.add("^" + pattern + "$");
+			branchNames.add(Pattern.compile("^(" + pattern + ")(/.*)?$"));
+		}
+	}
+
+	/**
+	 * @return true if merge.exclude is set and the revision was merged to another branch by a later revision, so its
+	 *         changes are counted with the merge revision only
+	 */
+	protected boolean isExcludedMergeSource(@Nonnull Revision aRevision) {
+		return excludeMergeSources && MergeStatus.MERGE_SOURCE.equals(aRevision.getMergeStatus());
+	}
+
+	/**
+	 * Try to determine if it was a branch action (create, delete, move)
+	 *
+	 * @param aRevision
+	 * @return
+	 */
+	protected boolean isBranchActions(Revision aRevision) {
+		final Set<FileChange> manifest = aRevision.getFileChanges().values().stream().filter(c -> c.isInManifest()).collect(Collectors.toSet());
+		if (manifest.size() == aRevision.getFileChanges().size()) {
+			// everything was known, can't be a branch action
+			return false;
+		}
+		if (manifest.size() != manifest.stream()
+				.filter(c -> c.getLinesChanged() == 0 && !c.isBinary() && (!c.getChangeType().equals(ChangeType.ADDED) || c.getFromRevision() > 0)).count()) {
+			// not all are directories
+			// or not copied from
+			return false;
+		}
+
+		// validate manifest entries to be all in branch path patterns
+		if (!manifest.stream().allMatch(c -> branchPaths.stream().anyMatch(p -> c.getFilename().matches(p)))) {
+			return false;
+		}
+
+		final Map<FileChange, MutableInt> counts = manifest.stream().collect(Collectors.toMap(f -> f, f -> new MutableInt()));
+		Iterator<FileChange> it = aRevision.getFileChanges().values().stream().filter(c -> !c.isInManifest()).iterator();
+		while (it.hasNext()) {
+			final FileChange change = it.next();
+			Optional<FileChange> manEntry = manifest.stream()
+					.filter(e -> change.getFilename().startsWith(e.getFilename()) && change.getChangeType().equals(e.getChangeType())).findFirst();
+			if (!manEntry.isPresent()) {
+				// non-manifest entry was not in the manifest with the same change type
+				// thus not a branching action
+				return false;
+			}
+			counts.get(manEntry.get()).increment();
+		}
+
+		// a branch creation manifest looks like this:
+		// A /new/branch (from /old/branch:number)
+		// TODO
+
+		// a move manifest looks like this
+		// A /new/branch (from /old/branch:number)
+		// D /old/branch
+		// if (manifest.size()
+		// / 2 == manifest.stream()
+		// .filter(c -> ChangeType.ADDED.equals(c.getChangeType())
+		// && manifest.stream().anyMatch(o -> ChangeType.DELETED.equals(o.getChangeType()) &&
+		// o.getFilename().equals(c.getFromPath())))
+		// .count()) {
+		// // This is a directory move operation.
+		// return true;
+		// }
+
+		// a branch deletion manifest looks like this:
+		// D /old/branch
+		// TODO
+
+		return true;
 	}
 
 	@Nonnull
 	protected FileGroup loadFileGroup(String aGroupId) {
 		Set<String> suffixes = new HashSet<>(config.getList(String.class, "filegroup." + aGroupId, Collections.emptyList()));
-		return new FileGroup(aGroupId, suffixes);
+		FileGroup group = new FileGroup(aGroupId, suffixes);
+		group.lineTyped = config.containsKey("linetype." + aGroupId);
+		return group;
 	}
 
 	protected void processRevisionComment(Revision aRevision) {
@@ -0,0 +1,38 @@
+package com.mpobjects.svn.logstats;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+
+import com.mpobjects.svn.logstats.model.Revision;
+
+/**
+ * Receives the parsed revisions in batches, so sinks like databases can amortize the cost per call.
+ * <p>
+ * Lifecycle: {@link #start()} once before the first batch, {@link #reportBatch(List)} for every batch,
+ * {@link #flush()} after the last batch of a run (more batches may follow, like in the daemon) and {@link #close()}
+ * at the end. The revisions in a batch are in parser order, and follow the ownership rules of
+ * {@link RevisionReporter}: they are only valid during the call unless {@link #retainsRevisions()} returns true.
+ */
+public interface BatchRevisionReporter extends Closeable {
+
+	@Override
+	default void close() throws IOException {
+	}
+
+	void flush() throws RevisionReporterException;
+
+	void reportBatch(@Nonnull List<Revision> aRevisions) throws RevisionReporterException;
+
+	/**
+	 * @see RevisionReporter#retainsRevisions()
+	 */
+	default boolean retainsRevisions() {
+		return true;
+	}
+
+	default void start() throws RevisionReporterException {
+	}
+}
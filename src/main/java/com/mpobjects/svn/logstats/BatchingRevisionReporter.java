@@ -0,0 +1,86 @@
+package com.mpobjects.svn.logstats;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+
+import com.mpobjects.svn.logstats.model.Revision;
+
+/**
+ * Collects the revisions of the parser into batches for a {@link BatchRevisionReporter}. The batch holds on to the
+ * revisions, so the parser cannot recycle them.
+ */
+public class BatchingRevisionReporter implements RevisionReporter, Closeable {
+
+	/**
+	 * Feed the parser directly when the batch reporter wraps a single revision reporter.
+	 */
+	@Nonnull
+	public static RevisionReporter of(@Nonnull BatchRevisionReporter aReporter, int aBatchSize) {
+		if (aReporter instanceof SingleRevisionBatchAdapter) {
+			return ((SingleRevisionBatchAdapter) aReporter).getReporter();
+		}
+		return new BatchingRevisionReporter(aReporter, aBatchSize);
+	}
+
+	protected final List<Revision> batch;
+
+	protected final int batchSize;
+
+	protected final BatchRevisionReporter reporter;
+
+	protected boolean started;
+
+	public BatchingRevisionReporter(@Nonnull BatchRevisionReporter aReporter, int aBatchSize) {
+		reporter = aReporter;
+		batchSize = Math.max(aBatchSize, 1);
+		batch = new ArrayList<>(batchSize);
+	}
+
+	@Override
+	public void close() throws IOException {
+		reporter.close();
+	}
+
+	@Override
+	public void flush() throws RevisionReporterException {
+		reportBatch();
+		reporter.flush();
+	}
+
+	@Nonnull
+	public BatchRevisionReporter getReporter() {
+		return reporter;
+	}
+
+	@Override
+	public void report(@Nonnull Revision aRevision) throws RevisionReporterException {
+		batch.add(aRevision);
+		if (batch.size() >= batchSize) {
+			reportBatch();
+		}
+	}
+
+	@Override
+	public boolean retainsRevisions() {
+		return true;
+	}
+
+	private void reportBatch() throws RevisionReporterException {
+		if (!started) {
+			reporter.start();
+			started = true;
+		}
+		if (batch.isEmpty()) {
+			return;
+		}
+		try {
+			reporter.reportBatch(batch);
+		} finally {
+			batch.clear();
+		}
+	}
+}
@@ -0,0 +1,83 @@
+package com.mpobjects.svn.logstats;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+
+import com.mpobjects.svn.logstats.model.FileChange;
+import com.mpobjects.svn.logstats.model.Revision;
+
+/**
+ * Passes every revision to multiple reporters, in order. The diff lines are passed to the reporters which are a
+ * {@link DiffListener}.
+ */
+public class CompositeRevisionReporter implements RevisionReporter, DiffListener {
+
+	protected final List<RevisionReporter> reporters;
+
+	public CompositeRevisionReporter(@Nonnull RevisionReporter... aReporters) {
+		reporters = new ArrayList<>(Arrays.asList(aReporters));
+	}
+
+	@Override
+	public void endDiff() {
+		for (RevisionReporter reporter : reporters) {
+			if (reporter instanceof DiffListener) {
+				((DiffListener) reporter).endDiff();
+			}
+		}
+	}
+
+	@Override
+	public void flush() throws RevisionReporterException {
+		for (RevisionReporter reporter : reporters) {
+			reporter.flush();
+		}
+	}
+
+	@Nonnull
+	public List<RevisionReporter> getReporters() {
+		return reporters;
+	}
+
+	@Override
+	public void hunk(int aOldStart, int aOldCount, int aNewStart, int aNewCount) {
+		for (RevisionReporter reporter : reporters) {
+			if (reporter instanceof DiffListener) {
+				((DiffListener) reporter).hunk(aOldStart, aOldCount, aNewStart, aNewCount);
+			}
+		}
+	}
+
+	@Override
+	public void line(char aType) {
+		for (RevisionReporter reporter : reporters) {
+			if (reporter instanceof DiffListener) {
+				((DiffListener) reporter).line(aType);
+			}
+		}
+	}
+
+	@Override
+	public void report(@Nonnull Revision aRevision) throws RevisionReporterException {
+		for (RevisionReporter reporter : reporters) {
+			reporter.report(aRevision);
+		}
+	}
+
+	@Override
+	public boolean retainsRevisions() {
+		return reporters.stream().anyMatch(RevisionReporter::retainsRevisions);
+	}
+
+	@Override
+	public void startDiff(@Nonnull Revision aRevision, @Nonnull FileChange aChange) {
+		for (RevisionReporter reporter : reporters) {
+			if (reporter instanceof DiffListener) {
+				((DiffListener) reporter).startDiff(aRevision, aChange);
+			}
+		}
+	}
+}
@@ -1,17 +1,10 @@
 package com.mpobjects.svn.logstats;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
-import java.util.Optional;
-import java.util.Set;
 import java.util.function.Predicate;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 import javax.annotation.Nonnull;
@@ -21,20 +14,21 @@ import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVPrinter;
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.StringUtils;
-import org.apache.commons.lang3.mutable.MutableInt;
 
 import com.mpobjects.svn.logstats.model.ChangeType;
 import com.mpobjects.svn.logstats.model.FileChange;
+import com.mpobjects.svn.logstats.model.LineType;
 import com.mpobjects.svn.logstats.model.Revision;
 
-public class CsvRevisionReporter extends AbstractRevisionReporter {
+public class CsvRevisionReporter extends AbstractRevisionReporter implements Closeable {
 
 	private static final int IDX_ISSUES = 7;
 	private static final int IDX_PROJECTS = 8;
 
-	protected Set<Pattern> branchNames;
-
-	protected Set<String> branchPaths;
+	/**
+	 * Order of the line type columns of file groups with a line syntax
+	 */
+	private static final LineType[] LINE_TYPES = { LineType.CODE, LineType.COMMENT, LineType.BLANK };
 
 	protected boolean normalizeIssues;
 
@@ -45,6 +39,14 @@ public class CsvRevisionReporter extends AbstractRevisionReporter {
 		output = createOutput(aOutput);
 	}
 
+	/**
+	 * Flush and close the underlying output.
+	 */
+	@Override
+	public void close() throws IOException {
+		output.close();
+	}
+
 	@Override
 	public void flush() throws RevisionReporterException {
 		try {
@@ -70,6 +72,11 @@ public class CsvRevisionReporter extends AbstractRevisionReporter {
 		}
 	}
 
+	@Override
+	public boolean retainsRevisions() {
+		return false;
+	}
+
 	@Nonnull
 	protected Object[] createEntry(@Nonnull Revision aRevision) {
 		List<Object> entry = new ArrayList<>();
@@ -111,6 +118,18 @@ public class CsvRevisionReporter extends AbstractRevisionReporter {
 			entry.add(aRevision.getLinesAdded(predicate));
 			entry.add(aRevision.getLinesRemoved(predicate));
 			entry.add(aRevision.getLinesChanged(predicate));
+			if (fileGroup.isLineTyped()) {
+				for (LineType type : LINE_TYPES) {
+					entry.add(aRevision.getFileChanges().values().stream().filter(predicate).mapToInt(c -> c.getLinesAdded(type)).sum());
+					entry.add(aRevision.getFileChanges().values().stream().filter(predicate).mapToInt(c -> c.getLinesRemoved(type)).sum());
+				}
+			}
+		}
+
+		if (config.getBoolean("replay.detect", false)) {
+			entry.add(aRevision.getFileChanges().values().stream().filter(FileChange::isReplay).count());
+			entry.add(aRevision.getFileChanges().values().stream().filter(FileChange::isReplay).map(c -> c.getReplayOf()).distinct().sorted()
+					.map(String::valueOf).collect(Collectors.joining(",")));
 		}
 
 		return entry.toArray();
@@ -124,23 +143,6 @@ public class CsvRevisionReporter extends AbstractRevisionReporter {
 		}
 	}
 
-	protected String determineBranchName(Revision aRevision) {
-		String commonPrefix = StringUtils.getCommonPrefix(aRevision.getFileChanges().keySet().toArray(new String[0]));
-		if (!StringUtils.isBlank(commonPrefix)) {
-			if (commonPrefix.startsWith("trunk")) {
-				return "trunk";
-			} else {
-				for (Pattern pat : branchNames) {
-					Matcher match = pat.matcher(commonPrefix);
-					if (match.matches()) {
-						return match.group(1);
-					}
-				}
-			}
-		}
-		return "?unknown?";
-	}
-
 	@Nonnull
 	protected CSVFormat getCsvFormat() {
 		CSVFormat format = CSVFormat.valueOf(config.getString("csv.format", CSVFormat.Predefined.RFC4180.name()));
@@ -187,6 +189,16 @@ public class CsvRevisionReporter extends AbstractRevisionReporter {
 			header.add(fileGroup.getName() + " Lines Added");
 			header.add(fileGroup.getName() + " Lines Removed");
 			header.add(fileGroup.getName() + " Lines Modified");
+			if (fileGroup.isLineTyped()) {
+				for (LineType type : LINE_TYPES) {
+					header.add(fileGroup.getName() + " " + StringUtils.capitalize(type.name().toLowerCase()) + " Lines Added");
+					header.add(fileGroup.getName() + " " + StringUtils.capitalize(type.name().toLowerCase()) + " Lines Removed");
+				}
+			}
+		}
+		if (config.getBoolean("replay.detect", false)) {
+			header.add("Replayed Files");
+			header.add("Replay Of");
 		}
 
 		return header.toArray(new String[0]);
@@ -196,15 +208,6 @@ public class CsvRevisionReporter extends AbstractRevisionReporter {
 	protected void initConfig() {
 		super.initConfig();
 		normalizeIssues = config.getBoolean("csv.normalize.issues", false);
-		List<String> paths = config.getList(String.class, "branchpath", Collections.emptyList());
-		branchPaths = new HashSet<>();
-		branchNames = new HashSet<>();
-		for (String pattern : paths) {
-			// very basic, not ant-pattern like
-			pattern = pattern.replace("*", "[^/]*");
-			branchPaths.add("^" + pattern + "$");
-			branchNames.add(Pattern.compile("^(" + pattern + ")(/.*)?$"));
-		}
 	}
 
 	protected void reportNormalized(@Nonnull Revision aRevision, @Nonnull Object[] entry) throws IOException {
@@ -226,65 +229,4 @@ public class CsvRevisionReporter extends AbstractRevisionReporter {
 		}
 	}
 
-	/**
-	 * Try to determine if it was a branch action (create, delete, move)
-	 *
-	 * @param aRevision
-	 * @return
-	 */
-	private boolean isBranchActions(Revision aRevision) {
-		final Set<FileChange> manifest = aRevision.getFileChanges().values().stream().filter(c -> c.isInManifest()).collect(Collectors.toSet());
-		if (manifest.size() == aRevision.getFileChanges().size()) {
-			// everything was known, can't be a branch action
-			return false;
-		}
-		if (manifest.size() != manifest.stream()
-				.filter(c -> c.getLinesChanged() == 0 && !c.isBinary() && (!c.getChangeType().equals(ChangeType.ADDED) || c.getFromRevision() > 0)).count()) {
-			// not all are directories
-			// or not copied from
-			return false;
-		}
-
-		// validate manifest entries to be all in branch path patterns
-		if (!manifest.stream().allMatch(c -> branchPaths.stream().anyMatch(p -> c.getFilename().matches(p)))) {
-			return false;
-		}
-
-		final Map<FileChange, MutableInt> counts = manifest.stream().collect(Collectors.toMap(f -> f, f -> new MutableInt()));
-		Iterator<FileChange> it = aRevision.getFileChanges().values().stream().filter(c -> !c.isInManifest()).iterator();
-		while (it.hasNext()) {
-			final FileChange change = it.next();
-			Optional<FileChange> manEntry = manifest.stream()
-					.filter(e -> change.getFilename().startsWith(e.getFilename()) && change.getChangeType().equals(e.getChangeType())).findFirst();
-			if (!manEntry.isPresent()) {
-				// non-manifest entry was not in the manifest with the same change type
-				// thus not a branching action
-				return false;
-			}
-			counts.get(manEntry.get()).increment();
-		}
-
-		// a branch creation manifest looks like this:
-		// A /new/branch (from /old/branch:number)
-		// TODO
-
-		// a move manifest looks like this
-		// A /new/branch (from /old/branch:number)
-		// D /old/branch
-		// if (manifest.size()
-		// / 2 == manifest.stream()
-		// .filter(c -> ChangeType.ADDED.equals(c.getChangeType())
-		// && manifest.stream().anyMatch(o -> ChangeType.DELETED.equals(o.getChangeType()) &&
-		// o.getFilename().equals(c.getFromPath())))
-		// .count()) {
-		// // This is a directory move operation.
-		// return true;
-		// }
-
-		// a branch deletion manifest looks like this:
-		// D /old/branch
-		// TODO
-
-		return true;
-	}
 }
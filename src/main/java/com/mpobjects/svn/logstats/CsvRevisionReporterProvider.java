@@ -0,0 +1,23 @@
+package com.mpobjects.svn.logstats;
+
+import javax.annotation.Nonnull;
+
+import org.apache.commons.configuration2.Configuration;
+
+/**
+ * Provides output.format=csv.
+ */
+public class CsvRevisionReporterProvider implements RevisionReporterProvider {
+
+	@Override
+	@Nonnull
+	public BatchRevisionReporter createReporter(@Nonnull Configuration aConfig) throws RevisionReporterException {
+		return new SingleRevisionBatchAdapter(new CsvRevisionReporter(RevisionReporterProvider.openOutput(aConfig), aConfig));
+	}
+
+	@Override
+	@Nonnull
+	public String getFormat() {
+		return "csv";
+	}
+}
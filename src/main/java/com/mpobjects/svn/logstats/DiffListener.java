@@ -0,0 +1,32 @@
+package com.mpobjects.svn.logstats;
+
+import javax.annotation.Nonnull;
+
+import com.mpobjects.svn.logstats.model.FileChange;
+import com.mpobjects.svn.logstats.model.Revision;
+
+/**
+ * Receives the hunks and lines of every file diff while the parser reads them, before the revision is reported. A
+ * reporter implementing this interface is registered with the parser automatically.
+ * <p>
+ * The revision and file change are only valid until {@link #endDiff()}, unless the reporter retains revisions.
+ */
+public interface DiffListener {
+
+	void endDiff();
+
+	/**
+	 * A hunk header, "@@ -oldStart,oldCount +newStart,newCount @@". An empty range starts after the given line.
+	 */
+	void hunk(int aOldStart, int aOldCount, int aNewStart, int aNewCount);
+
+	/**
+	 * A line of the current hunk.
+	 *
+	 * @param aType
+	 *            '-' for a removed line, '+' for an added line and ' ' for context
+	 */
+	void line(char aType);
+
+	void startDiff(@Nonnull Revision aRevision, @Nonnull FileChange aChange);
+}
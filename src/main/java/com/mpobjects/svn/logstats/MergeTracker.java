@@ -0,0 +1,125 @@
+package com.mpobjects.svn.logstats;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.function.BiConsumer;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.mpobjects.svn.logstats.model.FileChange;
+import com.mpobjects.svn.logstats.model.MergeStatus;
+import com.mpobjects.svn.logstats.model.Revision;
+import com.mpobjects.svn.logstats.model.RevisionRangeSet;
+
+/**
+ * Collects the merged revision ranges per source path, so the original revisions can be tagged as
+ * {@link MergeStatus#MERGE_SOURCE}. This only works when the merge revision is processed before the merged
+ * revisions, which is the default (newest first) order of svn log. When the revisions turn out to be processed
+ * oldest first a warning is logged and no more merge info is collected.
+ */
+public class MergeTracker {
+
+	private static final Logger LOG = LoggerFactory.getLogger(MergeTracker.class);
+
+	/**
+	 * Parse a single mergeinfo line, either a property value line ("/branches/x:100-200,205") or a line from the
+	 * property diff ("Merged /branches/x:r100-200,205").
+	 *
+	 * @param aTarget
+	 *            receives the source path (without leading slash) and the merged revisions
+	 * @return true if the line contained merge info
+	 */
+	public static boolean parseMergeInfo(@CheckForNull String aLine, @Nonnull BiConsumer<String, RevisionRangeSet> aTarget) {
+		String line = StringUtils.trim(aLine);
+		if (StringUtils.isEmpty(line)) {
+			return false;
+		}
+		line = StringUtils.removeStart(line, "Merged ");
+		if (!line.startsWith("/")) {
+			// also skips Reverse-merged lines
+			return false;
+		}
+		int idx = line.lastIndexOf(':');
+		if (idx < 0) {
+			return false;
+		}
+		RevisionRangeSet ranges = RevisionRangeSet.parse(line.substring(idx + 1));
+		if (ranges.isEmpty()) {
+			return false;
+		}
+		aTarget.accept(line.substring(1, idx), ranges);
+		return true;
+	}
+
+	/**
+	 * Id of the previously processed revision, 0 when none
+	 */
+	protected int lastRevision;
+
+	/**
+	 * Source path to the revisions merged from it
+	 */
+	protected final Map<String, RevisionRangeSet> merged;
+
+	/**
+	 * The revisions are processed oldest first, merge sources can not be tagged
+	 */
+	protected boolean oldestFirst;
+
+	public MergeTracker() {
+		merged = new HashMap<>();
+	}
+
+	/**
+	 * Tag the revision when it was merged by an earlier processed revision, and record its own merge info.
+	 */
+	public void process(@Nonnull Revision aRevision) {
+		if (oldestFirst) {
+			return;
+		}
+		if (lastRevision > 0 && aRevision.getId() > lastRevision) {
+			LOG.warn("Revisions are processed oldest first (r{} after r{}), merged revisions are not tagged as {}.", aRevision.getId(), lastRevision,
+					MergeStatus.MERGE_SOURCE);
+			oldestFirst = true;
+			merged.clear();
+			return;
+		}
+		lastRevision = aRevision.getId();
+		if (MergeStatus.NORMAL.equals(aRevision.getMergeStatus()) && isMerged(aRevision)) {
+			aRevision.setMergeStatus(MergeStatus.MERGE_SOURCE);
+		}
+		for (Entry<String, RevisionRangeSet> entry : aRevision.getMergeInfo().entrySet()) {
+			RevisionRangeSet ranges = merged.get(entry.getKey());
+			if (ranges == null) {
+				ranges = new RevisionRangeSet();
+				merged.put(entry.getKey(), ranges);
+			}
+			ranges.addAll(entry.getValue());
+		}
+	}
+
+	/**
+	 * @return true if the revision was merged and touched the merge source path
+	 */
+	protected boolean isMerged(@Nonnull Revision aRevision) {
+		for (Entry<String, RevisionRangeSet> entry : merged.entrySet()) {
+			if (!entry.getValue().contains(aRevision.getId())) {
+				continue;
+			}
+			String path = entry.getKey();
+			for (FileChange change : aRevision.getFileChanges().values()) {
+				String filename = change.getFilename();
+				if (filename.startsWith(path) && (filename.length() == path.length() || filename.charAt(path.length()) == '/')) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,115 @@
+package com.mpobjects.svn.logstats;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+import org.apache.commons.configuration2.Configuration;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Include and exclude filter on repository paths (without leading slash). A pattern matches the path itself and
+ * everything below it, a "*" matches within a single path element, like "branches/*&#47;src". A path matches when it
+ * matches any include, or there are no includes, and no exclude.
+ * <p>
+ * Settings: path.include and path.exclude, both can be repeated.
+ */
+public class PathFilter {
+
+	/**
+	 * @return the configured filter, or null when no paths are filtered
+	 */
+	@CheckForNull
+	public static PathFilter fromConfig(@Nonnull Configuration aConfig) {
+		List<String> includes = aConfig.getList(String.class, "path.include", Collections.emptyList());
+		List<String> excludes = aConfig.getList(String.class, "path.exclude", Collections.emptyList());
+		if (includes.isEmpty() && excludes.isEmpty()) {
+			return null;
+		}
+		return new PathFilter(includes, excludes);
+	}
+
+	@Nonnull
+	private static String normalize(String aPattern) {
+		return StringUtils.strip(StringUtils.trim(aPattern), "/");
+	}
+
+	@Nonnull
+	private static Pattern toPattern(String aPattern) {
+		// very basic, like branchpath
+		StringBuilder regex = new StringBuilder("^");
+		for (String part : StringUtils.splitPreserveAllTokens(aPattern, '*')) {
+			if (regex.length() > 1) {
+				regex.append("[^/]*");
+			}
+			regex.append(Pattern.quote(part));
+		}
+		return Pattern.compile(regex.append("(/.*)?$").toString());
+	}
+
+	protected final List<Pattern> excludes;
+
+	/**
+	 * Literal part of every include, before the first wildcard
+	 */
+	protected final List<String> includeRoots;
+
+	protected final List<Pattern> includes;
+
+	public PathFilter(@Nonnull Collection<String> aIncludes, @Nonnull Collection<String> aExcludes) {
+		includes = new ArrayList<>();
+		includeRoots = new ArrayList<>();
+		for (String include : aIncludes) {
+			String pattern = normalize(include);
+			includes.add(toPattern(pattern));
+			String literal = StringUtils.substringBefore(pattern, "*");
+			includeRoots.add(literal.equals(pattern) ? pattern : literal.substring(0, Math.max(literal.lastIndexOf('/'), 0)));
+		}
+		excludes = new ArrayList<>();
+		for (String exclude : aExcludes) {
+			excludes.add(toPattern(normalize(exclude)));
+		}
+	}
+
+	/**
+	 * The paths which can be passed as svn targets to restrict the revisions to the included paths. A wildcard
+	 * include is replaced by the directory containing its first wildcard.
+	 *
+	 * @return the target paths, empty when the includes cover the whole repository
+	 */
+	@Nonnull
+	public List<String> getTargets() {
+		List<String> result = new ArrayList<>();
+		for (String root : includeRoots) {
+			if (root.isEmpty()) {
+				return Collections.emptyList();
+			}
+			if (!result.contains(root)) {
+				result.add(root);
+			}
+		}
+		// drop targets below other targets
+		result.removeIf(t -> result.stream().anyMatch(o -> t.startsWith(o + "/")));
+		return result;
+	}
+
+	public boolean matches(@CheckForNull String aPath) {
+		if (aPath == null) {
+			return false;
+		}
+		String path = StringUtils.removeStart(aPath, "/");
+		boolean result = includes.isEmpty();
+		for (int i = 0; !result && i < includes.size(); ++i) {
+			result = includes.get(i).matcher(path).matches();
+		}
+		for (int i = 0; result && i < excludes.size(); ++i) {
+			result = !excludes.get(i).matcher(path).matches();
+		}
+		return result;
+	}
+}
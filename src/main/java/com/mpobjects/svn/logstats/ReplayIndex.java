@@ -0,0 +1,72 @@
+package com.mpobjects.svn.logstats;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.mpobjects.svn.logstats.util.LongIntHashMap;
+
+/**
+ * Remembers the revision of the most recent diff fingerprints, to recognize diffs which are replayed by a merge or
+ * cherry-pick. The index is bounded, when it is full the oldest fingerprint is forgotten. Only the newer revision of
+ * two equal diffs is a replay, so the revisions must be checked oldest first. When they turn out to be checked newest
+ * first a warning is logged, and the older revisions are not flagged as replays of the newer ones.
+ */
+public class ReplayIndex {
+
+	private static final Logger LOG = LoggerFactory.getLogger(ReplayIndex.class);
+
+	protected final long[] fingerprints;
+
+	/**
+	 * Revision of the previous check, 0 when none
+	 */
+	protected int lastRevision;
+
+	/**
+	 * The revisions are checked newest first
+	 */
+	protected boolean newestFirst;
+
+	protected int next;
+
+	protected final LongIntHashMap revisions;
+
+	public ReplayIndex(int aCapacity) {
+		fingerprints = new long[Math.max(aCapacity, 1)];
+		revisions = new LongIntHashMap(fingerprints.length);
+	}
+
+	/**
+	 * Look up the fingerprint, and record it for the revision when it is not known.
+	 *
+	 * @return the older revision which had the fingerprint, or 0 if it is new
+	 */
+	public int check(long aFingerprint, int aRevision) {
+		if (!newestFirst && lastRevision > 0 && aRevision < lastRevision) {
+			LOG.warn("Revisions are processed newest first (r{} after r{}), replayed diffs are not detected. Process the revisions oldest first (-r 1:HEAD).",
+					aRevision, lastRevision);
+			newestFirst = true;
+		}
+		lastRevision = aRevision;
+		int known = revisions.get(aFingerprint, 0);
+		if (known != 0 && known <= aRevision) {
+			return known;
+		}
+		if (known != 0) {
+			// the newer revision replayed this one, remember the original
+			revisions.put(aFingerprint, aRevision);
+			return 0;
+		}
+		if (revisions.size() == fingerprints.length) {
+			revisions.remove(fingerprints[next]);
+		}
+		fingerprints[next] = aFingerprint;
+		next = (next + 1) % fingerprints.length;
+		revisions.put(aFingerprint, aRevision);
+		return 0;
+	}
+
+	public int size() {
+		return revisions.size();
+	}
+}
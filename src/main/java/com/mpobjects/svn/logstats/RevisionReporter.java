@@ -4,8 +4,23 @@ import javax.annotation.Nonnull;
 
 import com.mpobjects.svn.logstats.model.Revision;
 
+/**
+ * Receives the parsed revisions.
+ * <p>
+ * Ownership: unless {@link #retainsRevisions()} returns true, the revision and its file changes are only valid
+ * during {@link #report(Revision)}. The parser may recycle the instances as soon as report returns, so they must not
+ * be kept or used afterwards.
+ */
 public interface RevisionReporter {
 	void flush() throws RevisionReporterException;
 
 	void report(@Nonnull Revision aRevision) throws RevisionReporterException;
+
+	/**
+	 * @return true if the reporter keeps references to revisions or file changes after {@link #report(Revision)}
+	 *         returns, which prevents the parser from recycling them
+	 */
+	default boolean retainsRevisions() {
+		return true;
+	}
 }
@@ -0,0 +1,38 @@
+package com.mpobjects.svn.logstats;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.PrintWriter;
+
+import javax.annotation.Nonnull;
+
+import org.apache.commons.configuration2.Configuration;
+
+/**
+ * Creates the reporter for an "output.format". Providers are found with {@link java.util.ServiceLoader}, register
+ * them in META-INF/services/com.mpobjects.svn.logstats.RevisionReporterProvider.
+ */
+public interface RevisionReporterProvider {
+
+	/**
+	 * Open the file set with "output".
+	 */
+	@Nonnull
+	static PrintWriter openOutput(@Nonnull Configuration aConfig) throws RevisionReporterException {
+		String filename = aConfig.getString("output", "output.csv");
+		try {
+			return new PrintWriter(new File(filename));
+		} catch (FileNotFoundException e) {
+			throw new RevisionReporterException("Cannot create output file " + filename, e);
+		}
+	}
+
+	@Nonnull
+	BatchRevisionReporter createReporter(@Nonnull Configuration aConfig) throws RevisionReporterException;
+
+	/**
+	 * @return the value of "output.format" selecting this provider
+	 */
+	@Nonnull
+	String getFormat();
+}
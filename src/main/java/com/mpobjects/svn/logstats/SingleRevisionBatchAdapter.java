@@ -0,0 +1,53 @@
+package com.mpobjects.svn.logstats;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+
+import com.mpobjects.svn.logstats.model.Revision;
+
+/**
+ * Exposes a single revision {@link RevisionReporter} as a {@link BatchRevisionReporter}.
+ */
+public class SingleRevisionBatchAdapter implements BatchRevisionReporter {
+
+	protected final RevisionReporter reporter;
+
+	public SingleRevisionBatchAdapter(@Nonnull RevisionReporter aReporter) {
+		reporter = aReporter;
+	}
+
+	/**
+	 * Closes the reporter when it is closeable.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (reporter instanceof Closeable) {
+			((Closeable) reporter).close();
+		}
+	}
+
+	@Override
+	public void flush() throws RevisionReporterException {
+		reporter.flush();
+	}
+
+	@Nonnull
+	public RevisionReporter getReporter() {
+		return reporter;
+	}
+
+	@Override
+	public void reportBatch(@Nonnull List<Revision> aRevisions) throws RevisionReporterException {
+		for (Revision revision : aRevisions) {
+			reporter.report(revision);
+		}
+	}
+
+	@Override
+	public boolean retainsRevisions() {
+		return reporter.retainsRevisions();
+	}
+}
@@ -1,18 +1,30 @@
 package com.mpobjects.svn.logstats;
 
-import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.PrintWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.ServiceLoader;
+import java.util.function.Consumer;
 
 import org.apache.commons.configuration2.Configuration;
 import org.apache.commons.configuration2.builder.fluent.Configurations;
+import org.apache.commons.configuration2.ex.ConfigurationException;
 import org.apache.commons.exec.CommandLine;
 import org.apache.commons.exec.DefaultExecutor;
 import org.apache.commons.exec.LogOutputStream;
 import org.apache.commons.exec.PumpStreamHandler;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.mpobjects.svn.logstats.linetype.LineClassification;
+import com.mpobjects.svn.logstats.profile.ProfileRevisionReporter;
+import com.mpobjects.svn.logstats.sampling.SampledLog;
+
 public class SvnLog {
 
 	private static final Logger LOG = LoggerFactory.getLogger(SvnLog.class);
@@ -25,7 +37,13 @@ public class SvnLog {
 	public SvnLog() {
 	}
 
-	public void exec(String[] aArgs) throws Exception {
+	/**
+	 * Create the "svn log" command producing the output understood by the {@link SvnLogParser}.
+	 *
+	 * @param aArgs
+	 *            additional arguments, like the revision range and the repository URL
+	 */
+	public static CommandLine createLogCommand(String... aArgs) {
 		CommandLine cmd = new CommandLine("svn");
 		cmd.addArgument("log");
 		cmd.addArguments("-v");
@@ -33,32 +51,163 @@ public class SvnLog {
 		cmd.addArguments("--extensions");
 		cmd.addArguments("-w"); // ignore all whitespace
 		cmd.addArguments(aArgs);
+		return cmd;
+	}
 
-		LOG.debug("Cmd: {}", cmd);
+	/**
+	 * Apply the "parser.*", "linetype.*", "path.*" and "replay.*" settings to the parser.
+	 */
+	public static void configureParser(SvnLogParser aParser, Configuration aConfig) {
+		aParser.setReuseRevisions(aConfig.getBoolean("parser.reuse", false), aConfig.getBoolean("parser.reuse.debug", false));
+		aParser.setLineClassification(LineClassification.fromConfig(aConfig));
+		aParser.setPathFilter(PathFilter.fromConfig(aConfig));
+		if (aConfig.getBoolean("replay.detect", false)) {
+			aParser.setReplayDetection(new ReplayIndex(aConfig.getInt("replay.index.size", 100000)), aConfig.getInt("replay.minlines", 3),
+					aConfig.getBoolean("replay.exclude", false));
+		}
+	}
 
-		final Configuration config = new Configurations().properties(System.getProperty("settings", "settings.properties"));
+	/**
+	 * Pass the included paths as svn targets, so svn only logs the revisions touching them. This is only done when the
+	 * last argument is a URL, the target paths are relative to it. The parser still has to filter, the changed paths
+	 * and diffs of a logged revision are not restricted to the targets.
+	 *
+	 * @return the arguments with the included paths appended
+	 */
+	public static String[] pushDownPaths(String[] aArgs, Configuration aConfig) {
+		PathFilter filter = PathFilter.fromConfig(aConfig);
+		if (filter == null || !aConfig.getBoolean("path.pushdown", true) || aArgs.length == 0) {
+			return aArgs;
+		}
+		String target = aArgs[aArgs.length - 1];
+		if (!target.contains("://") && !target.startsWith("^/")) {
+			LOG.debug("Not passing included paths to svn, last argument is not a URL: {}", target);
+			return aArgs;
+		}
+		List<String> paths = filter.getTargets();
+		if (paths.isEmpty()) {
+			return aArgs;
+		}
+		LOG.debug("Passing included paths to svn: {}", paths);
+		String[] result = Arrays.copyOf(aArgs, aArgs.length + paths.size());
+		for (int i = 0; i < paths.size(); ++i) {
+			result[aArgs.length + i] = paths.get(i);
+		}
+		return result;
+	}
 
-		final RevisionReporter reporter = createReporter(config);
-		final SvnLogParser parser = new SvnLogParser(reporter);
+	/**
+	 * Execute the command and feed the output to the parser. The parser is not flushed.
+	 */
+	public static void execute(CommandLine aCmd, final SvnLogParser aParser) throws IOException {
+		execute(aCmd, aParser::parse);
+	}
+
+	/**
+	 * Execute the command and pass every output line to the consumer.
+	 */
+	public static void execute(CommandLine aCmd, final Consumer<String> aLines) throws IOException {
+		LOG.debug("Cmd: {}", aCmd);
 
 		DefaultExecutor exec = new DefaultExecutor();
 		exec.setStreamHandler(new PumpStreamHandler(new LogOutputStream() {
 			@Override
 			protected void processLine(String aLine, int aLogLevel) {
-				parser.parse(aLine);
+				aLines.accept(aLine);
 			}
 		}, System.err));
-		exec.execute(cmd);
-		parser.flush();
+		exec.execute(aCmd);
+	}
+
+	public void exec(String[] aArgs) throws Exception {
+		final Configuration config = loadConfiguration();
+		final String[] args = pushDownPaths(aArgs, config);
+		CommandLine cmd = createLogCommand(args);
+
+		final RevisionReporter reporter = createReporter(config);
+		try {
+			if (!ProfileRevisionReporter.getProfileNames(config).isEmpty()) {
+				// closes the profile reporters, the main reporter is closed below
+				try (ProfileRevisionReporter profiles = new ProfileRevisionReporter(reporter, config)) {
+					exec(cmd, args, config, profiles);
+				}
+				return;
+			}
+			exec(cmd, args, config, reporter);
+		} finally {
+			if (reporter instanceof Closeable) {
+				((Closeable) reporter).close();
+			}
+		}
 	}
 
-	private RevisionReporter createReporter(Configuration aConfig) throws FileNotFoundException, RevisionReporterException {
-		// this clearly needs to become better
+	/**
+	 * Create the batch reporter of the provider selected with "output.format".
+	 *
+	 * @return null when no provider supports the format
+	 */
+	public static BatchRevisionReporter createBatchReporter(Configuration aConfig) throws RevisionReporterException {
 		final String fmt = aConfig.getString("output.format", "csv");
-		if ("csv".equals(fmt)) {
-			return new CsvRevisionReporter(new PrintWriter(new File(aConfig.getString("output", "output.csv"))), aConfig);
+		for (RevisionReporterProvider provider : ServiceLoader.load(RevisionReporterProvider.class)) {
+			if (fmt.equals(provider.getFormat())) {
+				return provider.createReporter(aConfig);
+			}
 		}
+		LOG.error("Unsupported output.format: {}", fmt);
 		return null;
 	}
 
+	/**
+	 * Create the reporter selected with "output.format", batch reporters receive batches of "output.batch.size"
+	 * revisions.
+	 *
+	 * @return null when no provider supports the format
+	 */
+	public static RevisionReporter createReporter(Configuration aConfig) throws RevisionReporterException {
+		BatchRevisionReporter reporter = createBatchReporter(aConfig);
+		if (reporter == null) {
+			return null;
+		}
+		return BatchingRevisionReporter.of(reporter, aConfig.getInt("output.batch.size", 1000));
+	}
+
+	/**
+	 * @return the HEAD revision of the repository of the target, using "svn info"
+	 */
+	public static int getHeadRevision(String aTarget) throws IOException {
+		CommandLine cmd = new CommandLine("svn");
+		cmd.addArgument("info");
+		cmd.addArgument("--show-item");
+		cmd.addArgument("revision");
+		cmd.addArgument("-r");
+		cmd.addArgument("HEAD");
+		cmd.addArgument(aTarget);
+		LOG.debug("Cmd: {}", cmd);
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		DefaultExecutor exec = new DefaultExecutor();
+		exec.setStreamHandler(new PumpStreamHandler(out, System.err));
+		exec.execute(cmd);
+		String value = StringUtils.trim(new String(out.toByteArray(), StandardCharsets.UTF_8));
+		if (!NumberUtils.isDigits(value)) {
+			throw new IOException("Unexpected svn info output: " + value);
+		}
+		return NumberUtils.toInt(value);
+	}
+
+	public static Configuration loadConfiguration() throws ConfigurationException {
+		return new Configurations().properties(System.getProperty("settings", "settings.properties"));
+	}
+
+	private void exec(CommandLine aCmd, String[] aArgs, Configuration aConfig, RevisionReporter aReporter) throws Exception {
+		if (!"none".equalsIgnoreCase(aConfig.getString("sampling.strategy", "none"))) {
+			new SampledLog(aConfig).run(Arrays.asList(aArgs), aReporter);
+			return;
+		}
+		final SvnLogParser parser = new SvnLogParser(aReporter);
+		configureParser(parser, aConfig);
+
+		execute(aCmd, parser);
+		parser.flush();
+	}
 }
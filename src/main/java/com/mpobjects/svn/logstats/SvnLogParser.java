@@ -1,31 +1,73 @@
 package com.mpobjects.svn.logstats;
 
+import java.lang.ref.WeakReference;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.math.NumberUtils;
+import org.joda.time.DateTime;
 import org.joda.time.format.DateTimeFormat;
 import org.joda.time.format.DateTimeFormatter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.mpobjects.svn.logstats.linetype.LineClassification;
+import com.mpobjects.svn.logstats.linetype.LineClassifier;
+import com.mpobjects.svn.logstats.linetype.LineSyntax;
 import com.mpobjects.svn.logstats.model.ChangeType;
 import com.mpobjects.svn.logstats.model.FileChange;
+import com.mpobjects.svn.logstats.model.LineType;
 import com.mpobjects.svn.logstats.model.MergeStatus;
 import com.mpobjects.svn.logstats.model.Revision;
+import com.mpobjects.svn.logstats.util.Hashing;
 
 public class SvnLogParser {
 	private static class DiffState {
 		int add;
+		final int[] addByType = new int[LineType.values().length];
 		int del;
+		final int[] delByType = new int[LineType.values().length];
+		/**
+		 * The diff listener received the start of this diff
+		 */
+		boolean listened;
+		/**
+		 * Hash of the added and removed lines, in order and without whitespace
+		 */
+		long fingerprint;
+		/**
+		 * Still in the diff header, before the first hunk
+		 */
+		boolean header;
+		LineClassifier newSide;
+		LineClassifier oldSide;
 		int totalAdd;
 		int totalDel;
 		int totalMod;
 	}
 
 	private enum ParserState {
-		COMMENT, DIFF, DIFF_PROPS, ENTRY, NEW, PATHS;
+		COMMENT, DIFF, DIFF_PROPS, ENTRY, NEW, PATHS, SKIP;
+	}
+
+	/**
+	 * Tracks a released instance in debug mode
+	 */
+	private static class ReleasedReference extends WeakReference<Object> {
+		final int revision;
+
+		ReleasedReference(Object aReferent, int aRevision) {
+			super(aReferent);
+			revision = aRevision;
+		}
 	}
 
 	private static final String DIFF_BIN = "Cannot display: file marked as a binary type.";
@@ -38,6 +80,13 @@ public class SvnLogParser {
 
 	private static final Pattern DIFF_PROPS_INDEX_PATTERN = Pattern.compile("^" + DIFF_PROPS_INDEX + "(.*)");
 
+	/**
+	 * Maximum number of recycled file changes to keep
+	 */
+	private static final int FILE_CHANGE_POOL_LIMIT = 4096;
+
+	private static final Pattern DIFF_HUNK = Pattern.compile("^@@ -([0-9]+)(?:,([0-9]+))? \\+([0-9]+)(?:,([0-9]+))? @@.*");
+
 	private static final Pattern FILE_COPY = Pattern.compile("(.*)( \\(from /(.*):([0-9]+)\\))");
 
 	private static final Pattern FILE_ENTRY = Pattern.compile("^   ([ADMR]) /(.*)");
@@ -51,32 +100,105 @@ public class SvnLogParser {
 
 	private static final String PATHS_HEADER = "Changed paths:";
 
+	private static final String PROP_MERGEINFO = "svn:mergeinfo";
+
+	/**
+	 * Number of released revisions after which retained references are checked in debug mode
+	 */
+	private static final int RETENTION_CHECK_INTERVAL = 1000;
+
 	private static final DateTimeFormatter SVN_DATE_FORMAT = DateTimeFormat.forPattern("yyyy-MM-dd HH:mm:ss Z");
 
-	private StringBuilder commentBuffer;
+	private final StringBuilder commentBuffer;
 
 	/**
 	 * Number of lines of comment
 	 */
 	private int commentLines;
 
+	private boolean commentStarted;
+
 	private FileChange currentFileChange;
 
+	/**
+	 * Name of the property whose diff is being processed
+	 */
+	private String currentProperty;
+
 	private Revision currentRevision;
 
+	private DiffListener diffListener;
+
 	private DiffState diffState;
 
+	private final Deque<FileChange> fileChangePool;
+
+	private LineClassification lineClassification;
+
+	/**
+	 * Old and new side classifier per syntax
+	 */
+	private final Map<LineSyntax, LineClassifier[]> lineClassifiers;
+
+	private final MergeTracker mergeTracker;
+
+	private PathFilter pathFilter;
+
+	/**
+	 * Recycle revisions and file changes after they have been reported
+	 */
+	private boolean recycle;
+
+	/**
+	 * Instances released in debug mode which should become unreachable
+	 */
+	private final List<ReleasedReference> released;
+
+	/**
+	 * Do not count replayed diffs, and skip revisions which only replay diffs
+	 */
+	private boolean replayExclude;
+
+	private ReplayIndex replayIndex;
+
+	/**
+	 * Minimal number of added and removed lines of a diff to be checked for a replay
+	 */
+	private int replayMinLines;
+
 	private RevisionReporter reporter;
 
+	private boolean reuseDebug;
+
+	/**
+	 * Skip the current diff section, its file is not matched by the path filter
+	 */
+	private boolean skipDiff;
+
+	private DiffState spareDiffState;
+
+	private Revision spareRevision;
+
 	private ParserState state;
 
 	public SvnLogParser(RevisionReporter aReporter) {
 		reporter = aReporter;
 		state = ParserState.NEW;
+		commentBuffer = new StringBuilder();
+		fileChangePool = new ArrayDeque<>();
+		released = new ArrayList<>();
+		mergeTracker = new MergeTracker();
+		lineClassifiers = new EnumMap<>(LineSyntax.class);
+		if (aReporter instanceof DiffListener) {
+			diffListener = (DiffListener) aReporter;
+		}
 	}
 
 	public void flush() {
 		reportCurrentRevision();
+		if (reuseDebug) {
+			checkRetained();
+		}
 		try {
 			reporter.flush();
 		} catch (RevisionReporterException e) {
@@ -84,6 +206,10 @@ public class SvnLogParser {
 		}
 	}
 
+	public boolean isReuseRevisions() {
+		return recycle;
+	}
+
 	public void parse(String aLine) {
 		if (LOG_ENTRY_DIV.equals(aLine)) {
 			// always process this
@@ -92,6 +218,11 @@ public class SvnLogParser {
 			return;
 		}
 
+		if (ParserState.SKIP.equals(state)) {
+			// revision without matching paths
+			return;
+		}
+
 		if (!ParserState.ENTRY.equals(state) && currentRevision == null) {
 			LOG.error("Illegal state: {}", state);
 			return;
@@ -118,22 +249,127 @@ public class SvnLogParser {
 		}
 	}
 
+	/**
+	 * Pass the hunks and lines of every diff to the listener. Set automatically when the reporter is a listener.
+	 *
+	 * @param aListener
+	 *            the listener, null to disable
+	 */
+	public void setDiffListener(DiffListener aListener) {
+		diffListener = aListener;
+	}
+
+	/**
+	 * Classify added and removed lines as code, comment or blank.
+	 *
+	 * @param aClassification
+	 *            the syntax per file type, null to disable
+	 */
+	public void setLineClassification(LineClassification aClassification) {
+		lineClassification = aClassification;
+	}
+
+	/**
+	 * Only process the paths matched by the filter. Revisions without matching paths are skipped entirely, as are the
+	 * diffs of files which do not match.
+	 *
+	 * @param aFilter
+	 *            the filter, null to process all paths
+	 */
+	public void setPathFilter(PathFilter aFilter) {
+		pathFilter = aFilter;
+	}
+
+	/**
+	 * Detect diffs which replay the diff of an earlier processed revision, the file change is flagged with
+	 * {@link FileChange#getReplayOf()}. Diffs are compared by a fingerprint of the added and removed lines, ignoring
+	 * whitespace, and the file name. The newer revision is the replay, it is only flagged when the revisions are
+	 * processed oldest first, see {@link ReplayIndex}.
+	 *
+	 * @param aIndex
+	 *            the fingerprints of earlier revisions, null to disable
+	 * @param aMinLines
+	 *            smaller diffs are not checked, they are too likely to be equal by accident
+	 * @param aExclude
+	 *            do not count the lines of replayed diffs and skip revisions which only contain replays
+	 */
+	public void setReplayDetection(ReplayIndex aIndex, int aMinLines, boolean aExclude) {
+		replayIndex = aIndex;
+		replayMinLines = Math.max(aMinLines, 1);
+		replayExclude = aIndex != null && aExclude;
+	}
+
+	/**
+	 * Enable recycling of revision and file change instances after they are reported. Only takes effect when the
+	 * reporter does not retain revisions.
+	 *
+	 * @param aReuse
+	 *            recycle instances
+	 * @param aDebug
+	 *            do not recycle, but report reporters which keep references to released instances
+	 * @see RevisionReporter#retainsRevisions()
+	 */
+	public void setReuseRevisions(boolean aReuse, boolean aDebug) {
+		recycle = aReuse && reporter != null && !reporter.retainsRevisions();
+		reuseDebug = recycle && aDebug;
+		if (aReuse && !recycle) {
+			LOG.info("Not reusing revisions, reporter retains them.");
+		}
+	}
+
 	protected boolean parseDiffContent(String aLine) {
-		if (aLine.startsWith("---") || aLine.startsWith("+++") || aLine.startsWith("@@")
-				|| "===================================================================".equals(aLine)) {
-			// ignore unified diff header
+		if (aLine.startsWith("@@")) {
+			diffState.header = false;
+			if (diffState.listened) {
+				Matcher matcher = DIFF_HUNK.matcher(aLine);
+				if (matcher.matches()) {
+					diffListener.hunk(Integer.parseInt(matcher.group(1)), matcher.group(2) == null ? 1 : Integer.parseInt(matcher.group(2)),
+							Integer.parseInt(matcher.group(3)), matcher.group(4) == null ? 1 : Integer.parseInt(matcher.group(4)));
+				}
+			}
+			return true;
+		}
+		if (diffState.header && (aLine.startsWith("---") || aLine.startsWith("+++")
+				|| "===================================================================".equals(aLine))) {
+			// ignore unified diff header, only before the first hunk so removed "--" and added "++" lines count
 			return true;
 		}
 
 		if (aLine.startsWith("-")) {
 			diffState.del++;
 			diffState.totalDel++;
+			if (replayIndex != null) {
+				diffState.fingerprint = fingerprint(diffState.fingerprint, aLine);
+			}
+			if (diffState.oldSide != null) {
+				diffState.delByType[diffState.oldSide.classify(aLine, 1).ordinal()]++;
+			}
+			if (diffState.listened) {
+				diffListener.line('-');
+			}
 			return true;
 		} else if (aLine.startsWith("+")) {
 			diffState.add++;
 			diffState.totalAdd++;
+			if (replayIndex != null) {
+				diffState.fingerprint = fingerprint(diffState.fingerprint, aLine);
+			}
+			if (diffState.newSide != null) {
+				diffState.addByType[diffState.newSide.classify(aLine, 1).ordinal()]++;
+			}
+			if (diffState.listened) {
+				diffListener.line('+');
+			}
 			return true;
 		} else if (aLine.startsWith(" ")) {
+			if (diffState.oldSide != null) {
+				// keep the block comment state of both sides
+				diffState.oldSide.classify(aLine, 1);
+				diffState.newSide.classify(aLine, 1);
+			}
+			if (diffState.listened) {
+				diffListener.line(' ');
+			}
 			if (diffState.add > 0 || diffState.del > 0) {
 				diffState.totalMod += Math.max(diffState.add, diffState.del);
 				diffState.add = 0;
@@ -152,12 +388,130 @@ public class SvnLogParser {
 			if (diffState.add > 0 || diffState.del > 0) {
 				diffState.totalMod += Math.max(diffState.add, diffState.del);
 			}
+			if (replayIndex != null && diffState.totalAdd + diffState.totalDel >= replayMinLines) {
+				checkReplay();
+			}
 			currentFileChange.setLinesAdded(diffState.totalAdd);
 			currentFileChange.setLinesRemoved(diffState.totalDel);
 			currentFileChange.setLinesChanged(diffState.totalMod);
+			if (diffState.oldSide != null) {
+				for (LineType type : LineType.values()) {
+					currentFileChange.setLinesAdded(type, diffState.addByType[type.ordinal()]);
+					currentFileChange.setLinesRemoved(type, diffState.delByType[type.ordinal()]);
+				}
+			}
+			if (diffState.listened) {
+				diffListener.endDiff();
+			}
 		}
 		currentFileChange = null;
-		diffState = null;
+		if (diffState != null) {
+			spareDiffState = diffState;
+			diffState = null;
+		}
+	}
+
+	/**
+	 * Flag the current file change when its diff was seen before, and drop its lines when replays are excluded.
+	 */
+	private void checkReplay() {
+		final int revision = currentRevision.getId();
+		int replayOf = replayIndex.check(Hashing.fmix64(diffState.fingerprint), revision);
+		if (replayOf == 0 || replayOf == revision) {
+			// new, or the same diff on several files of this revision
+			return;
+		}
+		currentFileChange.setReplayOf(replayOf);
+		if (replayExclude) {
+			diffState.totalAdd = 0;
+			diffState.totalDel = 0;
+			diffState.totalMod = 0;
+			Arrays.fill(diffState.addByType, 0);
+			Arrays.fill(diffState.delByType, 0);
+		}
+	}
+
+	/**
+	 * Report instances released in debug mode which are still reachable.
+	 */
+	private void checkRetained() {
+		if (released.isEmpty()) {
+			return;
+		}
+		System.gc();
+		for (ReleasedReference ref : released) {
+			Object referent = ref.get();
+			if (referent != null) {
+				LOG.error("Reporter {} kept a reference to {} of r{} after report(), it must return true for retainsRevisions().",
+						reporter.getClass().getName(), referent.getClass().getSimpleName(), ref.revision);
+			}
+		}
+		released.clear();
+	}
+
+	private DiffState createDiffState() {
+		DiffState result = spareDiffState;
+		if (result == null) {
+			return new DiffState();
+		}
+		spareDiffState = null;
+		result.add = 0;
+		result.del = 0;
+		result.totalAdd = 0;
+		result.totalDel = 0;
+		result.totalMod = 0;
+		result.fingerprint = 0;
+		Arrays.fill(result.addByType, 0);
+		Arrays.fill(result.delByType, 0);
+		return result;
+	}
+
+	private FileChange createFileChange(String aFilename, ChangeType aChangeType) {
+		FileChange result = fileChangePool.poll();
+		if (result == null) {
+			return new FileChange(aFilename, aChangeType);
+		}
+		result.reset(aFilename, aChangeType);
+		return result;
+	}
+
+	private Revision createRevision(int aId, String aAuthor, DateTime aTimestamp) {
+		Revision result = spareRevision;
+		if (result == null) {
+			return new Revision(aId, aAuthor, aTimestamp);
+		}
+		spareRevision = null;
+		result.reset(aId, aAuthor, aTimestamp);
+		return result;
+	}
+
+	/**
+	 * Add a diff line to the fingerprint, the order of the lines matters and whitespace is ignored.
+	 */
+	private static long fingerprint(long aFingerprint, String aLine) {
+		long h = Hashing.FNV_OFFSET;
+		for (int i = 0; i < aLine.length(); ++i) {
+			char c = aLine.charAt(i);
+			if (!Character.isWhitespace(c)) {
+				h = (h ^ c) * Hashing.FNV_PRIME;
+			}
+		}
+		return (aFingerprint ^ h) * Hashing.FNV_PRIME + 1;
+	}
+
+	/**
+	 * @return true if the revision has replayed diffs and no other changed lines
+	 */
+	private boolean isReplayOnly(Revision aRevision) {
+		boolean replay = false;
+		for (FileChange change : aRevision.getFileChanges().values()) {
+			if (change.isReplay()) {
+				replay = true;
+			} else if (change.getLinesAdded() > 0 || change.getLinesRemoved() > 0 || change.isBinary()) {
+				return false;
+			}
+		}
+		return replay;
 	}
 
 	private void parseComment(String aLine) {
@@ -167,15 +521,15 @@ public class SvnLogParser {
 				LOG.error("Comment was not followed with blank line.");
 			}
 			currentRevision.setComment(commentBuffer.toString());
-			commentBuffer = null;
+			commentBuffer.setLength(0);
+			commentStarted = false;
 			state = ParserState.DIFF;
 			return;
 		}
-		if (commentBuffer == null) {
-			commentBuffer = new StringBuilder();
-		} else {
+		if (commentStarted) {
 			commentBuffer.append('\n');
 		}
+		commentStarted = true;
 		commentBuffer.append(aLine);
 	}
 
@@ -191,6 +545,8 @@ public class SvnLogParser {
 			if (parseDiffContent(aLine)) {
 				return;
 			}
+		} else if (skipDiff && !aLine.startsWith(DIFF_INDEX)) {
+			return;
 		}
 
 		Matcher matcher = DIFF_INDEX_PATTERN.matcher(aLine);
@@ -206,15 +562,40 @@ public class SvnLogParser {
 				filename = StringUtils.substringBefore(filename, " (deleted)");
 				changeType = ChangeType.DELETED;
 			}
+			skipDiff = pathFilter != null && !pathFilter.matches(filename);
+			if (skipDiff) {
+				return;
+			}
 			currentFileChange = currentRevision.getFileChanges().get(filename);
 			if (currentFileChange == null) {
 				LOG.info("Unreported file in diff (type {}): {}", changeType, filename);
 				// If not found it was part of a big add/delete
-				currentFileChange = new FileChange(filename, changeType);
+				currentFileChange = createFileChange(filename, changeType);
 				currentFileChange.setInManifest(false);
 				currentRevision.addFileChange(currentFileChange);
 			}
-			diffState = new DiffState();
+			diffState = createDiffState();
+			diffState.header = true;
+			if (replayIndex != null) {
+				// the same change on another branch has the same file name
+				diffState.fingerprint = Hashing.hash64(StringUtils.substringAfterLast("/" + filename, "/"));
+			}
+			diffState.oldSide = null;
+			diffState.newSide = null;
+			if (lineClassification != null) {
+				LineSyntax syntax = lineClassification.getSyntax(filename);
+				if (syntax != null) {
+					LineClassifier[] sides = lineClassifiers.computeIfAbsent(syntax, k -> new LineClassifier[] { new LineClassifier(k), new LineClassifier(k) });
+					sides[0].reset();
+					sides[1].reset();
+					diffState.oldSide = sides[0];
+					diffState.newSide = sides[1];
+				}
+			}
+			diffState.listened = diffListener != null;
+			if (diffState.listened) {
+				diffListener.startDiff(currentRevision, currentFileChange);
+			}
 			LOG.debug("Processing diff in rev {} for: {}", currentRevision.getId(), currentFileChange.getFilename());
 			return;
 		}
@@ -234,6 +615,7 @@ public class SvnLogParser {
 			Matcher matcher = DIFF_PROPS_INDEX_PATTERN.matcher(aLine);
 			if (matcher.matches()) {
 				currentFileChange = currentRevision.getFileChanges().get(matcher.group(1));
+				currentProperty = null;
 				return;
 			}
 		}
@@ -247,9 +629,18 @@ public class SvnLogParser {
 			return;
 		}
 
-		if (currentFileChange.isInManifest() && ("Modified: svn:mergeinfo".equals(aLine) || "Added: svn:mergeinfo".equals(aLine))) {
-			// if these are added/updated then the file is merged
-			currentRevision.setMergeStatus(MergeStatus.MERGED);
+		if (aLine.startsWith("Modified: ") || aLine.startsWith("Added: ") || aLine.startsWith("Deleted: ")) {
+			currentProperty = StringUtils.substringAfter(aLine, ": ");
+			if (currentFileChange.isInManifest() && PROP_MERGEINFO.equals(currentProperty) && !aLine.startsWith("Deleted: ")) {
+				// if these are added/updated then the file is merged
+				currentRevision.setMergeStatus(MergeStatus.MERGED);
+			}
+			return;
+		}
+
+		if (currentFileChange.isInManifest() && PROP_MERGEINFO.equals(currentProperty)) {
+			// "   Merged /branches/x:r100-200,205"
+			MergeTracker.parseMergeInfo(aLine, currentRevision::addMergeInfo);
 		}
 	}
 
@@ -262,8 +653,10 @@ public class SvnLogParser {
 		if (currentRevision != null) {
 			LOG.error("Found new revision while still processing a revision");
 		}
-		currentRevision = new Revision(NumberUtils.toInt(matcher.group(1)), matcher.group(2), SVN_DATE_FORMAT.parseDateTime(matcher.group(3)));
+		currentRevision = createRevision(NumberUtils.toInt(matcher.group(1)), matcher.group(2), SVN_DATE_FORMAT.parseDateTime(matcher.group(3)));
 		commentLines = NumberUtils.toInt(matcher.group(4));
+		commentBuffer.setLength(0);
+		commentStarted = false;
 		state = ParserState.PATHS;
 	}
 
@@ -275,6 +668,13 @@ public class SvnLogParser {
 		if ("".equals(aLine)) {
 			// blank line = end of record
 			state = ParserState.COMMENT;
+			if (pathFilter != null && currentRevision.getFileChanges().isEmpty()) {
+				LOG.debug("Skipping revision {} without matching paths", currentRevision.getId());
+				// never reported, so it can always be reused
+				spareRevision = currentRevision;
+				currentRevision = null;
+				state = ParserState.SKIP;
+			}
 			return;
 		}
 		Matcher matcher = FILE_ENTRY.matcher(aLine);
@@ -284,7 +684,10 @@ public class SvnLogParser {
 			if (m2.matches()) {
 				filename = m2.group(1);
 			}
-			FileChange chng = new FileChange(filename, ChangeType.get(matcher.group(1)));
+			if (pathFilter != null && !pathFilter.matches(filename)) {
+				return;
+			}
+			FileChange chng = createFileChange(filename, ChangeType.get(matcher.group(1)));
 			if (m2.matches()) {
 				chng.setFromPath(m2.group(3));
 				chng.setFromRevision(NumberUtils.toInt(m2.group(4)));
@@ -295,19 +698,63 @@ public class SvnLogParser {
 		}
 	}
 
+	/**
+	 * Hand the reported revision back to the pool, or track it in debug mode.
+	 */
+	private void release(Revision aRevision) {
+		if (reuseDebug) {
+			released.add(new ReleasedReference(aRevision, aRevision.getId()));
+			for (FileChange change : aRevision.getFileChanges().values()) {
+				released.add(new ReleasedReference(change, aRevision.getId()));
+			}
+			return;
+		}
+		for (FileChange change : aRevision.getFileChanges().values()) {
+			if (fileChangePool.size() >= FILE_CHANGE_POOL_LIMIT) {
+				break;
+			}
+			fileChangePool.push(change);
+		}
+		aRevision.getFileChanges().clear();
+		spareRevision = aRevision;
+	}
+
 	private void reportCurrentRevision() {
+		// the file change of a diff which was not closed by a blank line may be recycled
+		currentFileChange = null;
+		if (diffState != null) {
+			spareDiffState = diffState;
+			diffState = null;
+		}
 		try {
 			if (currentRevision == null || reporter == null) {
 				return;
 			}
+			if (replayExclude && isReplayOnly(currentRevision)) {
+				LOG.debug("Skipping revision {}, it only replays earlier diffs", currentRevision.getId());
+				if (recycle) {
+					release(currentRevision);
+				}
+				return;
+			}
+			mergeTracker.process(currentRevision);
 			try {
 				reporter.report(currentRevision);
 			} catch (RevisionReporterException e) {
 				LOG.error("Error reporting revision.", e);
 			}
+			if (recycle) {
+				release(currentRevision);
+			}
 		} finally {
 			currentRevision = null;
+			currentProperty = null;
+			skipDiff = false;
 			state = ParserState.NEW;
+			if (released.size() >= RETENTION_CHECK_INTERVAL) {
+				// only now the parser itself no longer references the released revision
+				checkRetained();
+			}
 		}
 	}
 }
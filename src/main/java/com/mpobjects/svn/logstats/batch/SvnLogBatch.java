@@ -0,0 +1,255 @@
+package com.mpobjects.svn.logstats.batch;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nonnull;
+
+import org.apache.commons.configuration2.BaseConfiguration;
+import org.apache.commons.configuration2.Configuration;
+import org.apache.commons.configuration2.ConfigurationUtils;
+import org.apache.commons.configuration2.builder.fluent.Configurations;
+import org.apache.commons.configuration2.ex.ConfigurationException;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.mpobjects.svn.logstats.RevisionReporter;
+import com.mpobjects.svn.logstats.RevisionReporterException;
+import com.mpobjects.svn.logstats.SvnLog;
+import com.mpobjects.svn.logstats.SvnLogParser;
+import com.mpobjects.svn.logstats.model.Revision;
+
+/**
+ * Processes a list of repositories in a single JVM. The only argument is the batch file, a properties file like:
+ *
+ * <pre>
+ * batch.processes=4
+ * batch.summary=batch-summary.csv
+ *
+ * repository=core
+ * repository.core.url=https://svn.example.com/core
+ * # optional, defaults to the settings system property
+ * repository.core.settings=core.properties
+ * # optional, defaults to core.csv
+ * repository.core.output=core.csv
+ * # optional, additional svn log arguments
+ * repository.core.args=-r 1:HEAD
+ * </pre>
+ *
+ * At most batch.processes svn processes run at the same time. A failing repository does not affect the others.
+ */
+public class SvnLogBatch {
+
+	/**
+	 * Outcome of a single repository.
+	 */
+	public static class Result {
+		protected long duration;
+
+		protected String error;
+
+		protected final String name;
+
+		protected int revisions;
+
+		public Result(String aName) {
+			name = aName;
+		}
+
+		public long getDuration() {
+			return duration;
+		}
+
+		public String getError() {
+			return error;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public int getRevisions() {
+			return revisions;
+		}
+
+		public boolean isSuccess() {
+			return error == null;
+		}
+	}
+
+	/**
+	 * Counts the revisions passed to the actual reporter.
+	 */
+	private static class CountingReporter implements RevisionReporter {
+		private final AtomicInteger count = new AtomicInteger();
+
+		private final RevisionReporter delegate;
+
+		CountingReporter(RevisionReporter aDelegate) {
+			delegate = aDelegate;
+		}
+
+		@Override
+		public void flush() throws RevisionReporterException {
+			delegate.flush();
+		}
+
+		@Override
+		public void report(@Nonnull Revision aRevision) throws RevisionReporterException {
+			delegate.report(aRevision);
+			count.incrementAndGet();
+		}
+
+		@Override
+		public boolean retainsRevisions() {
+			return delegate.retainsRevisions();
+		}
+	}
+
+	private static final Logger LOG = LoggerFactory.getLogger(SvnLogBatch.class);
+
+	public static void main(String[] args) throws Exception {
+		if (args.length != 1) {
+			System.err.println("Usage: SvnLogBatch <batch file>");
+			System.exit(1);
+		}
+		SvnLogBatch batch = new SvnLogBatch(new Configurations().properties(args[0]));
+		List<Result> results = batch.exec();
+		for (Result result : results) {
+			if (!result.isSuccess()) {
+				System.exit(2);
+			}
+		}
+	}
+
+	protected final Configuration batchConfig;
+
+	public SvnLogBatch(@Nonnull Configuration aBatchConfig) {
+		batchConfig = aBatchConfig;
+	}
+
+	/**
+	 * Process all repositories and write the summary.
+	 *
+	 * @return the result per repository, in the order of the batch file
+	 */
+	@Nonnull
+	public List<Result> exec() throws IOException, InterruptedException {
+		List<String> names = batchConfig.getList(String.class, "repository", Collections.emptyList());
+		int processes = Math.max(1, batchConfig.getInt("batch.processes", Runtime.getRuntime().availableProcessors()));
+		LOG.info("Processing {} repositories with {} svn processes", names.size(), processes);
+
+		ExecutorService executor = Executors.newFixedThreadPool(processes);
+		List<Future<Result>> futures = new ArrayList<>();
+		try {
+			for (String name : names) {
+				final String repo = name.trim();
+				futures.add(executor.submit(() -> process(repo)));
+			}
+			List<Result> results = new ArrayList<>();
+			for (int i = 0; i < futures.size(); ++i) {
+				try {
+					results.add(futures.get(i).get());
+				} catch (ExecutionException e) {
+					// process() catches everything, this should not happen
+					Result result = new Result(names.get(i));
+					result.error = ExceptionUtils.getRootCauseMessage(e);
+					results.add(result);
+				}
+			}
+			writeSummary(results);
+			return results;
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Nonnull
+	protected Configuration loadRepositoryConfig(String aName) throws ConfigurationException {
+		String settings = batchConfig.getString("repository." + aName + ".settings");
+		Configuration base = settings == null ? SvnLog.loadConfiguration() : new Configurations().properties(settings);
+		// copy so the output can be changed without affecting shared settings
+		Configuration config = new BaseConfiguration();
+		ConfigurationUtils.copy(base, config);
+		config.setProperty("output", batchConfig.getString("repository." + aName + ".output", aName + ".csv"));
+		return config;
+	}
+
+	/**
+	 * Process a single repository, never throws.
+	 */
+	@Nonnull
+	protected Result process(String aName) {
+		Result result = new Result(aName);
+		long start = System.currentTimeMillis();
+		try {
+			String url = batchConfig.getString("repository." + aName + ".url");
+			if (StringUtils.isBlank(url)) {
+				throw new ConfigurationException("No url for repository " + aName);
+			}
+			List<String> args = new ArrayList<>();
+			Collections.addAll(args, StringUtils.split(batchConfig.getString("repository." + aName + ".args", "")));
+			args.add(url);
+
+			Configuration config = loadRepositoryConfig(aName);
+			RevisionReporter reporter = SvnLog.createReporter(config);
+			if (reporter == null) {
+				throw new ConfigurationException("Unsupported output format: " + config.getString("output.format"));
+			}
+			CountingReporter counter = new CountingReporter(reporter);
+			try {
+				SvnLogParser parser = new SvnLogParser(counter);
+				SvnLog.configureParser(parser, config);
+				SvnLog.execute(SvnLog.createLogCommand(SvnLog.pushDownPaths(args.toArray(new String[0]), config)), parser);
+				parser.flush();
+			} finally {
+				if (reporter instanceof Closeable) {
+					((Closeable) reporter).close();
+				}
+			}
+			result.revisions = counter.count.get();
+			LOG.info("Repository {} done, {} revisions", aName, result.revisions);
+		} catch (Exception e) {
+			result.error = ExceptionUtils.getRootCauseMessage(e);
+			LOG.error("Repository " + aName + " failed.", e);
+		} finally {
+			result.duration = System.currentTimeMillis() - start;
+		}
+		return result;
+	}
+
+	protected void writeSummary(List<Result> aResults) throws IOException {
+		int failed = 0;
+		int revisions = 0;
+		for (Result result : aResults) {
+			if (!result.isSuccess()) {
+				++failed;
+			}
+			revisions += result.getRevisions();
+		}
+		LOG.info("Batch done: {} repositories, {} failed, {} revisions", aResults.size(), failed, revisions);
+
+		String summary = batchConfig.getString("batch.summary", "batch-summary.csv");
+		try (CSVPrinter printer = new CSVPrinter(new PrintWriter(new File(summary)),
+				CSVFormat.RFC4180.withHeader("Repository", "Status", "Revisions", "Duration (ms)", "Error"))) {
+			for (Result result : aResults) {
+				printer.printRecord(result.getName(), result.isSuccess() ? "OK" : "FAILED", result.getRevisions(), result.getDuration(),
+						result.getError());
+			}
+		}
+	}
+}
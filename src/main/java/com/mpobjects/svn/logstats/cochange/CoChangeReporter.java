@@ -0,0 +1,284 @@
+package com.mpobjects.svn.logstats.cochange;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.annotation.Nonnull;
+
+import org.apache.commons.configuration2.Configuration;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.mpobjects.svn.logstats.AbstractRevisionReporter;
+import com.mpobjects.svn.logstats.RevisionReporterException;
+import com.mpobjects.svn.logstats.model.FileChange;
+import com.mpobjects.svn.logstats.model.MergeStatus;
+import com.mpobjects.svn.logstats.model.Revision;
+import com.mpobjects.svn.logstats.util.Hashing;
+import com.mpobjects.svn.logstats.util.IntList;
+import com.mpobjects.svn.logstats.util.LongIntHashMap;
+import com.mpobjects.svn.logstats.util.StringDictionary;
+
+/**
+ * Counts how often pairs of files (or directories) change in the same revision. Pairs are counted in shards, each
+ * shard is owned by a single thread, so counting runs in parallel with parsing without locking.
+ * <p>
+ * Settings: cochange.level (file or directory), cochange.maxfiles (revisions touching more items are skipped),
+ * cochange.maxpairs (pairs kept in memory, rare pairs are pruned beyond this), cochange.minsupport (minimal pair count
+ * to report), cochange.threads and cochange.merges (include merge revisions). Merge sources are skipped with
+ * merge.exclude.
+ */
+public class CoChangeReporter extends AbstractRevisionReporter implements Closeable {
+
+	/**
+	 * Pair keys buffered before they are handed to a shard
+	 */
+	private static final int BATCH_SIZE = 8192;
+
+	private static final Logger LOG = LoggerFactory.getLogger(CoChangeReporter.class);
+
+	protected class Shard {
+		protected long[] buffer = new long[BATCH_SIZE];
+
+		protected int buffered;
+
+		protected final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+			Thread thread = new Thread(r, "cochange-shard");
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		protected final LongIntHashMap pairs = new LongIntHashMap();
+
+		/**
+		 * Pairs with a count up to this value have been pruned
+		 */
+		protected int pruned;
+
+		protected void add(long aKey) {
+			buffer[buffered++] = aKey;
+			if (buffered == buffer.length) {
+				dispatch();
+			}
+		}
+
+		protected void dispatch() {
+			final long[] batch = buffer;
+			final int count = buffered;
+			buffer = new long[BATCH_SIZE];
+			buffered = 0;
+			pending.add(executor.submit(() -> count(batch, count)));
+		}
+
+		private void count(long[] aBatch, int aCount) {
+			for (int i = 0; i < aCount; ++i) {
+				pairs.addTo(aBatch[i], 1);
+			}
+			if (pairs.size() > maxPairsPerShard) {
+				// remove the rarest pairs until there is room again
+				while (pairs.size() > maxPairsPerShard * 3 / 4) {
+					pairs.prune(++pruned);
+				}
+			}
+		}
+	}
+
+	protected boolean directoryLevel;
+
+	protected boolean includeMerges;
+
+	/**
+	 * Number of counted revisions per item id
+	 */
+	protected final IntList itemRevisions;
+
+	protected final StringDictionary items;
+
+	protected int maxFiles;
+
+	protected int maxPairsPerShard;
+
+	protected int minSupport;
+
+	protected final CSVPrinter output;
+
+	protected final List<Future<?>> pending;
+
+	protected int revisions;
+
+	protected Shard[] shards;
+
+	protected int skipped;
+
+	public CoChangeReporter(@Nonnull Appendable aOutput, @Nonnull Configuration aConfig) throws RevisionReporterException {
+		super(aConfig);
+		items = new StringDictionary();
+		itemRevisions = new IntList();
+		pending = new ArrayList<>();
+		try {
+			output = new CSVPrinter(aOutput, CSVFormat.RFC4180.withHeader("A", "B", "Count", "Revisions A", "Revisions B", "Support",
+					"Confidence A-B", "Confidence B-A"));
+		} catch (IOException e) {
+			throw new RevisionReporterException("Failure to create CSVPrinter.", e);
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		for (Shard shard : shards) {
+			shard.executor.shutdownNow();
+		}
+		output.close();
+	}
+
+	@Override
+	public void flush() throws RevisionReporterException {
+		for (Shard shard : shards) {
+			if (shard.buffered > 0) {
+				shard.dispatch();
+			}
+		}
+		awaitPending();
+		LOG.info("Counted {} revisions, skipped {} large revisions, {} items", revisions, skipped, items.size());
+		int pruned = 0;
+		int total = 0;
+		for (Shard shard : shards) {
+			pruned = Math.max(pruned, shard.pruned);
+			total += shard.pairs.size();
+		}
+		if (pruned > 0) {
+			LOG.warn("Pairs changed together up to {} times were pruned, counts are lower bounds", pruned);
+		}
+
+		// sort the reported pairs by count, primitive: count in the high bits, index in the low bits
+		final long[] keys = new long[total];
+		final long[] order = new long[total];
+		final int[] size = new int[1];
+		for (Shard shard : shards) {
+			shard.pairs.forEach((key, count) -> {
+				if (count >= minSupport) {
+					keys[size[0]] = key;
+					order[size[0]] = (long) count << 32 | size[0];
+					++size[0];
+				}
+			});
+		}
+		Arrays.sort(order, 0, size[0]);
+
+		try {
+			for (int i = size[0] - 1; i >= 0; --i) {
+				long key = keys[(int) order[i]];
+				int count = (int) (order[i] >>> 32);
+				int a = (int) (key >>> 32);
+				int b = (int) key;
+				int revsA = itemRevisions.get(a);
+				int revsB = itemRevisions.get(b);
+				output.printRecord(items.get(a), items.get(b), count, revsA, revsB, ratio(count, revisions), ratio(count, revsA),
+						ratio(count, revsB));
+			}
+			output.flush();
+		} catch (IOException e) {
+			throw new RevisionReporterException("Failure writing co-change results.", e);
+		}
+	}
+
+	@Override
+	public void report(@Nonnull Revision aRevision) throws RevisionReporterException {
+		super.report(aRevision);
+		if (!includeMerges && MergeStatus.MERGED.equals(aRevision.getMergeStatus()) || isExcludedMergeSource(aRevision)) {
+			return;
+		}
+		if (aRevision.getFileChanges().size() > maxFiles && !directoryLevel) {
+			// no need to look at the paths
+			++skipped;
+			return;
+		}
+		int[] ids = new int[aRevision.getFileChanges().size()];
+		int count = 0;
+		for (FileChange change : aRevision.getFileChanges().values()) {
+			ids[count++] = items.intern(directoryLevel ? directoryOf(change.getFilename()) : change.getFilename());
+		}
+		Arrays.sort(ids, 0, count);
+		int unique = 0;
+		for (int i = 0; i < count; ++i) {
+			if (unique == 0 || ids[unique - 1] != ids[i]) {
+				ids[unique++] = ids[i];
+			}
+		}
+		if (unique > maxFiles) {
+			++skipped;
+			return;
+		}
+
+		++revisions;
+		for (int i = 0; i < unique; ++i) {
+			while (itemRevisions.size() <= ids[i]) {
+				itemRevisions.add(0);
+			}
+			itemRevisions.set(ids[i], itemRevisions.get(ids[i]) + 1);
+			for (int j = i + 1; j < unique; ++j) {
+				long key = (long) ids[i] << 32 | ids[j];
+				shards[(int) ((Hashing.fmix64(key) >>> 1) % shards.length)].add(key);
+			}
+		}
+		if (pending.size() > shards.length * 16) {
+			awaitPending();
+		}
+	}
+
+	@Override
+	public boolean retainsRevisions() {
+		return false;
+	}
+
+	@Override
+	protected void initConfig() {
+		super.initConfig();
+		directoryLevel = "directory".equalsIgnoreCase(config.getString("cochange.level", "file"));
+		maxFiles = config.getInt("cochange.maxfiles", 50);
+		minSupport = config.getInt("cochange.minsupport", 2);
+		includeMerges = config.getBoolean("cochange.merges", false);
+		int threads = config.getInt("cochange.threads", Runtime.getRuntime().availableProcessors());
+		shards = new Shard[Math.max(threads, 1)];
+		for (int i = 0; i < shards.length; ++i) {
+			shards[i] = new Shard();
+		}
+		maxPairsPerShard = Math.max(config.getInt("cochange.maxpairs", 10_000_000) / shards.length, 1024);
+	}
+
+	/**
+	 * Wait for the submitted batches, this also bounds the amount of queued batches.
+	 */
+	private void awaitPending() throws RevisionReporterException {
+		try {
+			for (Future<?> future : pending) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RevisionReporterException("Interrupted while counting pairs.", e);
+		} catch (ExecutionException e) {
+			throw new RevisionReporterException("Failure counting pairs.", e.getCause());
+		} finally {
+			pending.clear();
+		}
+	}
+
+	private static String directoryOf(String aFilename) {
+		int idx = aFilename.lastIndexOf('/');
+		return idx <= 0 ? "/" : aFilename.substring(0, idx);
+	}
+
+	private static double ratio(int aCount, int aTotal) {
+		return aTotal == 0 ? 0 : (double) aCount / aTotal;
+	}
+}
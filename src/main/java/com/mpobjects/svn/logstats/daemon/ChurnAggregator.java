@@ -0,0 +1,285 @@
+package com.mpobjects.svn.logstats.daemon;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+import org.apache.commons.configuration2.Configuration;
+import org.joda.time.LocalDate;
+
+import com.mpobjects.svn.logstats.AbstractRevisionReporter;
+import com.mpobjects.svn.logstats.RevisionReporterException;
+import com.mpobjects.svn.logstats.model.Revision;
+
+/**
+ * Keeps running churn totals per author, project and branch per day. Safe for concurrent queries while revisions
+ * are being reported. The totals can be written with {@link #write(DataOutput)} and added to another aggregator with
+ * {@link #merge(DataInput)}, so partial results of revision ranges can be combined. It is the only aggregate which
+ * can be merged like this, see {@link com.mpobjects.svn.logstats.shard.SvnLogShards}. Merge sources are skipped
+ * with merge.exclude.
+ */
+public class ChurnAggregator extends AbstractRevisionReporter {
+
+	public enum Dimension {
+		AUTHOR, BRANCH, PROJECT;
+	}
+
+	public static final int IDX_FILES = 1;
+	public static final int IDX_LINES_ADDED = 2;
+	public static final int IDX_LINES_CHANGED = 4;
+	public static final int IDX_LINES_REMOVED = 3;
+	public static final int IDX_REVISIONS = 0;
+	public static final int NUM_COUNTERS = 5;
+
+	/**
+	 * Start of the binary format, followed by a version number
+	 */
+	protected static final int FORMAT_MAGIC = 0x53564341;
+
+	protected static final int FORMAT_VERSION = 1;
+
+	/**
+	 * Dimension -> key -> day -> counters
+	 */
+	protected final Map<Dimension, Map<String, TreeMap<LocalDate, long[]>>> data;
+
+	protected int lastRevision;
+
+	protected final ReadWriteLock lock;
+
+	public ChurnAggregator(@Nonnull Configuration aConfig) {
+		super(aConfig);
+		lock = new ReentrantReadWriteLock();
+		data = new EnumMap<>(Dimension.class);
+		for (Dimension dim : Dimension.values()) {
+			data.put(dim, new HashMap<>());
+		}
+	}
+
+	@Override
+	public void flush() throws RevisionReporterException {
+		// nothing to flush, everything is kept in memory
+	}
+
+	public int getLastRevision() {
+		lock.readLock().lock();
+		try {
+			return lastRevision;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Add the totals of another aggregator.
+	 */
+	public void merge(@Nonnull ChurnAggregator aOther) {
+		aOther.lock.readLock().lock();
+		lock.writeLock().lock();
+		try {
+			lastRevision = Math.max(lastRevision, aOther.lastRevision);
+			for (Entry<Dimension, Map<String, TreeMap<LocalDate, long[]>>> dimension : aOther.data.entrySet()) {
+				for (Entry<String, TreeMap<LocalDate, long[]>> key : dimension.getValue().entrySet()) {
+					for (Entry<LocalDate, long[]> day : key.getValue().entrySet()) {
+						add(dimension.getKey(), key.getKey(), day.getKey(), day.getValue());
+					}
+				}
+			}
+		} finally {
+			lock.writeLock().unlock();
+			aOther.lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Add the totals written by {@link #write(DataOutput)}.
+	 */
+	public void merge(@Nonnull DataInput aInput) throws IOException {
+		if (aInput.readInt() != FORMAT_MAGIC) {
+			throw new IOException("Not a churn aggregate");
+		}
+		int version = aInput.readInt();
+		if (version != FORMAT_VERSION) {
+			throw new IOException("Unsupported churn aggregate version: " + version);
+		}
+		lock.writeLock().lock();
+		try {
+			lastRevision = Math.max(lastRevision, aInput.readInt());
+			int dimensions = aInput.readInt();
+			long[] values = new long[NUM_COUNTERS];
+			for (int d = 0; d < dimensions; ++d) {
+				Dimension dimension = Dimension.valueOf(aInput.readUTF());
+				int keys = aInput.readInt();
+				for (int k = 0; k < keys; ++k) {
+					String key = aInput.readBoolean() ? aInput.readUTF() : null;
+					int days = aInput.readInt();
+					for (int i = 0; i < days; ++i) {
+						LocalDate day = new LocalDate(aInput.readInt(), aInput.readByte(), aInput.readByte());
+						for (int c = 0; c < NUM_COUNTERS; ++c) {
+							values[c] = aInput.readLong();
+						}
+						add(dimension, key, day, values);
+					}
+				}
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Sum the counters per key of a dimension over the time range.
+	 *
+	 * @param aFrom
+	 *            first day (inclusive), null for unbounded
+	 * @param aTo
+	 *            last day (inclusive), null for unbounded
+	 * @return key to counters, see the IDX_* constants, sorted by key with the null key first
+	 */
+	@Nonnull
+	public Map<String, long[]> query(@Nonnull Dimension aDimension, @CheckForNull LocalDate aFrom, @CheckForNull LocalDate aTo) {
+		Map<String, long[]> result = new TreeMap<>(Comparator.nullsFirst(Comparator.naturalOrder()));
+		lock.readLock().lock();
+		try {
+			for (Entry<String, TreeMap<LocalDate, long[]>> entry : data.get(aDimension).entrySet()) {
+				long[] sum = sum(entry.getValue(), aFrom, aTo);
+				if (sum != null) {
+					result.put(entry.getKey(), sum);
+				}
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+		return result;
+	}
+
+	/**
+	 * Sum the counters of a single key of a dimension over the time range. The key must match exactly.
+	 *
+	 * @param aKey
+	 *            the key, null for the revisions without author
+	 * @return the counters, see the IDX_* constants, null when the key has no revisions in the range
+	 */
+	@CheckForNull
+	public long[] query(@Nonnull Dimension aDimension, @CheckForNull String aKey, @CheckForNull LocalDate aFrom, @CheckForNull LocalDate aTo) {
+		lock.readLock().lock();
+		try {
+			TreeMap<LocalDate, long[]> days = data.get(aDimension).get(aKey);
+			return days == null ? null : sum(days, aFrom, aTo);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public void report(@Nonnull Revision aRevision) throws RevisionReporterException {
+		super.report(aRevision);
+		final boolean counted = !isExcludedMergeSource(aRevision);
+		final LocalDate day = aRevision.getTimestamp().toLocalDate();
+		final long[] values = new long[NUM_COUNTERS];
+		values[IDX_REVISIONS] = 1;
+		values[IDX_FILES] = aRevision.getFileChanges().size();
+		values[IDX_LINES_ADDED] = aRevision.getLinesAdded();
+		values[IDX_LINES_REMOVED] = aRevision.getLinesRemoved();
+		values[IDX_LINES_CHANGED] = aRevision.getLinesChanged();
+
+		lock.writeLock().lock();
+		try {
+			if (counted) {
+				add(Dimension.AUTHOR, aRevision.getAuthor(), day, values);
+				add(Dimension.BRANCH, determineBranchName(aRevision), day, values);
+				for (String project : aRevision.getProjects()) {
+					add(Dimension.PROJECT, project, day, values);
+				}
+			}
+			// an excluded merge source is processed all the same
+			lastRevision = Math.max(lastRevision, aRevision.getId());
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public boolean retainsRevisions() {
+		return false;
+	}
+
+	/**
+	 * Write the totals in a binary format. The keys and days are sorted, so equal totals produce equal output.
+	 */
+	public void write(@Nonnull DataOutput aOutput) throws IOException {
+		lock.readLock().lock();
+		try {
+			aOutput.writeInt(FORMAT_MAGIC);
+			aOutput.writeInt(FORMAT_VERSION);
+			aOutput.writeInt(lastRevision);
+			aOutput.writeInt(data.size());
+			for (Entry<Dimension, Map<String, TreeMap<LocalDate, long[]>>> dimension : data.entrySet()) {
+				aOutput.writeUTF(dimension.getKey().name());
+				aOutput.writeInt(dimension.getValue().size());
+				List<String> keys = new ArrayList<>(dimension.getValue().keySet());
+				keys.sort(Comparator.nullsFirst(Comparator.naturalOrder()));
+				for (String key : keys) {
+					aOutput.writeBoolean(key != null);
+					if (key != null) {
+						aOutput.writeUTF(key);
+					}
+					TreeMap<LocalDate, long[]> days = dimension.getValue().get(key);
+					aOutput.writeInt(days.size());
+					for (Entry<LocalDate, long[]> day : days.entrySet()) {
+						aOutput.writeInt(day.getKey().getYear());
+						aOutput.writeByte(day.getKey().getMonthOfYear());
+						aOutput.writeByte(day.getKey().getDayOfMonth());
+						for (long value : day.getValue()) {
+							aOutput.writeLong(value);
+						}
+					}
+				}
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	private void add(Dimension aDimension, String aKey, LocalDate aDay, long[] aValues) {
+		long[] counters = data.get(aDimension).computeIfAbsent(aKey, k -> new TreeMap<>()).computeIfAbsent(aDay, k -> new long[NUM_COUNTERS]);
+		for (int i = 0; i < NUM_COUNTERS; ++i) {
+			counters[i] += aValues[i];
+		}
+	}
+
+	@CheckForNull
+	private static long[] sum(@Nonnull TreeMap<LocalDate, long[]> aDays, @CheckForNull LocalDate aFrom, @CheckForNull LocalDate aTo) {
+		Map<LocalDate, long[]> range = aDays;
+		if (aFrom != null && aTo != null) {
+			range = aDays.subMap(aFrom, true, aTo, true);
+		} else if (aFrom != null) {
+			range = aDays.tailMap(aFrom, true);
+		} else if (aTo != null) {
+			range = aDays.headMap(aTo, true);
+		}
+		if (range.isEmpty()) {
+			return null;
+		}
+		long[] sum = new long[NUM_COUNTERS];
+		for (long[] counters : range.values()) {
+			for (int i = 0; i < NUM_COUNTERS; ++i) {
+				sum[i] += counters[i];
+			}
+		}
+		return sum;
+	}
+}
@@ -0,0 +1,106 @@
+package com.mpobjects.svn.logstats.daemon;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+import org.apache.commons.lang3.StringUtils;
+import org.joda.time.LocalDate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.mpobjects.svn.logstats.daemon.ChurnAggregator.Dimension;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+/**
+ * Serves churn queries as CSV: <code>/churn?by=author|project|branch&amp;from=yyyy-MM-dd&amp;to=yyyy-MM-dd&amp;key=name</code>.
+ * All parameters except "by" are optional, the key must match exactly.
+ */
+public class ChurnQueryHandler implements HttpHandler {
+
+	private static final Logger LOG = LoggerFactory.getLogger(ChurnQueryHandler.class);
+
+	private final ChurnAggregator aggregator;
+
+	public ChurnQueryHandler(ChurnAggregator aAggregator) {
+		aggregator = aAggregator;
+	}
+
+	@Override
+	public void handle(HttpExchange aExchange) throws IOException {
+		try {
+			if (!"GET".equals(aExchange.getRequestMethod())) {
+				respond(aExchange, 405, "Only GET is supported.\n");
+				return;
+			}
+			Map<String, String> params = parseQuery(aExchange.getRequestURI().getRawQuery());
+			Dimension dim;
+			LocalDate from;
+			LocalDate to;
+			try {
+				dim = Dimension.valueOf(StringUtils.upperCase(params.getOrDefault("by", "author")));
+				from = params.containsKey("from") ? LocalDate.parse(params.get("from")) : null;
+				to = params.containsKey("to") ? LocalDate.parse(params.get("to")) : null;
+			} catch (IllegalArgumentException e) {
+				respond(aExchange, 400, "Invalid query: " + e.getMessage() + "\n");
+				return;
+			}
+
+			StringBuilder sb = new StringBuilder();
+			CSVPrinter printer = new CSVPrinter(sb, CSVFormat.RFC4180.withHeader(StringUtils.capitalize(dim.name().toLowerCase()), "Revisions",
+					"Files Affected", "Lines Added", "Lines Removed", "Lines Modified"));
+			String key = params.get("key");
+			if (key != null) {
+				long[] counters = aggregator.query(dim, key, from, to);
+				if (counters != null) {
+					printRecord(printer, key, counters);
+				}
+			} else {
+				for (Entry<String, long[]> entry : aggregator.query(dim, from, to).entrySet()) {
+					printRecord(printer, entry.getKey(), entry.getValue());
+				}
+			}
+			printer.flush();
+			aExchange.getResponseHeaders().set("X-Last-Revision", Integer.toString(aggregator.getLastRevision()));
+			respond(aExchange, 200, sb.toString());
+		} catch (RuntimeException e) {
+			LOG.error("Failure handling query.", e);
+			respond(aExchange, 500, "Internal error.\n");
+		}
+	}
+
+	private Map<String, String> parseQuery(String aQuery) throws UnsupportedEncodingException {
+		Map<String, String> params = new HashMap<>();
+		if (StringUtils.isEmpty(aQuery)) {
+			return params;
+		}
+		for (String part : StringUtils.split(aQuery, '&')) {
+			String name = StringUtils.substringBefore(part, "=");
+			String value = StringUtils.substringAfter(part, "=");
+			params.put(URLDecoder.decode(name, "UTF-8"), URLDecoder.decode(value, "UTF-8"));
+		}
+		return params;
+	}
+
+	private void printRecord(CSVPrinter aPrinter, String aKey, long[] aCounters) throws IOException {
+		aPrinter.printRecord(aKey, aCounters[ChurnAggregator.IDX_REVISIONS], aCounters[ChurnAggregator.IDX_FILES], aCounters[ChurnAggregator.IDX_LINES_ADDED],
+				aCounters[ChurnAggregator.IDX_LINES_REMOVED], aCounters[ChurnAggregator.IDX_LINES_CHANGED]);
+	}
+
+	private void respond(HttpExchange aExchange, int aStatus, String aBody) throws IOException {
+		byte[] body = aBody.getBytes(StandardCharsets.UTF_8);
+		aExchange.getResponseHeaders().set("Content-Type", aStatus == 200 ? "text/csv; charset=utf-8" : "text/plain; charset=utf-8");
+		aExchange.sendResponseHeaders(aStatus, body.length);
+		try (OutputStream out = aExchange.getResponseBody()) {
+			out.write(body);
+		}
+	}
+}
@@ -0,0 +1,108 @@
+package com.mpobjects.svn.logstats.daemon;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.configuration2.Configuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.mpobjects.svn.logstats.SvnLog;
+import com.mpobjects.svn.logstats.SvnLogParser;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Polls a repository for new revisions and serves the running churn totals over HTTP. The only argument is the
+ * repository URL, which may be a file:// URL.
+ */
+public class SvnLogDaemon {
+
+	private static final Logger LOG = LoggerFactory.getLogger(SvnLogDaemon.class);
+
+	public static void main(String[] args) throws Exception {
+		if (args.length != 1) {
+			System.err.println("Usage: SvnLogDaemon <repository url>");
+			System.exit(1);
+		}
+		SvnLogDaemon daemon = new SvnLogDaemon(SvnLog.loadConfiguration(), args[0]);
+		daemon.start();
+	}
+
+	protected final ChurnAggregator aggregator;
+
+	protected final Configuration config;
+
+	/**
+	 * Last revision which was processed
+	 */
+	protected int lastRevision;
+
+	protected ScheduledExecutorService scheduler;
+
+	protected HttpServer server;
+
+	protected final String url;
+
+	public SvnLogDaemon(Configuration aConfig, String aUrl) {
+		config = aConfig;
+		url = aUrl;
+		aggregator = new ChurnAggregator(aConfig);
+		lastRevision = config.getInt("daemon.start", 1) - 1;
+	}
+
+	public ChurnAggregator getAggregator() {
+		return aggregator;
+	}
+
+	/**
+	 * Fetch and process the revisions committed since the last poll. The revisions are aggregated separately and only
+	 * added to the totals when the poll succeeds, so a failed poll can be repeated without counting revisions twice.
+	 */
+	public synchronized void poll() throws IOException {
+		int head = getHeadRevision();
+		if (head <= lastRevision) {
+			return;
+		}
+		LOG.info("Processing r{} to r{}", lastRevision + 1, head);
+		ChurnAggregator increment = new ChurnAggregator(config);
+		SvnLogParser parser = new SvnLogParser(increment);
+		SvnLog.configureParser(parser, config);
+		SvnLog.execute(SvnLog.createLogCommand(SvnLog.pushDownPaths(new String[] { "-r", (lastRevision + 1) + ":" + head, url }, config)), parser);
+		parser.flush();
+		aggregator.merge(increment);
+		lastRevision = head;
+	}
+
+	public void start() throws IOException {
+		server = HttpServer.create(new InetSocketAddress(config.getString("daemon.host", "localhost"), config.getInt("daemon.port", 8080)), 0);
+		server.createContext("/churn", new ChurnQueryHandler(aggregator));
+		server.setExecutor(Executors.newFixedThreadPool(config.getInt("daemon.threads", 4)));
+		server.start();
+		LOG.info("Serving churn queries on {}", server.getAddress());
+
+		scheduler = Executors.newSingleThreadScheduledExecutor();
+		scheduler.scheduleWithFixedDelay(() -> {
+			try {
+				poll();
+			} catch (IOException | RuntimeException e) {
+				LOG.error("Failure polling " + url, e);
+			}
+		}, 0, config.getLong("daemon.interval", 60), TimeUnit.SECONDS);
+	}
+
+	public void stop() {
+		if (scheduler != null) {
+			scheduler.shutdownNow();
+		}
+		if (server != null) {
+			server.stop(0);
+		}
+	}
+
+	protected int getHeadRevision() throws IOException {
+		return SvnLog.getHeadRevision(url);
+	}
+}
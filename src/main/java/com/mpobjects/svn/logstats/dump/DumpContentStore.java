@@ -0,0 +1,428 @@
+package com.mpobjects.svn.logstats.dump;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+/**
+ * Versioned tree of the repository as reconstructed from a dump. Needed as delta base and to compute the line
+ * differences. Only the latest version of every node is kept in memory, older versions are only needed as copy
+ * source and are spilled to a temporary file. File contents are shared between copies, and a shared version is
+ * spilled only once.
+ * <p>
+ * A copy only records its source at the copied node, the nodes below it are looked up in the copy source until they
+ * are changed themselves. Likewise a delete is only recorded at the deleted node, the nodes below it are hidden
+ * because they are older than the delete. A missing parent directory, as in a partial dump, does not hide its
+ * children.
+ */
+class DumpContentStore implements Closeable {
+
+	static class NodeState {
+		@CheckForNull
+		final byte[] content;
+
+		@Nonnull
+		final Map<String, String> props;
+
+		/**
+		 * Offset in the spill file, -1 when not spilled yet
+		 */
+		long spillOffset = -1;
+
+		NodeState(@CheckForNull byte[] aContent, @Nonnull Map<String, String> aProps) {
+			content = aContent;
+			props = aProps;
+		}
+
+		boolean isDirectory() {
+			return content == null;
+		}
+	}
+
+	/**
+	 * The versions of a path, ascending by revision.
+	 */
+	private static class Node {
+		int size;
+
+		Version[] versions = new Version[1];
+
+		void add(@Nonnull Version aVersion) {
+			if (size == versions.length) {
+				versions = Arrays.copyOf(versions, size * 2);
+			}
+			versions[size++] = aVersion;
+		}
+
+		/**
+		 * @return the version at the revision, null when the path was not recorded yet
+		 */
+		@CheckForNull
+		Version find(int aRevision) {
+			int low = 0;
+			int high = size - 1;
+			while (low <= high) {
+				int mid = (low + high) >>> 1;
+				if (versions[mid].revision <= aRevision) {
+					low = mid + 1;
+				} else {
+					high = mid - 1;
+				}
+			}
+			return high < 0 ? null : versions[high];
+		}
+
+		@Nonnull
+		Version latest() {
+			return versions[size - 1];
+		}
+	}
+
+	/**
+	 * A node as found at a revision: its version, the revision it was created, and where its children not recorded
+	 * themselves are found.
+	 */
+	private static class Resolved {
+		/**
+		 * Revision the node was added, copied or deleted
+		 */
+		final int born;
+
+		@CheckForNull
+		final String childrenFromPath;
+
+		final int childrenFromRevision;
+
+		/**
+		 * null when the node does not exist
+		 */
+		@CheckForNull
+		final Version version;
+
+		Resolved(@CheckForNull Version aVersion, int aBorn, @CheckForNull String aChildrenFromPath, int aChildrenFromRevision) {
+			version = aVersion;
+			born = aBorn;
+			childrenFromPath = aChildrenFromPath;
+			childrenFromRevision = aChildrenFromRevision;
+		}
+	}
+
+	private static class Version {
+		final int born;
+
+		@CheckForNull
+		final String copyFromPath;
+
+		final int copyFromRevision;
+
+		final boolean deleted;
+
+		final boolean directory;
+
+		/**
+		 * Offset in the spill file, -1 when not spilled yet
+		 */
+		long offset = -1;
+
+		final int revision;
+
+		/**
+		 * The state while it is in memory, the latest version of a path which is not deleted
+		 */
+		@CheckForNull
+		NodeState state;
+
+		Version(int aRevision, int aBorn, @CheckForNull NodeState aState, @CheckForNull String aCopyFromPath, int aCopyFromRevision) {
+			revision = aRevision;
+			born = aBorn;
+			state = aState;
+			deleted = aState == null;
+			directory = aState != null && aState.isDirectory();
+			copyFromPath = aCopyFromPath;
+			copyFromRevision = aCopyFromRevision;
+		}
+	}
+
+	/**
+	 * The root directory, which always exists
+	 */
+	private static final Resolved ROOT = new Resolved(new Version(0, 0, new NodeState(null, Collections.emptyMap()), null, 0), 0, null, 0);
+
+	private final TreeMap<String, Node> nodes = new TreeMap<>();
+
+	private RandomAccessFile spill;
+
+	private Path spillFile;
+
+	@Override
+	public void close() throws IOException {
+		if (spill != null) {
+			try {
+				spill.close();
+			} finally {
+				Files.deleteIfExists(spillFile);
+				spill = null;
+			}
+		}
+	}
+
+	/**
+	 * Copy a node and everything below it, by reference to the copy source.
+	 */
+	void copy(@Nonnull String aFromPath, int aFromRevision, @Nonnull String aToPath, int aRevision) throws IOException {
+		Resolved source = resolve(aFromPath, aFromRevision);
+		if (source.version != null) {
+			add(aToPath, new Version(aRevision, aRevision, load(source.version), aFromPath, aFromRevision));
+		}
+	}
+
+	/**
+	 * Delete a node and everything below it.
+	 *
+	 * @return the deleted files below the deleted node
+	 */
+	@Nonnull
+	NavigableMap<String, NodeState> delete(@Nonnull String aPath, int aRevision) throws IOException {
+		NavigableMap<String, NodeState> files = getTree(aPath, aRevision);
+		files.remove(aPath);
+		files.values().removeIf(NodeState::isDirectory);
+		add(aPath, new Version(aRevision, aRevision, null, null, 0));
+		// the hidden versions below are only needed as copy source
+		for (Node node : subtree(aPath).values()) {
+			unload(node.latest());
+		}
+		return files;
+	}
+
+	@CheckForNull
+	NodeState get(@Nonnull String aPath, int aRevision) throws IOException {
+		Resolved node = resolve(aPath, aRevision);
+		return node.version == null ? null : load(node.version);
+	}
+
+	/**
+	 * All existing nodes at or below the path at the given revision.
+	 */
+	@Nonnull
+	NavigableMap<String, NodeState> getTree(@Nonnull String aPath, int aRevision) throws IOException {
+		NavigableMap<String, NodeState> result = new TreeMap<>();
+		Resolved self = resolve(aPath, aRevision);
+		if (self.version != null) {
+			result.put(aPath, load(self.version));
+			if (self.version.directory) {
+				addChildren(aPath, self, aRevision, result);
+			}
+		}
+		return result;
+	}
+
+	void put(@Nonnull String aPath, int aRevision, @Nonnull NodeState aState) throws IOException {
+		Resolved existing = resolve(aPath, aRevision);
+		if (existing.version == null) {
+			add(aPath, new Version(aRevision, aRevision, aState, null, 0));
+		} else {
+			// a change keeps the copy source of the children
+			add(aPath, new Version(aRevision, existing.born, aState, existing.childrenFromPath, existing.childrenFromRevision));
+		}
+	}
+
+	@Nonnull
+	private static String child(@Nonnull String aPath, @Nonnull String aName) {
+		return aPath.isEmpty() ? aName : aPath + "/" + aName;
+	}
+
+	/**
+	 * Replace the latest version when it is from the same revision, the previous version is spilled otherwise.
+	 */
+	private void add(@Nonnull String aPath, @Nonnull Version aVersion) throws IOException {
+		Node node = nodes.computeIfAbsent(aPath, k -> new Node());
+		if (node.size > 0 && node.latest().revision == aVersion.revision) {
+			node.versions[node.size - 1] = aVersion;
+		} else {
+			if (node.size > 0) {
+				unload(node.latest());
+			}
+			node.add(aVersion);
+		}
+	}
+
+	private void addChildren(@Nonnull String aPath, @Nonnull Resolved aNode, int aRevision, @Nonnull Map<String, NodeState> aResult) throws IOException {
+		for (String name : getChildNames(aPath, aNode, aRevision)) {
+			String path = child(aPath, name);
+			Resolved node = resolveChild(aNode, path, name, aRevision);
+			if (node.version != null) {
+				aResult.put(path, load(node.version));
+			}
+			if (node.version == null || node.version.directory) {
+				addChildren(path, node, aRevision, aResult);
+			}
+		}
+	}
+
+	/**
+	 * The names of the recorded nodes directly below the path, and of the children in the copy source.
+	 */
+	@Nonnull
+	private Set<String> getChildNames(@Nonnull String aPath, @Nonnull Resolved aNode, int aRevision) throws IOException {
+		Set<String> names = new TreeSet<>();
+		String prefix = aPath.isEmpty() ? "" : aPath + "/";
+		String key = nodes.ceilingKey(prefix);
+		while (key != null && key.startsWith(prefix)) {
+			int slash = key.indexOf('/', prefix.length());
+			String name = key.substring(prefix.length(), slash < 0 ? key.length() : slash);
+			if (!name.isEmpty()) {
+				names.add(name);
+			}
+			// skip the subtree of the name, '0' is the character following '/'
+			key = slash < 0 ? nodes.higherKey(key) : nodes.ceilingKey(prefix + name + "0");
+		}
+		if (aNode.childrenFromPath != null) {
+			Resolved source = resolve(aNode.childrenFromPath, aNode.childrenFromRevision);
+			names.addAll(getChildNames(aNode.childrenFromPath, source, aNode.childrenFromRevision));
+		}
+		return names;
+	}
+
+	@Nonnull
+	private NodeState load(@Nonnull Version aVersion) throws IOException {
+		return aVersion.state != null ? aVersion.state : read(aVersion.offset);
+	}
+
+	@Nonnull
+	private NodeState read(long aOffset) throws IOException {
+		spill.seek(aOffset);
+		int length = spill.readInt();
+		byte[] content = null;
+		if (length >= 0) {
+			content = new byte[length];
+			spill.readFully(content);
+		}
+		int count = spill.readInt();
+		Map<String, String> props = new HashMap<>(count * 2);
+		for (int i = 0; i < count; ++i) {
+			props.put(readString(), readString());
+		}
+		NodeState result = new NodeState(content, props);
+		result.spillOffset = aOffset;
+		return result;
+	}
+
+	private String readString() throws IOException {
+		byte[] data = new byte[spill.readInt()];
+		spill.readFully(data);
+		return new String(data, StandardCharsets.UTF_8);
+	}
+
+	@Nonnull
+	private Resolved resolve(@Nonnull String aPath, int aRevision) throws IOException {
+		Resolved node = resolveChild(ROOT, "", "", aRevision);
+		if (node.version == null) {
+			node = ROOT;
+		}
+		if (aPath.isEmpty()) {
+			return node;
+		}
+		int start = 0;
+		while (start <= aPath.length()) {
+			int end = aPath.indexOf('/', start);
+			if (end < 0) {
+				end = aPath.length();
+			}
+			node = resolveChild(node, aPath.substring(0, end), aPath.substring(start, end), aRevision);
+			start = end + 1;
+		}
+		return node;
+	}
+
+	/**
+	 * A version recorded since the parent was created takes precedence, otherwise the child is looked up in the copy
+	 * source of the parent.
+	 */
+	@Nonnull
+	private Resolved resolveChild(@Nonnull Resolved aParent, @Nonnull String aPath, @Nonnull String aName, int aRevision) throws IOException {
+		Node node = nodes.get(aPath);
+		Version version = node == null ? null : node.find(aRevision);
+		if (version != null && version.born >= aParent.born) {
+			if (version.deleted) {
+				return new Resolved(null, version.born, null, 0);
+			}
+			return new Resolved(version, version.born, version.copyFromPath, version.copyFromRevision);
+		}
+		if (aParent.childrenFromPath != null) {
+			String path = child(aParent.childrenFromPath, aName);
+			Resolved source = resolve(path, aParent.childrenFromRevision);
+			if (source.version != null) {
+				return new Resolved(source.version, aParent.born, path, aParent.childrenFromRevision);
+			}
+		}
+		return new Resolved(null, aParent.born, null, 0);
+	}
+
+	@Nonnull
+	private NavigableMap<String, Node> subtree(@Nonnull String aPath) {
+		// '0' is the character following '/'
+		return aPath.isEmpty() ? nodes : nodes.subMap(aPath + "/", true, aPath + "0", false);
+	}
+
+	/**
+	 * Spill the state of a version which is no longer the latest.
+	 */
+	private void unload(@Nonnull Version aVersion) throws IOException {
+		if (aVersion.state != null) {
+			aVersion.offset = write(aVersion.state);
+			aVersion.state = null;
+		}
+	}
+
+	private long write(@Nonnull NodeState aState) throws IOException {
+		if (aState.spillOffset >= 0) {
+			return aState.spillOffset;
+		}
+		if (spill == null) {
+			spillFile = Files.createTempFile("svndump-", ".spill");
+			spillFile.toFile().deleteOnExit();
+			spill = new RandomAccessFile(spillFile.toFile(), "rw");
+		}
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream(aState.content == null ? 64 : aState.content.length + 64);
+		DataOutputStream out = new DataOutputStream(buffer);
+		if (aState.content == null) {
+			out.writeInt(-1);
+		} else {
+			out.writeInt(aState.content.length);
+			out.write(aState.content);
+		}
+		out.writeInt(aState.props.size());
+		for (Entry<String, String> prop : aState.props.entrySet()) {
+			writeString(out, prop.getKey());
+			writeString(out, prop.getValue());
+		}
+		long offset = spill.length();
+		spill.seek(offset);
+		spill.write(buffer.toByteArray());
+		aState.spillOffset = offset;
+		return offset;
+	}
+
+	private void writeString(DataOutputStream aOut, String aValue) throws IOException {
+		byte[] data = aValue.getBytes(StandardCharsets.UTF_8);
+		aOut.writeInt(data.length);
+		aOut.write(data);
+	}
+}
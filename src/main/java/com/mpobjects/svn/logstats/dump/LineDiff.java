@@ -0,0 +1,230 @@
+package com.mpobjects.svn.logstats.dump;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+
+import com.mpobjects.svn.logstats.model.FileChange;
+
+/**
+ * Line based diff of two file contents, producing the same added/removed/changed counts as
+ * <code>svn diff -x -w</code> processed by the {@link com.mpobjects.svn.logstats.SvnLogParser}.
+ * Whitespace is ignored when comparing lines.
+ */
+public class LineDiff {
+
+	/**
+	 * Upper bound on the edit distance that is resolved exactly. Larger differences are counted as a single
+	 * replacement of the differing middle part.
+	 */
+	private static final int MAX_EDIT_DISTANCE = 2000;
+
+	/**
+	 * Compute the line differences between the two contents.
+	 */
+	@Nonnull
+	public static LineDiff compute(@Nonnull byte[] aOld, @Nonnull byte[] aNew) {
+		return compute(hashLines(aOld), hashLines(aNew));
+	}
+
+	@Nonnull
+	static LineDiff compute(@Nonnull int[] aOld, @Nonnull int[] aNew) {
+		LineDiff result = new LineDiff();
+
+		// strip common prefix and suffix, this is usually the bulk of a file
+		int start = 0;
+		while (start < aOld.length && start < aNew.length && aOld[start] == aNew[start]) {
+			++start;
+		}
+		int endOld = aOld.length;
+		int endNew = aNew.length;
+		while (endOld > start && endNew > start && aOld[endOld - 1] == aNew[endNew - 1]) {
+			--endOld;
+			--endNew;
+		}
+		result.myers(aOld, start, endOld, aNew, start, endNew);
+		return result;
+	}
+
+	/**
+	 * Number of lines in the content, as it would be shown in a diff.
+	 */
+	public static int countLines(@Nonnull byte[] aContent) {
+		int cnt = 0;
+		for (byte b : aContent) {
+			if (b == '\n') {
+				++cnt;
+			}
+		}
+		if (aContent.length > 0 && aContent[aContent.length - 1] != '\n') {
+			// no newline at end of file
+			++cnt;
+		}
+		return cnt;
+	}
+
+	/**
+	 * Hash every line, ignoring all whitespace.
+	 */
+	@Nonnull
+	static int[] hashLines(@Nonnull byte[] aContent) {
+		int[] hashes = new int[countLines(aContent)];
+		int line = 0;
+		int hash = 0x811c9dc5;
+		for (int i = 0; i < aContent.length; ++i) {
+			byte b = aContent[i];
+			if (b == '\n') {
+				hashes[line++] = hash;
+				hash = 0x811c9dc5;
+			} else if (b != ' ' && b != '\t' && b != '\r' && b != '\f' && b != 0x0b) {
+				hash = (hash ^ (b & 0xff)) * 0x01000193;
+			}
+		}
+		if (line < hashes.length) {
+			hashes[line] = hash;
+		}
+		return hashes;
+	}
+
+	private int added;
+
+	private int changed;
+
+	private int removed;
+
+	private int runAdded;
+
+	private int runRemoved;
+
+	protected LineDiff() {
+	}
+
+	/**
+	 * Store the counts in the file change.
+	 */
+	public void applyTo(@Nonnull FileChange aFileChange) {
+		aFileChange.setLinesAdded(added);
+		aFileChange.setLinesRemoved(removed);
+		aFileChange.setLinesChanged(changed);
+	}
+
+	public int getLinesAdded() {
+		return added;
+	}
+
+	public int getLinesChanged() {
+		return changed;
+	}
+
+	public int getLinesRemoved() {
+		return removed;
+	}
+
+	private void addLine() {
+		++added;
+		++runAdded;
+	}
+
+	private void endRun() {
+		// same as the svn log parser: a run of adds/deletes without context in between is a single modification
+		if (runAdded > 0 || runRemoved > 0) {
+			changed += Math.max(runAdded, runRemoved);
+			runAdded = 0;
+			runRemoved = 0;
+		}
+	}
+
+	private void myers(int[] a, int aStart, int aEnd, int[] b, int bStart, int bEnd) {
+		final int n = aEnd - aStart;
+		final int m = bEnd - bStart;
+		if (n == 0 || m == 0) {
+			for (int i = 0; i < n; ++i) {
+				removeLine();
+			}
+			for (int i = 0; i < m; ++i) {
+				addLine();
+			}
+			endRun();
+			return;
+		}
+
+		final int max = Math.min(n + m, MAX_EDIT_DISTANCE);
+		final int offset = max + 1;
+		int[] v = new int[2 * max + 3];
+		List<int[]> trace = new ArrayList<>();
+		int found = -1;
+		for (int d = 0; d <= max && found < 0; ++d) {
+			int[] snapshot = new int[2 * d + 1];
+			for (int k = -d; k <= d; ++k) {
+				snapshot[k + d] = v[k + offset];
+			}
+			trace.add(snapshot);
+			for (int k = -d; k <= d; k += 2) {
+				int x;
+				if (k == -d || (k != d && v[k - 1 + offset] < v[k + 1 + offset])) {
+					x = v[k + 1 + offset];
+				} else {
+					x = v[k - 1 + offset] + 1;
+				}
+				int y = x - k;
+				while (x < n && y < m && a[aStart + x] == b[bStart + y]) {
+					++x;
+					++y;
+				}
+				v[k + offset] = x;
+				if (x >= n && y >= m) {
+					found = d;
+					break;
+				}
+			}
+		}
+
+		if (found < 0) {
+			// too different, count it as one big replacement
+			for (int i = 0; i < n; ++i) {
+				removeLine();
+			}
+			for (int i = 0; i < m; ++i) {
+				addLine();
+			}
+			endRun();
+			return;
+		}
+
+		// walk back through the trace, the order of the runs is irrelevant for the counts
+		int x = n;
+		int y = m;
+		for (int d = found; d > 0; --d) {
+			int[] prev = trace.get(d);
+			int k = x - y;
+			int prevK;
+			if (k == -d || (k != d && prev[k - 1 + d] < prev[k + 1 + d])) {
+				prevK = k + 1;
+			} else {
+				prevK = k - 1;
+			}
+			int prevX = prev[prevK + d];
+			int prevY = prevX - prevK;
+			boolean insert = prevK == k + 1;
+			int midX = insert ? prevX : prevX + 1;
+			if (x > midX) {
+				// unchanged lines between this edit and the next
+				endRun();
+			}
+			if (insert) {
+				addLine();
+			} else {
+				removeLine();
+			}
+			x = prevX;
+			y = prevY;
+		}
+		endRun();
+	}
+
+	private void removeLine() {
+		++removed;
+		++runRemoved;
+	}
+}
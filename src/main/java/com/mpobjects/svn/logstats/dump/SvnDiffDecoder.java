@@ -0,0 +1,164 @@
+package com.mpobjects.svn.logstats.dump;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Applies svndiff0/svndiff1 encoded deltas as found in <code>svnadmin dump --deltas</code> output.
+ */
+public final class SvnDiffDecoder {
+
+	private static final int OP_NEW = 2;
+
+	private static final int OP_SOURCE = 0;
+
+	private static final int OP_TARGET = 1;
+
+	/**
+	 * Apply the delta to the source and return the target text.
+	 *
+	 * @param aSource
+	 *            the delta base, empty when the node has no base
+	 * @param aDelta
+	 *            the svndiff data, including the "SVN" header
+	 */
+	@Nonnull
+	public static byte[] apply(@Nonnull byte[] aSource, @Nonnull byte[] aDelta) throws IOException {
+		if (aDelta.length == 0) {
+			// an empty delta produces an empty target
+			return new byte[0];
+		}
+		if (aDelta.length < 4 || aDelta[0] != 'S' || aDelta[1] != 'V' || aDelta[2] != 'N') {
+			throw new IOException("Not svndiff data.");
+		}
+		final int version = aDelta[3];
+		if (version != 0 && version != 1) {
+			throw new IOException("Unsupported svndiff version: " + version);
+		}
+
+		ByteArrayOutputStream target = new ByteArrayOutputStream(Math.max(aSource.length, 32));
+		int[] pos = new int[] { 4 };
+		while (pos[0] < aDelta.length) {
+			long sviewOffset = readVarint(aDelta, pos);
+			int sviewLen = (int) readVarint(aDelta, pos);
+			int tviewLen = (int) readVarint(aDelta, pos);
+			int insLen = (int) readVarint(aDelta, pos);
+			int newLen = (int) readVarint(aDelta, pos);
+
+			byte[] ins = section(aDelta, pos[0], insLen, version);
+			pos[0] += insLen;
+			byte[] newData = section(aDelta, pos[0], newLen, version);
+			pos[0] += newLen;
+
+			if (sviewOffset + sviewLen > aSource.length) {
+				throw new IOException("Source view exceeds delta base.");
+			}
+			target.write(applyWindow(aSource, (int) sviewOffset, ins, newData, tviewLen));
+		}
+		return target.toByteArray();
+	}
+
+	private static byte[] applyWindow(byte[] aSource, int aSviewOffset, byte[] aIns, byte[] aNewData, int aTviewLen) throws IOException {
+		byte[] tview = new byte[aTviewLen];
+		int tpos = 0;
+		int newPos = 0;
+		int[] pos = new int[] { 0 };
+		while (pos[0] < aIns.length) {
+			int b = aIns[pos[0]++] & 0xff;
+			int op = b >> 6;
+			int len = b & 0x3f;
+			if (len == 0) {
+				len = (int) readVarint(aIns, pos);
+			}
+			if (tpos + len > aTviewLen) {
+				throw new IOException("Delta instruction exceeds target view.");
+			}
+			switch (op) {
+				case OP_SOURCE:
+					System.arraycopy(aSource, aSviewOffset + (int) readVarint(aIns, pos), tview, tpos, len);
+					break;
+				case OP_TARGET:
+					// may overlap with the bytes being written, so copy byte by byte
+					int offset = (int) readVarint(aIns, pos);
+					for (int i = 0; i < len; ++i) {
+						tview[tpos + i] = tview[offset + i];
+					}
+					break;
+				case OP_NEW:
+					System.arraycopy(aNewData, newPos, tview, tpos, len);
+					newPos += len;
+					break;
+				default:
+					throw new IOException("Invalid delta instruction: " + op);
+			}
+			tpos += len;
+		}
+		if (tpos != aTviewLen) {
+			throw new IOException("Delta window did not fill target view.");
+		}
+		return tview;
+	}
+
+	private static long readVarint(byte[] aData, int[] aPos) throws IOException {
+		long value = 0;
+		while (aPos[0] < aData.length) {
+			int b = aData[aPos[0]++] & 0xff;
+			value = (value << 7) | (b & 0x7f);
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("Truncated svndiff data.");
+	}
+
+	/**
+	 * Extract a (possibly compressed) window section.
+	 */
+	private static byte[] section(byte[] aDelta, int aOffset, int aLength, int aVersion) throws IOException {
+		if (aOffset + aLength > aDelta.length) {
+			throw new IOException("Truncated svndiff window.");
+		}
+		byte[] data = new byte[aLength];
+		System.arraycopy(aDelta, aOffset, data, 0, aLength);
+		if (aVersion == 0 || aLength == 0) {
+			return data;
+		}
+
+		// svndiff1: original length followed by zlib data, or the raw data if compression did not help
+		int[] pos = new int[] { 0 };
+		int origLen = (int) readVarint(data, pos);
+		int remaining = aLength - pos[0];
+		byte[] result = new byte[origLen];
+		if (origLen == remaining) {
+			System.arraycopy(data, pos[0], result, 0, origLen);
+			return result;
+		}
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(data, pos[0], remaining);
+			int len = 0;
+			while (len < origLen && !inflater.finished()) {
+				int n = inflater.inflate(result, len, origLen - len);
+				if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+					break;
+				}
+				len += n;
+			}
+			if (len != origLen) {
+				throw new IOException("Corrupt compressed svndiff section.");
+			}
+		} catch (DataFormatException e) {
+			throw new IOException("Corrupt compressed svndiff section.", e);
+		} finally {
+			inflater.end();
+		}
+		return result;
+	}
+
+	private SvnDiffDecoder() {
+	}
+}
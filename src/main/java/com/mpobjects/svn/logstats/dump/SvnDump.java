@@ -0,0 +1,66 @@
+package com.mpobjects.svn.logstats.dump;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.configuration2.Configuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.mpobjects.svn.logstats.RevisionReporter;
+import com.mpobjects.svn.logstats.SvnLog;
+
+/**
+ * Creates the statistics from <code>svnadmin dump</code> files instead of the svn client. Arguments are the dump
+ * files in order (full dump followed by incremental dumps), use "-" for stdin. Files ending in ".gz" are
+ * decompressed.
+ */
+public class SvnDump {
+
+	private static final Logger LOG = LoggerFactory.getLogger(SvnDump.class);
+
+	public static void main(String[] args) throws Exception {
+		SvnDump svndump = new SvnDump();
+		svndump.exec(args);
+	}
+
+	public SvnDump() {
+	}
+
+	public void exec(String[] aArgs) throws Exception {
+		final Configuration config = SvnLog.loadConfiguration();
+		final RevisionReporter reporter = SvnLog.createReporter(config);
+		try (SvnDumpParser parser = new SvnDumpParser(reporter)) {
+			for (String arg : aArgs) {
+				LOG.info("Reading dump: {}", arg);
+				try (InputStream input = open(arg)) {
+					parser.parse(input);
+				}
+			}
+			parser.flush();
+		} finally {
+			if (reporter instanceof Closeable) {
+				((Closeable) reporter).close();
+			}
+		}
+	}
+
+	private InputStream open(String aFilename) throws IOException {
+		InputStream input;
+		if ("-".equals(aFilename)) {
+			input = System.in;
+		} else {
+			input = new FileInputStream(aFilename);
+		}
+		input = new BufferedInputStream(input, 64 * 1024);
+		if (aFilename.endsWith(".gz")) {
+			input = new GZIPInputStream(input, 64 * 1024);
+			input = new BufferedInputStream(input, 64 * 1024);
+		}
+		return input;
+	}
+}
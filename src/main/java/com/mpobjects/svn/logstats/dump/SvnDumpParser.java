@@ -0,0 +1,442 @@
+package com.mpobjects.svn.logstats.dump;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.joda.time.DateTime;
+import org.joda.time.format.DateTimeFormatter;
+import org.joda.time.format.ISODateTimeFormat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.mpobjects.svn.logstats.MergeTracker;
+import com.mpobjects.svn.logstats.RevisionReporter;
+import com.mpobjects.svn.logstats.RevisionReporterException;
+import com.mpobjects.svn.logstats.dump.DumpContentStore.NodeState;
+import com.mpobjects.svn.logstats.model.ChangeType;
+import com.mpobjects.svn.logstats.model.FileChange;
+import com.mpobjects.svn.logstats.model.MergeStatus;
+import com.mpobjects.svn.logstats.model.Revision;
+import com.mpobjects.svn.logstats.model.RevisionRangeSet;
+
+/**
+ * Parses <code>svnadmin dump</code> streams (with or without <code>--deltas</code>) into the same {@link Revision}
+ * data as the {@link com.mpobjects.svn.logstats.SvnLogParser} produces from <code>svn log -v --diff</code>.
+ * Close the parser to remove the file with the spilled file versions.
+ */
+public class SvnDumpParser implements Closeable {
+
+	private static final byte[] EMPTY = new byte[0];
+
+	private static final Logger LOG = LoggerFactory.getLogger(SvnDumpParser.class);
+
+	private static final String PROP_AUTHOR = "svn:author";
+
+	private static final String PROP_DATE = "svn:date";
+
+	private static final String PROP_LOG = "svn:log";
+
+	private static final String PROP_MERGEINFO = "svn:mergeinfo";
+
+	private static final String PROP_MIME_TYPE = "svn:mime-type";
+
+	private static final String PROPS_END = "PROPS-END";
+
+	private static final DateTimeFormatter SVN_DATE_FORMAT = ISODateTimeFormat.dateTimeParser();
+
+	private final DumpContentStore contentStore;
+
+	private Revision currentRevision;
+
+	private InputStream input;
+
+	private RevisionReporter reporter;
+
+	public SvnDumpParser(RevisionReporter aReporter) {
+		reporter = aReporter;
+		contentStore = new DumpContentStore();
+	}
+
+	@Override
+	public void close() throws IOException {
+		contentStore.close();
+	}
+
+	public void flush() {
+		reportCurrentRevision();
+		try {
+			reporter.flush();
+		} catch (RevisionReporterException e) {
+			LOG.error("Error reporting revision.", e);
+		}
+	}
+
+	/**
+	 * Parse a complete dump stream. Incremental dumps can be parsed in sequence with the same parser.
+	 */
+	public void parse(@Nonnull InputStream aInput) throws IOException {
+		input = aInput;
+		try {
+			Map<String, String> headers;
+			while ((headers = readHeaders()) != null) {
+				if (headers.containsKey("Revision-number")) {
+					parseRevision(headers);
+				} else if (headers.containsKey("Node-path")) {
+					parseNode(headers);
+				} else {
+					// format version, UUID
+					skipContent(headers);
+				}
+			}
+			reportCurrentRevision();
+		} finally {
+			input = null;
+		}
+	}
+
+	private void applyLineCounts(FileChange aChange, @CheckForNull NodeState aBase, NodeState aNew) {
+		if (isBinary(aNew)) {
+			aChange.setBinary(true);
+			return;
+		}
+		byte[] base = aBase == null || aBase.isDirectory() ? EMPTY : aBase.content;
+		LineDiff.compute(base, aNew.content).applyTo(aChange);
+	}
+
+	private long getLength(Map<String, String> aHeaders, String aKey) {
+		return NumberUtils.toLong(aHeaders.get(aKey), -1);
+	}
+
+	private boolean isBinary(@CheckForNull NodeState aState) {
+		if (aState == null) {
+			return false;
+		}
+		String mimeType = aState.props.get(PROP_MIME_TYPE);
+		return mimeType != null && !mimeType.startsWith("text/");
+	}
+
+	private void parseNode(Map<String, String> aHeaders) throws IOException {
+		final String path = aHeaders.get("Node-path");
+		final String action = aHeaders.get("Node-action");
+		final int rev = currentRevision == null ? 0 : currentRevision.getId();
+
+		long propLength = getLength(aHeaders, "Prop-content-length");
+		long textLength = getLength(aHeaders, "Text-content-length");
+		byte[] props = propLength >= 0 ? readBytes(propLength) : null;
+		byte[] text = textLength >= 0 ? readBytes(textLength) : null;
+		skipRemaining(aHeaders, propLength, textLength);
+
+		if (currentRevision == null) {
+			LOG.error("Node record outside of a revision: {}", path);
+			return;
+		}
+
+		final NodeState previous = contentStore.get(path, rev - 1);
+		FileChange change;
+		if ("delete".equals(action)) {
+			change = new FileChange(path, ChangeType.DELETED);
+			if (previous != null && !previous.isDirectory()) {
+				if (isBinary(previous)) {
+					change.setBinary(true);
+				} else {
+					int lines = LineDiff.countLines(previous.content);
+					change.setLinesRemoved(lines);
+					change.setLinesChanged(lines);
+				}
+			}
+			for (Entry<String, NodeState> file : contentStore.delete(path, rev).entrySet()) {
+				// svn diff reports every file below a deleted directory
+				NodeState state = file.getValue();
+				FileChange fileChange = new FileChange(file.getKey(), ChangeType.DELETED);
+				fileChange.setInManifest(false);
+				if (isBinary(state)) {
+					fileChange.setBinary(true);
+				} else {
+					int lines = LineDiff.countLines(state.content);
+					fileChange.setLinesRemoved(lines);
+					fileChange.setLinesChanged(lines);
+				}
+				currentRevision.addFileChange(fileChange);
+			}
+			currentRevision.addFileChange(change);
+			return;
+		}
+
+		ChangeType changeType = ChangeType.MODIFIED;
+		NodeState base = previous;
+		final String copyFromPath = aHeaders.get("Node-copyfrom-path");
+		final int copyFromRev = NumberUtils.toInt(aHeaders.get("Node-copyfrom-rev"));
+		if ("add".equals(action) || "replace".equals(action)) {
+			changeType = "add".equals(action) ? ChangeType.ADDED : ChangeType.REPLACED;
+			FileChange existing = currentRevision.getFileChanges().get(path);
+			if (existing != null && ChangeType.DELETED.equals(existing.getChangeType())) {
+				// delete + add in the same revision
+				changeType = ChangeType.REPLACED;
+			}
+			if ("replace".equals(action)) {
+				contentStore.delete(path, rev);
+			}
+			base = null;
+			if (copyFromPath != null) {
+				base = contentStore.get(copyFromPath, copyFromRev);
+				if (base == null) {
+					LOG.warn("Copy source {}@{} of {} unknown, partial dump?", copyFromPath, copyFromRev, path);
+				} else if (base.isDirectory()) {
+					contentStore.copy(copyFromPath, copyFromRev, path, rev);
+				}
+			}
+		} else if (!"change".equals(action)) {
+			LOG.error("Unknown node action {} for: {}", action, path);
+			return;
+		}
+
+		boolean directory;
+		if (aHeaders.containsKey("Node-kind")) {
+			directory = "dir".equals(aHeaders.get("Node-kind"));
+		} else {
+			directory = base != null && base.isDirectory();
+		}
+
+		Map<String, String> newProps = base == null ? Collections.emptyMap() : base.props;
+		if (props != null) {
+			newProps = readProps(props, "true".equals(aHeaders.get("Prop-delta")) ? newProps : Collections.emptyMap());
+		}
+
+		byte[] content = null;
+		if (!directory) {
+			byte[] baseContent = base == null || base.isDirectory() ? EMPTY : base.content;
+			if (text == null) {
+				content = baseContent;
+			} else if ("true".equals(aHeaders.get("Text-delta"))) {
+				content = SvnDiffDecoder.apply(baseContent, text);
+			} else {
+				content = text;
+			}
+		}
+		NodeState state = new NodeState(content, newProps);
+		contentStore.put(path, rev, state);
+
+		change = new FileChange(path, changeType);
+		if (copyFromPath != null) {
+			change.setFromPath(copyFromPath);
+			change.setFromRevision(copyFromRev);
+		}
+		if (!directory && text != null) {
+			applyLineCounts(change, base, state);
+		}
+		String oldMergeInfo = base == null ? null : base.props.get(PROP_MERGEINFO);
+		if (props != null && !Objects.equals(oldMergeInfo, newProps.get(PROP_MERGEINFO)) && newProps.containsKey(PROP_MERGEINFO)) {
+			// if these are added/updated then the file is merged
+			currentRevision.setMergeStatus(MergeStatus.MERGED);
+			recordMergeInfo(oldMergeInfo, newProps.get(PROP_MERGEINFO));
+		}
+		currentRevision.addFileChange(change);
+	}
+
+	/**
+	 * Store the ranges which were added to the mergeinfo in the current revision.
+	 */
+	private void recordMergeInfo(@CheckForNull String aOld, @Nonnull String aNew) {
+		Map<String, RevisionRangeSet> previous = new HashMap<>();
+		for (String line : StringUtils.split(StringUtils.defaultString(aOld), '\n')) {
+			MergeTracker.parseMergeInfo(line, previous::put);
+		}
+		Map<String, RevisionRangeSet> current = new HashMap<>();
+		for (String line : StringUtils.split(aNew, '\n')) {
+			MergeTracker.parseMergeInfo(line, current::put);
+		}
+		for (Entry<String, RevisionRangeSet> entry : current.entrySet()) {
+			RevisionRangeSet added = entry.getValue();
+			RevisionRangeSet old = previous.get(entry.getKey());
+			if (old != null) {
+				added = added.andNot(old);
+			}
+			if (!added.isEmpty()) {
+				currentRevision.addMergeInfo(entry.getKey(), added);
+			}
+		}
+	}
+
+	private void parseRevision(Map<String, String> aHeaders) throws IOException {
+		reportCurrentRevision();
+
+		long propLength = getLength(aHeaders, "Prop-content-length");
+		Map<String, String> props = Collections.emptyMap();
+		if (propLength >= 0) {
+			props = readProps(readBytes(propLength), Collections.emptyMap());
+		}
+		skipRemaining(aHeaders, propLength, -1);
+
+		int id = NumberUtils.toInt(aHeaders.get("Revision-number"));
+		if (id == 0) {
+			// revision 0 never contains changes
+			return;
+		}
+		DateTime timestamp = props.containsKey(PROP_DATE) ? SVN_DATE_FORMAT.parseDateTime(props.get(PROP_DATE)) : new DateTime(0);
+		currentRevision = new Revision(id, StringUtils.defaultString(props.get(PROP_AUTHOR), "(no author)"), timestamp);
+		currentRevision.setComment(StringUtils.stripEnd(StringUtils.defaultString(props.get(PROP_LOG)), "\r\n"));
+		LOG.debug("Processing dump of rev {}", id);
+	}
+
+	@Nonnull
+	private byte[] readBytes(long aLength) throws IOException {
+		if (aLength > Integer.MAX_VALUE) {
+			throw new IOException("Content too large: " + aLength);
+		}
+		byte[] data = new byte[(int) aLength];
+		int pos = 0;
+		while (pos < data.length) {
+			int n = input.read(data, pos, data.length - pos);
+			if (n < 0) {
+				throw new EOFException("Unexpected end of dump.");
+			}
+			pos += n;
+		}
+		return data;
+	}
+
+	/**
+	 * Read a block of "Key: value" lines. Leading blank lines are skipped.
+	 *
+	 * @return null at the end of the stream
+	 */
+	@CheckForNull
+	private Map<String, String> readHeaders() throws IOException {
+		Map<String, String> headers = new LinkedHashMap<>();
+		String line;
+		while ((line = readLine()) != null) {
+			if (line.isEmpty()) {
+				if (headers.isEmpty()) {
+					continue;
+				}
+				return headers;
+			}
+			int idx = line.indexOf(": ");
+			if (idx < 0) {
+				LOG.error("Garbage dump header: {}", line);
+				continue;
+			}
+			headers.put(line.substring(0, idx), line.substring(idx + 2));
+		}
+		return headers.isEmpty() ? null : headers;
+	}
+
+	@CheckForNull
+	private String readLine() throws IOException {
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream(80);
+		int b;
+		while ((b = input.read()) != -1) {
+			if (b == '\n') {
+				return new String(buffer.toByteArray(), StandardCharsets.UTF_8);
+			}
+			buffer.write(b);
+		}
+		if (buffer.size() == 0) {
+			return null;
+		}
+		return new String(buffer.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Parse a property block.
+	 *
+	 * @param aBase
+	 *            the properties to apply the block to, only non-empty for property deltas
+	 */
+	@Nonnull
+	private Map<String, String> readProps(@Nonnull byte[] aData, @Nonnull Map<String, String> aBase) throws IOException {
+		Map<String, String> props = new HashMap<>(aBase);
+		int[] pos = new int[] { 0 };
+		while (pos[0] < aData.length) {
+			String line = readPropLine(aData, pos);
+			if (PROPS_END.equals(line)) {
+				break;
+			}
+			if (line.startsWith("K ")) {
+				String key = readPropValue(aData, pos, NumberUtils.toInt(line.substring(2)));
+				String valueHeader = readPropLine(aData, pos);
+				if (!valueHeader.startsWith("V ")) {
+					throw new IOException("Malformed property block, expected value for: " + key);
+				}
+				props.put(key, readPropValue(aData, pos, NumberUtils.toInt(valueHeader.substring(2))));
+			} else if (line.startsWith("D ")) {
+				props.remove(readPropValue(aData, pos, NumberUtils.toInt(line.substring(2))));
+			} else {
+				throw new IOException("Malformed property block: " + line);
+			}
+		}
+		return props;
+	}
+
+	private String readPropLine(byte[] aData, int[] aPos) {
+		int start = aPos[0];
+		int end = start;
+		while (end < aData.length && aData[end] != '\n') {
+			++end;
+		}
+		aPos[0] = end + 1;
+		return new String(aData, start, end - start, StandardCharsets.UTF_8);
+	}
+
+	private String readPropValue(byte[] aData, int[] aPos, int aLength) throws IOException {
+		if (aPos[0] + aLength > aData.length) {
+			throw new IOException("Truncated property block.");
+		}
+		String value = new String(aData, aPos[0], aLength, StandardCharsets.UTF_8);
+		// skip trailing newline
+		aPos[0] += aLength + 1;
+		return value;
+	}
+
+	private void reportCurrentRevision() {
+		try {
+			if (currentRevision == null || reporter == null) {
+				return;
+			}
+			try {
+				reporter.report(currentRevision);
+			} catch (RevisionReporterException e) {
+				LOG.error("Error reporting revision.", e);
+			}
+		} finally {
+			currentRevision = null;
+		}
+	}
+
+	private void skipContent(Map<String, String> aHeaders) throws IOException {
+		skipRemaining(aHeaders, -1, -1);
+	}
+
+	/**
+	 * Skip the part of the content which was not read yet.
+	 */
+	private void skipRemaining(Map<String, String> aHeaders, long aPropLength, long aTextLength) throws IOException {
+		long total = getLength(aHeaders, "Content-length");
+		long remaining = total - Math.max(aPropLength, 0) - Math.max(aTextLength, 0);
+		while (remaining > 0) {
+			long n = input.skip(remaining);
+			if (n <= 0) {
+				if (input.read() < 0) {
+					throw new EOFException("Unexpected end of dump.");
+				}
+				n = 1;
+			}
+			remaining -= n;
+		}
+	}
+}
@@ -0,0 +1,54 @@
+package com.mpobjects.svn.logstats.history;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+/**
+ * The revisions a path existed under a single name.
+ */
+public class HistorySegment {
+
+	protected final int firstRevision;
+
+	protected final int lastRevision;
+
+	protected final PathLocation origin;
+
+	protected final String path;
+
+	public HistorySegment(@Nonnull String aPath, int aFirstRevision, int aLastRevision, @CheckForNull PathLocation aOrigin) {
+		path = aPath;
+		firstRevision = aFirstRevision;
+		lastRevision = aLastRevision;
+		origin = aOrigin;
+	}
+
+	/**
+	 * @return the revision the path was created or copied, 0 when unknown
+	 */
+	public int getFirstRevision() {
+		return firstRevision;
+	}
+
+	public int getLastRevision() {
+		return lastRevision;
+	}
+
+	/**
+	 * @return the copy source, null when the path was created without history
+	 */
+	@CheckForNull
+	public PathLocation getOrigin() {
+		return origin;
+	}
+
+	@Nonnull
+	public String getPath() {
+		return path;
+	}
+
+	@Override
+	public String toString() {
+		return path + "@" + firstRevision + "-" + lastRevision + (origin == null ? "" : " (from " + origin + ")");
+	}
+}
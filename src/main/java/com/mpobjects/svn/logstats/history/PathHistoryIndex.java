@@ -0,0 +1,485 @@
+package com.mpobjects.svn.logstats.history;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.mpobjects.svn.logstats.RevisionReporter;
+import com.mpobjects.svn.logstats.RevisionReporterException;
+import com.mpobjects.svn.logstats.model.ChangeType;
+import com.mpobjects.svn.logstats.model.FileChange;
+import com.mpobjects.svn.logstats.model.Revision;
+import com.mpobjects.svn.logstats.model.RevisionRangeSet;
+import com.mpobjects.svn.logstats.util.IntList;
+import com.mpobjects.svn.logstats.util.StringDictionary;
+
+/**
+ * Persistent index of all path changes, used to follow the history of a file or directory across copies and moves.
+ * Every reported revision is appended to the index file, which is replayed into memory when the index is opened. An
+ * incomplete last revision, from an interrupted run, is dropped.
+ * Revisions already in the index are skipped, so the index can be updated incrementally, in any revision order.
+ */
+public class PathHistoryIndex implements RevisionReporter, Closeable {
+
+	/**
+	 * Line churn of a path over one or more history segments.
+	 */
+	public static class Churn {
+		protected long linesAdded;
+
+		protected long linesChanged;
+
+		protected long linesRemoved;
+
+		protected int revisions;
+
+		public long getLinesAdded() {
+			return linesAdded;
+		}
+
+		public long getLinesChanged() {
+			return linesChanged;
+		}
+
+		public long getLinesRemoved() {
+			return linesRemoved;
+		}
+
+		/**
+		 * @return the number of changes, a directory counts every changed path
+		 */
+		public int getRevisions() {
+			return revisions;
+		}
+	}
+
+	/**
+	 * Stream keeping track of the read position, to find the end of the last complete record.
+	 */
+	private static class CountingInputStream extends FilterInputStream {
+		protected long position;
+
+		protected CountingInputStream(InputStream aInput) {
+			super(aInput);
+		}
+
+		@Override
+		public int read() throws IOException {
+			int res = super.read();
+			if (res >= 0) {
+				++position;
+			}
+			return res;
+		}
+
+		@Override
+		public int read(byte[] aBuffer, int aOffset, int aLength) throws IOException {
+			int res = super.read(aBuffer, aOffset, aLength);
+			if (res > 0) {
+				position += res;
+			}
+			return res;
+		}
+
+		@Override
+		public long skip(long aCount) throws IOException {
+			long res = super.skip(aCount);
+			position += res;
+			return res;
+		}
+	}
+
+	/**
+	 * The changes of a single path, stored as {@link #EVENT_SIZE} ints per change.
+	 */
+	protected static class PathEvents {
+		protected final IntList data = new IntList(EVENT_SIZE);
+
+		protected boolean sorted = true;
+
+		protected void add(int aRevision, ChangeType aType, int aFromPath, int aFromRevision, FileChange aChange) {
+			if (!data.isEmpty() && data.get(data.size() - EVENT_SIZE + EV_REVISION) > aRevision) {
+				sorted = false;
+			}
+			data.add(aRevision);
+			data.add(aType.ordinal());
+			data.add(aFromPath);
+			data.add(aFromRevision);
+			data.add(aChange == null ? 0 : aChange.getLinesAdded());
+			data.add(aChange == null ? 0 : aChange.getLinesRemoved());
+			data.add(aChange == null ? 0 : aChange.getLinesChanged());
+		}
+
+		protected int get(int aEvent, int aField) {
+			return data.get(aEvent * EVENT_SIZE + aField);
+		}
+
+		/**
+		 * @return the number of events
+		 */
+		protected int size() {
+			return data.size() / EVENT_SIZE;
+		}
+
+		/**
+		 * Sort the events by revision, events are usually appended newest first.
+		 */
+		protected void sort() {
+			if (sorted) {
+				return;
+			}
+			final int count = size();
+			long[] order = new long[count];
+			for (int i = 0; i < count; ++i) {
+				order[i] = (long) get(i, EV_REVISION) << 32 | i;
+			}
+			Arrays.sort(order);
+			int[] old = data.toArray();
+			for (int i = 0; i < count; ++i) {
+				int src = (int) order[i] * EVENT_SIZE;
+				for (int f = 0; f < EVENT_SIZE; ++f) {
+					data.set(i * EVENT_SIZE + f, old[src + f]);
+				}
+			}
+			sorted = true;
+		}
+	}
+
+	private static final int EV_ADDED = 4;
+
+	private static final int EV_CHANGED = 6;
+
+	private static final int EV_FROM_PATH = 2;
+
+	private static final int EV_FROM_REVISION = 3;
+
+	private static final int EV_REMOVED = 5;
+
+	private static final int EV_REVISION = 0;
+
+	private static final int EV_TYPE = 1;
+
+	private static final int EVENT_SIZE = 7;
+
+	private static final Logger LOG = LoggerFactory.getLogger(PathHistoryIndex.class);
+
+	private static final int MAGIC = 0x53564e48;
+
+	/**
+	 * Guard against copy cycles in broken data
+	 */
+	private static final int MAX_SEGMENTS = 1000;
+
+	private static final int VERSION = 1;
+
+	/**
+	 * Open an index file, creating it when it does not exist.
+	 */
+	@Nonnull
+	public static PathHistoryIndex open(@Nonnull File aFile) throws IOException {
+		PathHistoryIndex index = new PathHistoryIndex();
+		if (aFile.exists() && aFile.length() > 0) {
+			long valid = index.replay(aFile);
+			if (valid < aFile.length()) {
+				LOG.warn("Truncating incomplete record at the end of {}", aFile);
+				try (RandomAccessFile raf = new RandomAccessFile(aFile, "rw")) {
+					raf.setLength(valid);
+				}
+			}
+			index.output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(aFile, true), 64 * 1024));
+		} else {
+			index.output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(aFile), 64 * 1024));
+			index.output.writeInt(MAGIC);
+			index.output.writeInt(VERSION);
+		}
+		return index;
+	}
+
+	protected final NavigableMap<String, PathEvents> events;
+
+	protected final RevisionRangeSet indexed;
+
+	protected int lastRevision;
+
+	protected DataOutputStream output;
+
+	protected final StringDictionary paths;
+
+	/**
+	 * Buffer of the record being written
+	 */
+	protected final ByteArrayOutputStream record;
+
+	protected PathHistoryIndex() {
+		events = new TreeMap<>();
+		indexed = new RevisionRangeSet();
+		paths = new StringDictionary();
+		record = new ByteArrayOutputStream();
+	}
+
+	@Override
+	public void close() throws IOException {
+		output.close();
+	}
+
+	@Override
+	public void flush() throws RevisionReporterException {
+		try {
+			output.flush();
+		} catch (IOException e) {
+			throw new RevisionReporterException("Failure writing path history index.", e);
+		}
+	}
+
+	/**
+	 * The history of a path, newest segment first. Every segment covers the revisions the path existed under a single
+	 * name, the next segment is the copy source.
+	 *
+	 * @param aRevision
+	 *            the revision to start from, use {@link Integer#MAX_VALUE} for the latest
+	 */
+	@Nonnull
+	public List<HistorySegment> getHistory(@Nonnull String aPath, int aRevision) {
+		List<HistorySegment> result = new ArrayList<>();
+		String path = normalize(aPath);
+		int revision = aRevision;
+		while (result.size() < MAX_SEGMENTS) {
+			HistorySegment segment = findSegment(path, revision);
+			result.add(segment);
+			if (segment.getOrigin() == null) {
+				break;
+			}
+			path = segment.getOrigin().getPath();
+			revision = segment.getOrigin().getRevision();
+		}
+		return result;
+	}
+
+	/**
+	 * @return the highest indexed revision
+	 */
+	public int getLastRevision() {
+		return lastRevision;
+	}
+
+	/**
+	 * The churn of a file, or all files in a directory, over its full history including the copy sources.
+	 */
+	@Nonnull
+	public Churn getLifetimeChurn(@Nonnull String aPath, int aRevision) {
+		Churn churn = new Churn();
+		for (HistorySegment segment : getHistory(aPath, aRevision)) {
+			addChurn(churn, segment.getPath(), segment.getFirstRevision(), segment.getLastRevision());
+			String prefix = segment.getPath() + "/";
+			for (Map.Entry<String, PathEvents> entry : events.subMap(prefix, prefix + "\uffff").entrySet()) {
+				addChurn(churn, entry.getKey(), segment.getFirstRevision(), segment.getLastRevision());
+			}
+		}
+		return churn;
+	}
+
+	/**
+	 * @return the location the path was copied from, or null when it was created without history or is unknown
+	 */
+	@CheckForNull
+	public PathLocation getOrigin(@Nonnull String aPath, int aRevision) {
+		return findSegment(normalize(aPath), aRevision).getOrigin();
+	}
+
+	/**
+	 * @return true if the revision is in the index
+	 */
+	public boolean isIndexed(int aRevision) {
+		return indexed.contains(aRevision);
+	}
+
+	@Override
+	public void report(@Nonnull Revision aRevision) throws RevisionReporterException {
+		if (indexed.contains(aRevision.getId())) {
+			return;
+		}
+		try {
+			// the complete record is written at once, and only then added to the index in memory
+			record.reset();
+			DataOutputStream out = new DataOutputStream(record);
+			out.writeInt(aRevision.getId());
+			out.writeInt(aRevision.getFileChanges().size());
+			for (FileChange change : aRevision.getFileChanges().values()) {
+				out.writeByte(change.getChangeType().ordinal());
+				out.writeUTF(change.getFilename());
+				out.writeUTF(StringUtils.defaultString(change.getFromPath()));
+				out.writeInt(change.getFromRevision());
+				out.writeInt(change.getLinesAdded());
+				out.writeInt(change.getLinesRemoved());
+				out.writeInt(change.getLinesChanged());
+			}
+			record.writeTo(output);
+		} catch (IOException e) {
+			throw new RevisionReporterException("Failure writing path history index.", e);
+		}
+		for (FileChange change : aRevision.getFileChanges().values()) {
+			addEvent(aRevision.getId(), change.getChangeType(), change.getFilename(), change.getFromPath(), change.getFromRevision(), change);
+		}
+		markIndexed(aRevision.getId());
+	}
+
+	@Override
+	public boolean retainsRevisions() {
+		return false;
+	}
+
+	private void addChurn(Churn aChurn, String aPath, int aFirst, int aLast) {
+		PathEvents pathEvents = events.get(aPath);
+		if (pathEvents == null) {
+			return;
+		}
+		pathEvents.sort();
+		for (int i = 0; i < pathEvents.size(); ++i) {
+			int revision = pathEvents.get(i, EV_REVISION);
+			if (revision < aFirst) {
+				continue;
+			}
+			if (revision > aLast) {
+				break;
+			}
+			++aChurn.revisions;
+			aChurn.linesAdded += pathEvents.get(i, EV_ADDED);
+			aChurn.linesRemoved += pathEvents.get(i, EV_REMOVED);
+			aChurn.linesChanged += pathEvents.get(i, EV_CHANGED);
+		}
+	}
+
+	private void addEvent(int aRevision, ChangeType aType, String aPath, String aFromPath, int aFromRevision, FileChange aChange) {
+		PathEvents pathEvents = events.get(aPath);
+		if (pathEvents == null) {
+			pathEvents = new PathEvents();
+			events.put(aPath, pathEvents);
+		}
+		int fromPath = StringUtils.isEmpty(aFromPath) ? -1 : paths.intern(aFromPath);
+		pathEvents.add(aRevision, aType, fromPath, aFromRevision, aChange);
+	}
+
+	/**
+	 * Find the latest creation of the path, or a copy of one of its parent directories, at or before the revision.
+	 */
+	private HistorySegment findSegment(String aPath, int aRevision) {
+		int bestRevision = 0;
+		PathLocation origin = null;
+		String dir = aPath;
+		boolean self = true;
+		while (!dir.isEmpty()) {
+			PathEvents pathEvents = events.get(dir);
+			if (pathEvents != null) {
+				pathEvents.sort();
+				for (int i = pathEvents.size() - 1; i >= 0; --i) {
+					int revision = pathEvents.get(i, EV_REVISION);
+					if (revision > aRevision) {
+						continue;
+					}
+					if (revision <= bestRevision) {
+						break;
+					}
+					int type = pathEvents.get(i, EV_TYPE);
+					if (type != ChangeType.ADDED.ordinal() && type != ChangeType.REPLACED.ordinal()) {
+						continue;
+					}
+					int fromPath = pathEvents.get(i, EV_FROM_PATH);
+					if (fromPath < 0 && !self) {
+						// a new parent directory says nothing about this path
+						continue;
+					}
+					bestRevision = revision;
+					origin = fromPath < 0 ? null
+							: new PathLocation(paths.get(fromPath) + aPath.substring(dir.length()), pathEvents.get(i, EV_FROM_REVISION));
+					break;
+				}
+			}
+			int idx = dir.lastIndexOf('/');
+			dir = idx < 0 ? "" : dir.substring(0, idx);
+			self = false;
+		}
+		return new HistorySegment(aPath, bestRevision, Math.min(aRevision, lastRevision), origin);
+	}
+
+	private void markIndexed(int aRevision) {
+		indexed.add(aRevision, aRevision);
+		lastRevision = Math.max(lastRevision, aRevision);
+	}
+
+	private static String normalize(String aPath) {
+		return StringUtils.removeEnd(StringUtils.removeStart(aPath, "/"), "/");
+	}
+
+	/**
+	 * Read all complete records of the file.
+	 *
+	 * @return the end position of the last complete record
+	 */
+	private long replay(File aFile) throws IOException {
+		CountingInputStream counter = new CountingInputStream(new BufferedInputStream(new FileInputStream(aFile), 64 * 1024));
+		try (DataInputStream input = new DataInputStream(counter)) {
+			if (input.readInt() != MAGIC) {
+				throw new IOException("Not a path history index: " + aFile);
+			}
+			int version = input.readInt();
+			if (version != VERSION) {
+				throw new IOException("Unsupported path history index version " + version + ": " + aFile);
+			}
+			long valid = counter.position;
+			int records = 0;
+			List<FileChange> changes = new ArrayList<>();
+			while (true) {
+				try {
+					// only complete revisions are added
+					int revision = input.readInt();
+					int count = input.readInt();
+					changes.clear();
+					for (int i = 0; i < count; ++i) {
+						ChangeType type = ChangeType.values()[input.readByte()];
+						FileChange change = new FileChange(input.readUTF(), type);
+						change.setFromPath(input.readUTF());
+						change.setFromRevision(input.readInt());
+						change.setLinesAdded(input.readInt());
+						change.setLinesRemoved(input.readInt());
+						change.setLinesChanged(input.readInt());
+						changes.add(change);
+					}
+					for (FileChange change : changes) {
+						addEvent(revision, change.getChangeType(), change.getFilename(), change.getFromPath(), change.getFromRevision(), change);
+					}
+					markIndexed(revision);
+					records += count;
+					valid = counter.position;
+				} catch (EOFException e) {
+					break;
+				}
+			}
+			LOG.info("Loaded {} path changes up to revision {} from {}", records, lastRevision, aFile);
+			return valid;
+		}
+	}
+}
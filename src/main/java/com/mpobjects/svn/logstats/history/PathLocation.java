@@ -0,0 +1,51 @@
+package com.mpobjects.svn.logstats.history;
+
+import java.util.Objects;
+
+import javax.annotation.Nonnull;
+
+/**
+ * A path at a specific revision.
+ */
+public class PathLocation {
+
+	protected final String path;
+
+	protected final int revision;
+
+	public PathLocation(@Nonnull String aPath, int aRevision) {
+		path = aPath;
+		revision = aRevision;
+	}
+
+	@Override
+	public boolean equals(Object aObj) {
+		if (this == aObj) {
+			return true;
+		}
+		if (!(aObj instanceof PathLocation)) {
+			return false;
+		}
+		PathLocation other = (PathLocation) aObj;
+		return revision == other.revision && path.equals(other.path);
+	}
+
+	@Nonnull
+	public String getPath() {
+		return path;
+	}
+
+	public int getRevision() {
+		return revision;
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(path, revision);
+	}
+
+	@Override
+	public String toString() {
+		return path + "@" + revision;
+	}
+}
@@ -0,0 +1,150 @@
+package com.mpobjects.svn.logstats.history;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.configuration2.Configuration;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.mpobjects.svn.logstats.SvnLog;
+import com.mpobjects.svn.logstats.SvnLogParser;
+import com.mpobjects.svn.logstats.dump.SvnDumpParser;
+
+/**
+ * Updates a {@link PathHistoryIndex} and answers history questions.
+ * <p>
+ * Usage: <code>SvnLogHistory [--index file] [--log file]... [--dump file]... [--origin path[@rev]]...
+ * [--history path[@rev]]... [--churn path[@rev]]... [-- svn log arguments]</code>. The index file defaults to the
+ * "history.index" setting. Arguments after "--" are passed to svn log with a revision range starting after the last
+ * indexed revision, so only new revisions are fetched. Results are written as CSV to stdout.
+ */
+public class SvnLogHistory {
+
+	private static final Logger LOG = LoggerFactory.getLogger(SvnLogHistory.class);
+
+	public static void main(String[] args) throws Exception {
+		SvnLogHistory history = new SvnLogHistory();
+		history.exec(args);
+	}
+
+	public SvnLogHistory() {
+	}
+
+	public void exec(String[] aArgs) throws Exception {
+		final Configuration config = SvnLog.loadConfiguration();
+		String indexFile = config.getString("history.index", "history.idx");
+		List<String> logs = new ArrayList<>();
+		List<String> dumps = new ArrayList<>();
+		List<String[]> questions = new ArrayList<>();
+		List<String> svnArgs = new ArrayList<>();
+		for (int i = 0; i < aArgs.length; ++i) {
+			if ("--".equals(aArgs[i])) {
+				for (++i; i < aArgs.length; ++i) {
+					svnArgs.add(aArgs[i]);
+				}
+			} else if ("--index".equals(aArgs[i]) && i + 1 < aArgs.length) {
+				indexFile = aArgs[++i];
+			} else if ("--log".equals(aArgs[i]) && i + 1 < aArgs.length) {
+				logs.add(aArgs[++i]);
+			} else if ("--dump".equals(aArgs[i]) && i + 1 < aArgs.length) {
+				dumps.add(aArgs[++i]);
+			} else if (StringUtils.equalsAny(aArgs[i], "--origin", "--history", "--churn") && i + 1 < aArgs.length) {
+				questions.add(new String[] { aArgs[i], aArgs[++i] });
+			} else {
+				throw new IllegalArgumentException("Unknown argument: " + aArgs[i]);
+			}
+		}
+
+		try (PathHistoryIndex index = PathHistoryIndex.open(new File(indexFile))) {
+			for (String log : logs) {
+				loadLog(index, log);
+			}
+			for (String dump : dumps) {
+				loadDump(index, dump);
+			}
+			if (!svnArgs.isEmpty()) {
+				update(index, svnArgs, config);
+			}
+			index.flush();
+			LOG.info("Index contains revisions up to {}", index.getLastRevision());
+
+			if (!questions.isEmpty()) {
+				answer(index, questions);
+			}
+		}
+	}
+
+	private void answer(PathHistoryIndex aIndex, List<String[]> aQuestions) throws IOException {
+		CSVPrinter out = new CSVPrinter(new PrintWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8)), CSVFormat.RFC4180);
+		for (String[] question : aQuestions) {
+			String path = StringUtils.substringBeforeLast(question[1], "@");
+			int revision = question[1].contains("@") ? NumberUtils.toInt(StringUtils.substringAfterLast(question[1], "@"), Integer.MAX_VALUE)
+					: Integer.MAX_VALUE;
+			switch (question[0]) {
+				case "--origin":
+					PathLocation origin = aIndex.getOrigin(path, revision);
+					out.printRecord("origin", path, origin == null ? "" : origin.getPath(), origin == null ? "" : origin.getRevision());
+					break;
+				case "--history":
+					for (HistorySegment segment : aIndex.getHistory(path, revision)) {
+						out.printRecord("history", path, segment.getPath(), segment.getFirstRevision(), segment.getLastRevision());
+					}
+					break;
+				default:
+					PathHistoryIndex.Churn churn = aIndex.getLifetimeChurn(path, revision);
+					out.printRecord("churn", path, churn.getRevisions(), churn.getLinesAdded(), churn.getLinesRemoved(), churn.getLinesChanged());
+			}
+		}
+		out.flush();
+	}
+
+	private void loadDump(PathHistoryIndex aIndex, String aFilename) throws IOException {
+		try (SvnDumpParser parser = new SvnDumpParser(aIndex); FileInputStream input = new FileInputStream(aFilename)) {
+			parser.parse(new BufferedInputStream(input, 64 * 1024));
+			parser.flush();
+		}
+	}
+
+	private void loadLog(PathHistoryIndex aIndex, String aFilename) throws IOException {
+		SvnLogParser parser = new SvnLogParser(aIndex);
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(aFilename), StandardCharsets.UTF_8))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				parser.parse(line);
+			}
+		}
+		parser.flush();
+	}
+
+	/**
+	 * Fetch the revisions after the last indexed revision, svn log fails on a range starting after HEAD.
+	 */
+	private void update(PathHistoryIndex aIndex, List<String> aSvnArgs, Configuration aConfig) throws IOException {
+		int head = SvnLog.getHeadRevision(aSvnArgs.get(aSvnArgs.size() - 1));
+		if (aIndex.getLastRevision() >= head) {
+			LOG.info("Index is up to date with HEAD r{}", head);
+			return;
+		}
+		List<String> args = new ArrayList<>(aSvnArgs);
+		args.add(0, "-r");
+		args.add(1, (aIndex.getLastRevision() + 1) + ":" + head);
+		SvnLogParser parser = new SvnLogParser(aIndex);
+		SvnLog.configureParser(parser, aConfig);
+		SvnLog.execute(SvnLog.createLogCommand(args.toArray(new String[0])), parser);
+		parser.flush();
+	}
+}
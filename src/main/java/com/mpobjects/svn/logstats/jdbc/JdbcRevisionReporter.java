@@ -0,0 +1,333 @@
+package com.mpobjects.svn.logstats.jdbc;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+
+import javax.annotation.Nonnull;
+
+import org.apache.commons.configuration2.Configuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.mpobjects.svn.logstats.AbstractRevisionReporter;
+import com.mpobjects.svn.logstats.RevisionReporterException;
+import com.mpobjects.svn.logstats.model.ChangeType;
+import com.mpobjects.svn.logstats.model.FileChange;
+import com.mpobjects.svn.logstats.model.Revision;
+import com.mpobjects.svn.logstats.model.RevisionRangeSet;
+
+/**
+ * Writes the revisions, their issues, projects and file changes into a database. The rows are inserted with JDBC
+ * batches of jdbc.batch.size revisions and committed every jdbc.commit.interval revisions. The indexes are created on
+ * the first {@link #flush()}, after the bulk of the rows has been inserted, unless jdbc.index.deferred is false.
+ * Revisions which are already in the database are replaced, so overlapping runs do not duplicate rows.
+ * <p>
+ * Settings: jdbc.url (like "jdbc:h2:./svnstats"), jdbc.user, jdbc.password, jdbc.batch.size, jdbc.commit.interval,
+ * jdbc.index.deferred, jdbc.recreate (drop existing tables first) and merge.exclude (skip merge sources).
+ */
+public class JdbcRevisionReporter extends AbstractRevisionReporter implements Closeable {
+
+	private static final Logger LOG = LoggerFactory.getLogger(JdbcRevisionReporter.class);
+
+	protected static final String[] CREATE_INDEXES = { //
+			"CREATE INDEX IF NOT EXISTS revision_author ON revision (author)", //
+			"CREATE INDEX IF NOT EXISTS revision_commit_time ON revision (commit_time)", //
+			"CREATE INDEX IF NOT EXISTS revision_issue_revision ON revision_issue (revision)", //
+			"CREATE INDEX IF NOT EXISTS revision_issue_issue ON revision_issue (issue)", //
+			"CREATE INDEX IF NOT EXISTS revision_project_revision ON revision_project (revision)", //
+			"CREATE INDEX IF NOT EXISTS revision_project_project ON revision_project (project)", //
+			"CREATE INDEX IF NOT EXISTS file_change_revision ON file_change (revision)", //
+			"CREATE INDEX IF NOT EXISTS file_change_path ON file_change (path)" };
+
+	protected static final String[] CREATE_TABLES = { //
+			"CREATE TABLE IF NOT EXISTS revision (id INT NOT NULL PRIMARY KEY, author VARCHAR, commit_time TIMESTAMP, message VARCHAR, "
+					+ "merge_status VARCHAR, branch_action BOOLEAN, branch_name VARCHAR, files_added INT, files_removed INT, "
+					+ "files_modified INT, files_replaced INT, files_affected INT, lines_added INT, lines_removed INT, lines_modified INT)", //
+			"CREATE TABLE IF NOT EXISTS revision_issue (revision INT NOT NULL, issue VARCHAR NOT NULL)", //
+			"CREATE TABLE IF NOT EXISTS revision_project (revision INT NOT NULL, project VARCHAR NOT NULL)", //
+			"CREATE TABLE IF NOT EXISTS file_change (revision INT NOT NULL, path VARCHAR NOT NULL, change_type CHAR(1), from_path VARCHAR, "
+					+ "from_revision INT, in_manifest BOOLEAN, is_binary BOOLEAN, lines_added INT, lines_removed INT, lines_modified INT)" };
+
+	protected static final String[] TABLES = { "revision", "revision_issue", "revision_project", "file_change" };
+
+	/**
+	 * Connect to jdbc.url.
+	 */
+	@Nonnull
+	public static JdbcRevisionReporter open(@Nonnull Configuration aConfig) throws RevisionReporterException {
+		String url = aConfig.getString("jdbc.url", "jdbc:h2:./svnstats");
+		try {
+			return new JdbcRevisionReporter(DriverManager.getConnection(url, aConfig.getString("jdbc.user", ""), aConfig.getString("jdbc.password", "")),
+					aConfig);
+		} catch (SQLException e) {
+			throw new RevisionReporterException("Cannot connect to " + url, e);
+		}
+	}
+
+	/**
+	 * Lowest and highest revision in the current JDBC batch
+	 */
+	protected int batchFirst;
+
+	protected int batchLast;
+
+	/**
+	 * Revisions in the current JDBC batch
+	 */
+	protected RevisionRangeSet batchRevisions;
+
+	protected final int batchSize;
+
+	/**
+	 * Number of revisions in the current JDBC batch
+	 */
+	protected int batched;
+
+	protected final int commitInterval;
+
+	protected final Connection connection;
+
+	/**
+	 * Delete statements of a revision, per table in {@link #TABLES}
+	 */
+	protected final PreparedStatement[] deletes;
+
+	protected final PreparedStatement existingQuery;
+
+	protected final PreparedStatement fileChangeInsert;
+
+	protected boolean indexed;
+
+	protected final PreparedStatement issueInsert;
+
+	protected final PreparedStatement projectInsert;
+
+	protected final PreparedStatement revisionInsert;
+
+	/**
+	 * Revisions since the last commit
+	 */
+	protected int uncommitted;
+
+	public JdbcRevisionReporter(@Nonnull Connection aConnection, @Nonnull Configuration aConfig) throws RevisionReporterException {
+		super(aConfig);
+		connection = aConnection;
+		batchSize = Math.max(config.getInt("jdbc.batch.size", 500), 1);
+		commitInterval = Math.max(config.getInt("jdbc.commit.interval", 10000), 1);
+		try {
+			connection.setAutoCommit(false);
+			createTables(config.getBoolean("jdbc.recreate", false));
+			if (!config.getBoolean("jdbc.index.deferred", true)) {
+				createIndexes();
+			}
+			revisionInsert = connection.prepareStatement("INSERT INTO revision (id, author, commit_time, message, merge_status, branch_action, branch_name, "
+					+ "files_added, files_removed, files_modified, files_replaced, files_affected, lines_added, lines_removed, lines_modified) "
+					+ "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+			issueInsert = connection.prepareStatement("INSERT INTO revision_issue (revision, issue) VALUES (?, ?)");
+			projectInsert = connection.prepareStatement("INSERT INTO revision_project (revision, project) VALUES (?, ?)");
+			fileChangeInsert = connection.prepareStatement("INSERT INTO file_change (revision, path, change_type, from_path, from_revision, in_manifest, "
+					+ "is_binary, lines_added, lines_removed, lines_modified) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+			existingQuery = connection.prepareStatement("SELECT id FROM revision WHERE id BETWEEN ? AND ?");
+			deletes = new PreparedStatement[TABLES.length];
+			for (int i = 0; i < TABLES.length; ++i) {
+				deletes[i] = connection.prepareStatement("DELETE FROM " + TABLES[i] + " WHERE " + ("revision".equals(TABLES[i]) ? "id" : "revision") + " = ?");
+			}
+			batchRevisions = new RevisionRangeSet();
+		} catch (SQLException e) {
+			throw new RevisionReporterException("Failure preparing the database.", e);
+		}
+	}
+
+	/**
+	 * Commit the pending rows and close the connection.
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			try {
+				executeBatches();
+				connection.commit();
+			} finally {
+				connection.close();
+			}
+		} catch (SQLException e) {
+			throw new IOException("Failure closing the database.", e);
+		}
+	}
+
+	@Override
+	public void flush() throws RevisionReporterException {
+		try {
+			executeBatches();
+			connection.commit();
+			uncommitted = 0;
+			createIndexes();
+		} catch (SQLException e) {
+			throw new RevisionReporterException("Failure writing to the database.", e);
+		}
+	}
+
+	@Override
+	public void report(@Nonnull Revision aRevision) throws RevisionReporterException {
+		super.report(aRevision);
+		if (isExcludedMergeSource(aRevision)) {
+			return;
+		}
+		try {
+			addRevision(aRevision);
+			if (++batched >= batchSize) {
+				executeBatches();
+			}
+			if (++uncommitted >= commitInterval) {
+				executeBatches();
+				connection.commit();
+				uncommitted = 0;
+			}
+		} catch (SQLException e) {
+			throw new RevisionReporterException("Failure writing revision " + aRevision.getId() + " to the database.", e);
+		}
+	}
+
+	/**
+	 * All values are copied into the JDBC batch.
+	 */
+	@Override
+	public boolean retainsRevisions() {
+		return false;
+	}
+
+	protected void addRevision(@Nonnull Revision aRevision) throws SQLException {
+		final int id = aRevision.getId();
+		if (batched == 0) {
+			batchFirst = id;
+			batchLast = id;
+		} else {
+			batchFirst = Math.min(batchFirst, id);
+			batchLast = Math.max(batchLast, id);
+		}
+		batchRevisions.add(id, id);
+		revisionInsert.setInt(1, id);
+		revisionInsert.setString(2, aRevision.getAuthor());
+		revisionInsert.setTimestamp(3, aRevision.getTimestamp() == null ? null : new Timestamp(aRevision.getTimestamp().getMillis()));
+		revisionInsert.setString(4, aRevision.getComment());
+		revisionInsert.setString(5, aRevision.getMergeStatus().name());
+		revisionInsert.setBoolean(6, isBranchActions(aRevision));
+		revisionInsert.setString(7, determineBranchName(aRevision));
+		revisionInsert.setLong(8, aRevision.getFileChanges(ChangeType.ADDED).count());
+		revisionInsert.setLong(9, aRevision.getFileChanges(ChangeType.DELETED).count());
+		revisionInsert.setLong(10, aRevision.getFileChanges(ChangeType.MODIFIED).count());
+		revisionInsert.setLong(11, aRevision.getFileChanges(ChangeType.REPLACED).count());
+		revisionInsert.setInt(12, aRevision.getFileChanges().size());
+		revisionInsert.setInt(13, aRevision.getLinesAdded());
+		revisionInsert.setInt(14, aRevision.getLinesRemoved());
+		revisionInsert.setInt(15, aRevision.getLinesChanged());
+		revisionInsert.addBatch();
+
+		for (String issue : aRevision.getIssues()) {
+			issueInsert.setInt(1, id);
+			issueInsert.setString(2, issue);
+			issueInsert.addBatch();
+		}
+		for (String project : aRevision.getProjects()) {
+			projectInsert.setInt(1, id);
+			projectInsert.setString(2, project);
+			projectInsert.addBatch();
+		}
+		for (FileChange change : aRevision.getFileChanges().values()) {
+			fileChangeInsert.setInt(1, id);
+			fileChangeInsert.setString(2, change.getFilename());
+			fileChangeInsert.setString(3, String.valueOf(change.getChangeType().getCode()));
+			fileChangeInsert.setString(4, change.getFromPath());
+			if (change.getFromPath() == null) {
+				fileChangeInsert.setNull(5, Types.INTEGER);
+			} else {
+				fileChangeInsert.setInt(5, change.getFromRevision());
+			}
+			fileChangeInsert.setBoolean(6, change.isInManifest());
+			fileChangeInsert.setBoolean(7, change.isBinary());
+			fileChangeInsert.setInt(8, change.getLinesAdded());
+			fileChangeInsert.setInt(9, change.getLinesRemoved());
+			fileChangeInsert.setInt(10, change.getLinesChanged());
+			fileChangeInsert.addBatch();
+		}
+	}
+
+	protected void createIndexes() throws SQLException {
+		if (indexed) {
+			return;
+		}
+		long start = System.currentTimeMillis();
+		try (Statement stmt = connection.createStatement()) {
+			for (String sql : CREATE_INDEXES) {
+				stmt.execute(sql);
+			}
+		}
+		connection.commit();
+		indexed = true;
+		LOG.info("Created indexes in {} ms", System.currentTimeMillis() - start);
+	}
+
+	protected void createTables(boolean aRecreate) throws SQLException {
+		try (Statement stmt = connection.createStatement()) {
+			if (aRecreate) {
+				for (String table : TABLES) {
+					stmt.execute("DROP TABLE IF EXISTS " + table);
+				}
+			}
+			for (String sql : CREATE_TABLES) {
+				stmt.execute(sql);
+			}
+		}
+		connection.commit();
+	}
+
+	/**
+	 * Delete the rows of the revisions in the current batch which were written by an earlier run.
+	 */
+	protected void deleteExisting() throws SQLException {
+		int cnt = 0;
+		existingQuery.setInt(1, batchFirst);
+		existingQuery.setInt(2, batchLast);
+		try (ResultSet rs = existingQuery.executeQuery()) {
+			while (rs.next()) {
+				int id = rs.getInt(1);
+				if (!batchRevisions.contains(id)) {
+					continue;
+				}
+				for (PreparedStatement delete : deletes) {
+					delete.setInt(1, id);
+					delete.addBatch();
+				}
+				++cnt;
+			}
+		}
+		if (cnt == 0) {
+			return;
+		}
+		for (PreparedStatement delete : deletes) {
+			delete.executeBatch();
+		}
+		LOG.debug("Replacing {} revisions between r{} and r{}", cnt, batchFirst, batchLast);
+	}
+
+	protected void executeBatches() throws SQLException {
+		if (batched == 0) {
+			return;
+		}
+		deleteExisting();
+		revisionInsert.executeBatch();
+		issueInsert.executeBatch();
+		projectInsert.executeBatch();
+		fileChangeInsert.executeBatch();
+		batched = 0;
+		batchRevisions = new RevisionRangeSet();
+	}
+}
@@ -0,0 +1,28 @@
+package com.mpobjects.svn.logstats.jdbc;
+
+import javax.annotation.Nonnull;
+
+import org.apache.commons.configuration2.Configuration;
+
+import com.mpobjects.svn.logstats.BatchRevisionReporter;
+import com.mpobjects.svn.logstats.RevisionReporterException;
+import com.mpobjects.svn.logstats.RevisionReporterProvider;
+import com.mpobjects.svn.logstats.SingleRevisionBatchAdapter;
+
+/**
+ * Provides output.format=jdbc, the revisions are batched by the reporter itself.
+ */
+public class JdbcRevisionReporterProvider implements RevisionReporterProvider {
+
+	@Override
+	@Nonnull
+	public BatchRevisionReporter createReporter(@Nonnull Configuration aConfig) throws RevisionReporterException {
+		return new SingleRevisionBatchAdapter(JdbcRevisionReporter.open(aConfig));
+	}
+
+	@Override
+	@Nonnull
+	public String getFormat() {
+		return "jdbc";
+	}
+}
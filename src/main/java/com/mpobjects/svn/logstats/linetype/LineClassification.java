@@ -0,0 +1,79 @@
+package com.mpobjects.svn.logstats.linetype;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+import org.apache.commons.configuration2.Configuration;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Maps file name suffixes to a {@link LineSyntax}. The syntax of a file group is set with "linetype.&lt;group&gt;",
+ * like "linetype.SQL=sql", and applies to the suffixes of the group. With "auto" the syntax is derived from every
+ * suffix, for groups mixing languages.
+ */
+public class LineClassification {
+
+	private static final Logger LOG = LoggerFactory.getLogger(LineClassification.class);
+
+	/**
+	 * @return the configured classification, or null when no line types are configured
+	 */
+	@CheckForNull
+	public static LineClassification fromConfig(@Nonnull Configuration aConfig) {
+		LineClassification result = new LineClassification();
+		for (String groupId : aConfig.getList(String.class, "filegroup", Collections.emptyList())) {
+			if (StringUtils.isBlank(groupId) || !aConfig.containsKey("linetype." + groupId.trim())) {
+				continue;
+			}
+			String name = aConfig.getString("linetype." + groupId.trim());
+			boolean auto = "auto".equalsIgnoreCase(name);
+			LineSyntax syntax = LineSyntax.get(name);
+			if (syntax == null && !auto) {
+				LOG.error("Unknown line type syntax for file group {}: {}", groupId, name);
+				continue;
+			}
+			for (String suffix : aConfig.getList(String.class, "filegroup." + groupId.trim(), Collections.emptyList())) {
+				LineSyntax suffixSyntax = auto ? LineSyntax.forSuffix(suffix) : syntax;
+				if (suffixSyntax != null) {
+					result.add(suffix, suffixSyntax);
+				} else {
+					LOG.warn("No line type syntax for suffix {} of file group {}", suffix, groupId);
+				}
+			}
+		}
+		return result.suffixes.isEmpty() ? null : result;
+	}
+
+	protected final List<String> suffixes;
+
+	protected final List<LineSyntax> syntaxes;
+
+	public LineClassification() {
+		suffixes = new ArrayList<>();
+		syntaxes = new ArrayList<>();
+	}
+
+	public void add(@Nonnull String aSuffix, @Nonnull LineSyntax aSyntax) {
+		suffixes.add(aSuffix);
+		syntaxes.add(aSyntax);
+	}
+
+	/**
+	 * @return the syntax of the file, null if the file is not classified
+	 */
+	@CheckForNull
+	public LineSyntax getSyntax(@Nonnull String aFilename) {
+		for (int i = 0; i < suffixes.size(); ++i) {
+			if (StringUtils.endsWithIgnoreCase(aFilename, suffixes.get(i))) {
+				return syntaxes.get(i);
+			}
+		}
+		return null;
+	}
+}
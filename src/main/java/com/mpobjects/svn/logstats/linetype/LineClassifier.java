@@ -0,0 +1,137 @@
+package com.mpobjects.svn.logstats.linetype;
+
+import javax.annotation.Nonnull;
+
+import com.mpobjects.svn.logstats.model.LineType;
+
+/**
+ * Classifies consecutive lines of a file as code, comment or blank with a character level state machine. The block
+ * comment state is carried over to the next line, so one classifier has to be used per side of a diff.
+ */
+public class LineClassifier {
+
+	private final String blockEnd;
+
+	private final String blockStart;
+
+	private final boolean escapes;
+
+	private boolean inBlock;
+
+	private final String lineComment;
+
+	private final String quotes;
+
+	/**
+	 * Characters (below 128) which may start a comment or string
+	 */
+	private final boolean[] special;
+
+	private final LineSyntax syntax;
+
+	public LineClassifier(@Nonnull LineSyntax aSyntax) {
+		syntax = aSyntax;
+		lineComment = aSyntax.getLineComment();
+		blockStart = aSyntax.getBlockStart();
+		blockEnd = aSyntax.getBlockEnd();
+		quotes = aSyntax.getQuotes();
+		escapes = aSyntax.hasEscapes();
+		special = new boolean[128];
+		if (lineComment != null) {
+			special[lineComment.charAt(0)] = true;
+		}
+		special[blockStart.charAt(0)] = true;
+		for (int i = 0; i < quotes.length(); ++i) {
+			special[quotes.charAt(i)] = true;
+		}
+	}
+
+	/**
+	 * Classify the next line.
+	 *
+	 * @param aOffset
+	 *            the start of the content, e.g. 1 to skip the diff marker
+	 */
+	@Nonnull
+	public LineType classify(@Nonnull String aLine, int aOffset) {
+		final int len = aLine.length();
+		boolean code = false;
+		boolean comment = false;
+		int i = aOffset;
+		while (i < len) {
+			if (inBlock) {
+				comment = true;
+				int end = aLine.indexOf(blockEnd, i);
+				if (end < 0) {
+					break;
+				}
+				inBlock = false;
+				i = end + blockEnd.length();
+				continue;
+			}
+			final char c = aLine.charAt(i);
+			if (c <= ' ') {
+				++i;
+				continue;
+			}
+			if (c < 128 && special[c]) {
+				if (lineComment != null && aLine.startsWith(lineComment, i)) {
+					comment = true;
+					break;
+				}
+				if (aLine.startsWith(blockStart, i)) {
+					inBlock = true;
+					i += blockStart.length();
+					continue;
+				}
+				if (quotes.indexOf(c) >= 0) {
+					code = true;
+					i = skipString(aLine, i + 1, c);
+					continue;
+				}
+			}
+			code = true;
+			++i;
+		}
+		if (code) {
+			return LineType.CODE;
+		}
+		return comment ? LineType.COMMENT : LineType.BLANK;
+	}
+
+	@Nonnull
+	public LineSyntax getSyntax() {
+		return syntax;
+	}
+
+	/**
+	 * @return true if the last line ended inside a block comment
+	 */
+	public boolean isInBlockComment() {
+		return inBlock;
+	}
+
+	/**
+	 * Forget the state, for the start of a new file.
+	 */
+	public void reset() {
+		inBlock = false;
+	}
+
+	/**
+	 * @return the position after the closing quote, or the end of the line
+	 */
+	private int skipString(String aLine, int aStart, char aQuote) {
+		final int len = aLine.length();
+		for (int i = aStart; i < len; ++i) {
+			char c = aLine.charAt(i);
+			if (c == aQuote) {
+				return i + 1;
+			}
+			if (escapes && c == '\\') {
+				++i;
+			}
+		}
+		return len;
+	}
+}
@@ -0,0 +1,101 @@
+package com.mpobjects.svn.logstats.linetype;
+
+import javax.annotation.CheckForNull;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Comment and string syntax of a language.
+ */
+public enum LineSyntax {
+	CSS(null, "/*", "*/", "\"'", true),
+	HTML(null, "<!--", "-->", "", false),
+	JAVA("//", "/*", "*/", "\"'", true),
+	JS("//", "/*", "*/", "\"'`", true),
+	SQL("--", "/*", "*/", "'\"", false),
+	XML(null, "<!--", "-->", "", false);
+
+	@CheckForNull
+	public static LineSyntax get(String aName) {
+		for (LineSyntax syntax : values()) {
+			if (syntax.name().equalsIgnoreCase(aName)) {
+				return syntax;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return the syntax for a file name suffix, like ".java" or ".hbm.xml", or null
+	 */
+	@CheckForNull
+	public static LineSyntax forSuffix(String aSuffix) {
+		String extension = StringUtils.substringAfterLast(aSuffix, ".");
+		switch (extension.toLowerCase()) {
+			case "css":
+				return CSS;
+			case "htm":
+			case "html":
+			case "jsp":
+				return HTML;
+			case "java":
+				return JAVA;
+			case "js":
+			case "ts":
+				return JS;
+			case "sql":
+				return SQL;
+			case "xml":
+			case "xsd":
+			case "xsl":
+				return XML;
+			default:
+				return null;
+		}
+	}
+
+	private final String blockEnd;
+
+	private final String blockStart;
+
+	private final boolean escapes;
+
+	private final String lineComment;
+
+	private final String quotes;
+
+	private LineSyntax(String aLineComment, String aBlockStart, String aBlockEnd, String aQuotes, boolean aEscapes) {
+		lineComment = aLineComment;
+		blockStart = aBlockStart;
+		blockEnd = aBlockEnd;
+		quotes = aQuotes;
+		escapes = aEscapes;
+	}
+
+	public String getBlockEnd() {
+		return blockEnd;
+	}
+
+	public String getBlockStart() {
+		return blockStart;
+	}
+
+	@CheckForNull
+	public String getLineComment() {
+		return lineComment;
+	}
+
+	/**
+	 * @return the characters starting a string literal
+	 */
+	public String getQuotes() {
+		return quotes;
+	}
+
+	/**
+	 * @return true if a backslash escapes the next character in a string
+	 */
+	public boolean hasEscapes() {
+		return escapes;
+	}
+}
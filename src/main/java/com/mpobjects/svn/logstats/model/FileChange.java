@@ -22,10 +22,25 @@ public class FileChange {
 
 	protected int linesAdded;
 
+	/**
+	 * Added lines per {@link LineType}, null when the file was not classified
+	 */
+	protected int[] linesAddedByType;
+
 	protected int linesChanged;
 
 	protected int linesRemoved;
 
+	/**
+	 * Removed lines per {@link LineType}, null when the file was not classified
+	 */
+	protected int[] linesRemovedByType;
+
+	/**
+	 * Revision which made the same diff before, 0 when the diff is not a replay
+	 */
+	protected int replayOf;
+
 	public FileChange(String aFilename, ChangeType aChangeType) {
 		filename = aFilename;
 		changeType = aChangeType;
@@ -52,6 +67,13 @@ public class FileChange {
 		return linesAdded;
 	}
 
+	/**
+	 * @return the added lines of the type, 0 when the file was not classified
+	 */
+	public int getLinesAdded(LineType aType) {
+		return linesAddedByType == null ? 0 : linesAddedByType[aType.ordinal()];
+	}
+
 	public int getLinesChanged() {
 		return linesChanged;
 	}
@@ -60,14 +82,60 @@ public class FileChange {
 		return linesRemoved;
 	}
 
+	/**
+	 * @return the removed lines of the type, 0 when the file was not classified
+	 */
+	public int getLinesRemoved(LineType aType) {
+		return linesRemovedByType == null ? 0 : linesRemovedByType[aType.ordinal()];
+	}
+
+	/**
+	 * @return the revision which made the same diff before, 0 when this is not a replay
+	 */
+	public int getReplayOf() {
+		return replayOf;
+	}
+
 	public boolean isBinary() {
 		return binary;
 	}
 
+	/**
+	 * @return true if the added and removed lines were classified by {@link LineType}
+	 */
+	public boolean isClassified() {
+		return linesAddedByType != null;
+	}
+
 	public boolean isInManifest() {
 		return inManifest;
 	}
 
+	/**
+	 * @return true if the diff replays the diff of an earlier processed revision, like a merge or cherry-pick
+	 */
+	public boolean isReplay() {
+		return replayOf != 0;
+	}
+
+	/**
+	 * Reinitialize a recycled instance, see {@link com.mpobjects.svn.logstats.RevisionReporter#retainsRevisions()}.
+	 */
+	public void reset(String aFilename, ChangeType aChangeType) {
+		filename = aFilename;
+		changeType = aChangeType;
+		inManifest = true;
+		binary = false;
+		fromPath = null;
+		fromRevision = 0;
+		linesAdded = 0;
+		linesChanged = 0;
+		linesRemoved = 0;
+		linesAddedByType = null;
+		linesRemovedByType = null;
+		replayOf = 0;
+	}
+
 	public void setBinary(boolean aBinary) {
 		binary = aBinary;
 	}
@@ -88,6 +156,14 @@ public class FileChange {
 		linesAdded = aLinesAdded;
 	}
 
+	public void setLinesAdded(LineType aType, int aLinesAdded) {
+		if (linesAddedByType == null) {
+			linesAddedByType = new int[LineType.values().length];
+			linesRemovedByType = new int[LineType.values().length];
+		}
+		linesAddedByType[aType.ordinal()] = aLinesAdded;
+	}
+
 	public void setLinesChanged(int aLinesChanged) {
 		linesChanged = aLinesChanged;
 	}
@@ -96,6 +172,18 @@ public class FileChange {
 		linesRemoved = aLinesRemoved;
 	}
 
+	public void setLinesRemoved(LineType aType, int aLinesRemoved) {
+		if (linesRemovedByType == null) {
+			linesAddedByType = new int[LineType.values().length];
+			linesRemovedByType = new int[LineType.values().length];
+		}
+		linesRemovedByType[aType.ordinal()] = aLinesRemoved;
+	}
+
+	public void setReplayOf(int aReplayOf) {
+		replayOf = aReplayOf;
+	}
+
 	@Override
 	public String toString() {
 		ToStringBuilder sb = new ToStringBuilder(this, ToStringStyle.NO_CLASS_NAME_STYLE);
@@ -0,0 +1,16 @@
+package com.mpobjects.svn.logstats.model;
+
+public enum LineType {
+	/**
+	 * Only whitespace
+	 */
+	BLANK,
+	/**
+	 * Contains code, possibly with a comment
+	 */
+	CODE,
+	/**
+	 * Only comment
+	 */
+	COMMENT;
+}
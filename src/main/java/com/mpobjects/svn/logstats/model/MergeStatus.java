@@ -1,5 +1,14 @@
 package com.mpobjects.svn.logstats.model;
 
 public enum MergeStatus {
-	MERGED, NORMAL, UNSURE
+	/**
+	 * The revision merges other revisions
+	 */
+	MERGED,
+	/**
+	 * The revision was merged to another branch by a later revision
+	 */
+	MERGE_SOURCE,
+	NORMAL,
+	UNSURE
 }
@@ -1,5 +1,6 @@
 package com.mpobjects.svn.logstats.model;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
@@ -23,6 +24,11 @@ public class Revision {
 
 	protected Set<String> issues;
 
+	/**
+	 * Source path to the revisions which were merged by this revision, null when none
+	 */
+	protected Map<String, RevisionRangeSet> mergeInfo;
+
 	protected MergeStatus mergeStatus;
 
 	protected Set<String> projects;
@@ -39,6 +45,23 @@ public class Revision {
 		mergeStatus = MergeStatus.NORMAL;
 	}
 
+	/**
+	 * Copy with its own issues, projects and merge status. The file changes and merge info are shared.
+	 */
+	public Revision(Revision aOther) {
+		id = aOther.id;
+		author = aOther.author;
+		timestamp = aOther.timestamp;
+		comment = aOther.comment;
+		fileChanges = aOther.fileChanges;
+		issues = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+		issues.addAll(aOther.issues);
+		projects = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+		projects.addAll(aOther.projects);
+		mergeInfo = aOther.mergeInfo;
+		mergeStatus = aOther.mergeStatus;
+	}
+
 	public void addFileChange(FileChange aFileChange) {
 		if (fileChanges.containsKey(aFileChange.getFilename())) {
 			// TODO: error because duplicate
@@ -46,6 +69,21 @@ public class Revision {
 		fileChanges.put(aFileChange.getFilename(), aFileChange);
 	}
 
+	/**
+	 * Record revisions merged by this revision.
+	 */
+	public void addMergeInfo(String aSourcePath, RevisionRangeSet aRevisions) {
+		if (mergeInfo == null) {
+			mergeInfo = new HashMap<>();
+		}
+		RevisionRangeSet existing = mergeInfo.get(aSourcePath);
+		if (existing == null) {
+			mergeInfo.put(aSourcePath, aRevisions);
+		} else {
+			existing.addAll(aRevisions);
+		}
+	}
+
 	public String getAuthor() {
 		return author;
 	}
@@ -112,6 +150,16 @@ public class Revision {
 		return res.get();
 	}
 
+	/**
+	 * @return source path to the merged revisions, parsed from the svn:mergeinfo changes
+	 */
+	public Map<String, RevisionRangeSet> getMergeInfo() {
+		if (mergeInfo == null) {
+			return Collections.emptyMap();
+		}
+		return mergeInfo;
+	}
+
 	public MergeStatus getMergeStatus() {
 		return mergeStatus;
 	}
@@ -124,6 +172,21 @@ public class Revision {
 		return timestamp;
 	}
 
+	/**
+	 * Reinitialize a recycled instance, see {@link com.mpobjects.svn.logstats.RevisionReporter#retainsRevisions()}.
+	 */
+	public void reset(int aId, String aAuthor, DateTime aTimestamp) {
+		id = aId;
+		author = aAuthor;
+		timestamp = aTimestamp;
+		comment = null;
+		fileChanges.clear();
+		issues.clear();
+		projects.clear();
+		mergeInfo = null;
+		mergeStatus = MergeStatus.NORMAL;
+	}
+
 	public void setComment(String aComment) {
 		comment = aComment;
 	}
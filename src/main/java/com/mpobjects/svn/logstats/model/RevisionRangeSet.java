@@ -0,0 +1,199 @@
+package com.mpobjects.svn.logstats.model;
+
+import java.util.Arrays;
+
+import javax.annotation.Nonnull;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
+
+/**
+ * Compact set of revisions stored as sorted, disjoint, inclusive ranges in a primitive array. Ranges added in
+ * ascending order are appended directly, others are inserted in place and merged with their neighbours.
+ */
+public class RevisionRangeSet {
+
+	/**
+	 * Parse a mergeinfo range list like "r100-200,205*" or "100-200,205". The "r" prefix and the non-inheritable
+	 * marker are optional.
+	 */
+	@Nonnull
+	public static RevisionRangeSet parse(String aRanges) {
+		RevisionRangeSet result = new RevisionRangeSet();
+		for (String range : StringUtils.split(StringUtils.defaultString(aRanges), ',')) {
+			range = StringUtils.removeEnd(range.trim(), "*");
+			range = StringUtils.removeStart(range, "r");
+			int start;
+			int end;
+			if (range.contains("-")) {
+				start = NumberUtils.toInt(StringUtils.substringBefore(range, "-"));
+				end = NumberUtils.toInt(StringUtils.removeStart(StringUtils.substringAfter(range, "-"), "r"));
+			} else {
+				start = NumberUtils.toInt(range);
+				end = start;
+			}
+			if (start > 0 && end >= start) {
+				result.add(start, end);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Sorted ranges, not overlapping or touching: start0, end0, start1, end1, ...
+	 */
+	private int[] ranges;
+
+	private int size;
+
+	public RevisionRangeSet() {
+		ranges = new int[8];
+	}
+
+	/**
+	 * Add the inclusive range.
+	 */
+	public void add(int aStart, int aEnd) {
+		if (aEnd < aStart) {
+			return;
+		}
+		if (size == 0 || aStart > ranges[size - 1] + 1L) {
+			ranges = ensure(ranges, size + 2);
+			ranges[size++] = aStart;
+			ranges[size++] = aEnd;
+			return;
+		}
+		// first range ending at or after the revision before the start, it exists since the last one does
+		int first = findFirstEnd(aStart - 1);
+		if (ranges[first * 2] > aEnd + 1L) {
+			// falls between two ranges
+			ranges = ensure(ranges, size + 2);
+			System.arraycopy(ranges, first * 2, ranges, first * 2 + 2, size - first * 2);
+			ranges[first * 2] = aStart;
+			ranges[first * 2 + 1] = aEnd;
+			size += 2;
+			return;
+		}
+		// merge with all ranges starting at or before the revision after the end
+		int last = first;
+		while (last * 2 + 2 < size && ranges[last * 2 + 2] <= aEnd + 1L) {
+			++last;
+		}
+		ranges[first * 2] = Math.min(ranges[first * 2], aStart);
+		ranges[first * 2 + 1] = Math.max(ranges[last * 2 + 1], aEnd);
+		if (last > first) {
+			System.arraycopy(ranges, last * 2 + 2, ranges, first * 2 + 2, size - last * 2 - 2);
+			size -= (last - first) * 2;
+		}
+	}
+
+	public void addAll(@Nonnull RevisionRangeSet aOther) {
+		for (int i = 0; i < aOther.size; i += 2) {
+			add(aOther.ranges[i], aOther.ranges[i + 1]);
+		}
+	}
+
+	/**
+	 * @return a new set with the revisions of this set which are not in the other set
+	 */
+	@Nonnull
+	public RevisionRangeSet andNot(@Nonnull RevisionRangeSet aOther) {
+		RevisionRangeSet result = new RevisionRangeSet();
+		int j = 0;
+		for (int i = 0; i < size; i += 2) {
+			int start = ranges[i];
+			int end = ranges[i + 1];
+			while (j < aOther.size && aOther.ranges[j + 1] < start) {
+				j += 2;
+			}
+			int k = j;
+			while (start <= end && k < aOther.size && aOther.ranges[k] <= end) {
+				if (aOther.ranges[k] > start) {
+					result.add(start, aOther.ranges[k] - 1);
+				}
+				start = Math.max(start, aOther.ranges[k + 1] + 1);
+				k += 2;
+			}
+			if (start <= end) {
+				result.add(start, end);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return the number of revisions in the set
+	 */
+	public long cardinality() {
+		long cnt = 0;
+		for (int i = 0; i < size; i += 2) {
+			cnt += ranges[i + 1] - ranges[i] + 1L;
+		}
+		return cnt;
+	}
+
+	public boolean contains(int aRevision) {
+		// binary search for the last range starting at or before the revision
+		int lo = 0;
+		int hi = size / 2 - 1;
+		while (lo <= hi) {
+			int mid = (lo + hi) >>> 1;
+			if (ranges[mid * 2] <= aRevision) {
+				lo = mid + 1;
+			} else {
+				hi = mid - 1;
+			}
+		}
+		return hi >= 0 && ranges[hi * 2 + 1] >= aRevision;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * @return the number of disjoint ranges
+	 */
+	public int rangeCount() {
+		return size / 2;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < size; i += 2) {
+			if (i > 0) {
+				sb.append(',');
+			}
+			sb.append('r').append(ranges[i]);
+			if (ranges[i + 1] != ranges[i]) {
+				sb.append('-').append(ranges[i + 1]);
+			}
+		}
+		return sb.toString();
+	}
+
+	private int[] ensure(int[] aArray, int aSize) {
+		if (aArray.length >= aSize) {
+			return aArray;
+		}
+		return Arrays.copyOf(aArray, Math.max(aSize, aArray.length + (aArray.length >> 1) + 2));
+	}
+
+	/**
+	 * @return the index of the first range ending at or after the revision, the number of ranges when none does
+	 */
+	private int findFirstEnd(int aRevision) {
+		int lo = 0;
+		int hi = size / 2 - 1;
+		while (lo <= hi) {
+			int mid = (lo + hi) >>> 1;
+			if (ranges[mid * 2 + 1] < aRevision) {
+				lo = mid + 1;
+			} else {
+				hi = mid - 1;
+			}
+		}
+		return lo;
+	}
+}
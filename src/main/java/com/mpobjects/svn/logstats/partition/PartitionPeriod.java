@@ -0,0 +1,82 @@
+package com.mpobjects.svn.logstats.partition;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+import org.joda.time.DateTime;
+import org.joda.time.LocalDate;
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
+
+/**
+ * The time span of a partition.
+ */
+public enum PartitionPeriod {
+	DAY("yyyy-MM-dd"), MONTH("yyyy-MM"), WEEK("xxxx-'W'ww"), YEAR("yyyy");
+
+	@CheckForNull
+	public static PartitionPeriod get(String aName) {
+		for (PartitionPeriod period : values()) {
+			if (period.name().equalsIgnoreCase(aName)) {
+				return period;
+			}
+		}
+		return null;
+	}
+
+	private final DateTimeFormatter format;
+
+	private PartitionPeriod(String aPattern) {
+		format = DateTimeFormat.forPattern(aPattern);
+	}
+
+	/**
+	 * @return the partition key of the timestamp
+	 */
+	@Nonnull
+	public String getKey(@Nonnull DateTime aTimestamp) {
+		return format.print(aTimestamp);
+	}
+
+	/**
+	 * @return the partition key of the date
+	 */
+	@Nonnull
+	public String getKey(@Nonnull LocalDate aDate) {
+		return format.print(aDate);
+	}
+
+	/**
+	 * @return the first day of the next partition
+	 */
+	@Nonnull
+	public LocalDate next(@Nonnull LocalDate aStart) {
+		switch (this) {
+			case DAY:
+				return aStart.plusDays(1);
+			case WEEK:
+				return aStart.plusWeeks(1);
+			case YEAR:
+				return aStart.plusYears(1);
+			default:
+				return aStart.plusMonths(1);
+		}
+	}
+
+	/**
+	 * @return the first day of the partition containing the date
+	 */
+	@Nonnull
+	public LocalDate start(@Nonnull LocalDate aDate) {
+		switch (this) {
+			case DAY:
+				return aDate;
+			case WEEK:
+				return aDate.withDayOfWeek(1);
+			case YEAR:
+				return aDate.withDayOfYear(1);
+			default:
+				return aDate.withDayOfMonth(1);
+		}
+	}
+}
@@ -0,0 +1,278 @@
+package com.mpobjects.svn.logstats.partition;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import javax.annotation.Nonnull;
+
+import org.apache.commons.configuration2.BaseConfiguration;
+import org.apache.commons.configuration2.CompositeConfiguration;
+import org.apache.commons.configuration2.Configuration;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVPrinter;
+import org.apache.commons.csv.CSVRecord;
+import org.joda.time.DateTime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.mpobjects.svn.logstats.CsvRevisionReporter;
+import com.mpobjects.svn.logstats.RevisionReporter;
+import com.mpobjects.svn.logstats.RevisionReporterException;
+import com.mpobjects.svn.logstats.model.Revision;
+
+/**
+ * Writes the CSV output of {@link CsvRevisionReporter} into a file per period, based on the revision timestamp. Every
+ * partition is written to a temporary file which replaces the partition file on {@link #flush()}, after which the
+ * manifest (partition.dir/manifest.csv) is updated with the row count and revision range of the partition. Partitions
+ * not written by this run are left untouched, so several reporters can write different partitions concurrently.
+ * <p>
+ * Settings: partition.dir, partition.prefix and partition.period (day, week, month or year).
+ */
+public class PartitionedCsvRevisionReporter implements RevisionReporter, Closeable {
+
+	protected class Partition {
+		protected int firstRevision = Integer.MAX_VALUE;
+
+		protected final String key;
+
+		protected int lastRevision;
+
+		/**
+		 * Writes the temporary file, null while it is closed
+		 */
+		protected CsvRevisionReporter reporter;
+
+		protected int rows;
+
+		protected final Path temp;
+
+		protected Partition(String aKey) throws IOException, RevisionReporterException {
+			key = aKey;
+			temp = Files.createTempFile(directory, prefix + "-" + aKey + "-", ".tmp");
+			reporter = new CsvRevisionReporter(Files.newBufferedWriter(temp, StandardCharsets.UTF_8), config);
+		}
+
+		/**
+		 * Close the temporary file, it is reopened for appending when another revision of the period arrives.
+		 */
+		protected void close() throws IOException {
+			if (reporter != null) {
+				reporter.close();
+				reporter = null;
+			}
+		}
+
+		protected void report(Revision aRevision) throws IOException, RevisionReporterException {
+			if (reporter == null) {
+				reporter = new CsvRevisionReporter(Files.newBufferedWriter(temp, StandardCharsets.UTF_8, StandardOpenOption.APPEND), appendConfig);
+			}
+			reporter.report(aRevision);
+			++rows;
+			firstRevision = Math.min(firstRevision, aRevision.getId());
+			lastRevision = Math.max(lastRevision, aRevision.getId());
+		}
+	}
+
+	private static final Logger LOG = LoggerFactory.getLogger(PartitionedCsvRevisionReporter.class);
+
+	private static final String[] MANIFEST_HEADER = { "Partition", "File", "Rows", "First Revision", "Last Revision", "Updated" };
+
+	/**
+	 * File locks are held by the JVM, so threads in the same JVM must be serialized separately
+	 */
+	private static final Object MANIFEST_LOCK = new Object();
+
+	/**
+	 * The configuration without CSV header, for reopened partitions
+	 */
+	protected final Configuration appendConfig;
+
+	protected final Configuration config;
+
+	/**
+	 * The partition of the previous revision, the only one with an open file
+	 */
+	protected Partition current;
+
+	protected final Path directory;
+
+	protected final Map<String, Partition> partitions;
+
+	protected final PartitionPeriod period;
+
+	protected final String prefix;
+
+	/**
+	 * Only these partitions are written, all when empty
+	 */
+	protected final Set<String> selected;
+
+	public PartitionedCsvRevisionReporter(@Nonnull Configuration aConfig) throws RevisionReporterException {
+		config = aConfig;
+		BaseConfiguration noHeader = new BaseConfiguration();
+		noHeader.setProperty("csv.withheader", false);
+		appendConfig = new CompositeConfiguration(Arrays.asList(noHeader, aConfig));
+		period = PartitionPeriod.get(config.getString("partition.period", "month"));
+		if (period == null) {
+			throw new RevisionReporterException("Unknown partition period: " + config.getString("partition.period"));
+		}
+		prefix = config.getString("partition.prefix", "svnstats");
+		directory = Paths.get(config.getString("partition.dir", "partitions"));
+		partitions = new TreeMap<>();
+		selected = new HashSet<>();
+		try {
+			Files.createDirectories(directory);
+		} catch (IOException e) {
+			throw new RevisionReporterException("Cannot create partition directory " + directory, e);
+		}
+	}
+
+	/**
+	 * Discard the partitions which were not flushed.
+	 */
+	@Override
+	public void close() throws IOException {
+		for (Partition partition : partitions.values()) {
+			partition.close();
+			Files.deleteIfExists(partition.temp);
+		}
+		partitions.clear();
+		current = null;
+	}
+
+	/**
+	 * Replace the partition files and update the manifest. Selected partitions without revisions are written empty,
+	 * so re-running a period without revisions clears its old partition.
+	 */
+	@Override
+	public void flush() throws RevisionReporterException {
+		try {
+			for (String key : selected) {
+				if (!partitions.containsKey(key)) {
+					partitions.put(key, new Partition(key));
+				}
+			}
+			Map<String, Partition> written = new TreeMap<>();
+			for (Partition partition : partitions.values()) {
+				partition.close();
+				Files.move(partition.temp, getPartitionFile(partition.key), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+				written.put(partition.key, partition);
+				LOG.info("Wrote partition {} with {} revisions", partition.key, partition.rows);
+			}
+			partitions.clear();
+			current = null;
+			updateManifest(written);
+		} catch (IOException e) {
+			throw new RevisionReporterException("Failure writing partitions.", e);
+		}
+	}
+
+	@Nonnull
+	public PartitionPeriod getPeriod() {
+		return period;
+	}
+
+	@Override
+	public void report(@Nonnull Revision aRevision) throws RevisionReporterException {
+		String key = period.getKey(aRevision.getTimestamp());
+		if (!selected.isEmpty() && !selected.contains(key)) {
+			// ranged fetches by date include a revision of the previous period
+			return;
+		}
+		Partition partition = partitions.get(key);
+		try {
+			if (partition == null) {
+				partition = new Partition(key);
+				partitions.put(key, partition);
+			}
+			if (current != null && current != partition) {
+				// the revisions are ordered by time, so the previous period is usually complete
+				current.close();
+			}
+			current = partition;
+			partition.report(aRevision);
+		} catch (IOException e) {
+			throw new RevisionReporterException("Cannot write partition " + key, e);
+		}
+	}
+
+	@Override
+	public boolean retainsRevisions() {
+		return false;
+	}
+
+	/**
+	 * Only write the given partitions, revisions of other periods are ignored.
+	 */
+	public void selectPartitions(@Nonnull Set<String> aKeys) {
+		selected.clear();
+		selected.addAll(aKeys);
+	}
+
+	@Nonnull
+	protected Path getPartitionFile(String aKey) {
+		return directory.resolve(prefix + "-" + aKey + ".csv");
+	}
+
+	/**
+	 * Replace the manifest entries of the written partitions, under a file lock.
+	 */
+	protected void updateManifest(Map<String, Partition> aWritten) throws IOException {
+		if (aWritten.isEmpty()) {
+			return;
+		}
+		final Path manifest = directory.resolve("manifest.csv");
+		synchronized (MANIFEST_LOCK) {
+			try (FileChannel lockChannel = FileChannel.open(directory.resolve(".manifest.lock"), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+				FileLock lock = lockChannel.lock();
+				try {
+					Map<String, String[]> entries = new TreeMap<>();
+					if (Files.exists(manifest)) {
+						try (Reader reader = Files.newBufferedReader(manifest, StandardCharsets.UTF_8);
+								CSVParser parser = CSVFormat.RFC4180.withFirstRecordAsHeader().parse(reader)) {
+							for (CSVRecord record : parser) {
+								String[] entry = new String[MANIFEST_HEADER.length];
+								for (int i = 0; i < entry.length; ++i) {
+									entry[i] = record.get(i);
+								}
+								entries.put(entry[0], entry);
+							}
+						}
+					}
+					final String now = DateTime.now().toString();
+					for (Partition partition : aWritten.values()) {
+						entries.put(partition.key,
+								new String[] { partition.key, getPartitionFile(partition.key).getFileName().toString(), Integer.toString(partition.rows),
+										partition.rows == 0 ? "" : Integer.toString(partition.firstRevision),
+										partition.rows == 0 ? "" : Integer.toString(partition.lastRevision), now });
+					}
+					Path temp = Files.createTempFile(directory, "manifest-", ".tmp");
+					try (CSVPrinter printer = new CSVPrinter(Files.newBufferedWriter(temp, StandardCharsets.UTF_8),
+							CSVFormat.RFC4180.withHeader(MANIFEST_HEADER))) {
+						for (String[] entry : entries.values()) {
+							printer.printRecord((Object[]) entry);
+						}
+					}
+					Files.move(temp, manifest, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+				} finally {
+					lock.release();
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,116 @@
+package com.mpobjects.svn.logstats.partition;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.configuration2.Configuration;
+import org.joda.time.LocalDate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.mpobjects.svn.logstats.SvnLog;
+import com.mpobjects.svn.logstats.SvnLogParser;
+
+/**
+ * Fetches the partitions of {@link PartitionedCsvRevisionReporter} in parallel, every partition with its own svn log
+ * date range, parser and writer.
+ * <p>
+ * Usage: <code>SvnLogPartitioned --from yyyy-mm-dd [--to yyyy-mm-dd] [--only partition]... -- svn log arguments</code>.
+ * The svn log arguments should not contain a revision range. With --only just the given partitions are fetched and
+ * replaced, like "--only 2017-05" to redo May 2017 with the month period. The number of parallel svn processes is set
+ * with partition.threads.
+ */
+public class SvnLogPartitioned {
+
+	private static final Logger LOG = LoggerFactory.getLogger(SvnLogPartitioned.class);
+
+	public static void main(String[] args) throws Exception {
+		SvnLogPartitioned partitioned = new SvnLogPartitioned();
+		partitioned.exec(args);
+	}
+
+	public SvnLogPartitioned() {
+	}
+
+	public void exec(String[] aArgs) throws Exception {
+		final Configuration config = SvnLog.loadConfiguration();
+		LocalDate from = null;
+		LocalDate to = LocalDate.now().plusDays(1);
+		List<String> only = new ArrayList<>();
+		List<String> svnArgs = new ArrayList<>();
+		for (int i = 0; i < aArgs.length; ++i) {
+			if ("--".equals(aArgs[i])) {
+				for (++i; i < aArgs.length; ++i) {
+					svnArgs.add(aArgs[i]);
+				}
+			} else if ("--from".equals(aArgs[i]) && i + 1 < aArgs.length) {
+				from = LocalDate.parse(aArgs[++i]);
+			} else if ("--to".equals(aArgs[i]) && i + 1 < aArgs.length) {
+				to = LocalDate.parse(aArgs[++i]);
+			} else if ("--only".equals(aArgs[i]) && i + 1 < aArgs.length) {
+				only.add(aArgs[++i]);
+			} else {
+				throw new IllegalArgumentException("Unknown argument: " + aArgs[i]);
+			}
+		}
+		if (from == null) {
+			throw new IllegalArgumentException("Missing --from date");
+		}
+
+		final PartitionPeriod period = new PartitionedCsvRevisionReporter(config).getPeriod();
+		final Map<String, LocalDate> partitions = new LinkedHashMap<>();
+		for (LocalDate start = period.start(from); start.isBefore(to); start = period.next(start)) {
+			String key = period.getKey(start);
+			if (only.isEmpty() || only.contains(key)) {
+				partitions.put(key, start);
+			}
+		}
+		LOG.info("Fetching {} partitions", partitions.size());
+
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(config.getInt("partition.threads", 4), 1));
+		try {
+			Map<String, Future<?>> results = new LinkedHashMap<>();
+			for (Entry<String, LocalDate> partition : partitions.entrySet()) {
+				results.put(partition.getKey(),
+						executor.submit(() -> fetch(config, partition.getKey(), partition.getValue(), period.next(partition.getValue()), svnArgs)));
+			}
+			int failures = 0;
+			for (Entry<String, Future<?>> result : results.entrySet()) {
+				try {
+					result.getValue().get();
+				} catch (ExecutionException e) {
+					++failures;
+					LOG.error("Partition {} failed: {}", result.getKey(), e.getCause().getMessage(), e.getCause());
+				}
+			}
+			if (failures > 0) {
+				LOG.error("{} partitions failed, rerun them with --only", failures);
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	private Void fetch(Configuration aConfig, String aKey, LocalDate aStart, LocalDate aEnd, List<String> aArgs) throws Exception {
+		try (PartitionedCsvRevisionReporter reporter = new PartitionedCsvRevisionReporter(aConfig)) {
+			reporter.selectPartitions(Collections.singleton(aKey));
+			SvnLogParser parser = new SvnLogParser(reporter);
+			SvnLog.configureParser(parser, aConfig);
+			List<String> args = new ArrayList<>();
+			args.add("-r");
+			args.add("{" + aStart + "}:{" + aEnd + "}");
+			args.addAll(aArgs);
+			SvnLog.execute(SvnLog.createLogCommand(SvnLog.pushDownPaths(args.toArray(new String[0]), aConfig)), parser);
+			parser.flush();
+		}
+		return null;
+	}
+}
@@ -0,0 +1,284 @@
+package com.mpobjects.svn.logstats.profile;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+import org.apache.commons.configuration2.BaseConfiguration;
+import org.apache.commons.configuration2.CompositeConfiguration;
+import org.apache.commons.configuration2.Configuration;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.mpobjects.svn.logstats.DiffListener;
+import com.mpobjects.svn.logstats.RevisionReporter;
+import com.mpobjects.svn.logstats.RevisionReporterException;
+import com.mpobjects.svn.logstats.SvnLog;
+import com.mpobjects.svn.logstats.model.FileChange;
+import com.mpobjects.svn.logstats.model.Revision;
+
+/**
+ * Reports the parsed revisions to the reporter of every settings profile next to the main reporter, so alternative
+ * settings are evaluated with a single svn log run. A profile overrides settings with "profile.&lt;name&gt;.&lt;key&gt;",
+ * like "profile.wide.filegroup"; its output defaults to the main output prefixed with the profile name.
+ * <p>
+ * Every profile runs on its own thread and receives its own copy of the revision, which shares the file changes, so
+ * the issues and projects found with the profile settings do not affect the others. The parser settings, like path.*
+ * and replay.*, are shared by all profiles. The diff lines are passed on to the main reporter when it is a
+ * {@link DiffListener}, a diff listener in a profile does not receive them.
+ * <p>
+ * Settings: profile (the profile names, can be repeated) and profile.queue (revisions a profile may lag behind).
+ */
+public class ProfileRevisionReporter implements RevisionReporter, DiffListener, Closeable {
+
+	/**
+	 * The reporter of a profile and its thread.
+	 */
+	protected static class Profile {
+		protected final ExecutorService executor;
+
+		protected volatile Throwable failure;
+
+		protected final String name;
+
+		/**
+		 * Revisions submitted but not yet reported
+		 */
+		protected final Semaphore queue;
+
+		protected final RevisionReporter reporter;
+
+		public Profile(@Nonnull String aName, @Nonnull RevisionReporter aReporter, int aQueueSize) {
+			name = aName;
+			reporter = aReporter;
+			queue = new Semaphore(aQueueSize);
+			executor = Executors.newSingleThreadExecutor(r -> {
+				Thread thread = new Thread(r, "profile-" + aName);
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+
+		protected void report(@Nonnull Revision aRevision) {
+			try {
+				if (failure == null) {
+					reporter.report(aRevision);
+				}
+			} catch (RevisionReporterException | RuntimeException e) {
+				failure = e;
+			} finally {
+				queue.release();
+			}
+		}
+	}
+
+	private static final Logger LOG = LoggerFactory.getLogger(ProfileRevisionReporter.class);
+
+	/**
+	 * The settings of the profile: its own settings on top of the main settings.
+	 */
+	@Nonnull
+	public static Configuration createProfileConfiguration(@Nonnull Configuration aConfig, @Nonnull String aName) {
+		BaseConfiguration defaults = new BaseConfiguration();
+		Path output = Paths.get(aConfig.getString("output", "output.csv"));
+		defaults.setProperty("output", output.resolveSibling(aName + "-" + output.getFileName()).toString());
+		return new CompositeConfiguration(Arrays.asList(aConfig.subset("profile." + aName), defaults, aConfig));
+	}
+
+	/**
+	 * @return the configured profile names
+	 */
+	@Nonnull
+	public static List<String> getProfileNames(@Nonnull Configuration aConfig) {
+		List<String> result = new ArrayList<>();
+		for (String name : aConfig.getList(String.class, "profile", Collections.emptyList())) {
+			if (!StringUtils.isBlank(name) && !result.contains(name.trim())) {
+				result.add(name.trim());
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * The main reporter when it is a diff listener
+	 */
+	protected final DiffListener mainListener;
+
+	protected final RevisionReporter mainReporter;
+
+	protected final List<Profile> profiles;
+
+	/**
+	 * @param aReporter
+	 *            the reporter of the main settings, may be null
+	 * @param aConfig
+	 *            the main settings with the profiles
+	 */
+	public ProfileRevisionReporter(@CheckForNull RevisionReporter aReporter, @Nonnull Configuration aConfig) throws RevisionReporterException {
+		mainReporter = aReporter;
+		mainListener = aReporter instanceof DiffListener ? (DiffListener) aReporter : null;
+		profiles = new ArrayList<>();
+		final int queueSize = Math.max(aConfig.getInt("profile.queue", 1000), 1);
+		try {
+			for (String name : getProfileNames(aConfig)) {
+				Configuration profileConfig = createProfileConfiguration(aConfig, name);
+				RevisionReporter reporter = SvnLog.createReporter(profileConfig);
+				if (reporter == null) {
+					throw new RevisionReporterException("Unsupported output.format of profile " + name);
+				}
+				if (reporter instanceof DiffListener) {
+					LOG.warn("Profile {} with output.format {} does not receive the diff lines.", name, profileConfig.getString("output.format"));
+				}
+				LOG.info("Profile {} writes {}", name, profileConfig.getString("output"));
+				profiles.add(new Profile(name, reporter, queueSize));
+			}
+		} catch (RevisionReporterException e) {
+			closeQuietly();
+			throw e;
+		}
+	}
+
+	/**
+	 * Stop the profile threads and close the profile reporters. The main reporter is not closed.
+	 */
+	@Override
+	public void close() throws IOException {
+		IOException error = null;
+		for (Profile profile : profiles) {
+			profile.executor.shutdown();
+			try {
+				profile.executor.awaitTermination(1, TimeUnit.MINUTES);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			if (profile.reporter instanceof Closeable) {
+				try {
+					((Closeable) profile.reporter).close();
+				} catch (IOException e) {
+					error = e;
+				}
+			}
+		}
+		if (error != null) {
+			throw error;
+		}
+	}
+
+	@Override
+	public void endDiff() {
+		if (mainListener != null) {
+			mainListener.endDiff();
+		}
+	}
+
+	/**
+	 * Wait for every profile to report its pending revisions, then flush all reporters.
+	 */
+	@Override
+	public void flush() throws RevisionReporterException {
+		List<Future<?>> flushes = new ArrayList<>();
+		for (Profile profile : profiles) {
+			flushes.add(profile.executor.submit(() -> {
+				if (profile.failure == null) {
+					profile.reporter.flush();
+				}
+				return null;
+			}));
+		}
+		if (mainReporter != null) {
+			mainReporter.flush();
+		}
+		for (int i = 0; i < profiles.size(); ++i) {
+			Profile profile = profiles.get(i);
+			try {
+				flushes.get(i).get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RevisionReporterException("Interrupted while flushing profile " + profile.name, e);
+			} catch (ExecutionException e) {
+				profile.failure = e.getCause();
+			}
+			checkFailure(profile);
+		}
+	}
+
+	@Override
+	public void hunk(int aOldStart, int aOldCount, int aNewStart, int aNewCount) {
+		if (mainListener != null) {
+			mainListener.hunk(aOldStart, aOldCount, aNewStart, aNewCount);
+		}
+	}
+
+	@Override
+	public void line(char aType) {
+		if (mainListener != null) {
+			mainListener.line(aType);
+		}
+	}
+
+	@Override
+	public void report(@Nonnull Revision aRevision) throws RevisionReporterException {
+		for (Profile profile : profiles) {
+			checkFailure(profile);
+			// copy before the main reporter processes the comment
+			final Revision copy = new Revision(aRevision);
+			try {
+				profile.queue.acquire();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RevisionReporterException("Interrupted while reporting revision " + aRevision.getId(), e);
+			}
+			profile.executor.execute(() -> profile.report(copy));
+		}
+		if (mainReporter != null) {
+			mainReporter.report(aRevision);
+		}
+	}
+
+	/**
+	 * The profiles report the revisions later, on their own thread.
+	 */
+	@Override
+	public boolean retainsRevisions() {
+		return true;
+	}
+
+	@Override
+	public void startDiff(@Nonnull Revision aRevision, @Nonnull FileChange aChange) {
+		if (mainListener != null) {
+			mainListener.startDiff(aRevision, aChange);
+		}
+	}
+
+	private void checkFailure(Profile aProfile) throws RevisionReporterException {
+		Throwable failure = aProfile.failure;
+		if (failure instanceof RevisionReporterException) {
+			throw new RevisionReporterException("Failure in profile " + aProfile.name + ": " + failure.getMessage(), failure);
+		} else if (failure != null) {
+			throw new RevisionReporterException("Failure in profile " + aProfile.name, failure);
+		}
+	}
+
+	private void closeQuietly() {
+		try {
+			close();
+		} catch (IOException e) {
+			LOG.warn("Failure closing the profiles.", e);
+		}
+	}
+}
@@ -0,0 +1,156 @@
+package com.mpobjects.svn.logstats.query;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+import org.apache.commons.lang3.StringUtils;
+import org.joda.time.LocalDate;
+
+/**
+ * Filter and grouping to execute against a {@link RevisionStore}. Unset filters match everything.
+ */
+public class Query {
+
+	public enum GroupBy {
+		AUTHOR, BRANCH, DAY, FILEGROUP, ISSUE, MONTH, PROJECT, WEEK, YEAR;
+	}
+
+	/**
+	 * Parse a query of space separated <code>name=value</code> terms, for example:
+	 * <code>filegroup=Code author=john branch=trunk from=2017-01-01 group=week</code>. Supported names are author,
+	 * branch, project, issue, filegroup, from, to and group (comma separated {@link GroupBy} values).
+	 */
+	@Nonnull
+	public static Query parse(@Nonnull String aQuery) {
+		Query query = new Query();
+		for (String term : StringUtils.split(aQuery)) {
+			String name = StringUtils.substringBefore(term, "=").toLowerCase();
+			String value = StringUtils.substringAfter(term, "=");
+			if (StringUtils.isEmpty(value)) {
+				throw new IllegalArgumentException("No value for: " + term);
+			}
+			switch (name) {
+				case "author":
+					query.setAuthor(value);
+					break;
+				case "branch":
+					query.setBranch(value);
+					break;
+				case "project":
+					query.setProject(value);
+					break;
+				case "issue":
+					query.setIssue(value);
+					break;
+				case "filegroup":
+					query.setFileGroup(value);
+					break;
+				case "from":
+					query.setFrom(LocalDate.parse(value));
+					break;
+				case "to":
+					query.setTo(LocalDate.parse(value));
+					break;
+				case "group":
+					for (String group : StringUtils.split(value, ',')) {
+						query.getGroupBy().add(GroupBy.valueOf(group.trim().toUpperCase()));
+					}
+					break;
+				default:
+					throw new IllegalArgumentException("Unknown query term: " + name);
+			}
+		}
+		return query;
+	}
+
+	protected String author;
+
+	protected String branch;
+
+	protected String fileGroup;
+
+	protected LocalDate from;
+
+	protected List<GroupBy> groupBy;
+
+	protected String issue;
+
+	protected String project;
+
+	protected LocalDate to;
+
+	public Query() {
+		groupBy = new ArrayList<>();
+	}
+
+	@CheckForNull
+	public String getAuthor() {
+		return author;
+	}
+
+	@CheckForNull
+	public String getBranch() {
+		return branch;
+	}
+
+	@CheckForNull
+	public String getFileGroup() {
+		return fileGroup;
+	}
+
+	@CheckForNull
+	public LocalDate getFrom() {
+		return from;
+	}
+
+	@Nonnull
+	public List<GroupBy> getGroupBy() {
+		return groupBy;
+	}
+
+	@CheckForNull
+	public String getIssue() {
+		return issue;
+	}
+
+	@CheckForNull
+	public String getProject() {
+		return project;
+	}
+
+	@CheckForNull
+	public LocalDate getTo() {
+		return to;
+	}
+
+	public void setAuthor(String aAuthor) {
+		author = aAuthor;
+	}
+
+	public void setBranch(String aBranch) {
+		branch = aBranch;
+	}
+
+	public void setFileGroup(String aFileGroup) {
+		fileGroup = aFileGroup;
+	}
+
+	public void setFrom(LocalDate aFrom) {
+		from = aFrom;
+	}
+
+	public void setIssue(String aIssue) {
+		issue = aIssue;
+	}
+
+	public void setProject(String aProject) {
+		project = aProject;
+	}
+
+	public void setTo(LocalDate aTo) {
+		to = aTo;
+	}
+}
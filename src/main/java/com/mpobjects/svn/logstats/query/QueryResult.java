@@ -0,0 +1,108 @@
+package com.mpobjects.svn.logstats.query;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+import org.apache.commons.lang3.StringUtils;
+
+import com.mpobjects.svn.logstats.query.Query.GroupBy;
+
+/**
+ * Grouped totals produced by a {@link Query}. Rows are sorted by their group values.
+ */
+public class QueryResult {
+
+	public static final int IDX_FILES = 1;
+	public static final int IDX_LINES_ADDED = 2;
+	public static final int IDX_LINES_CHANGED = 4;
+	public static final int IDX_LINES_REMOVED = 3;
+	public static final int IDX_REVISIONS = 0;
+	public static final int NUM_VALUES = 5;
+
+	public static class Row implements Comparable<Row> {
+		protected final String[] group;
+
+		protected final long[] values;
+
+		public Row(String[] aGroup, long[] aValues) {
+			group = aGroup;
+			values = aValues;
+		}
+
+		@Override
+		public int compareTo(Row aOther) {
+			for (int i = 0; i < group.length; ++i) {
+				int res = StringUtils.compare(group[i], aOther.group[i]);
+				if (res != 0) {
+					return res;
+				}
+			}
+			return 0;
+		}
+
+		@Nonnull
+		public String[] getGroup() {
+			return group;
+		}
+
+		/**
+		 * @return the totals, see the IDX_* constants
+		 */
+		@Nonnull
+		public long[] getValues() {
+			return values;
+		}
+	}
+
+	protected final List<GroupBy> groupBy;
+
+	protected final List<Row> rows;
+
+	public QueryResult(@Nonnull List<GroupBy> aGroupBy, @Nonnull List<Row> aRows) {
+		groupBy = aGroupBy;
+		rows = new ArrayList<>(aRows);
+		Collections.sort(rows);
+	}
+
+	@Nonnull
+	public List<GroupBy> getGroupBy() {
+		return groupBy;
+	}
+
+	@Nonnull
+	public List<Row> getRows() {
+		return rows;
+	}
+
+	/**
+	 * Write the result as CSV.
+	 */
+	public void print(@Nonnull Appendable aOutput) throws IOException {
+		List<String> header = new ArrayList<>();
+		for (GroupBy group : groupBy) {
+			header.add(StringUtils.capitalize(group.name().toLowerCase()));
+		}
+		header.add("Revisions");
+		header.add("Files Affected");
+		header.add("Lines Added");
+		header.add("Lines Removed");
+		header.add("Lines Modified");
+
+		CSVPrinter printer = new CSVPrinter(aOutput, CSVFormat.RFC4180.withHeader(header.toArray(new String[0])));
+		for (Row row : rows) {
+			List<Object> record = new ArrayList<>();
+			Collections.addAll(record, (Object[]) row.group);
+			for (long value : row.values) {
+				record.add(value);
+			}
+			printer.printRecord(record);
+		}
+		printer.flush();
+	}
+}
@@ -0,0 +1,524 @@
+package com.mpobjects.svn.logstats.query;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import javax.annotation.Nonnull;
+
+import org.apache.commons.configuration2.Configuration;
+import org.apache.commons.lang3.StringUtils;
+import org.joda.time.DateTimeConstants;
+import org.joda.time.DateTimeZone;
+import org.joda.time.LocalDate;
+
+import com.mpobjects.svn.logstats.AbstractRevisionReporter;
+import com.mpobjects.svn.logstats.RevisionReporterException;
+import com.mpobjects.svn.logstats.model.FileChange;
+import com.mpobjects.svn.logstats.model.Revision;
+import com.mpobjects.svn.logstats.query.Query.GroupBy;
+import com.mpobjects.svn.logstats.util.IntList;
+import com.mpobjects.svn.logstats.util.StringDictionary;
+
+/**
+ * Columnar in-memory store of parsed revisions for ad-hoc queries. Every file change is a row of primitive columns,
+ * the rows are bucketed per week and the buckets are indexed by author, branch, project and issue. Queries scan the
+ * candidate buckets in parallel.
+ * <p>
+ * Loading is not thread safe, queries can run concurrently once loading is done.
+ */
+public class RevisionStore extends AbstractRevisionReporter {
+
+	/**
+	 * One week of file change rows.
+	 */
+	protected static class Bucket {
+		final IntList added = new IntList(256);
+		final IntList author = new IntList(256);
+		final IntList branch = new IntList(256);
+		final IntList changed = new IntList(256);
+		final IntList day = new IntList(256);
+		/**
+		 * Bit mask of the matching file groups
+		 */
+		final IntList groups = new IntList(256);
+		final int ordinal;
+		final IntList removed = new IntList(256);
+		/**
+		 * Index into the revision columns
+		 */
+		final IntList revision = new IntList(256);
+		final int week;
+
+		Bucket(int aOrdinal, int aWeek) {
+			ordinal = aOrdinal;
+			week = aWeek;
+		}
+
+		int size() {
+			return revision.size();
+		}
+	}
+
+	/**
+	 * Group values of a result row
+	 */
+	protected static final class GroupKey {
+		final int[] values;
+
+		GroupKey(int[] aValues) {
+			values = aValues;
+		}
+
+		@Override
+		public boolean equals(Object aObj) {
+			return aObj instanceof GroupKey && Arrays.equals(values, ((GroupKey) aObj).values);
+		}
+
+		@Override
+		public int hashCode() {
+			return Arrays.hashCode(values);
+		}
+	}
+
+	private static final LocalDate EPOCH = new LocalDate(1970, 1, 1);
+
+	private static final int NO_VALUE = -1;
+
+	/**
+	 * Extra slot in the aggregated values to count distinct revisions
+	 */
+	private static final int SLOT_LAST_REVISION = QueryResult.NUM_VALUES;
+
+	protected static int toDay(LocalDate aDate) {
+		return (int) (aDate.toDateTimeAtStartOfDay(DateTimeZone.UTC).getMillis() / DateTimeConstants.MILLIS_PER_DAY);
+	}
+
+	protected static LocalDate toLocalDate(int aDay) {
+		return EPOCH.plusDays(aDay);
+	}
+
+	protected final StringDictionary authors;
+
+	protected final List<BitSet> authorIndex;
+
+	protected final StringDictionary branches;
+
+	protected final List<BitSet> branchIndex;
+
+	protected final List<Bucket> buckets;
+
+	protected final TreeMap<Integer, Bucket> bucketsByWeek;
+
+	protected final StringDictionary issues;
+
+	protected final List<BitSet> issueIndex;
+
+	protected final IntList issueStart;
+
+	protected final IntList issueValues;
+
+	protected final StringDictionary projects;
+
+	protected final List<BitSet> projectIndex;
+
+	protected final IntList projectStart;
+
+	protected final IntList projectValues;
+
+	protected final IntList revisionIds;
+
+	public RevisionStore(@Nonnull Configuration aConfig) {
+		super(aConfig);
+		authors = new StringDictionary();
+		branches = new StringDictionary();
+		issues = new StringDictionary();
+		projects = new StringDictionary();
+		authorIndex = new ArrayList<>();
+		branchIndex = new ArrayList<>();
+		issueIndex = new ArrayList<>();
+		projectIndex = new ArrayList<>();
+		buckets = new ArrayList<>();
+		bucketsByWeek = new TreeMap<>();
+		revisionIds = new IntList(1024);
+		issueStart = new IntList(1024);
+		issueValues = new IntList(1024);
+		projectStart = new IntList(1024);
+		projectValues = new IntList(1024);
+	}
+
+	/**
+	 * Run the query.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the query refers to an unknown file group
+	 */
+	@Nonnull
+	public QueryResult execute(@Nonnull Query aQuery) {
+		final List<GroupBy> groupBy = new ArrayList<>(aQuery.getGroupBy());
+		final int authorFilter = resolve(authors, aQuery.getAuthor());
+		final int branchFilter = resolve(branches, aQuery.getBranch());
+		final int projectFilter = resolve(projects, StringUtils.upperCase(aQuery.getProject()));
+		final int issueFilter = resolve(issues, StringUtils.upperCase(aQuery.getIssue()));
+		int groupFilter = NO_VALUE;
+		if (aQuery.getFileGroup() != null) {
+			for (int i = 0; i < fileGroups.size() && i < Integer.SIZE; ++i) {
+				if (fileGroups.get(i).getName().equalsIgnoreCase(aQuery.getFileGroup())) {
+					groupFilter = i;
+				}
+			}
+			if (groupFilter == NO_VALUE) {
+				throw new IllegalArgumentException("Unknown file group: " + aQuery.getFileGroup());
+			}
+		}
+		if (authorFilter == Integer.MIN_VALUE || branchFilter == Integer.MIN_VALUE || projectFilter == Integer.MIN_VALUE
+				|| issueFilter == Integer.MIN_VALUE) {
+			// filter on a value which never occurred
+			return new QueryResult(groupBy, Collections.emptyList());
+		}
+
+		final int fromDay = aQuery.getFrom() == null ? Integer.MIN_VALUE : toDay(aQuery.getFrom());
+		final int toDay = aQuery.getTo() == null ? Integer.MAX_VALUE : toDay(aQuery.getTo());
+
+		// prune buckets on time and the indexes
+		BitSet candidates = new BitSet(buckets.size());
+		Map<Integer, Bucket> range = bucketsByWeek;
+		if (aQuery.getFrom() != null || aQuery.getTo() != null) {
+			range = bucketsByWeek.subMap(aQuery.getFrom() == null ? Integer.MIN_VALUE : toDay(weekStart(aQuery.getFrom())), true, toDay, true);
+		}
+		for (Bucket bucket : range.values()) {
+			candidates.set(bucket.ordinal);
+		}
+		intersect(candidates, authorIndex, authorFilter);
+		intersect(candidates, branchIndex, branchFilter);
+		intersect(candidates, projectIndex, projectFilter);
+		intersect(candidates, issueIndex, issueFilter);
+
+		final int fileGroupFilter = groupFilter;
+		Map<GroupKey, long[]> totals = candidates.stream().parallel().mapToObj(buckets::get)
+				.map(b -> scan(b, groupBy, fromDay, toDay, authorFilter, branchFilter, projectFilter, issueFilter, fileGroupFilter))
+				.reduce(RevisionStore::merge).orElse(Collections.emptyMap());
+
+		List<QueryResult.Row> rows = new ArrayList<>(totals.size());
+		for (Entry<GroupKey, long[]> entry : totals.entrySet()) {
+			String[] group = new String[groupBy.size()];
+			for (int i = 0; i < group.length; ++i) {
+				group[i] = format(groupBy.get(i), entry.getKey().values[i]);
+			}
+			rows.add(new QueryResult.Row(group, Arrays.copyOf(entry.getValue(), QueryResult.NUM_VALUES)));
+		}
+		return new QueryResult(groupBy, rows);
+	}
+
+	@Override
+	public void flush() throws RevisionReporterException {
+		for (Bucket bucket : buckets) {
+			bucket.revision.trim();
+			bucket.author.trim();
+			bucket.branch.trim();
+			bucket.day.trim();
+			bucket.groups.trim();
+			bucket.added.trim();
+			bucket.removed.trim();
+			bucket.changed.trim();
+		}
+	}
+
+	/**
+	 * @return the number of revisions in the store
+	 */
+	public int getRevisionCount() {
+		return revisionIds.size();
+	}
+
+	@Override
+	public void report(@Nonnull Revision aRevision) throws RevisionReporterException {
+		super.report(aRevision);
+
+		final LocalDate date = aRevision.getTimestamp().toLocalDate();
+		final int day = toDay(date);
+		final int week = toDay(weekStart(date));
+		Bucket bucket = bucketsByWeek.get(week);
+		if (bucket == null) {
+			bucket = new Bucket(buckets.size(), week);
+			buckets.add(bucket);
+			bucketsByWeek.put(week, bucket);
+		}
+
+		final int revIdx = revisionIds.size();
+		revisionIds.add(aRevision.getId());
+		issueStart.add(issueValues.size());
+		for (String issue : aRevision.getIssues()) {
+			int id = issues.intern(issue.toUpperCase());
+			issueValues.add(id);
+			index(issueIndex, id, bucket);
+		}
+		projectStart.add(projectValues.size());
+		for (String project : aRevision.getProjects()) {
+			int id = projects.intern(project.toUpperCase());
+			projectValues.add(id);
+			index(projectIndex, id, bucket);
+		}
+
+		final int authorId = authors.intern(aRevision.getAuthor());
+		final int branchId = branches.intern(determineBranchName(aRevision));
+		index(authorIndex, authorId, bucket);
+		index(branchIndex, branchId, bucket);
+
+		for (FileChange change : aRevision.getFileChanges().values()) {
+			int mask = 0;
+			for (int i = 0; i < fileGroups.size() && i < Integer.SIZE; ++i) {
+				if (fileGroups.get(i).matches(change.getFilename())) {
+					mask |= 1 << i;
+				}
+			}
+			bucket.revision.add(revIdx);
+			bucket.author.add(authorId);
+			bucket.branch.add(branchId);
+			bucket.day.add(day);
+			bucket.groups.add(mask);
+			bucket.added.add(change.getLinesAdded());
+			bucket.removed.add(change.getLinesRemoved());
+			bucket.changed.add(change.getLinesChanged());
+		}
+	}
+
+	@Override
+	public boolean retainsRevisions() {
+		return false;
+	}
+
+	private static Map<GroupKey, long[]> merge(Map<GroupKey, long[]> aLeft, Map<GroupKey, long[]> aRight) {
+		Map<GroupKey, long[]> result = aLeft.size() >= aRight.size() ? aLeft : aRight;
+		Map<GroupKey, long[]> other = result == aLeft ? aRight : aLeft;
+		for (Entry<GroupKey, long[]> entry : other.entrySet()) {
+			long[] values = result.get(entry.getKey());
+			if (values == null) {
+				result.put(entry.getKey(), entry.getValue());
+			} else {
+				// revisions never span buckets, so the distinct counts can be summed
+				for (int i = 0; i < QueryResult.NUM_VALUES; ++i) {
+					values[i] += entry.getValue()[i];
+				}
+			}
+		}
+		return result;
+	}
+
+	private static LocalDate weekStart(LocalDate aDate) {
+		return aDate.withDayOfWeek(DateTimeConstants.MONDAY);
+	}
+
+	private boolean contains(IntList aStart, IntList aValues, int aRevIdx, int aValue) {
+		int end = aRevIdx + 1 < aStart.size() ? aStart.get(aRevIdx + 1) : aValues.size();
+		for (int i = aStart.get(aRevIdx); i < end; ++i) {
+			if (aValues.get(i) == aValue) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Collect the group values of a multi valued revision column.
+	 *
+	 * @return the number of values
+	 */
+	private int fill(IntList aStart, IntList aValues, int aRevIdx, int[][] aBuffer, int aDim) {
+		int start = aStart.get(aRevIdx);
+		int end = aRevIdx + 1 < aStart.size() ? aStart.get(aRevIdx + 1) : aValues.size();
+		if (start == end) {
+			aBuffer[aDim][0] = NO_VALUE;
+			return 1;
+		}
+		if (aBuffer[aDim].length < end - start) {
+			aBuffer[aDim] = new int[end - start];
+		}
+		for (int i = start; i < end; ++i) {
+			aBuffer[aDim][i - start] = aValues.get(i);
+		}
+		return end - start;
+	}
+
+	private String format(GroupBy aGroupBy, int aValue) {
+		if (aValue == NO_VALUE) {
+			return "";
+		}
+		switch (aGroupBy) {
+			case AUTHOR:
+				return authors.get(aValue);
+			case BRANCH:
+				return branches.get(aValue);
+			case PROJECT:
+				return projects.get(aValue);
+			case ISSUE:
+				return issues.get(aValue);
+			case FILEGROUP:
+				return fileGroups.get(aValue).getName();
+			case DAY:
+				return toLocalDate(aValue).toString();
+			case WEEK:
+				LocalDate date = toLocalDate(aValue);
+				return String.format("%04d-W%02d", date.getWeekyear(), date.getWeekOfWeekyear());
+			case MONTH:
+				return String.format("%04d-%02d", aValue / 12, aValue % 12 + 1);
+			case YEAR:
+				return Integer.toString(aValue);
+		}
+		return Integer.toString(aValue);
+	}
+
+	private void index(List<BitSet> aIndex, int aId, Bucket aBucket) {
+		while (aIndex.size() <= aId) {
+			aIndex.add(new BitSet());
+		}
+		aIndex.get(aId).set(aBucket.ordinal);
+	}
+
+	private void intersect(BitSet aCandidates, List<BitSet> aIndex, int aId) {
+		if (aId != NO_VALUE) {
+			aCandidates.and(aIndex.get(aId));
+		}
+	}
+
+	/**
+	 * @return {@link #NO_VALUE} when there is no filter, {@link Integer#MIN_VALUE} when the value is unknown
+	 */
+	private int resolve(StringDictionary aDictionary, String aValue) {
+		if (aValue == null) {
+			return NO_VALUE;
+		}
+		int id = aDictionary.find(aValue);
+		return id == NO_VALUE ? Integer.MIN_VALUE : id;
+	}
+
+	private Map<GroupKey, long[]> scan(Bucket aBucket, List<GroupBy> aGroupBy, int aFromDay, int aToDay, int aAuthor, int aBranch, int aProject,
+			int aIssue, int aFileGroup) {
+		final Map<GroupKey, long[]> result = new HashMap<>();
+		final int dims = aGroupBy.size();
+		final int[][] values = new int[dims][1];
+		final int[] counts = new int[dims];
+		final int[] pos = new int[dims];
+		final int[] probe = new int[dims];
+		final GroupKey probeKey = new GroupKey(probe);
+
+		// month and year of the days in this week
+		final int[] month = new int[7];
+		final int[] year = new int[7];
+		for (int i = 0; i < 7; ++i) {
+			LocalDate date = toLocalDate(aBucket.week + i);
+			month[i] = date.getYear() * 12 + date.getMonthOfYear() - 1;
+			year[i] = date.getYear();
+		}
+
+		final int size = aBucket.size();
+		for (int row = 0; row < size; ++row) {
+			final int day = aBucket.day.get(row);
+			if (day < aFromDay || day > aToDay) {
+				continue;
+			}
+			if (aAuthor != NO_VALUE && aBucket.author.get(row) != aAuthor) {
+				continue;
+			}
+			if (aBranch != NO_VALUE && aBucket.branch.get(row) != aBranch) {
+				continue;
+			}
+			final int mask = aBucket.groups.get(row);
+			if (aFileGroup != NO_VALUE && (mask & (1 << aFileGroup)) == 0) {
+				continue;
+			}
+			final int rev = aBucket.revision.get(row);
+			if (aProject != NO_VALUE && !contains(projectStart, projectValues, rev, aProject)) {
+				continue;
+			}
+			if (aIssue != NO_VALUE && !contains(issueStart, issueValues, rev, aIssue)) {
+				continue;
+			}
+
+			for (int d = 0; d < dims; ++d) {
+				counts[d] = 1;
+				switch (aGroupBy.get(d)) {
+					case AUTHOR:
+						values[d][0] = aBucket.author.get(row);
+						break;
+					case BRANCH:
+						values[d][0] = aBucket.branch.get(row);
+						break;
+					case DAY:
+						values[d][0] = day;
+						break;
+					case WEEK:
+						values[d][0] = aBucket.week;
+						break;
+					case MONTH:
+						values[d][0] = month[day - aBucket.week];
+						break;
+					case YEAR:
+						values[d][0] = year[day - aBucket.week];
+						break;
+					case PROJECT:
+						counts[d] = fill(projectStart, projectValues, rev, values, d);
+						break;
+					case ISSUE:
+						counts[d] = fill(issueStart, issueValues, rev, values, d);
+						break;
+					case FILEGROUP:
+						if (aFileGroup != NO_VALUE) {
+							values[d][0] = aFileGroup;
+						} else if (mask == 0) {
+							values[d][0] = NO_VALUE;
+						} else {
+							counts[d] = 0;
+							if (values[d].length < Integer.bitCount(mask)) {
+								values[d] = new int[Integer.bitCount(mask)];
+							}
+							for (int i = 0; i < Integer.SIZE; ++i) {
+								if ((mask & (1 << i)) != 0) {
+									values[d][counts[d]++] = i;
+								}
+							}
+						}
+						break;
+				}
+			}
+
+			// every combination of the group values
+			Arrays.fill(pos, 0);
+			while (true) {
+				for (int d = 0; d < dims; ++d) {
+					probe[d] = values[d][pos[d]];
+				}
+				long[] totals = result.get(probeKey);
+				if (totals == null) {
+					totals = new long[QueryResult.NUM_VALUES + 1];
+					result.put(new GroupKey(probe.clone()), totals);
+				}
+				// rows of a revision are consecutive
+				if (totals[SLOT_LAST_REVISION] != rev + 1) {
+					totals[SLOT_LAST_REVISION] = rev + 1;
+					++totals[QueryResult.IDX_REVISIONS];
+				}
+				++totals[QueryResult.IDX_FILES];
+				totals[QueryResult.IDX_LINES_ADDED] += aBucket.added.get(row);
+				totals[QueryResult.IDX_LINES_REMOVED] += aBucket.removed.get(row);
+				totals[QueryResult.IDX_LINES_CHANGED] += aBucket.changed.get(row);
+
+				int d = dims - 1;
+				while (d >= 0 && ++pos[d] >= counts[d]) {
+					pos[d] = 0;
+					--d;
+				}
+				if (d < 0) {
+					break;
+				}
+			}
+		}
+		return result;
+	}
+}
@@ -0,0 +1,119 @@
+package com.mpobjects.svn.logstats.query;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.configuration2.Configuration;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.mpobjects.svn.logstats.SvnLog;
+import com.mpobjects.svn.logstats.SvnLogParser;
+import com.mpobjects.svn.logstats.dump.SvnDumpParser;
+
+/**
+ * Loads revisions into a {@link RevisionStore} and runs queries against it.
+ * <p>
+ * Usage: <code>SvnLogQuery [--log file]... [--dump file]... [--query query]... [-- svn log arguments]</code>. Saved
+ * <code>svn log -v --diff</code> output is read with --log, <code>svnadmin dump</code> files with --dump, everything
+ * after "--" is passed to svn log for a live parse. Without --query the queries are read from stdin, one per line.
+ * See {@link Query#parse(String)} for the query syntax.
+ */
+public class SvnLogQuery {
+
+	private static final Logger LOG = LoggerFactory.getLogger(SvnLogQuery.class);
+
+	public static void main(String[] args) throws Exception {
+		SvnLogQuery query = new SvnLogQuery();
+		query.exec(args);
+	}
+
+	public SvnLogQuery() {
+	}
+
+	public void exec(String[] aArgs) throws Exception {
+		final Configuration config = SvnLog.loadConfiguration();
+		final RevisionStore store = new RevisionStore(config);
+
+		List<String> queries = new ArrayList<>();
+		List<String> svnArgs = new ArrayList<>();
+		for (int i = 0; i < aArgs.length; ++i) {
+			if ("--".equals(aArgs[i])) {
+				for (++i; i < aArgs.length; ++i) {
+					svnArgs.add(aArgs[i]);
+				}
+			} else if ("--log".equals(aArgs[i]) && i + 1 < aArgs.length) {
+				loadLog(store, aArgs[++i], config);
+			} else if ("--dump".equals(aArgs[i]) && i + 1 < aArgs.length) {
+				loadDump(store, aArgs[++i]);
+			} else if ("--query".equals(aArgs[i]) && i + 1 < aArgs.length) {
+				queries.add(aArgs[++i]);
+			} else {
+				throw new IllegalArgumentException("Unknown argument: " + aArgs[i]);
+			}
+		}
+		if (!svnArgs.isEmpty()) {
+			SvnLogParser parser = new SvnLogParser(store);
+			SvnLog.configureParser(parser, config);
+			SvnLog.execute(SvnLog.createLogCommand(SvnLog.pushDownPaths(svnArgs.toArray(new String[0]), config)), parser);
+			parser.flush();
+		}
+		LOG.info("Loaded {} revisions", store.getRevisionCount());
+
+		PrintWriter out = new PrintWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+		if (!queries.isEmpty()) {
+			for (String query : queries) {
+				run(store, query, out);
+			}
+			return;
+		}
+		BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+		String line;
+		while ((line = in.readLine()) != null) {
+			if (StringUtils.isBlank(line)) {
+				continue;
+			}
+			run(store, line, out);
+		}
+	}
+
+	private void loadDump(RevisionStore aStore, String aFilename) throws IOException {
+		try (SvnDumpParser parser = new SvnDumpParser(aStore); FileInputStream input = new FileInputStream(aFilename)) {
+			parser.parse(new BufferedInputStream(input, 64 * 1024));
+			parser.flush();
+		}
+	}
+
+	private void loadLog(RevisionStore aStore, String aFilename, Configuration aConfig) throws IOException {
+		SvnLogParser parser = new SvnLogParser(aStore);
+		SvnLog.configureParser(parser, aConfig);
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(aFilename), StandardCharsets.UTF_8))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				parser.parse(line);
+			}
+		}
+		parser.flush();
+	}
+
+	private void run(RevisionStore aStore, String aQuery, PrintWriter aOut) throws IOException {
+		try {
+			long start = System.nanoTime();
+			QueryResult result = aStore.execute(Query.parse(aQuery));
+			result.print(aOut);
+			aOut.flush();
+			LOG.info("Query returned {} rows in {} us", result.getRows().size(), (System.nanoTime() - start) / 1000);
+		} catch (IllegalArgumentException e) {
+			LOG.error("Invalid query: {}", e.getMessage());
+		}
+	}
+}
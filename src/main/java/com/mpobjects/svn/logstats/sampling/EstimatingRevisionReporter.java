@@ -0,0 +1,154 @@
+package com.mpobjects.svn.logstats.sampling;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import javax.annotation.Nonnull;
+
+import org.apache.commons.configuration2.Configuration;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+import org.apache.commons.lang3.StringUtils;
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.mpobjects.svn.logstats.AbstractRevisionReporter;
+import com.mpobjects.svn.logstats.RevisionReporterException;
+import com.mpobjects.svn.logstats.model.Revision;
+
+/**
+ * Estimates population totals from a {@link RevisionSample}, for all revisions and per author and month. The
+ * estimates use the stratified (Horvitz-Thompson) estimator, with a normal approximation 95% confidence interval.
+ */
+public class EstimatingRevisionReporter extends AbstractRevisionReporter implements Closeable {
+
+	private static final Logger LOG = LoggerFactory.getLogger(EstimatingRevisionReporter.class);
+
+	protected static final int IDX_FILES = 1;
+
+	protected static final int IDX_LINES_ADDED = 2;
+
+	protected static final int IDX_LINES_CHANGED = 4;
+
+	protected static final int IDX_LINES_REMOVED = 3;
+
+	protected static final int IDX_REVISIONS = 0;
+
+	protected static final String[] METRICS = { "Revisions", "Files", "Lines Added", "Lines Removed", "Lines Changed" };
+
+	protected static final DateTimeFormatter MONTH_FORMAT = DateTimeFormat.forPattern("yyyy-MM");
+
+	protected static final double Z_95 = 1.96;
+
+	/**
+	 * Domain ("type\tkey") to stratum to the sum and sum of squares of every metric
+	 */
+	protected final Map<String, Map<String, double[]>> domains;
+
+	protected final CSVPrinter output;
+
+	protected final RevisionSample sample;
+
+	public EstimatingRevisionReporter(@Nonnull Appendable aOutput, @Nonnull Configuration aConfig, @Nonnull RevisionSample aSample)
+			throws RevisionReporterException {
+		super(aConfig);
+		sample = aSample;
+		domains = new TreeMap<>();
+		try {
+			output = new CSVPrinter(aOutput,
+					CSVFormat.RFC4180.withHeader("Domain", "Key", "Metric", "Sample Size", "Estimate", "Std Error", "CI Low", "CI High"));
+		} catch (IOException e) {
+			throw new RevisionReporterException("Failure to create CSVPrinter.", e);
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		output.close();
+	}
+
+	@Override
+	public void flush() throws RevisionReporterException {
+		try {
+			for (Entry<String, Map<String, double[]>> domain : domains.entrySet()) {
+				writeDomain(StringUtils.substringBefore(domain.getKey(), "\t"), StringUtils.substringAfter(domain.getKey(), "\t"),
+						domain.getValue());
+			}
+			output.flush();
+		} catch (IOException e) {
+			throw new RevisionReporterException("Failure writing estimates.", e);
+		}
+	}
+
+	@Override
+	public void report(@Nonnull Revision aRevision) throws RevisionReporterException {
+		super.report(aRevision);
+		final String stratum = sample.getStratum(aRevision.getId());
+		if (stratum == null) {
+			LOG.warn("Revision {} is not part of the sample", aRevision.getId());
+			return;
+		}
+		double[] values = new double[METRICS.length];
+		values[IDX_REVISIONS] = 1;
+		values[IDX_FILES] = aRevision.getFileChanges().size();
+		values[IDX_LINES_ADDED] = aRevision.getLinesAdded();
+		values[IDX_LINES_REMOVED] = aRevision.getLinesRemoved();
+		values[IDX_LINES_CHANGED] = aRevision.getLinesChanged();
+
+		add("Total", "", stratum, values);
+		add("Author", StringUtils.defaultString(aRevision.getAuthor()), stratum, values);
+		add("Month", MONTH_FORMAT.print(aRevision.getTimestamp()), stratum, values);
+	}
+
+	@Override
+	public boolean retainsRevisions() {
+		return false;
+	}
+
+	private void add(String aDomain, String aKey, String aStratum, double[] aValues) {
+		double[] sums = domains.computeIfAbsent(aDomain + "\t" + aKey, k -> new HashMap<>()).computeIfAbsent(aStratum,
+				k -> new double[METRICS.length * 2]);
+		for (int i = 0; i < aValues.length; ++i) {
+			sums[i * 2] += aValues[i];
+			sums[i * 2 + 1] += aValues[i] * aValues[i];
+		}
+	}
+
+	/**
+	 * Revisions outside the domain count as zero, so the variance of a domain uses the full stratum sample size.
+	 */
+	private void writeDomain(String aDomain, String aKey, Map<String, double[]> aStrata) throws IOException {
+		int sampleSize = 0;
+		double[] estimate = new double[METRICS.length];
+		double[] variance = new double[METRICS.length];
+		for (Entry<String, double[]> stratum : aStrata.entrySet()) {
+			final double populationSize = sample.getPopulation().getOrDefault(stratum.getKey(), 0);
+			final int n = sample.getSampleSize(stratum.getKey());
+			if (n == 0) {
+				continue;
+			}
+			final double[] sums = stratum.getValue();
+			sampleSize += (int) sums[IDX_REVISIONS * 2];
+			for (int i = 0; i < METRICS.length; ++i) {
+				double sum = sums[i * 2];
+				double sumSq = sums[i * 2 + 1];
+				estimate[i] += populationSize * sum / n;
+				if (n > 1) {
+					double s2 = Math.max((sumSq - sum * sum / n) / (n - 1), 0);
+					variance[i] += populationSize * populationSize * (1 - n / populationSize) * s2 / n;
+				}
+			}
+		}
+		for (int i = 0; i < METRICS.length; ++i) {
+			double stdError = Math.sqrt(variance[i]);
+			output.printRecord(aDomain, aKey, METRICS[i], sampleSize, Math.round(estimate[i]), Math.round(stdError),
+					Math.max(0, Math.round(estimate[i] - Z_95 * stdError)), Math.round(estimate[i] + Z_95 * stdError));
+		}
+	}
+}
@@ -0,0 +1,69 @@
+package com.mpobjects.svn.logstats.sampling;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+/**
+ * The sampled revisions, with the stratum they were drawn from and the population size of every stratum.
+ */
+public class RevisionSample {
+
+	protected final int[] ids;
+
+	protected final Map<String, Integer> population;
+
+	protected final Map<String, Integer> sampled;
+
+	protected final Map<Integer, String> strata;
+
+	public RevisionSample(@Nonnull int[] aIds, @Nonnull String[] aStrata, @Nonnull Map<String, Integer> aPopulation) {
+		ids = aIds;
+		strata = new HashMap<>(aIds.length * 2);
+		sampled = new TreeMap<>();
+		for (int i = 0; i < aIds.length; ++i) {
+			strata.put(aIds[i], aStrata[i]);
+			sampled.merge(aStrata[i], 1, Integer::sum);
+		}
+		population = Collections.unmodifiableMap(new TreeMap<>(aPopulation));
+	}
+
+	/**
+	 * @return the sampled revisions, newest first
+	 */
+	@Nonnull
+	public int[] getIds() {
+		return ids;
+	}
+
+	/**
+	 * @return number of revisions per stratum in the population
+	 */
+	@Nonnull
+	public Map<String, Integer> getPopulation() {
+		return population;
+	}
+
+	/**
+	 * @return number of revisions per stratum in the sample
+	 */
+	public int getSampleSize(String aStratum) {
+		return sampled.getOrDefault(aStratum, 0);
+	}
+
+	/**
+	 * @return the stratum of a sampled revision, null if the revision was not sampled
+	 */
+	@CheckForNull
+	public String getStratum(int aRevision) {
+		return strata.get(aRevision);
+	}
+
+	public int size() {
+		return ids.length;
+	}
+}
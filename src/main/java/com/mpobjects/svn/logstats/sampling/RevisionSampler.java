@@ -0,0 +1,183 @@
+package com.mpobjects.svn.logstats.sampling;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.annotation.Nonnull;
+
+import org.apache.commons.exec.CommandLine;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.mpobjects.svn.logstats.SvnLog;
+import com.mpobjects.svn.logstats.util.IntList;
+import com.mpobjects.svn.logstats.util.StringDictionary;
+
+/**
+ * Draws a sample from the list of all revisions, as produced by <code>svn log -q</code>.
+ */
+public class RevisionSampler {
+
+	private static final String ALL = "all";
+
+	private static final Logger LOG = LoggerFactory.getLogger(RevisionSampler.class);
+
+	private static final Pattern QUIET_ENTRY = Pattern.compile("^r([0-9]+) \\| (.*) \\| ([0-9]{4}-[0-9]{2})-[0-9]{2} .*$");
+
+	protected final IntList authors;
+
+	protected final StringDictionary dictionary;
+
+	protected final IntList ids;
+
+	protected final IntList months;
+
+	protected final Random random;
+
+	protected final int rate;
+
+	protected final int size;
+
+	protected final SamplingStrategy strategy;
+
+	/**
+	 * @param aRate
+	 *            sample 1 in aRate revisions, for all strategies except {@link SamplingStrategy#RESERVOIR}
+	 * @param aSize
+	 *            the sample size of {@link SamplingStrategy#RESERVOIR}
+	 */
+	public RevisionSampler(@Nonnull SamplingStrategy aStrategy, int aRate, int aSize, long aSeed) {
+		strategy = aStrategy;
+		rate = Math.max(aRate, 1);
+		size = Math.max(aSize, 1);
+		random = new Random(aSeed);
+		ids = new IntList(1024);
+		authors = new IntList(1024);
+		months = new IntList(1024);
+		dictionary = new StringDictionary();
+	}
+
+	/**
+	 * Add a revision to the population.
+	 */
+	public void add(int aRevision, String aAuthor, String aMonth) {
+		ids.add(aRevision);
+		authors.add(dictionary.intern(aAuthor));
+		months.add(dictionary.intern(aMonth));
+	}
+
+	/**
+	 * Add the revisions listed by <code>svn log -q</code> with the given arguments.
+	 */
+	public void load(@Nonnull List<String> aArgs) throws IOException {
+		CommandLine cmd = new CommandLine("svn");
+		cmd.addArgument("log");
+		cmd.addArgument("-q");
+		cmd.addArguments(aArgs.toArray(new String[0]));
+		SvnLog.execute(cmd, this::parse);
+		LOG.info("Population of {} revisions", ids.size());
+	}
+
+	/**
+	 * Parse a line of <code>svn log -q</code> output, other lines are ignored.
+	 */
+	public void parse(String aLine) {
+		Matcher matcher = QUIET_ENTRY.matcher(aLine);
+		if (matcher.matches()) {
+			add(NumberUtils.toInt(matcher.group(1)), matcher.group(2), matcher.group(3));
+		}
+	}
+
+	@Nonnull
+	public RevisionSample select() {
+		final int count = ids.size();
+		final Map<String, Integer> population = new HashMap<>();
+		final IntList selected = new IntList();
+		switch (strategy) {
+			case UNIFORM:
+				population.put(ALL, count);
+				for (int i = random.nextInt(Math.min(rate, Math.max(count, 1))); i < count; i += rate) {
+					selected.add(i);
+				}
+				break;
+			case RESERVOIR:
+				population.put(ALL, count);
+				int[] reservoir = new int[Math.min(size, count)];
+				for (int i = 0; i < count; ++i) {
+					if (i < reservoir.length) {
+						reservoir[i] = i;
+					} else {
+						int j = random.nextInt(i + 1);
+						if (j < reservoir.length) {
+							reservoir[j] = i;
+						}
+					}
+				}
+				for (int i : reservoir) {
+					selected.add(i);
+				}
+				break;
+			default:
+				selectStratified(strategy == SamplingStrategy.AUTHOR ? authors : months, population, selected);
+		}
+
+		// newest first, like svn log
+		int[] order = selected.toArray();
+		long[] sorted = new long[order.length];
+		for (int i = 0; i < order.length; ++i) {
+			sorted[i] = (long) ids.get(order[i]) << 32 | order[i];
+		}
+		Arrays.sort(sorted);
+		int[] sampleIds = new int[sorted.length];
+		String[] strata = new String[sorted.length];
+		for (int i = 0; i < sorted.length; ++i) {
+			int idx = (int) sorted[sorted.length - 1 - i];
+			sampleIds[i] = ids.get(idx);
+			strata[i] = stratumOf(idx);
+		}
+		LOG.info("Sampled {} of {} revisions", sampleIds.length, count);
+		return new RevisionSample(sampleIds, strata, population);
+	}
+
+	/**
+	 * Take a simple random sample of ceil(N/rate) revisions from every stratum, at least two when possible so the
+	 * variance can be estimated.
+	 */
+	private void selectStratified(IntList aStrata, Map<String, Integer> aPopulation, IntList aSelected) {
+		Map<Integer, IntList> members = new HashMap<>();
+		for (int i = 0; i < ids.size(); ++i) {
+			members.computeIfAbsent(aStrata.get(i), k -> new IntList()).add(i);
+		}
+		for (Map.Entry<Integer, IntList> entry : members.entrySet()) {
+			int[] stratum = entry.getValue().toArray();
+			aPopulation.put(dictionary.get(entry.getKey()), stratum.length);
+			int n = Math.max((stratum.length + rate - 1) / rate, Math.min(2, stratum.length));
+			// partial Fisher-Yates shuffle
+			for (int i = 0; i < n; ++i) {
+				int j = i + random.nextInt(stratum.length - i);
+				int tmp = stratum[i];
+				stratum[i] = stratum[j];
+				stratum[j] = tmp;
+				aSelected.add(stratum[i]);
+			}
+		}
+	}
+
+	private String stratumOf(int aIndex) {
+		switch (strategy) {
+			case AUTHOR:
+				return dictionary.get(authors.get(aIndex));
+			case MONTH:
+				return dictionary.get(months.get(aIndex));
+			default:
+				return ALL;
+		}
+	}
+}
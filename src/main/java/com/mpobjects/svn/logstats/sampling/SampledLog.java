@@ -0,0 +1,138 @@
+package com.mpobjects.svn.logstats.sampling;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.annotation.Nonnull;
+
+import org.apache.commons.configuration2.Configuration;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.mpobjects.svn.logstats.CompositeRevisionReporter;
+import com.mpobjects.svn.logstats.RevisionReporter;
+import com.mpobjects.svn.logstats.RevisionReporterException;
+import com.mpobjects.svn.logstats.SvnLog;
+import com.mpobjects.svn.logstats.SvnLogParser;
+
+/**
+ * Runs svn log on a sample of the revisions. The revisions are listed with <code>svn log -q</code>, the sampled
+ * revisions are fetched in chunks by multiple svn processes in parallel and parsed in order. Next to the configured
+ * reporter, which only sees the sampled revisions, an {@link EstimatingRevisionReporter} writes the estimated totals.
+ * <p>
+ * Settings: sampling.strategy, sampling.rate (1 in N), sampling.size (reservoir size), sampling.seed, sampling.chunk
+ * (revisions per svn process), sampling.threads and sampling.output (the estimates file).
+ */
+public class SampledLog {
+
+	private static final Logger LOG = LoggerFactory.getLogger(SampledLog.class);
+
+	/**
+	 * Remove the revision range arguments, the sampled revisions are passed instead.
+	 */
+	@Nonnull
+	protected static List<String> withoutRevisionArgs(@Nonnull List<String> aArgs) {
+		List<String> result = new ArrayList<>();
+		for (int i = 0; i < aArgs.size(); ++i) {
+			String arg = aArgs.get(i);
+			if (StringUtils.equalsAny(arg, "-r", "--revision", "-c", "--change")) {
+				++i;
+			} else if (!StringUtils.startsWithAny(arg, "-r", "--revision=", "-c", "--change=")) {
+				result.add(arg);
+			}
+		}
+		return result;
+	}
+
+	protected final Configuration config;
+
+	public SampledLog(@Nonnull Configuration aConfig) {
+		config = aConfig;
+	}
+
+	/**
+	 * @param aArgs
+	 *            svn log arguments, like the revision range and the repository URL
+	 * @param aReporter
+	 *            receives the sampled revisions, may be null
+	 */
+	public void run(@Nonnull List<String> aArgs, RevisionReporter aReporter) throws IOException, RevisionReporterException {
+		SamplingStrategy strategy = SamplingStrategy.get(config.getString("sampling.strategy"));
+		if (strategy == null) {
+			throw new IllegalArgumentException("Unknown sampling strategy: " + config.getString("sampling.strategy"));
+		}
+		RevisionSampler sampler = new RevisionSampler(strategy, config.getInt("sampling.rate", 10), config.getInt("sampling.size", 1000),
+				config.getLong("sampling.seed", System.currentTimeMillis()));
+		sampler.load(aArgs);
+		RevisionSample sample = sampler.select();
+
+		try (EstimatingRevisionReporter estimator = new EstimatingRevisionReporter(
+				new PrintWriter(new File(config.getString("sampling.output", "estimates.csv"))), config, sample)) {
+			RevisionReporter reporter = aReporter == null ? estimator : new CompositeRevisionReporter(aReporter, estimator);
+			SvnLogParser parser = new SvnLogParser(reporter);
+			SvnLog.configureParser(parser, config);
+			fetch(sample, withoutRevisionArgs(aArgs), parser);
+			parser.flush();
+		}
+	}
+
+	/**
+	 * Fetch the sampled revisions in chunks, a limited number of chunks is fetched ahead of the parser.
+	 */
+	private void fetch(RevisionSample aSample, List<String> aArgs, SvnLogParser aParser) throws IOException {
+		final int chunkSize = Math.max(config.getInt("sampling.chunk", 100), 1);
+		final int threads = Math.max(config.getInt("sampling.threads", 4), 1);
+		final int[] ids = aSample.getIds();
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			Deque<Future<List<String>>> fetching = new ArrayDeque<>();
+			int next = 0;
+			while (next < ids.length || !fetching.isEmpty()) {
+				while (next < ids.length && fetching.size() < threads * 2) {
+					final int[] chunk = Arrays.copyOfRange(ids, next, Math.min(next + chunkSize, ids.length));
+					next += chunk.length;
+					fetching.add(executor.submit(() -> fetchChunk(chunk, aArgs)));
+				}
+				for (String line : fetching.poll().get()) {
+					aParser.parse(line);
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while fetching revisions.", e);
+		} catch (ExecutionException e) {
+			throw new IOException("Failure fetching revisions.", e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private List<String> fetchChunk(int[] aChunk, List<String> aArgs) throws IOException {
+		StringBuilder revisions = new StringBuilder();
+		for (int id : aChunk) {
+			if (revisions.length() > 0) {
+				revisions.append(',');
+			}
+			revisions.append(id);
+		}
+		List<String> args = new ArrayList<>();
+		args.add("-c");
+		args.add(revisions.toString());
+		args.addAll(aArgs);
+		List<String> lines = new ArrayList<>();
+		SvnLog.execute(SvnLog.createLogCommand(args.toArray(new String[0])), lines::add);
+		LOG.debug("Fetched {} revisions", aChunk.length);
+		return lines;
+	}
+}
@@ -0,0 +1,32 @@
+package com.mpobjects.svn.logstats.sampling;
+
+import javax.annotation.CheckForNull;
+
+public enum SamplingStrategy {
+	/**
+	 * Stratified by author, a fraction of every author's revisions
+	 */
+	AUTHOR,
+	/**
+	 * Stratified by month, a fraction of every month's revisions
+	 */
+	MONTH,
+	/**
+	 * Fixed number of revisions picked at random
+	 */
+	RESERVOIR,
+	/**
+	 * Every N-th revision
+	 */
+	UNIFORM;
+
+	@CheckForNull
+	public static SamplingStrategy get(String aName) {
+		for (SamplingStrategy strategy : values()) {
+			if (strategy.name().equalsIgnoreCase(aName)) {
+				return strategy;
+			}
+		}
+		return null;
+	}
+}
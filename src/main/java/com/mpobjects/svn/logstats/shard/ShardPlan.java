@@ -0,0 +1,206 @@
+package com.mpobjects.svn.logstats.shard;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVPrinter;
+import org.apache.commons.csv.CSVRecord;
+
+/**
+ * The revision ranges of the shards and the files of every shard in the shard directory. Shard 0 holds the newest
+ * revisions, so the shards in index order produce the same order as a single svn log run.
+ */
+public class ShardPlan {
+
+	/**
+	 * A revision range processed by a single worker.
+	 */
+	public static class Shard {
+		protected final int firstRevision;
+
+		protected final int index;
+
+		protected final int lastRevision;
+
+		public Shard(int aIndex, int aFirstRevision, int aLastRevision) {
+			index = aIndex;
+			firstRevision = aFirstRevision;
+			lastRevision = aLastRevision;
+		}
+
+		public int getFirstRevision() {
+			return firstRevision;
+		}
+
+		public int getIndex() {
+			return index;
+		}
+
+		public int getLastRevision() {
+			return lastRevision;
+		}
+
+		/**
+		 * @return the svn revision range, newest first
+		 */
+		@Nonnull
+		public String getRange() {
+			return lastRevision + ":" + firstRevision;
+		}
+	}
+
+	private static final String[] HEADER = { "Shard", "First Revision", "Last Revision" };
+
+	private static final String PLAN_FILE = "plan.csv";
+
+	/**
+	 * Split the revision range into shards of (almost) equal size.
+	 */
+	@Nonnull
+	public static ShardPlan create(@Nonnull Path aDirectory, int aFirstRevision, int aLastRevision, int aShards) {
+		if (aLastRevision < aFirstRevision) {
+			throw new IllegalArgumentException("Empty revision range " + aFirstRevision + ":" + aLastRevision);
+		}
+		int count = Math.max(Math.min(aShards, aLastRevision - aFirstRevision + 1), 1);
+		long size = aLastRevision - aFirstRevision + 1L;
+		List<Shard> shards = new ArrayList<>();
+		for (int i = 0; i < count; ++i) {
+			// shard 0 ends at the last revision
+			int last = (int) (aLastRevision - size * i / count);
+			int first = (int) (aLastRevision - size * (i + 1) / count + 1);
+			shards.add(new Shard(i, first, last));
+		}
+		return new ShardPlan(aDirectory, shards);
+	}
+
+	/**
+	 * @return the plan saved in the directory, or null when there is none
+	 */
+	@CheckForNull
+	public static ShardPlan load(@Nonnull Path aDirectory) throws IOException {
+		Path file = aDirectory.resolve(PLAN_FILE);
+		if (!Files.exists(file)) {
+			return null;
+		}
+		List<Shard> shards = new ArrayList<>();
+		try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+				CSVParser parser = CSVFormat.RFC4180.withFirstRecordAsHeader().parse(reader)) {
+			for (CSVRecord record : parser) {
+				shards.add(new Shard(Integer.parseInt(record.get(0)), Integer.parseInt(record.get(1)), Integer.parseInt(record.get(2))));
+			}
+		}
+		return new ShardPlan(aDirectory, shards);
+	}
+
+	protected final Path directory;
+
+	protected final List<Shard> shards;
+
+	protected ShardPlan(@Nonnull Path aDirectory, @Nonnull List<Shard> aShards) {
+		directory = aDirectory;
+		shards = Collections.unmodifiableList(aShards);
+	}
+
+	/**
+	 * The aggregate file, written by the worker.
+	 */
+	@Nonnull
+	public Path getAggregateFile(@Nonnull Shard aShard) {
+		return getFile(aShard, ".agg");
+	}
+
+	/**
+	 * The CSV rows of the shard without header, written by the worker.
+	 */
+	@Nonnull
+	public Path getChunkFile(@Nonnull Shard aShard) {
+		return getFile(aShard, ".csv");
+	}
+
+	@Nonnull
+	public Path getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * Marker written by the worker after the chunk and aggregate files are complete.
+	 */
+	@Nonnull
+	public Path getDoneFile(@Nonnull Shard aShard) {
+		return getFile(aShard, ".done");
+	}
+
+	/**
+	 * The worker output.
+	 */
+	@Nonnull
+	public Path getLogFile(@Nonnull Shard aShard) {
+		return getFile(aShard, ".log");
+	}
+
+	@Nonnull
+	public Shard getShard(int aIndex) {
+		for (Shard shard : shards) {
+			if (shard.getIndex() == aIndex) {
+				return shard;
+			}
+		}
+		throw new IllegalArgumentException("Unknown shard: " + aIndex);
+	}
+
+	@Nonnull
+	public List<Shard> getShards() {
+		return shards;
+	}
+
+	public boolean isDone(@Nonnull Shard aShard) {
+		return Files.exists(getDoneFile(aShard));
+	}
+
+	/**
+	 * @return true if the plan covers the same shards as the other plan
+	 */
+	public boolean isSame(@Nonnull ShardPlan aOther) {
+		if (shards.size() != aOther.shards.size()) {
+			return false;
+		}
+		for (int i = 0; i < shards.size(); ++i) {
+			Shard shard = shards.get(i);
+			Shard other = aOther.shards.get(i);
+			if (shard.index != other.index || shard.firstRevision != other.firstRevision || shard.lastRevision != other.lastRevision) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public void save() throws IOException {
+		Files.createDirectories(directory);
+		Path temp = Files.createTempFile(directory, "plan-", ".tmp");
+		try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8);
+				CSVPrinter printer = new CSVPrinter(writer, CSVFormat.RFC4180.withHeader(HEADER))) {
+			for (Shard shard : shards) {
+				printer.printRecord(shard.index, shard.firstRevision, shard.lastRevision);
+			}
+		}
+		Files.move(temp, directory.resolve(PLAN_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	@Nonnull
+	private Path getFile(Shard aShard, String aSuffix) {
+		return directory.resolve(String.format("shard-%04d%s", aShard.index, aSuffix));
+	}
+}
@@ -0,0 +1,332 @@
+package com.mpobjects.svn.logstats.shard;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.annotation.Nonnull;
+
+import org.apache.commons.configuration2.BaseConfiguration;
+import org.apache.commons.configuration2.Configuration;
+import org.apache.commons.configuration2.ConfigurationUtils;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+import org.apache.commons.lang3.StringUtils;
+import org.joda.time.DateTime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.mpobjects.svn.logstats.CompositeRevisionReporter;
+import com.mpobjects.svn.logstats.CsvRevisionReporter;
+import com.mpobjects.svn.logstats.RevisionReporterException;
+import com.mpobjects.svn.logstats.SvnLog;
+import com.mpobjects.svn.logstats.SvnLogParser;
+import com.mpobjects.svn.logstats.daemon.ChurnAggregator;
+import com.mpobjects.svn.logstats.daemon.ChurnAggregator.Dimension;
+import com.mpobjects.svn.logstats.shard.ShardPlan.Shard;
+
+/**
+ * Splits a revision range into shards which are processed by separate worker JVMs, and merges their results.
+ * <p>
+ * Usage:
+ * <ul>
+ * <li><code>SvnLogShards coordinate [--from rev] [--to rev] [--shards n] [--workers n] -- svn log arguments</code>
+ * plans the shards (the last revision defaults to HEAD), runs the workers for all shards which are not done yet and
+ * merges the results when all shards are done. Rerunning it after a failure only runs the failed shards.</li>
+ * <li><code>SvnLogShards worker shard -- svn log arguments</code> processes a single shard of the plan, it writes the
+ * CSV rows of the shard, the {@link ChurnAggregator} totals in its binary format and finally a done marker.</li>
+ * <li><code>SvnLogShards merge</code> concatenates the CSV rows of the shards into "output", newest revisions first
+ * like a single run, and adds up the totals into shard.dir/merged.agg and shard.aggregate.output.</li>
+ * </ul>
+ * The svn log arguments should not contain a revision range. Merge statuses which depend on a merge revision in a
+ * newer shard are not detected, as every worker only sees its own revisions.
+ * <p>
+ * The {@link ChurnAggregator} is the only aggregate with a mergeable format. The cochange, sketch, survival and tree
+ * reporters are not run by the workers, run them over the full range instead.
+ * <p>
+ * Settings: shard.dir, shard.count, shard.workers, shard.jvm.options and shard.aggregate.output.
+ */
+public class SvnLogShards {
+
+	private static final Logger LOG = LoggerFactory.getLogger(SvnLogShards.class);
+
+	public static void main(String[] args) throws Exception {
+		if (args.length == 0) {
+			System.err.println("Usage: SvnLogShards coordinate|worker|merge ...");
+			System.exit(1);
+		}
+		SvnLogShards shards = new SvnLogShards(SvnLog.loadConfiguration());
+		if (!shards.exec(args[0], Arrays.copyOfRange(args, 1, args.length))) {
+			System.exit(2);
+		}
+	}
+
+	protected final Configuration config;
+
+	protected final Path directory;
+
+	public SvnLogShards(@Nonnull Configuration aConfig) {
+		config = aConfig;
+		directory = Paths.get(config.getString("shard.dir", "shards"));
+	}
+
+	/**
+	 * @return false if not all shards are done
+	 */
+	public boolean coordinate(@Nonnull String[] aArgs) throws Exception {
+		Integer from = null;
+		Integer to = null;
+		int count = config.getInt("shard.count", Runtime.getRuntime().availableProcessors());
+		int workers = config.getInt("shard.workers", Runtime.getRuntime().availableProcessors());
+		boolean planArgs = false;
+		List<String> svnArgs = new ArrayList<>();
+		for (int i = 0; i < aArgs.length; ++i) {
+			if ("--".equals(aArgs[i])) {
+				svnArgs.addAll(Arrays.asList(aArgs).subList(i + 1, aArgs.length));
+				break;
+			} else if ("--from".equals(aArgs[i]) && i + 1 < aArgs.length) {
+				from = Integer.valueOf(aArgs[++i]);
+				planArgs = true;
+			} else if ("--to".equals(aArgs[i]) && i + 1 < aArgs.length) {
+				to = Integer.valueOf(aArgs[++i]);
+				planArgs = true;
+			} else if ("--shards".equals(aArgs[i]) && i + 1 < aArgs.length) {
+				count = Integer.parseInt(aArgs[++i]);
+				planArgs = true;
+			} else if ("--workers".equals(aArgs[i]) && i + 1 < aArgs.length) {
+				workers = Integer.parseInt(aArgs[++i]);
+			} else {
+				throw new IllegalArgumentException("Unknown argument: " + aArgs[i]);
+			}
+		}
+
+		ShardPlan plan = ShardPlan.load(directory);
+		if (plan == null || planArgs) {
+			// the target is the last svn argument
+			int last = to == null ? SvnLog.getHeadRevision(svnArgs.isEmpty() ? "." : svnArgs.get(svnArgs.size() - 1)) : to;
+			ShardPlan requested = ShardPlan.create(directory, from == null ? 1 : from, last, count);
+			if (plan != null && !plan.isSame(requested)) {
+				throw new IllegalArgumentException("The shard directory " + directory + " contains a different plan, remove it to start over");
+			}
+			plan = requested;
+			plan.save();
+		}
+
+		List<Shard> pending = new ArrayList<>();
+		for (Shard shard : plan.getShards()) {
+			if (!plan.isDone(shard)) {
+				pending.add(shard);
+			}
+		}
+		LOG.info("{} of {} shards to process", pending.size(), plan.getShards().size());
+
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(workers, 1));
+		int failures = 0;
+		try {
+			List<Future<Boolean>> results = new ArrayList<>();
+			for (Shard shard : pending) {
+				final ShardPlan current = plan;
+				results.add(executor.submit(() -> runWorker(current, shard, svnArgs)));
+			}
+			for (int i = 0; i < results.size(); ++i) {
+				boolean success;
+				try {
+					success = results.get(i).get();
+				} catch (ExecutionException e) {
+					LOG.error("Cannot run worker of shard " + pending.get(i).getIndex(), e.getCause());
+					success = false;
+				}
+				if (!success) {
+					++failures;
+					LOG.error("Shard {} ({}) failed, see {}", pending.get(i).getIndex(), pending.get(i).getRange(), plan.getLogFile(pending.get(i)));
+				}
+			}
+		} finally {
+			executor.shutdown();
+		}
+		if (failures > 0) {
+			LOG.error("{} shards failed, rerun coordinate to process them", failures);
+			return false;
+		}
+		merge();
+		return true;
+	}
+
+	public boolean exec(@Nonnull String aCommand, @Nonnull String[] aArgs) throws Exception {
+		switch (aCommand) {
+			case "coordinate":
+				return coordinate(aArgs);
+			case "worker":
+				if (aArgs.length < 1) {
+					throw new IllegalArgumentException("Missing shard number");
+				}
+				List<String> svnArgs = new ArrayList<>(Arrays.asList(aArgs).subList(1, aArgs.length));
+				svnArgs.remove("--");
+				worker(Integer.parseInt(aArgs[0]), svnArgs);
+				return true;
+			case "merge":
+				merge();
+				return true;
+			default:
+				throw new IllegalArgumentException("Unknown command: " + aCommand);
+		}
+	}
+
+	/**
+	 * Combine the results of all shards, fails when a shard is not done.
+	 */
+	public void merge() throws IOException, RevisionReporterException {
+		ShardPlan plan = loadPlan();
+		List<Integer> missing = new ArrayList<>();
+		for (Shard shard : plan.getShards()) {
+			if (!plan.isDone(shard)) {
+				missing.add(shard.getIndex());
+			}
+		}
+		if (!missing.isEmpty()) {
+			throw new IllegalStateException("Shards not done: " + missing);
+		}
+
+		final String output = config.getString("output", "output.csv");
+		try (Writer writer = Files.newBufferedWriter(Paths.get(output), StandardCharsets.UTF_8)) {
+			// only writes the header
+			new CsvRevisionReporter(writer, config).flush();
+			char[] buffer = new char[64 * 1024];
+			for (Shard shard : plan.getShards()) {
+				try (Reader reader = Files.newBufferedReader(plan.getChunkFile(shard), StandardCharsets.UTF_8)) {
+					int read;
+					while ((read = reader.read(buffer)) > 0) {
+						writer.write(buffer, 0, read);
+					}
+				}
+			}
+		}
+
+		ChurnAggregator aggregator = new ChurnAggregator(config);
+		for (Shard shard : plan.getShards()) {
+			try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(plan.getAggregateFile(shard))))) {
+				aggregator.merge(input);
+			}
+		}
+		writeAggregate(aggregator, directory.resolve("merged.agg"));
+		try (CSVPrinter printer = new CSVPrinter(Files.newBufferedWriter(Paths.get(config.getString("shard.aggregate.output", "aggregates.csv")),
+				StandardCharsets.UTF_8), CSVFormat.RFC4180.withHeader("Dimension", "Key", "Revisions", "Files", "Lines Added", "Lines Removed", "Lines Changed"))) {
+			for (Dimension dimension : Dimension.values()) {
+				for (Entry<String, long[]> entry : aggregator.query(dimension, null, null).entrySet()) {
+					long[] counters = entry.getValue();
+					printer.printRecord(dimension, entry.getKey(), counters[ChurnAggregator.IDX_REVISIONS], counters[ChurnAggregator.IDX_FILES],
+							counters[ChurnAggregator.IDX_LINES_ADDED], counters[ChurnAggregator.IDX_LINES_REMOVED],
+							counters[ChurnAggregator.IDX_LINES_CHANGED]);
+				}
+			}
+		}
+		LOG.info("Merged {} shards into {}", plan.getShards().size(), output);
+	}
+
+	/**
+	 * Process a single shard. The results are written to temporary files which are moved in place when complete,
+	 * the done marker is written last.
+	 */
+	public void worker(int aShard, @Nonnull List<String> aSvnArgs) throws IOException, RevisionReporterException {
+		ShardPlan plan = loadPlan();
+		Shard shard = plan.getShard(aShard);
+		Files.deleteIfExists(plan.getDoneFile(shard));
+
+		// the merge writes the header
+		Configuration rowConfig = new BaseConfiguration();
+		ConfigurationUtils.copy(config, rowConfig);
+		rowConfig.setProperty("csv.withheader", false);
+
+		Path chunk = Files.createTempFile(directory, "shard-", ".csv.tmp");
+		Path aggregate = Files.createTempFile(directory, "shard-", ".agg.tmp");
+		try {
+			ChurnAggregator aggregator = new ChurnAggregator(config);
+			try (CsvRevisionReporter rows = new CsvRevisionReporter(Files.newBufferedWriter(chunk, StandardCharsets.UTF_8), rowConfig)) {
+				SvnLogParser parser = new SvnLogParser(new CompositeRevisionReporter(rows, aggregator));
+				SvnLog.configureParser(parser, config);
+				List<String> args = new ArrayList<>();
+				args.add("-r");
+				args.add(shard.getRange());
+				args.addAll(aSvnArgs);
+				SvnLog.execute(SvnLog.createLogCommand(SvnLog.pushDownPaths(args.toArray(new String[0]), config)), parser);
+				parser.flush();
+			}
+			writeAggregate(aggregator, aggregate);
+
+			Files.move(chunk, plan.getChunkFile(shard), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			Files.move(aggregate, plan.getAggregateFile(shard), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			Path done = Files.createTempFile(directory, "shard-", ".done.tmp");
+			Files.write(done, Collections.singletonList(shard.getRange() + " " + DateTime.now()), StandardCharsets.UTF_8);
+			Files.move(done, plan.getDoneFile(shard), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			LOG.info("Shard {} ({}) done", shard.getIndex(), shard.getRange());
+		} finally {
+			Files.deleteIfExists(chunk);
+			Files.deleteIfExists(aggregate);
+		}
+	}
+
+	/**
+	 * Run the worker of the shard in a new JVM with the same class path and settings.
+	 *
+	 * @return true if the shard is done
+	 */
+	protected boolean runWorker(@Nonnull ShardPlan aPlan, @Nonnull Shard aShard, @Nonnull List<String> aSvnArgs) throws IOException, InterruptedException {
+		List<String> command = new ArrayList<>();
+		command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		Collections.addAll(command, StringUtils.split(config.getString("shard.jvm.options", "")));
+		for (Map.Entry<Object, Object> property : System.getProperties().entrySet()) {
+			String name = property.getKey().toString();
+			if ("settings".equals(name) || name.startsWith("org.slf4j.")) {
+				command.add("-D" + name + "=" + property.getValue());
+			}
+		}
+		command.add(SvnLogShards.class.getName());
+		command.add("worker");
+		command.add(Integer.toString(aShard.getIndex()));
+		command.add("--");
+		command.addAll(aSvnArgs);
+
+		LOG.info("Starting worker of shard {} ({})", aShard.getIndex(), aShard.getRange());
+		File log = aPlan.getLogFile(aShard).toFile();
+		Process process = new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(log).start();
+		int exit = process.waitFor();
+		return exit == 0 && aPlan.isDone(aShard);
+	}
+
+	@Nonnull
+	private ShardPlan loadPlan() throws IOException {
+		ShardPlan plan = ShardPlan.load(directory);
+		if (plan == null) {
+			throw new IllegalStateException("No shard plan in " + directory + ", run coordinate first");
+		}
+		return plan;
+	}
+
+	private void writeAggregate(ChurnAggregator aAggregator, Path aFile) throws IOException {
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(aFile)))) {
+			aAggregator.write(out);
+		}
+	}
+}
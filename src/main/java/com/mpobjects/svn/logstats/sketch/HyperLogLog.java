@@ -0,0 +1,95 @@
+package com.mpobjects.svn.logstats.sketch;
+
+import javax.annotation.Nonnull;
+
+/**
+ * HyperLogLog distinct count estimator using 2^precision one byte registers. The relative standard error is about
+ * 1.04 / sqrt(2^precision).
+ */
+public class HyperLogLog {
+
+	public static final int MAX_PRECISION = 18;
+
+	public static final int MIN_PRECISION = 4;
+
+	private final int precision;
+
+	private final byte[] registers;
+
+	public HyperLogLog(int aPrecision) {
+		if (aPrecision < MIN_PRECISION || aPrecision > MAX_PRECISION) {
+			throw new IllegalArgumentException("Precision must be between " + MIN_PRECISION + " and " + MAX_PRECISION);
+		}
+		precision = aPrecision;
+		registers = new byte[1 << aPrecision];
+	}
+
+	/**
+	 * Add a well distributed 64 bit hash.
+	 */
+	public void add(long aHash) {
+		int idx = (int) (aHash >>> (64 - precision));
+		long w = (aHash << precision) | (1L << (precision - 1));
+		byte rank = (byte) (Long.numberOfLeadingZeros(w) + 1);
+		if (rank > registers[idx]) {
+			registers[idx] = rank;
+		}
+	}
+
+	public long estimate() {
+		final int m = registers.length;
+		double sum = 0;
+		int zeros = 0;
+		for (byte r : registers) {
+			sum += 1.0 / (1L << r);
+			if (r == 0) {
+				++zeros;
+			}
+		}
+		double alpha;
+		switch (m) {
+			case 16:
+				alpha = 0.673;
+				break;
+			case 32:
+				alpha = 0.697;
+				break;
+			case 64:
+				alpha = 0.709;
+				break;
+			default:
+				alpha = 0.7213 / (1 + 1.079 / m);
+		}
+		double estimate = alpha * m * m / sum;
+		if (estimate <= 2.5 * m && zeros > 0) {
+			// small range correction: linear counting
+			estimate = m * Math.log((double) m / zeros);
+		}
+		return Math.round(estimate);
+	}
+
+	public int getPrecision() {
+		return precision;
+	}
+
+	/**
+	 * @return the relative standard error of the estimate
+	 */
+	public double getRelativeError() {
+		return 1.04 / Math.sqrt(registers.length);
+	}
+
+	/**
+	 * Merge another sketch of the same precision into this one.
+	 */
+	public void merge(@Nonnull HyperLogLog aOther) {
+		if (aOther.precision != precision) {
+			throw new IllegalArgumentException("Cannot merge sketches of different precision.");
+		}
+		for (int i = 0; i < registers.length; ++i) {
+			if (aOther.registers[i] > registers[i]) {
+				registers[i] = aOther.registers[i];
+			}
+		}
+	}
+}
@@ -0,0 +1,190 @@
+package com.mpobjects.svn.logstats.sketch;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import javax.annotation.Nonnull;
+
+import org.apache.commons.configuration2.Configuration;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
+
+import com.mpobjects.svn.logstats.AbstractRevisionReporter;
+import com.mpobjects.svn.logstats.RevisionReporterException;
+import com.mpobjects.svn.logstats.model.FileChange;
+import com.mpobjects.svn.logstats.model.Revision;
+import com.mpobjects.svn.logstats.util.Hashing;
+
+/**
+ * Reports hot files and authors, and the distinct number of files touched per author and project per period, using
+ * fixed size streaming sketches instead of exact maps. Churn is lines added plus lines removed. Authors and projects
+ * are case sensitive.
+ * <p>
+ * Settings: sketch.topk (number of hot items to write), sketch.capacity (Space-Saving counters, the count error is
+ * at most total churn / capacity), sketch.hll.precision (HyperLogLog registers = 2^precision, relative error
+ * 1.04/sqrt(registers)), sketch.distinct.capacity (author or project and period combinations with a distinct count)
+ * and sketch.period (day, week, month or year). Merge sources are skipped with merge.exclude.
+ */
+public class SketchRevisionReporter extends AbstractRevisionReporter implements Closeable {
+
+	/**
+	 * Distinct file sketches of the keys with the most file changes, a Space-Saving summary of the file changes
+	 * decides which keys keep their sketch. A key which lost its sketch starts with an empty one when it comes back,
+	 * so the estimates of keys near the bound only count the files since then.
+	 */
+	protected static class DistinctSketches {
+		protected final SpaceSaving keys;
+
+		protected final int precision;
+
+		protected final Map<String, HyperLogLog> sketches;
+
+		protected DistinctSketches(int aCapacity, int aPrecision) {
+			keys = new SpaceSaving(aCapacity);
+			precision = aPrecision;
+			sketches = new HashMap<>();
+		}
+
+		/**
+		 * @return the sketch of the key, after counting the file changes
+		 */
+		@Nonnull
+		protected HyperLogLog get(@Nonnull String aKey, int aFileChanges) {
+			String evicted = keys.add(aKey, Math.max(1, aFileChanges));
+			if (evicted != null) {
+				sketches.remove(evicted);
+			}
+			return sketches.computeIfAbsent(aKey, k -> new HyperLogLog(precision));
+		}
+	}
+
+	protected HyperLogLog allFiles;
+
+	protected SpaceSaving authors;
+
+	protected DistinctSketches distinctPerAuthor;
+
+	protected DistinctSketches distinctPerProject;
+
+	protected SpaceSaving files;
+
+	protected int hllPrecision;
+
+	protected final CSVPrinter output;
+
+	protected DateTimeFormatter periodFormat;
+
+	protected int topK;
+
+	public SketchRevisionReporter(@Nonnull Appendable aOutput, @Nonnull Configuration aConfig) throws RevisionReporterException {
+		super(aConfig);
+		try {
+			output = new CSVPrinter(aOutput, CSVFormat.RFC4180.withHeader("Type", "Key", "Period", "Estimate", "Error"));
+		} catch (IOException e) {
+			throw new RevisionReporterException("Failure to create CSVPrinter.", e);
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		output.close();
+	}
+
+	@Override
+	public void flush() throws RevisionReporterException {
+		try {
+			writeTop("Hot File", files);
+			writeTop("Hot Author", authors);
+			output.printRecord("Distinct Files", "", "", allFiles.estimate(), Math.round(allFiles.estimate() * allFiles.getRelativeError()));
+			writeDistinct("Distinct Files per Author", distinctPerAuthor);
+			writeDistinct("Distinct Files per Project", distinctPerProject);
+			output.flush();
+		} catch (IOException e) {
+			throw new RevisionReporterException("Failure writing sketch results.", e);
+		}
+	}
+
+	@Override
+	public void report(@Nonnull Revision aRevision) throws RevisionReporterException {
+		super.report(aRevision);
+		if (isExcludedMergeSource(aRevision)) {
+			return;
+		}
+		final String period = periodFormat.print(aRevision.getTimestamp());
+		final int fileChanges = aRevision.getFileChanges().size();
+		final HyperLogLog authorSketch = distinctPerAuthor.get(aRevision.getAuthor() + '\t' + period, fileChanges);
+		final HyperLogLog[] projectSketches = new HyperLogLog[aRevision.getProjects().size()];
+		int idx = 0;
+		for (String project : aRevision.getProjects()) {
+			projectSketches[idx++] = distinctPerProject.get(project + '\t' + period, fileChanges);
+		}
+
+		long churn = 0;
+		for (FileChange change : aRevision.getFileChanges().values()) {
+			long fileChurn = (long) change.getLinesAdded() + change.getLinesRemoved();
+			churn += fileChurn;
+			files.add(change.getFilename(), fileChurn);
+
+			long hash = Hashing.hash64(change.getFilename());
+			allFiles.add(hash);
+			authorSketch.add(hash);
+			for (HyperLogLog projectSketch : projectSketches) {
+				projectSketch.add(hash);
+			}
+		}
+		authors.add(aRevision.getAuthor(), churn);
+	}
+
+	@Override
+	public boolean retainsRevisions() {
+		return false;
+	}
+
+	@Override
+	protected void initConfig() {
+		super.initConfig();
+		topK = config.getInt("sketch.topk", 100);
+		hllPrecision = config.getInt("sketch.hll.precision", 10);
+		int capacity = config.getInt("sketch.capacity", topK * 10);
+		files = new SpaceSaving(capacity);
+		authors = new SpaceSaving(capacity);
+		allFiles = new HyperLogLog(Math.max(hllPrecision, 14));
+		int distinctCapacity = config.getInt("sketch.distinct.capacity", 1000);
+		distinctPerAuthor = new DistinctSketches(distinctCapacity, hllPrecision);
+		distinctPerProject = new DistinctSketches(distinctCapacity, hllPrecision);
+		switch (config.getString("sketch.period", "month")) {
+			case "day":
+				periodFormat = DateTimeFormat.forPattern("yyyy-MM-dd");
+				break;
+			case "week":
+				periodFormat = DateTimeFormat.forPattern("xxxx-'W'ww");
+				break;
+			case "year":
+				periodFormat = DateTimeFormat.forPattern("yyyy");
+				break;
+			default:
+				periodFormat = DateTimeFormat.forPattern("yyyy-MM");
+		}
+	}
+
+	private void writeDistinct(String aType, DistinctSketches aSketches) throws IOException {
+		for (Entry<String, HyperLogLog> entry : new TreeMap<>(aSketches.sketches).entrySet()) {
+			int idx = entry.getKey().lastIndexOf('\t');
+			long estimate = entry.getValue().estimate();
+			output.printRecord(aType, entry.getKey().substring(0, idx), entry.getKey().substring(idx + 1), estimate,
+					Math.round(estimate * entry.getValue().getRelativeError()));
+		}
+	}
+
+	private void writeTop(String aType, SpaceSaving aSketch) throws IOException {
+		for (SpaceSaving.Counter counter : aSketch.top(topK)) {
+			output.printRecord(aType, counter.getItem(), "", counter.getCount(), counter.getError());
+		}
+	}
+}
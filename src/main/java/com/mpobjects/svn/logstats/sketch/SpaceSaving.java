@@ -0,0 +1,173 @@
+package com.mpobjects.svn.logstats.sketch;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+/**
+ * Space-Saving heavy hitter summary with a fixed number of counters. Every reported count overestimates the true
+ * weight by at most its error, which is bounded by the total weight divided by the capacity.
+ */
+public class SpaceSaving {
+
+	public static class Counter {
+		protected long count;
+
+		protected long error;
+
+		protected final String item;
+
+		/**
+		 * Tie breaker for the ordering
+		 */
+		protected final long seq;
+
+		protected Counter(String aItem, long aCount, long aError, long aSeq) {
+			item = aItem;
+			count = aCount;
+			error = aError;
+			seq = aSeq;
+		}
+
+		/**
+		 * @return the estimated weight, never less than the true weight
+		 */
+		public long getCount() {
+			return count;
+		}
+
+		/**
+		 * @return the maximum overestimation of the count
+		 */
+		public long getError() {
+			return error;
+		}
+
+		@Nonnull
+		public String getItem() {
+			return item;
+		}
+	}
+
+	private final int capacity;
+
+	private final Map<String, Counter> counters;
+
+	private final TreeSet<Counter> ordered;
+
+	private long seq;
+
+	private long total;
+
+	public SpaceSaving(int aCapacity) {
+		if (aCapacity < 1) {
+			throw new IllegalArgumentException("Capacity must be positive.");
+		}
+		capacity = aCapacity;
+		counters = new HashMap<>(aCapacity * 2);
+		ordered = new TreeSet<>((a, b) -> {
+			int res = Long.compare(a.count, b.count);
+			return res != 0 ? res : Long.compare(a.seq, b.seq);
+		});
+	}
+
+	/**
+	 * Add weight to an item.
+	 *
+	 * @return the item which lost its counter to make room, null when none did
+	 */
+	@CheckForNull
+	public String add(@Nonnull String aItem, long aWeight) {
+		if (aWeight <= 0) {
+			return null;
+		}
+		total += aWeight;
+		Counter counter = counters.get(aItem);
+		if (counter != null) {
+			ordered.remove(counter);
+			counter.count += aWeight;
+			ordered.add(counter);
+			return null;
+		}
+		String evicted = null;
+		if (counters.size() < capacity) {
+			counter = new Counter(aItem, aWeight, 0, seq++);
+		} else {
+			// replace the smallest counter, the new item inherits its count as error
+			Counter min = ordered.pollFirst();
+			counters.remove(min.item);
+			evicted = min.item;
+			counter = new Counter(aItem, min.count + aWeight, min.count, seq++);
+		}
+		counters.put(aItem, counter);
+		ordered.add(counter);
+		return evicted;
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * @return the total weight added
+	 */
+	public long getTotal() {
+		return total;
+	}
+
+	/**
+	 * Merge another summary into this one.
+	 */
+	public void merge(@Nonnull SpaceSaving aOther) {
+		List<Counter> all = new ArrayList<>(counters.values());
+		Map<String, Counter> byItem = new HashMap<>(counters);
+		// items missing from a full summary may have had up to its minimum count
+		long minThis = counters.size() < capacity || ordered.isEmpty() ? 0 : ordered.first().count;
+		long minOther = aOther.counters.size() < aOther.capacity || aOther.ordered.isEmpty() ? 0 : aOther.ordered.first().count;
+		for (Counter counter : all) {
+			if (!aOther.counters.containsKey(counter.item)) {
+				counter.count += minOther;
+				counter.error += minOther;
+			}
+		}
+		for (Counter other : aOther.counters.values()) {
+			Counter counter = byItem.get(other.item);
+			if (counter == null) {
+				counter = new Counter(other.item, other.count + minThis, other.error + minThis, seq++);
+				byItem.put(other.item, counter);
+				all.add(counter);
+			} else {
+				counter.count += other.count;
+				counter.error += other.error;
+			}
+		}
+		total += aOther.total;
+		all.sort((a, b) -> Long.compare(b.count, a.count));
+		counters.clear();
+		ordered.clear();
+		for (Counter counter : all.subList(0, Math.min(capacity, all.size()))) {
+			counters.put(counter.item, counter);
+			ordered.add(counter);
+		}
+	}
+
+	/**
+	 * @return the top counters, highest count first
+	 */
+	@Nonnull
+	public List<Counter> top(int aLimit) {
+		List<Counter> result = new ArrayList<>(Math.min(aLimit, counters.size()));
+		for (Counter counter : ordered.descendingSet()) {
+			if (result.size() >= aLimit) {
+				break;
+			}
+			result.add(counter);
+		}
+		return result;
+	}
+}
@@ -0,0 +1,188 @@
+package com.mpobjects.svn.logstats.survival;
+
+import java.util.Arrays;
+
+import javax.annotation.Nonnull;
+
+import com.mpobjects.svn.logstats.util.IntList;
+
+/**
+ * The lines of a file as runs of consecutive lines introduced by the same origin. Only the runs are stored, so the
+ * size depends on the number of hunks which survived, not on the size of the file. Lines of unknown origin, from
+ * before the first processed revision, have origin {@link #UNKNOWN}; an open ended map continues with an unknown
+ * number of such lines.
+ * <p>
+ * Instances are immutable, applying a diff with an {@link Editor} creates a new map. Copies of a file share the map.
+ */
+public final class LineMap {
+
+	/**
+	 * Streams the runs of the old map into a new map while the lines of a diff are applied in order.
+	 */
+	public static class Editor {
+		protected final IntList lengths;
+
+		/**
+		 * Lines of the old file consumed so far
+		 */
+		protected int oldLines;
+
+		protected final IntList origins;
+
+		protected LineMap source;
+
+		/**
+		 * Current run of the source, and the lines already consumed of it
+		 */
+		protected int sourceOffset;
+
+		protected int sourceRun;
+
+		public Editor() {
+			lengths = new IntList();
+			origins = new IntList();
+		}
+
+		/**
+		 * Add a line of the given origin at the current position.
+		 */
+		public void add(int aOrigin) {
+			append(aOrigin, 1);
+		}
+
+		/**
+		 * Keep the remaining lines of the old file.
+		 *
+		 * @return the new map
+		 */
+		@Nonnull
+		public LineMap finish() {
+			for (; sourceRun < source.size; ++sourceRun) {
+				append(source.origins[sourceRun], source.lengths[sourceRun] - sourceOffset);
+				sourceOffset = 0;
+			}
+			LineMap result = lengths.isEmpty() && !source.openEnded ? EMPTY : new LineMap(lengths.toArray(), origins.toArray(), source.openEnded);
+			source = null;
+			return result;
+		}
+
+		public int getOldLines() {
+			return oldLines;
+		}
+
+		/**
+		 * Keep the next lines of the old file.
+		 */
+		public void keep(int aLines) {
+			int remaining = aLines;
+			while (remaining > 0 && sourceRun < source.size) {
+				int length = Math.min(remaining, source.lengths[sourceRun] - sourceOffset);
+				append(source.origins[sourceRun], length);
+				consume(length);
+				remaining -= length;
+			}
+			if (remaining > 0) {
+				// beyond the known lines
+				append(UNKNOWN, remaining);
+				oldLines += remaining;
+			}
+		}
+
+		/**
+		 * Remove the next line of the old file.
+		 *
+		 * @return the origin of the removed line
+		 */
+		public int remove() {
+			if (sourceRun >= source.size) {
+				++oldLines;
+				return UNKNOWN;
+			}
+			int result = source.origins[sourceRun];
+			consume(1);
+			return result;
+		}
+
+		public void start(@Nonnull LineMap aSource) {
+			source = aSource;
+			sourceRun = 0;
+			sourceOffset = 0;
+			oldLines = 0;
+			lengths.clear();
+			origins.clear();
+		}
+
+		private void append(int aOrigin, int aLength) {
+			if (aLength <= 0) {
+				return;
+			}
+			final int last = lengths.size() - 1;
+			if (last >= 0 && origins.get(last) == aOrigin) {
+				lengths.set(last, lengths.get(last) + aLength);
+			} else {
+				lengths.add(aLength);
+				origins.add(aOrigin);
+			}
+		}
+
+		private void consume(int aLength) {
+			oldLines += aLength;
+			sourceOffset += aLength;
+			if (sourceOffset == source.lengths[sourceRun]) {
+				++sourceRun;
+				sourceOffset = 0;
+			}
+		}
+	}
+
+	public static final LineMap EMPTY = new LineMap(new int[0], new int[0], false);
+
+	public static final int UNKNOWN = -1;
+
+	/**
+	 * A file of which nothing is known yet
+	 */
+	public static final LineMap UNKNOWN_CONTENT = new LineMap(new int[0], new int[0], true);
+
+	private final int[] lengths;
+
+	private final boolean openEnded;
+
+	private final int[] origins;
+
+	private final int size;
+
+	private LineMap(int[] aLengths, int[] aOrigins, boolean aOpenEnded) {
+		lengths = aLengths;
+		origins = aOrigins;
+		size = aLengths.length;
+		openEnded = aOpenEnded;
+	}
+
+	public int getLength(int aRun) {
+		return lengths[aRun];
+	}
+
+	public int getOrigin(int aRun) {
+		return origins[aRun];
+	}
+
+	/**
+	 * @return true if unknown lines follow the runs
+	 */
+	public boolean isOpenEnded() {
+		return openEnded;
+	}
+
+	/**
+	 * @return the number of runs
+	 */
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public String toString() {
+		return Arrays.toString(lengths) + Arrays.toString(origins) + (openEnded ? "..." : "");
+	}
+}
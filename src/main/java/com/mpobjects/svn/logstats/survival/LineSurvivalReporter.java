@@ -0,0 +1,409 @@
+package com.mpobjects.svn.logstats.survival;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import javax.annotation.Nonnull;
+
+import org.apache.commons.configuration2.Configuration;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.mpobjects.svn.logstats.AbstractRevisionReporter;
+import com.mpobjects.svn.logstats.DiffListener;
+import com.mpobjects.svn.logstats.RevisionReporterException;
+import com.mpobjects.svn.logstats.model.ChangeType;
+import com.mpobjects.svn.logstats.model.FileChange;
+import com.mpobjects.svn.logstats.model.Revision;
+import com.mpobjects.svn.logstats.util.IntList;
+import com.mpobjects.svn.logstats.util.StringDictionary;
+
+/**
+ * Tracks the revision which introduced every line of every file, using the hunks of the diffs, and reports how long
+ * lines survive. For the removed lines the age at removal is counted, for the remaining lines the age at the last
+ * revision. The ages are reported per author of the line, per file group of the file and in total.
+ * <p>
+ * Every file has a {@link LineMap} of runs of lines with the same origin. Copies share the map of the copy source as it
+ * is at the time of the copy, moved files keep their lines. Lines of deleted directories, like removed branches, are
+ * dropped without being counted as removed, and lines from before the first processed revision are not counted at all.
+ * The revisions must be processed oldest first, like "-r 1:HEAD"; exclude tags with path.exclude so they do not count
+ * as surviving copies. Every diff is needed to track the lines, so merge.exclude does not apply, merge sources are
+ * only tagged when the revisions are processed newest first anyway.
+ * <p>
+ * Settings: survival.buckets (upper bounds of the age buckets in days).
+ */
+public class LineSurvivalReporter extends AbstractRevisionReporter implements DiffListener, Closeable {
+
+	/**
+	 * Number of lines and their summed age per age bucket.
+	 */
+	protected static class AgeHistogram {
+		protected final long[] buckets;
+
+		protected long lines;
+
+		protected long totalMinutes;
+
+		public AgeHistogram(int aBuckets) {
+			buckets = new long[aBuckets + 1];
+		}
+
+		public void add(long aMinutes, int[] aBucketMinutes, long aLines) {
+			// negative when the revisions are not in order
+			final long minutes = Math.max(aMinutes, 0);
+			int bucket = 0;
+			while (bucket < aBucketMinutes.length && minutes >= aBucketMinutes[bucket]) {
+				++bucket;
+			}
+			buckets[bucket] += aLines;
+			lines += aLines;
+			totalMinutes += minutes * aLines;
+		}
+
+		public void clear() {
+			Arrays.fill(buckets, 0);
+			lines = 0;
+			totalMinutes = 0;
+		}
+	}
+
+	private static final Logger LOG = LoggerFactory.getLogger(LineSurvivalReporter.class);
+
+	protected static final int ALIVE = 1;
+
+	protected static final int MINUTES_PER_DAY = 24 * 60;
+
+	protected static final int REMOVED = 0;
+
+	protected static final String[] STATUS = { "Removed", "Alive" };
+
+	/**
+	 * Histograms per author id, removed and alive
+	 */
+	protected final List<AgeHistogram[]> authorStats;
+
+	protected final StringDictionary authors;
+
+	protected int[] bucketMinutes;
+
+	protected final List<AgeHistogram[]> currentGroups;
+
+	/**
+	 * Origin of the lines added by the current revision
+	 */
+	protected int currentOrigin;
+
+	protected String currentPath;
+
+	protected int currentRevision;
+
+	protected long currentTime;
+
+	protected ChangeType currentType;
+
+	protected final LineMap.Editor editor;
+
+	/**
+	 * The line map per path
+	 */
+	protected final NavigableMap<String, LineMap> files;
+
+	protected final Map<String, AgeHistogram[]> groupStats;
+
+	protected final IntList originAuthor;
+
+	protected final IntList originRevision;
+
+	/**
+	 * Commit time in minutes per origin
+	 */
+	protected long[] originTime;
+
+	protected final CSVPrinter output;
+
+	protected final AgeHistogram[] totalStats;
+
+	protected boolean warnedOrder;
+
+	public LineSurvivalReporter(@Nonnull Appendable aOutput, @Nonnull Configuration aConfig) throws RevisionReporterException {
+		super(aConfig);
+		authors = new StringDictionary();
+		authorStats = new ArrayList<>();
+		currentGroups = new ArrayList<>();
+		editor = new LineMap.Editor();
+		files = new TreeMap<>();
+		groupStats = new TreeMap<>();
+		originAuthor = new IntList(1024);
+		originRevision = new IntList(1024);
+		originTime = new long[1024];
+		totalStats = createStats();
+		List<String> header = new ArrayList<>();
+		Collections.addAll(header, "Dimension", "Key", "Status", "Lines", "Mean Age (days)");
+		for (int minutes : bucketMinutes) {
+			header.add("Age < " + minutes / MINUTES_PER_DAY + "d");
+		}
+		header.add("Age >= " + bucketMinutes[bucketMinutes.length - 1] / MINUTES_PER_DAY + "d");
+		try {
+			output = new CSVPrinter(aOutput, CSVFormat.RFC4180.withHeader(header.toArray(new String[0])));
+		} catch (IOException e) {
+			throw new RevisionReporterException("Failure to create CSVPrinter.", e);
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		output.close();
+	}
+
+	@Override
+	public void endDiff() {
+		if (currentPath == null) {
+			return;
+		}
+		LineMap result = editor.finish();
+		if (ChangeType.DELETED.equals(currentType)) {
+			files.remove(currentPath);
+		} else {
+			files.put(currentPath, result);
+		}
+		currentPath = null;
+	}
+
+	@Override
+	public void flush() throws RevisionReporterException {
+		// the remaining lines are alive, aged up to the last revision
+		totalStats[ALIVE].clear();
+		authorStats.forEach(s -> s[ALIVE].clear());
+		groupStats.values().forEach(s -> s[ALIVE].clear());
+		for (Map.Entry<String, LineMap> entry : files.entrySet()) {
+			List<AgeHistogram[]> groups = getGroupStats(entry.getKey());
+			LineMap lines = entry.getValue();
+			for (int run = 0; run < lines.size(); ++run) {
+				int origin = lines.getOrigin(run);
+				if (origin == LineMap.UNKNOWN) {
+					continue;
+				}
+				long age = currentTime - originTime[origin];
+				totalStats[ALIVE].add(age, bucketMinutes, lines.getLength(run));
+				authorStats.get(originAuthor.get(origin))[ALIVE].add(age, bucketMinutes, lines.getLength(run));
+				for (AgeHistogram[] group : groups) {
+					group[ALIVE].add(age, bucketMinutes, lines.getLength(run));
+				}
+			}
+		}
+		try {
+			writeStats("Total", "", totalStats);
+			for (int author = 0; author < authorStats.size(); ++author) {
+				writeStats("Author", authors.get(author), authorStats.get(author));
+			}
+			for (Map.Entry<String, AgeHistogram[]> entry : groupStats.entrySet()) {
+				writeStats("File Group", entry.getKey(), entry.getValue());
+			}
+			output.flush();
+		} catch (IOException e) {
+			throw new RevisionReporterException("Failure writing line survival.", e);
+		}
+		LOG.info("Tracked {} files with {} origins", files.size(), originRevision.size());
+	}
+
+	@Override
+	public void hunk(int aOldStart, int aOldCount, int aNewStart, int aNewCount) {
+		if (currentPath == null) {
+			return;
+		}
+		// an empty range starts after the given line
+		editor.keep((aOldCount == 0 ? aOldStart : aOldStart - 1) - editor.getOldLines());
+	}
+
+	@Override
+	public void line(char aType) {
+		if (currentPath == null) {
+			return;
+		}
+		switch (aType) {
+			case '+':
+				editor.add(currentOrigin);
+				break;
+			case '-':
+				removed(editor.remove());
+				break;
+			default:
+				editor.keep(1);
+				break;
+		}
+	}
+
+	@Override
+	public void report(@Nonnull Revision aRevision) throws RevisionReporterException {
+		super.report(aRevision);
+		startRevision(aRevision);
+		// deleted files without a diff, like binaries
+		for (FileChange change : aRevision.getFileChanges().values()) {
+			if (ChangeType.DELETED.equals(change.getChangeType()) && change.isInManifest()) {
+				files.remove(change.getFilename());
+			}
+		}
+	}
+
+	@Override
+	public boolean retainsRevisions() {
+		return false;
+	}
+
+	@Override
+	public void startDiff(@Nonnull Revision aRevision, @Nonnull FileChange aChange) {
+		startRevision(aRevision);
+		currentPath = aChange.getFilename();
+		currentType = aChange.getChangeType();
+		LineMap source = files.get(currentPath);
+		if (source == null) {
+			boolean added = ChangeType.ADDED.equals(currentType) || ChangeType.REPLACED.equals(currentType);
+			source = added && aChange.isInManifest() && aChange.getFromPath() == null ? LineMap.EMPTY : LineMap.UNKNOWN_CONTENT;
+		}
+		editor.start(source);
+		currentGroups.clear();
+		currentGroups.addAll(getGroupStats(currentPath));
+	}
+
+	@Override
+	protected void initConfig() {
+		super.initConfig();
+		int[] days = getBucketDays();
+		bucketMinutes = new int[days.length];
+		for (int i = 0; i < days.length; ++i) {
+			bucketMinutes[i] = days[i] * MINUTES_PER_DAY;
+		}
+	}
+
+	/**
+	 * Copy the line maps of the copy sources, then drop the maps of deleted directories, replaced paths and moved
+	 * files, before the diffs of the revision are applied.
+	 */
+	protected void applyCopies(@Nonnull Revision aRevision) {
+		Map<String, LineMap> copies = new TreeMap<>();
+		List<String> sources = new ArrayList<>();
+		for (FileChange change : aRevision.getFileChanges().values()) {
+			if (!change.isInManifest() || change.getFromPath() == null) {
+				continue;
+			}
+			String from = change.getFromPath();
+			sources.add(from);
+			LineMap file = files.get(from);
+			if (file != null) {
+				copies.put(change.getFilename(), file);
+			}
+			for (Map.Entry<String, LineMap> entry : subtree(from).entrySet()) {
+				copies.put(change.getFilename() + entry.getKey().substring(from.length()), entry.getValue());
+			}
+		}
+		for (FileChange change : aRevision.getFileChanges().values()) {
+			if (!change.isInManifest() || ChangeType.MODIFIED.equals(change.getChangeType())) {
+				continue;
+			}
+			String path = change.getFilename();
+			subtree(path).clear();
+			if (!ChangeType.DELETED.equals(change.getChangeType()) || sources.contains(path)) {
+				// a deleted file keeps its lines until its diff removes them, unless it was moved
+				files.remove(path);
+			}
+		}
+		files.putAll(copies);
+	}
+
+	@Nonnull
+	protected AgeHistogram[] createStats() {
+		return new AgeHistogram[] { new AgeHistogram(bucketMinutes.length), new AgeHistogram(bucketMinutes.length) };
+	}
+
+	@Nonnull
+	protected List<AgeHistogram[]> getGroupStats(@Nonnull String aPath) {
+		List<AgeHistogram[]> result = new ArrayList<>(1);
+		for (FileGroup group : fileGroups) {
+			if (group.matches(aPath)) {
+				result.add(groupStats.computeIfAbsent(group.getName(), k -> createStats()));
+			}
+		}
+		return result;
+	}
+
+	protected void removed(int aOrigin) {
+		if (aOrigin == LineMap.UNKNOWN) {
+			return;
+		}
+		long age = currentTime - originTime[aOrigin];
+		totalStats[REMOVED].add(age, bucketMinutes, 1);
+		authorStats.get(originAuthor.get(aOrigin))[REMOVED].add(age, bucketMinutes, 1);
+		for (AgeHistogram[] group : currentGroups) {
+			group[REMOVED].add(age, bucketMinutes, 1);
+		}
+	}
+
+	/**
+	 * Register the origin of the revision and apply its copies, once per revision.
+	 */
+	protected void startRevision(@Nonnull Revision aRevision) {
+		if (aRevision.getId() == currentRevision) {
+			return;
+		}
+		if (aRevision.getId() < currentRevision && !warnedOrder) {
+			LOG.warn("Revision {} after revision {}, line survival requires the revisions oldest first.", aRevision.getId(), currentRevision);
+			warnedOrder = true;
+		}
+		currentRevision = aRevision.getId();
+		if (aRevision.getTimestamp() != null) {
+			currentTime = aRevision.getTimestamp().getMillis() / 60000L;
+		}
+		int author = authors.intern(StringUtils.defaultString(aRevision.getAuthor()));
+		while (authorStats.size() <= author) {
+			authorStats.add(createStats());
+		}
+		currentOrigin = originRevision.size();
+		if (currentOrigin == originTime.length) {
+			originTime = Arrays.copyOf(originTime, currentOrigin * 2);
+		}
+		originRevision.add(currentRevision);
+		originAuthor.add(author);
+		originTime[currentOrigin] = currentTime;
+		applyCopies(aRevision);
+	}
+
+	@Nonnull
+	protected NavigableMap<String, LineMap> subtree(@Nonnull String aPath) {
+		// '0' follows '/'
+		return files.subMap(aPath + "/", true, aPath + "0", false);
+	}
+
+	private int[] getBucketDays() {
+		List<Integer> days = config.getList(Integer.class, "survival.buckets", Collections.emptyList());
+		if (days.isEmpty()) {
+			return new int[] { 1, 7, 30, 91, 182, 365, 730 };
+		}
+		return days.stream().mapToInt(Integer::intValue).sorted().toArray();
+	}
+
+	private void writeStats(String aDimension, String aKey, AgeHistogram[] aStats) throws IOException {
+		for (int status = REMOVED; status <= ALIVE; ++status) {
+			AgeHistogram stats = aStats[status];
+			List<Object> record = new ArrayList<>();
+			record.add(aDimension);
+			record.add(aKey);
+			record.add(STATUS[status]);
+			record.add(stats.lines);
+			record.add(stats.lines == 0 ? "" : String.format("%.1f", (double) stats.totalMinutes / MINUTES_PER_DAY / stats.lines));
+			for (long count : stats.buckets) {
+				record.add(count);
+			}
+			output.printRecord(record);
+		}
+	}
+}
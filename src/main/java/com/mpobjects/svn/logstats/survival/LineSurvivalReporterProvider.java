@@ -0,0 +1,28 @@
+package com.mpobjects.svn.logstats.survival;
+
+import javax.annotation.Nonnull;
+
+import org.apache.commons.configuration2.Configuration;
+
+import com.mpobjects.svn.logstats.BatchRevisionReporter;
+import com.mpobjects.svn.logstats.RevisionReporterException;
+import com.mpobjects.svn.logstats.RevisionReporterProvider;
+import com.mpobjects.svn.logstats.SingleRevisionBatchAdapter;
+
+/**
+ * Provides output.format=survival.
+ */
+public class LineSurvivalReporterProvider implements RevisionReporterProvider {
+
+	@Override
+	@Nonnull
+	public BatchRevisionReporter createReporter(@Nonnull Configuration aConfig) throws RevisionReporterException {
+		return new SingleRevisionBatchAdapter(new LineSurvivalReporter(RevisionReporterProvider.openOutput(aConfig), aConfig));
+	}
+
+	@Override
+	@Nonnull
+	public String getFormat() {
+		return "survival";
+	}
+}
@@ -0,0 +1,287 @@
+package com.mpobjects.svn.logstats.tree;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Arrays;
+
+import javax.annotation.Nonnull;
+
+import org.apache.commons.configuration2.Configuration;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+import org.apache.commons.lang3.StringUtils;
+
+import com.mpobjects.svn.logstats.AbstractRevisionReporter;
+import com.mpobjects.svn.logstats.RevisionReporterException;
+import com.mpobjects.svn.logstats.model.FileChange;
+import com.mpobjects.svn.logstats.model.Revision;
+import com.mpobjects.svn.logstats.util.IntList;
+import com.mpobjects.svn.logstats.util.LongIntHashMap;
+import com.mpobjects.svn.logstats.util.StringDictionary;
+
+/**
+ * Rolls up the churn of all file changes into a tree of path segments, with a breakdown per author at every node.
+ * Nodes are plain int ids with their counters in primitive arrays, so large trees stay cheap.
+ * <p>
+ * Settings: tree.depth (deepest level written), tree.branches (strip the branch prefix, using the branchpath rules,
+ * so all branches roll up into the same tree) and tree.authors (write the per author rows). Merge sources are
+ * skipped with merge.exclude.
+ */
+public class DirectoryTreeReporter extends AbstractRevisionReporter implements Closeable {
+
+	protected static final int IDX_BINARY = 2;
+
+	protected static final int IDX_FILES = 1;
+
+	protected static final int IDX_LINES_ADDED = 3;
+
+	protected static final int IDX_LINES_CHANGED = 5;
+
+	protected static final int IDX_LINES_REMOVED = 4;
+
+	protected static final int IDX_REVISIONS = 0;
+
+	protected static final int NUM_COUNTERS = 6;
+
+	protected static final int ROOT = 0;
+
+	protected final StringDictionary authors;
+
+	/**
+	 * Node and author id to author slot
+	 */
+	protected final LongIntHashMap authorSlots;
+
+	/**
+	 * {@link #NUM_COUNTERS} counters per author slot
+	 */
+	protected long[] authorCounters;
+
+	/**
+	 * Last revision sequence counted per author slot
+	 */
+	protected final IntList authorSeen;
+
+	/**
+	 * Parent node and segment id to child node
+	 */
+	protected final LongIntHashMap children;
+
+	/**
+	 * {@link #NUM_COUNTERS} counters per node
+	 */
+	protected long[] counters;
+
+	protected int maxDepth;
+
+	protected final IntList nodeName;
+
+	protected final IntList nodeParent;
+
+	/**
+	 * Last revision sequence counted per node
+	 */
+	protected final IntList nodeSeen;
+
+	protected final CSVPrinter output;
+
+	protected boolean reportAuthors;
+
+	protected int revisionSeq;
+
+	protected final StringDictionary segments;
+
+	protected boolean stripBranches;
+
+	public DirectoryTreeReporter(@Nonnull Appendable aOutput, @Nonnull Configuration aConfig) throws RevisionReporterException {
+		super(aConfig);
+		authors = new StringDictionary();
+		authorSlots = new LongIntHashMap(1024);
+		authorCounters = new long[1024 * NUM_COUNTERS];
+		authorSeen = new IntList(1024);
+		children = new LongIntHashMap(1024);
+		counters = new long[1024 * NUM_COUNTERS];
+		nodeName = new IntList(1024);
+		nodeParent = new IntList(1024);
+		nodeSeen = new IntList(1024);
+		segments = new StringDictionary();
+		try {
+			output = new CSVPrinter(aOutput, CSVFormat.RFC4180.withHeader("Path", "Depth", "Author", "Revisions", "Files", "Binary Files",
+					"Lines Added", "Lines Removed", "Lines Changed"));
+		} catch (IOException e) {
+			throw new RevisionReporterException("Failure to create CSVPrinter.", e);
+		}
+		addNode(-1, segments.intern(""));
+	}
+
+	@Override
+	public void close() throws IOException {
+		output.close();
+	}
+
+	@Override
+	public void flush() throws RevisionReporterException {
+		final int nodes = nodeParent.size();
+		// children per node as sorted ranges in a single array
+		final int[] childStart = new int[nodes + 1];
+		for (int node = 1; node < nodes; ++node) {
+			++childStart[nodeParent.get(node) + 1];
+		}
+		for (int node = 0; node < nodes; ++node) {
+			childStart[node + 1] += childStart[node];
+		}
+		final int[] childNodes = new int[Math.max(nodes - 1, 0)];
+		final int[] fill = Arrays.copyOf(childStart, nodes);
+		for (int node = 1; node < nodes; ++node) {
+			childNodes[fill[nodeParent.get(node)]++] = node;
+		}
+
+		final int[] authorStart;
+		final int[] authorNodes;
+		if (reportAuthors) {
+			authorStart = new int[nodes + 1];
+			authorNodes = new int[authorSlots.size() * 2];
+			authorSlots.forEach((key, slot) -> ++authorStart[(int) (key >>> 32) + 1]);
+			for (int node = 0; node < nodes; ++node) {
+				authorStart[node + 1] += authorStart[node];
+			}
+			final int[] authorFill = Arrays.copyOf(authorStart, nodes);
+			authorSlots.forEach((key, slot) -> {
+				int idx = authorFill[(int) (key >>> 32)]++;
+				authorNodes[idx * 2] = (int) key;
+				authorNodes[idx * 2 + 1] = slot;
+			});
+		} else {
+			authorStart = null;
+			authorNodes = null;
+		}
+
+		try {
+			writeNode(ROOT, "/", 0, childStart, childNodes, authorStart, authorNodes);
+			output.flush();
+		} catch (IOException e) {
+			throw new RevisionReporterException("Failure writing directory tree.", e);
+		}
+	}
+
+	@Override
+	public void report(@Nonnull Revision aRevision) throws RevisionReporterException {
+		super.report(aRevision);
+		if (isExcludedMergeSource(aRevision)) {
+			return;
+		}
+		++revisionSeq;
+		final int author = authors.intern(StringUtils.defaultString(aRevision.getAuthor()));
+		for (FileChange change : aRevision.getFileChanges().values()) {
+			String path = stripBranches ? stripBranchPrefix(change.getFilename()) : change.getFilename();
+			int node = ROOT;
+			for (String segment : StringUtils.split(path, '/')) {
+				node = child(node, segment);
+			}
+			for (; node >= 0; node = nodeParent.get(node)) {
+				count(counters, node, nodeSeen, node, change);
+				if (reportAuthors) {
+					int slot = authorSlot(node, author);
+					count(authorCounters, slot, authorSeen, slot, change);
+				}
+			}
+		}
+	}
+
+	@Override
+	public boolean retainsRevisions() {
+		return false;
+	}
+
+	@Override
+	protected void initConfig() {
+		super.initConfig();
+		maxDepth = config.getInt("tree.depth", 3);
+		stripBranches = config.getBoolean("tree.branches", true);
+		reportAuthors = config.getBoolean("tree.authors", true);
+	}
+
+	private int addNode(int aParent, int aSegment) {
+		int node = nodeParent.size();
+		nodeParent.add(aParent);
+		nodeName.add(aSegment);
+		nodeSeen.add(0);
+		if ((node + 1) * NUM_COUNTERS > counters.length) {
+			counters = Arrays.copyOf(counters, counters.length * 2);
+		}
+		return node;
+	}
+
+	private int authorSlot(int aNode, int aAuthor) {
+		long key = (long) aNode << 32 | aAuthor;
+		int slot = authorSlots.get(key, -1);
+		if (slot < 0) {
+			slot = authorSeen.size();
+			authorSlots.put(key, slot);
+			authorSeen.add(0);
+			if ((slot + 1) * NUM_COUNTERS > authorCounters.length) {
+				authorCounters = Arrays.copyOf(authorCounters, authorCounters.length * 2);
+			}
+		}
+		return slot;
+	}
+
+	private int child(int aParent, String aSegment) {
+		int segment = segments.intern(aSegment);
+		long key = (long) aParent << 32 | segment;
+		int node = children.get(key, -1);
+		if (node < 0) {
+			node = addNode(aParent, segment);
+			children.put(key, node);
+		}
+		return node;
+	}
+
+	private void count(long[] aCounters, int aIndex, IntList aSeen, int aSeenIndex, FileChange aChange) {
+		final int base = aIndex * NUM_COUNTERS;
+		if (aSeen.get(aSeenIndex) != revisionSeq) {
+			aSeen.set(aSeenIndex, revisionSeq);
+			++aCounters[base + IDX_REVISIONS];
+		}
+		++aCounters[base + IDX_FILES];
+		if (aChange.isBinary()) {
+			++aCounters[base + IDX_BINARY];
+		}
+		aCounters[base + IDX_LINES_ADDED] += aChange.getLinesAdded();
+		aCounters[base + IDX_LINES_REMOVED] += aChange.getLinesRemoved();
+		aCounters[base + IDX_LINES_CHANGED] += aChange.getLinesChanged();
+	}
+
+	private void writeNode(int aNode, String aPath, int aDepth, int[] aChildStart, int[] aChildNodes, int[] aAuthorStart, int[] aAuthorNodes)
+			throws IOException {
+		writeRow(aPath, aDepth, "", counters, aNode);
+		if (aAuthorStart != null) {
+			Integer[] order = new Integer[aAuthorStart[aNode + 1] - aAuthorStart[aNode]];
+			for (int i = 0; i < order.length; ++i) {
+				order[i] = aAuthorStart[aNode] + i;
+			}
+			Arrays.sort(order, (a, b) -> authors.get(aAuthorNodes[a * 2]).compareTo(authors.get(aAuthorNodes[b * 2])));
+			for (int idx : order) {
+				writeRow(aPath, aDepth, authors.get(aAuthorNodes[idx * 2]), authorCounters, aAuthorNodes[idx * 2 + 1]);
+			}
+		}
+		if (aDepth >= maxDepth) {
+			return;
+		}
+		Integer[] order = new Integer[aChildStart[aNode + 1] - aChildStart[aNode]];
+		for (int i = 0; i < order.length; ++i) {
+			order[i] = aChildNodes[aChildStart[aNode] + i];
+		}
+		Arrays.sort(order, (a, b) -> segments.get(nodeName.get(a)).compareTo(segments.get(nodeName.get(b))));
+		for (int child : order) {
+			String segment = segments.get(nodeName.get(child));
+			writeNode(child, aDepth == 0 ? segment : aPath + '/' + segment, aDepth + 1, aChildStart, aChildNodes, aAuthorStart, aAuthorNodes);
+		}
+	}
+
+	private void writeRow(String aPath, int aDepth, String aAuthor, long[] aCounters, int aIndex) throws IOException {
+		final int base = aIndex * NUM_COUNTERS;
+		output.printRecord(aPath, aDepth, aAuthor, aCounters[base + IDX_REVISIONS], aCounters[base + IDX_FILES], aCounters[base + IDX_BINARY],
+				aCounters[base + IDX_LINES_ADDED], aCounters[base + IDX_LINES_REMOVED], aCounters[base + IDX_LINES_CHANGED]);
+	}
+}
@@ -0,0 +1,40 @@
+package com.mpobjects.svn.logstats.util;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Fast non-cryptographic 64 bit hashing.
+ */
+public final class Hashing {
+
+	public static final long FNV_OFFSET = 0xcbf29ce484222325L;
+
+	public static final long FNV_PRIME = 0x100000001b3L;
+
+	/**
+	 * Finalization mix of MurmurHash3, spreads the bits of a weak hash.
+	 */
+	public static long fmix64(long aHash) {
+		long h = aHash;
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+
+	/**
+	 * Well distributed 64 bit hash of the characters.
+	 */
+	public static long hash64(@Nonnull CharSequence aValue) {
+		long h = FNV_OFFSET;
+		for (int i = 0; i < aValue.length(); ++i) {
+			h = (h ^ aValue.charAt(i)) * FNV_PRIME;
+		}
+		return fmix64(h);
+	}
+
+	private Hashing() {
+	}
+}
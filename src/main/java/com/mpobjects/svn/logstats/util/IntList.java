@@ -0,0 +1,67 @@
+package com.mpobjects.svn.logstats.util;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of primitive ints.
+ */
+public class IntList {
+
+	protected int[] data;
+
+	protected int size;
+
+	public IntList() {
+		this(16);
+	}
+
+	public IntList(int aCapacity) {
+		data = new int[Math.max(aCapacity, 1)];
+	}
+
+	public void add(int aValue) {
+		if (size == data.length) {
+			data = Arrays.copyOf(data, size + (size >> 1) + 1);
+		}
+		data[size++] = aValue;
+	}
+
+	public void clear() {
+		size = 0;
+	}
+
+	public int get(int aIndex) {
+		if (aIndex >= size) {
+			throw new IndexOutOfBoundsException(Integer.toString(aIndex));
+		}
+		return data[aIndex];
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public void set(int aIndex, int aValue) {
+		if (aIndex >= size) {
+			throw new IndexOutOfBoundsException(Integer.toString(aIndex));
+		}
+		data[aIndex] = aValue;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int[] toArray() {
+		return Arrays.copyOf(data, size);
+	}
+
+	/**
+	 * Release unused capacity.
+	 */
+	public void trim() {
+		if (data.length > size) {
+			data = Arrays.copyOf(data, Math.max(size, 1));
+		}
+	}
+}
@@ -0,0 +1,234 @@
+package com.mpobjects.svn.logstats.util;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash map from primitive long keys to int values, without boxing. Missing keys have the value 0.
+ */
+public class LongIntHashMap {
+
+	@FunctionalInterface
+	public interface EntryConsumer {
+		void accept(long aKey, int aValue);
+	}
+
+	private static final float LOAD_FACTOR = 0.7f;
+
+	private boolean hasZeroKey;
+
+	private long[] keys;
+
+	private int mask;
+
+	private int resizeAt;
+
+	private int size;
+
+	private int[] values;
+
+	private int zeroValue;
+
+	public LongIntHashMap() {
+		this(16);
+	}
+
+	public LongIntHashMap(int aExpectedSize) {
+		allocate(tableSize(aExpectedSize));
+	}
+
+	/**
+	 * Add to the value of the key, the key is added when it was missing.
+	 *
+	 * @return the new value
+	 */
+	public int addTo(long aKey, int aDelta) {
+		if (aKey == 0) {
+			if (!hasZeroKey) {
+				hasZeroKey = true;
+				++size;
+			}
+			zeroValue += aDelta;
+			return zeroValue;
+		}
+		int idx = slot(aKey);
+		if (keys[idx] == aKey) {
+			values[idx] += aDelta;
+			return values[idx];
+		}
+		insert(idx, aKey, aDelta);
+		return aDelta;
+	}
+
+	public void clear() {
+		Arrays.fill(keys, 0);
+		Arrays.fill(values, 0);
+		hasZeroKey = false;
+		zeroValue = 0;
+		size = 0;
+	}
+
+	public boolean containsKey(long aKey) {
+		if (aKey == 0) {
+			return hasZeroKey;
+		}
+		return keys[slot(aKey)] == aKey;
+	}
+
+	public void forEach(EntryConsumer aConsumer) {
+		if (hasZeroKey) {
+			aConsumer.accept(0, zeroValue);
+		}
+		for (int i = 0; i < keys.length; ++i) {
+			if (keys[i] != 0) {
+				aConsumer.accept(keys[i], values[i]);
+			}
+		}
+	}
+
+	/**
+	 * @return the value, or the default when the key is missing
+	 */
+	public int get(long aKey, int aDefault) {
+		if (aKey == 0) {
+			return hasZeroKey ? zeroValue : aDefault;
+		}
+		int idx = slot(aKey);
+		return keys[idx] == aKey ? values[idx] : aDefault;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Remove all entries with a value less than or equal to the threshold.
+	 *
+	 * @return the number of removed entries
+	 */
+	public int prune(int aThreshold) {
+		final int oldSize = size;
+		final long[] oldKeys = keys;
+		final int[] oldValues = values;
+		final boolean keepZero = hasZeroKey && zeroValue > aThreshold;
+		final int zero = zeroValue;
+		int remaining = keepZero ? 1 : 0;
+		for (int i = 0; i < oldKeys.length; ++i) {
+			if (oldKeys[i] != 0 && oldValues[i] > aThreshold) {
+				++remaining;
+			}
+		}
+		allocate(tableSize(remaining));
+		size = 0;
+		hasZeroKey = false;
+		zeroValue = 0;
+		if (keepZero) {
+			addTo(0, zero);
+		}
+		for (int i = 0; i < oldKeys.length; ++i) {
+			if (oldKeys[i] != 0 && oldValues[i] > aThreshold) {
+				insert(slot(oldKeys[i]), oldKeys[i], oldValues[i]);
+			}
+		}
+		return oldSize - size;
+	}
+
+	/**
+	 * Set the value of a key.
+	 */
+	public void put(long aKey, int aValue) {
+		if (aKey == 0) {
+			if (!hasZeroKey) {
+				hasZeroKey = true;
+				++size;
+			}
+			zeroValue = aValue;
+			return;
+		}
+		int idx = slot(aKey);
+		if (keys[idx] == aKey) {
+			values[idx] = aValue;
+		} else {
+			insert(idx, aKey, aValue);
+		}
+	}
+
+	/**
+	 * @return true if the key was present
+	 */
+	public boolean remove(long aKey) {
+		if (aKey == 0) {
+			if (!hasZeroKey) {
+				return false;
+			}
+			hasZeroKey = false;
+			zeroValue = 0;
+			--size;
+			return true;
+		}
+		int gap = slot(aKey);
+		if (keys[gap] != aKey) {
+			return false;
+		}
+		// shift back the following entries of the probe sequence, there are no tombstones
+		for (int idx = (gap + 1) & mask; keys[idx] != 0; idx = (idx + 1) & mask) {
+			int home = (int) Hashing.fmix64(keys[idx]) & mask;
+			if (((idx - home) & mask) >= ((idx - gap) & mask)) {
+				keys[gap] = keys[idx];
+				values[gap] = values[idx];
+				gap = idx;
+			}
+		}
+		keys[gap] = 0;
+		values[gap] = 0;
+		--size;
+		return true;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	private void allocate(int aTableSize) {
+		keys = new long[aTableSize];
+		values = new int[aTableSize];
+		mask = aTableSize - 1;
+		resizeAt = (int) (aTableSize * LOAD_FACTOR);
+	}
+
+	private void insert(int aSlot, long aKey, int aValue) {
+		keys[aSlot] = aKey;
+		values[aSlot] = aValue;
+		if (++size > resizeAt) {
+			rehash(keys.length << 1);
+		}
+	}
+
+	private void rehash(int aTableSize) {
+		final long[] oldKeys = keys;
+		final int[] oldValues = values;
+		allocate(aTableSize);
+		for (int i = 0; i < oldKeys.length; ++i) {
+			if (oldKeys[i] != 0) {
+				int idx = slot(oldKeys[i]);
+				keys[idx] = oldKeys[i];
+				values[idx] = oldValues[i];
+			}
+		}
+	}
+
+	/**
+	 * @return the slot containing the key, or the empty slot where it would be inserted
+	 */
+	private int slot(long aKey) {
+		int idx = (int) Hashing.fmix64(aKey) & mask;
+		while (keys[idx] != 0 && keys[idx] != aKey) {
+			idx = (idx + 1) & mask;
+		}
+		return idx;
+	}
+
+	private static int tableSize(int aExpectedSize) {
+		long needed = (long) Math.ceil(Math.max(aExpectedSize, 4) / LOAD_FACTOR) + 1;
+		return (int) Math.min(1 << 30, Long.highestOneBit(needed - 1) << 1);
+	}
+}
@@ -0,0 +1,56 @@
+package com.mpobjects.svn.logstats.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Interns strings to dense int ids, starting at 0.
+ */
+public class StringDictionary {
+
+	protected final Map<String, Integer> ids;
+
+	protected final List<String> values;
+
+	public StringDictionary() {
+		ids = new HashMap<>();
+		values = new ArrayList<>();
+	}
+
+	/**
+	 * @return the id of the value, or -1 if unknown
+	 */
+	public int find(String aValue) {
+		Integer id = ids.get(aValue);
+		if (id == null) {
+			return -1;
+		}
+		return id;
+	}
+
+	@Nonnull
+	public String get(int aId) {
+		return values.get(aId);
+	}
+
+	/**
+	 * @return the id of the value, which is assigned when the value is new
+	 */
+	public int intern(@Nonnull String aValue) {
+		Integer id = ids.get(aValue);
+		if (id == null) {
+			id = values.size();
+			ids.put(aValue, id);
+			values.add(aValue);
+		}
+		return id;
+	}
+
+	public int size() {
+		return values.size();
+	}
+}
@@ -0,0 +1,100 @@
+package com.mpobjects.svn.logstats;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+
+import org.apache.commons.configuration2.BaseConfiguration;
+import org.joda.time.DateTime;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.mpobjects.svn.logstats.model.Revision;
+
+public class BatchingRevisionReporterTest {
+
+	private static class RecordingBatchReporter implements BatchRevisionReporter {
+		final List<Integer> batchSizes = new ArrayList<>();
+
+		int closed;
+
+		int flushed;
+
+		int started;
+
+		@Override
+		public void close() throws IOException {
+			++closed;
+		}
+
+		@Override
+		public void flush() throws RevisionReporterException {
+			++flushed;
+		}
+
+		@Override
+		public void reportBatch(@Nonnull List<Revision> aRevisions) throws RevisionReporterException {
+			batchSizes.add(aRevisions.size());
+		}
+
+		@Override
+		public void start() throws RevisionReporterException {
+			++started;
+		}
+	}
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testBatches() throws IOException, RevisionReporterException {
+		RecordingBatchReporter target = new RecordingBatchReporter();
+		RevisionReporter reporter = BatchingRevisionReporter.of(target, 2);
+		assertTrue(reporter.retainsRevisions());
+		for (int id = 5; id >= 1; --id) {
+			reporter.report(new Revision(id, "bob", new DateTime(2020, 1, 1, 12, 0)));
+		}
+		assertEquals(Arrays.asList(2, 2), target.batchSizes);
+		reporter.flush();
+		// the daemon continues after a flush
+		reporter.report(new Revision(6, "bob", new DateTime(2020, 1, 1, 12, 0)));
+		reporter.flush();
+		((Closeable) reporter).close();
+
+		assertEquals(Arrays.asList(2, 2, 1, 1), target.batchSizes);
+		assertEquals(1, target.started);
+		assertEquals(2, target.flushed);
+		assertEquals(1, target.closed);
+	}
+
+	@Test
+	public void testProvider() throws IOException, RevisionReporterException {
+		BaseConfiguration config = new BaseConfiguration();
+		config.setProperty("output", new File(folder.getRoot(), "out.csv").getPath());
+		config.setProperty("output.format", "csv");
+		RevisionReporter reporter = SvnLog.createReporter(config);
+		// single revision reporters are not wrapped in a batch
+		assertTrue(reporter instanceof CsvRevisionReporter);
+		((Closeable) reporter).close();
+
+		config.setProperty("output.format", "nope");
+		assertNull(SvnLog.createReporter(config));
+	}
+
+	@Test
+	public void testSingleRevisionAdapter() throws RevisionReporterException {
+		RevisionReporter csv = new CsvRevisionReporter(new StringBuilder(), new BaseConfiguration());
+		assertSame(csv, BatchingRevisionReporter.of(new SingleRevisionBatchAdapter(csv), 10));
+	}
+}
@@ -0,0 +1,72 @@
+package com.mpobjects.svn.logstats;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.joda.time.DateTime;
+import org.junit.Test;
+
+import com.mpobjects.svn.logstats.model.ChangeType;
+import com.mpobjects.svn.logstats.model.FileChange;
+import com.mpobjects.svn.logstats.model.MergeStatus;
+import com.mpobjects.svn.logstats.model.Revision;
+import com.mpobjects.svn.logstats.model.RevisionRangeSet;
+
+public class MergeTrackerTest {
+
+	private static Revision revision(int aId, String aPath) {
+		Revision revision = new Revision(aId, "bob", new DateTime(2020, 1, 1, 0, 0));
+		revision.addFileChange(new FileChange(aPath, ChangeType.MODIFIED));
+		return revision;
+	}
+
+	@Test
+	public void testNewestFirst() {
+		Revision merge = revision(10, "trunk/a.txt");
+		merge.addMergeInfo("branches/x", RevisionRangeSet.parse("5-7"));
+		Revision source = revision(6, "branches/x/a.txt");
+		Revision otherPath = revision(5, "branches/xy/a.txt");
+		Revision older = revision(4, "branches/x/a.txt");
+
+		MergeTracker tracker = new MergeTracker();
+		for (Revision revision : new Revision[] { merge, source, otherPath, older }) {
+			tracker.process(revision);
+		}
+		assertEquals(MergeStatus.MERGE_SOURCE, source.getMergeStatus());
+		assertEquals(MergeStatus.NORMAL, otherPath.getMergeStatus());
+		assertEquals(MergeStatus.NORMAL, older.getMergeStatus());
+	}
+
+	@Test
+	public void testOldestFirstStopsTracking() {
+		MergeTracker tracker = new MergeTracker();
+		tracker.process(revision(1, "trunk/a.txt"));
+		Revision merge = revision(2, "trunk/a.txt");
+		merge.addMergeInfo("branches/x", RevisionRangeSet.parse("1"));
+		tracker.process(merge);
+		assertTrue(tracker.oldestFirst);
+		assertTrue(tracker.merged.isEmpty());
+
+		// nothing collected any more, even when the order changes
+		tracker.process(revision(1, "branches/x/a.txt"));
+		assertTrue(tracker.merged.isEmpty());
+	}
+
+	@Test
+	public void testParseMergeInfo() {
+		List<String> paths = new ArrayList<>();
+		List<String> ranges = new ArrayList<>();
+		assertTrue(MergeTracker.parseMergeInfo("   Merged /branches/x:r100-200,205", (p, r) -> {
+			paths.add(p);
+			ranges.add(r.toString());
+		}));
+		assertFalse(MergeTracker.parseMergeInfo("   Reverse-merged /branches/x:r100", (p, r) -> paths.add(p)));
+		assertFalse(MergeTracker.parseMergeInfo("", (p, r) -> paths.add(p)));
+		assertEquals("[branches/x]", paths.toString());
+		assertEquals("[r100-200,r205]", ranges.toString());
+	}
+}
@@ -0,0 +1,73 @@
+package com.mpobjects.svn.logstats;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.apache.commons.configuration2.BaseConfiguration;
+import org.junit.Test;
+
+public class PathFilterTest {
+
+	@Test
+	public void testExclude() {
+		PathFilter filter = new PathFilter(Collections.singletonList("trunk"), Collections.singletonList("trunk/vendor"));
+		assertTrue(filter.matches("/trunk/src/A.java"));
+		assertFalse(filter.matches("/trunk/vendor/lib.js"));
+		assertFalse(filter.matches("trunk/vendor"));
+		assertTrue(filter.matches("trunk/vendors/lib.js"));
+	}
+
+	@Test
+	public void testExcludeOnly() {
+		PathFilter filter = new PathFilter(Collections.emptyList(), Collections.singletonList("tags"));
+		assertTrue(filter.matches("trunk/a.txt"));
+		assertFalse(filter.matches("tags/1.0/a.txt"));
+		assertTrue(filter.getTargets().isEmpty());
+	}
+
+	@Test
+	public void testFromConfig() {
+		BaseConfiguration config = new BaseConfiguration();
+		assertNull(PathFilter.fromConfig(config));
+		config.addProperty("path.include", "/trunk/");
+		config.addProperty("path.include", "branches/*/src");
+		PathFilter filter = PathFilter.fromConfig(config);
+		assertNotNull(filter);
+		assertTrue(filter.matches("trunk/a.txt"));
+		assertTrue(filter.matches("branches/x/src/a.txt"));
+		assertFalse(filter.matches("branches/x/doc/a.txt"));
+	}
+
+	@Test
+	public void testInclude() {
+		PathFilter filter = new PathFilter(Collections.singletonList("trunk"), Collections.emptyList());
+		assertTrue(filter.matches("trunk"));
+		assertTrue(filter.matches("/trunk/a.txt"));
+		assertFalse(filter.matches("trunk2/a.txt"));
+		assertFalse(filter.matches("branches/trunk/a.txt"));
+		assertFalse(filter.matches(null));
+	}
+
+	@Test
+	public void testTargets() {
+		PathFilter filter = new PathFilter(Arrays.asList("trunk", "trunk/src", "branches/*/src", "patches/1.*"), Collections.emptyList());
+		assertEquals(Arrays.asList("trunk", "branches", "patches"), filter.getTargets());
+		assertTrue(new PathFilter(Arrays.asList("trunk", "*/src"), Collections.emptyList()).getTargets().isEmpty());
+	}
+
+	@Test
+	public void testWildcard() {
+		PathFilter filter = new PathFilter(Collections.singletonList("branches/*/src"), Collections.emptyList());
+		assertTrue(filter.matches("branches/x/src"));
+		assertTrue(filter.matches("branches/x/src/a.txt"));
+		assertFalse(filter.matches("branches/x/y/src/a.txt"));
+		assertFalse(filter.matches("branches/x/srcs/a.txt"));
+		assertTrue(new PathFilter(Collections.singletonList("patches/1.*"), Collections.emptyList()).matches("patches/1.2/a.txt"));
+	}
+}
@@ -0,0 +1,46 @@
+package com.mpobjects.svn.logstats;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class ReplayIndexTest {
+
+	@Test
+	public void testCapacity() {
+		ReplayIndex index = new ReplayIndex(2);
+		assertEquals(0, index.check(1L, 1));
+		assertEquals(0, index.check(2L, 2));
+		assertEquals(0, index.check(3L, 3));
+		assertEquals(2, index.size());
+		// the oldest fingerprint was forgotten
+		assertEquals(0, index.check(1L, 4));
+		assertEquals(3, index.check(3L, 5));
+	}
+
+	@Test
+	public void testNewestFirst() {
+		ReplayIndex index = new ReplayIndex(10);
+		assertEquals(0, index.check(1L, 20));
+		assertFalse(index.newestFirst);
+		// the original is not flagged as a replay of the merge
+		assertEquals(0, index.check(1L, 10));
+		assertTrue(index.newestFirst);
+		assertEquals(0, index.check(1L, 5));
+		assertEquals(1, index.size());
+	}
+
+	@Test
+	public void testOldestFirst() {
+		ReplayIndex index = new ReplayIndex(10);
+		assertEquals(0, index.check(1L, 10));
+		assertEquals(0, index.check(2L, 10));
+		// same diff on another file of the same revision
+		assertEquals(10, index.check(1L, 10));
+		assertEquals(10, index.check(1L, 20));
+		assertEquals(10, index.check(2L, 30));
+		assertFalse(index.newestFirst);
+	}
+}
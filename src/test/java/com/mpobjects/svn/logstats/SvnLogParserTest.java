@@ -0,0 +1,111 @@
+package com.mpobjects.svn.logstats;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+import javax.annotation.Nonnull;
+
+import org.junit.Test;
+
+import com.mpobjects.svn.logstats.model.Revision;
+
+public class SvnLogParserTest {
+
+	/**
+	 * Copies what it needs during report(), like a reporter which does not retain revisions must.
+	 */
+	private static class RecordingReporter implements RevisionReporter {
+		final List<Revision> instances = new ArrayList<>();
+
+		final List<String> reported = new ArrayList<>();
+
+		private final boolean retains;
+
+		RecordingReporter(boolean aRetains) {
+			retains = aRetains;
+		}
+
+		@Override
+		public void flush() throws RevisionReporterException {
+		}
+
+		@Override
+		public void report(@Nonnull Revision aRevision) throws RevisionReporterException {
+			instances.add(aRevision);
+			reported.add("r" + aRevision.getId() + " " + aRevision.getAuthor() + " " + new TreeSet<>(aRevision.getFileChanges().keySet()) + " +"
+					+ aRevision.getLinesAdded() + " -" + aRevision.getLinesRemoved() + " " + aRevision.getComment());
+		}
+
+		@Override
+		public boolean retainsRevisions() {
+			return retains;
+		}
+	}
+
+	private static final String SEPARATOR = "------------------------------------------------------------------------";
+
+	private static void parse(SvnLogParser aParser) {
+		for (int id = 3; id >= 1; --id) {
+			aParser.parse(SEPARATOR);
+			aParser.parse("r" + id + " | user" + id + " | 2017-01-0" + id + " 10:00:00 +0100 (Sun, 01 Jan 2017) | 1 line");
+			aParser.parse("Changed paths:");
+			aParser.parse("   M /trunk/F" + id + ".java");
+			if (id == 2) {
+				aParser.parse("   A /trunk/G.java");
+			}
+			aParser.parse("");
+			aParser.parse("change " + id);
+			aParser.parse("");
+			aParser.parse("Index: trunk/F" + id + ".java");
+			aParser.parse("===================================================================");
+			aParser.parse("--- trunk/F" + id + ".java");
+			aParser.parse("+++ trunk/F" + id + ".java");
+			aParser.parse("@@ -1 +1," + (id + 1) + " @@");
+			aParser.parse("-x");
+			for (int i = 0; i <= id; ++i) {
+				aParser.parse("+y");
+			}
+			aParser.parse("");
+		}
+		aParser.parse(SEPARATOR);
+		aParser.flush();
+	}
+
+	@Test
+	public void testRetainingReporterNotReused() {
+		RecordingReporter reporter = new RecordingReporter(true);
+		SvnLogParser parser = new SvnLogParser(reporter);
+		parser.setReuseRevisions(true, false);
+		assertFalse(parser.isReuseRevisions());
+		parse(parser);
+
+		assertEquals(3, reporter.instances.size());
+		assertNotSame(reporter.instances.get(0), reporter.instances.get(1));
+		assertEquals(3, reporter.instances.get(0).getId());
+	}
+
+	@Test
+	public void testReuse() {
+		RecordingReporter plain = new RecordingReporter(false);
+		parse(new SvnLogParser(plain));
+
+		RecordingReporter reporter = new RecordingReporter(false);
+		SvnLogParser parser = new SvnLogParser(reporter);
+		parser.setReuseRevisions(true, false);
+		assertTrue(parser.isReuseRevisions());
+		parse(parser);
+
+		// recycling does not change the reported values
+		assertEquals(3, reporter.reported.size());
+		assertEquals(plain.reported, reporter.reported);
+		assertEquals("r2 user2 [trunk/F2.java, trunk/G.java] +3 -1 change 2", reporter.reported.get(1));
+		assertSame(reporter.instances.get(0), reporter.instances.get(1));
+	}
+}
@@ -0,0 +1,77 @@
+package com.mpobjects.svn.logstats.batch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.configuration2.BaseConfiguration;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SvnLogBatchTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testBoundedProcesses() throws IOException, InterruptedException {
+		File summary = new File(folder.getRoot(), "summary.csv");
+		BaseConfiguration config = new BaseConfiguration();
+		config.setProperty("batch.processes", 2);
+		config.setProperty("batch.summary", summary.getPath());
+		for (int i = 0; i < 6; ++i) {
+			config.addProperty("repository", "repo" + i);
+		}
+
+		AtomicInteger running = new AtomicInteger();
+		AtomicInteger maxRunning = new AtomicInteger();
+		SvnLogBatch batch = new SvnLogBatch(config) {
+			@Override
+			protected Result process(String aName) {
+				maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+				try {
+					Thread.sleep(50);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				running.decrementAndGet();
+				Result result = new Result(aName);
+				if ("repo3".equals(aName)) {
+					result.error = "failed";
+				} else {
+					result.revisions = 10;
+				}
+				return result;
+			}
+		};
+		List<SvnLogBatch.Result> results = batch.exec();
+
+		assertTrue(maxRunning.get() <= 2);
+		assertEquals(6, results.size());
+		for (int i = 0; i < 6; ++i) {
+			assertEquals("repo" + i, results.get(i).getName());
+		}
+		assertFalse(results.get(3).isSuccess());
+		assertTrue(results.get(4).isSuccess());
+
+		List<String> lines = Files.readAllLines(summary.toPath(), StandardCharsets.UTF_8);
+		assertEquals(7, lines.size());
+		assertTrue(lines.get(4).startsWith("repo3,FAILED,0,"));
+		assertTrue(lines.get(5).startsWith("repo4,OK,10,"));
+	}
+
+	@Test
+	public void testNoUrl() {
+		SvnLogBatch.Result result = new SvnLogBatch(new BaseConfiguration()).process("core");
+		assertFalse(result.isSuccess());
+		assertTrue(result.getError().contains("No url for repository core"));
+	}
+}
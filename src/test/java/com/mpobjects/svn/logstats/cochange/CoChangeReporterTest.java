@@ -0,0 +1,77 @@
+package com.mpobjects.svn.logstats.cochange;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.apache.commons.configuration2.BaseConfiguration;
+import org.joda.time.DateTime;
+import org.junit.Test;
+
+import com.mpobjects.svn.logstats.RevisionReporterException;
+import com.mpobjects.svn.logstats.model.ChangeType;
+import com.mpobjects.svn.logstats.model.FileChange;
+import com.mpobjects.svn.logstats.model.Revision;
+
+public class CoChangeReporterTest {
+
+	private static Revision revision(int aId, String... aPaths) {
+		Revision revision = new Revision(aId, "bob", new DateTime(2020, 1, 1, 12, 0));
+		for (String path : aPaths) {
+			revision.addFileChange(new FileChange(path, ChangeType.MODIFIED));
+		}
+		return revision;
+	}
+
+	private static List<String[]> report(BaseConfiguration aConfig) throws IOException, RevisionReporterException {
+		aConfig.setProperty("cochange.maxfiles", 3);
+		aConfig.setProperty("cochange.threads", 2);
+		StringBuilder output = new StringBuilder();
+		try (CoChangeReporter reporter = new CoChangeReporter(output, aConfig)) {
+			reporter.report(revision(1, "trunk/x/a", "trunk/x/b"));
+			reporter.report(revision(2, "trunk/x/a", "trunk/x/b", "trunk/y/c"));
+			reporter.report(revision(3, "trunk/x/a", "trunk/y/c"));
+			reporter.report(revision(4, "trunk/x/a", "trunk/x/b"));
+			// too large
+			reporter.report(revision(5, "trunk/x/a", "trunk/x/b", "trunk/y/c", "trunk/y/d"));
+			reporter.flush();
+		}
+		String[] lines = output.toString().split("\r\n");
+		return Arrays.asList(lines).subList(1, lines.length).stream().map(l -> l.split(",")).collect(Collectors.toList());
+	}
+
+	private static Set<String> pair(String[] aRow) {
+		return new HashSet<>(Arrays.asList(aRow[0], aRow[1]));
+	}
+
+	@Test
+	public void testDirectoryLevel() throws IOException, RevisionReporterException {
+		BaseConfiguration config = new BaseConfiguration();
+		config.setProperty("cochange.level", "directory");
+		config.setProperty("cochange.minsupport", 1);
+		List<String[]> rows = report(config);
+
+		// the large revision touches only two directories
+		assertEquals(1, rows.size());
+		assertEquals(new HashSet<>(Arrays.asList("trunk/x", "trunk/y")), pair(rows.get(0)));
+		assertEquals("3", rows.get(0)[2]);
+	}
+
+	@Test
+	public void testFileLevel() throws IOException, RevisionReporterException {
+		List<String[]> rows = report(new BaseConfiguration());
+
+		// b and c changed together only once, below the minimal support
+		assertEquals(2, rows.size());
+		assertEquals(new HashSet<>(Arrays.asList("trunk/x/a", "trunk/x/b")), pair(rows.get(0)));
+		assertEquals("3", rows.get(0)[2]);
+		assertEquals("0.75", rows.get(0)[5]);
+		assertEquals(new HashSet<>(Arrays.asList("trunk/x/a", "trunk/y/c")), pair(rows.get(1)));
+		assertEquals("2", rows.get(1)[2]);
+	}
+}
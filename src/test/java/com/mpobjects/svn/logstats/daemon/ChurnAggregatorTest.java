@@ -0,0 +1,151 @@
+package com.mpobjects.svn.logstats.daemon;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.apache.commons.configuration2.BaseConfiguration;
+import org.joda.time.DateTime;
+import org.joda.time.LocalDate;
+import org.junit.Test;
+
+import com.mpobjects.svn.logstats.RevisionReporterException;
+import com.mpobjects.svn.logstats.daemon.ChurnAggregator.Dimension;
+import com.mpobjects.svn.logstats.model.ChangeType;
+import com.mpobjects.svn.logstats.model.FileChange;
+import com.mpobjects.svn.logstats.model.MergeStatus;
+import com.mpobjects.svn.logstats.model.Revision;
+
+public class ChurnAggregatorTest {
+
+	static Revision revision(int aId, String aAuthor, String aDay, int aLinesAdded) {
+		Revision revision = new Revision(aId, aAuthor, DateTime.parse(aDay + "T12:00:00"));
+		FileChange change = new FileChange("/trunk/a.txt", ChangeType.MODIFIED);
+		change.setLinesAdded(aLinesAdded);
+		revision.addFileChange(change);
+		return revision;
+	}
+
+	@Test
+	public void testMerge() throws RevisionReporterException {
+		ChurnAggregator total = new ChurnAggregator(new BaseConfiguration());
+		total.report(revision(1, "bob", "2020-01-01", 2));
+		ChurnAggregator increment = new ChurnAggregator(new BaseConfiguration());
+		increment.report(revision(2, "bob", "2020-01-01", 3));
+		increment.report(revision(3, "alice", "2020-01-02", 4));
+		total.merge(increment);
+
+		assertEquals(3, total.getLastRevision());
+		Map<String, long[]> authors = total.query(Dimension.AUTHOR, null, null);
+		assertEquals(Arrays.asList("alice", "bob"), Arrays.asList(authors.keySet().toArray()));
+		assertEquals(2, authors.get("bob")[ChurnAggregator.IDX_REVISIONS]);
+		assertEquals(5, authors.get("bob")[ChurnAggregator.IDX_LINES_ADDED]);
+		assertEquals(4, authors.get("alice")[ChurnAggregator.IDX_LINES_ADDED]);
+		// the increment is left untouched
+		assertEquals(3, increment.query(Dimension.AUTHOR, null, null).get("bob")[ChurnAggregator.IDX_LINES_ADDED]);
+	}
+
+	@Test(expected = IOException.class)
+	public void testMergeNotAnAggregate() throws IOException {
+		new ChurnAggregator(new BaseConfiguration()).merge(new DataInputStream(new ByteArrayInputStream(new byte[16])));
+	}
+
+	@Test
+	public void testMergeWritten() throws IOException, RevisionReporterException {
+		ChurnAggregator shard = new ChurnAggregator(new BaseConfiguration());
+		shard.report(revision(5, "bob", "2020-01-01", 2));
+		shard.report(revision(4, null, "2020-01-02", 3));
+		shard.report(revision(3, "bob", "2020-01-03", 4));
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		shard.write(new DataOutputStream(bytes));
+
+		ChurnAggregator total = new ChurnAggregator(new BaseConfiguration());
+		total.report(revision(6, "bob", "2020-01-03", 1));
+		total.merge(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+		assertEquals(6, total.getLastRevision());
+		Map<String, long[]> authors = total.query(Dimension.AUTHOR, null, null);
+		assertEquals(Arrays.asList(null, "bob"), Arrays.asList(authors.keySet().toArray()));
+		assertArrayEquals(new long[] { 3, 3, 7, 0, 0 }, authors.get("bob"));
+		assertArrayEquals(new long[] { 1, 1, 3, 0, 0 }, authors.get(null));
+		assertEquals(5, total.query(Dimension.AUTHOR, LocalDate.parse("2020-01-03"), null).get("bob")[ChurnAggregator.IDX_LINES_ADDED]);
+		Map<String, long[]> branches = total.query(Dimension.BRANCH, null, null);
+		assertEquals(1, branches.size());
+		assertEquals(4, branches.values().iterator().next()[ChurnAggregator.IDX_REVISIONS]);
+
+		// equal totals produce equal output
+		ByteArrayOutputStream again = new ByteArrayOutputStream();
+		ChurnAggregator copy = new ChurnAggregator(new BaseConfiguration());
+		copy.merge(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+		copy.write(new DataOutputStream(again));
+		assertArrayEquals(bytes.toByteArray(), again.toByteArray());
+	}
+
+	@Test
+	public void testMergeSourceExcluded() throws RevisionReporterException {
+		BaseConfiguration config = new BaseConfiguration();
+		config.setProperty("merge.exclude", true);
+		ChurnAggregator aggregator = new ChurnAggregator(config);
+		aggregator.report(revision(3, "bob", "2020-01-01", 2));
+		Revision source = revision(2, "bob", "2020-01-01", 5);
+		source.setMergeStatus(MergeStatus.MERGE_SOURCE);
+		aggregator.report(source);
+		aggregator.report(revision(4, "bob", "2020-01-01", 1));
+
+		assertEquals(4, aggregator.getLastRevision());
+		assertArrayEquals(new long[] { 2, 2, 3, 0, 0 }, aggregator.query(Dimension.AUTHOR, null, null).get("bob"));
+
+		ChurnAggregator all = new ChurnAggregator(new BaseConfiguration());
+		all.report(source);
+		assertEquals(5, all.query(Dimension.AUTHOR, null, null).get("bob")[ChurnAggregator.IDX_LINES_ADDED]);
+	}
+
+	@Test
+	public void testQueryKey() throws RevisionReporterException {
+		ChurnAggregator aggregator = new ChurnAggregator(new BaseConfiguration());
+		aggregator.report(revision(1, "Bob", "2020-01-01", 1));
+		aggregator.report(revision(2, "bob", "2020-01-02", 2));
+		aggregator.report(revision(3, "bob", "2020-01-03", 4));
+
+		assertEquals(6, aggregator.query(Dimension.AUTHOR, "bob", null, null)[ChurnAggregator.IDX_LINES_ADDED]);
+		assertEquals(1, aggregator.query(Dimension.AUTHOR, "Bob", null, null)[ChurnAggregator.IDX_LINES_ADDED]);
+		assertEquals(2, aggregator.query(Dimension.AUTHOR, "bob", null, LocalDate.parse("2020-01-02"))[ChurnAggregator.IDX_LINES_ADDED]);
+		assertNull(aggregator.query(Dimension.AUTHOR, "BOB", null, null));
+		assertNull(aggregator.query(Dimension.AUTHOR, "Bob", LocalDate.parse("2020-01-02"), null));
+	}
+
+	@Test
+	public void testQueryKeysCaseSensitive() throws RevisionReporterException {
+		ChurnAggregator aggregator = new ChurnAggregator(new BaseConfiguration());
+		aggregator.report(revision(1, "Bob", "2020-01-01", 1));
+		aggregator.report(revision(2, "bob", "2020-01-01", 2));
+		aggregator.report(revision(3, null, "2020-01-01", 3));
+
+		Map<String, long[]> authors = aggregator.query(Dimension.AUTHOR, null, null);
+		assertEquals(3, authors.size());
+		assertEquals(1, authors.get("Bob")[ChurnAggregator.IDX_LINES_ADDED]);
+		assertEquals(2, authors.get("bob")[ChurnAggregator.IDX_LINES_ADDED]);
+		assertEquals(3, authors.get(null)[ChurnAggregator.IDX_LINES_ADDED]);
+	}
+
+	@Test
+	public void testQueryRange() throws RevisionReporterException {
+		ChurnAggregator aggregator = new ChurnAggregator(new BaseConfiguration());
+		aggregator.report(revision(1, "bob", "2020-01-01", 1));
+		aggregator.report(revision(2, "bob", "2020-01-02", 2));
+		aggregator.report(revision(3, "bob", "2020-01-03", 4));
+
+		assertEquals(6, aggregator.query(Dimension.AUTHOR, LocalDate.parse("2020-01-02"), null).get("bob")[ChurnAggregator.IDX_LINES_ADDED]);
+		assertEquals(3, aggregator.query(Dimension.AUTHOR, null, LocalDate.parse("2020-01-02")).get("bob")[ChurnAggregator.IDX_LINES_ADDED]);
+		assertEquals(2, aggregator.query(Dimension.AUTHOR, LocalDate.parse("2020-01-02"), LocalDate.parse("2020-01-02")).get("bob")[ChurnAggregator.IDX_LINES_ADDED]);
+		assertEquals(0, aggregator.query(Dimension.AUTHOR, LocalDate.parse("2021-01-01"), null).size());
+	}
+}
@@ -0,0 +1,158 @@
+package com.mpobjects.svn.logstats.dump;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.mpobjects.svn.logstats.dump.DumpContentStore.NodeState;
+
+public class DumpContentStoreTest {
+
+	private static NodeState dir() {
+		return new NodeState(null, Collections.emptyMap());
+	}
+
+	private static NodeState file(String aContent) {
+		return new NodeState(aContent.getBytes(StandardCharsets.UTF_8), Collections.singletonMap("svn:eol-style", "native"));
+	}
+
+	private static String text(NodeState aState) {
+		return new String(aState.content, StandardCharsets.UTF_8);
+	}
+
+	private DumpContentStore store;
+
+	@Before
+	public void setUp() {
+		store = new DumpContentStore();
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		store.close();
+	}
+
+	@Test
+	public void testCopyFromOlderRevision() throws IOException {
+		store.put("trunk", 1, dir());
+		store.put("trunk/a", 1, file("one"));
+		store.put("trunk/b", 2, file("two"));
+		store.put("trunk/a", 3, file("three"));
+		store.copy("trunk", 2, "branches/x", 4);
+
+		assertEquals("one", text(store.get("branches/x/a", 4)));
+		assertEquals("two", text(store.get("branches/x/b", 4)));
+		assertTrue(store.get("branches/x", 4).isDirectory());
+		assertEquals("three", text(store.get("trunk/a", 4)));
+	}
+
+	@Test
+	public void testCopyIsLazy() throws IOException {
+		store.put("trunk", 1, dir());
+		store.put("trunk/sub", 1, dir());
+		store.put("trunk/sub/a", 1, file("one"));
+		store.copy("trunk", 1, "branches/x", 2);
+		store.put("trunk/sub/a", 3, file("trunk"));
+		store.put("branches/x/sub/a", 4, file("branch"));
+		store.copy("branches/x", 2, "tags/t", 5);
+
+		assertEquals("one", text(store.get("branches/x/sub/a", 3)));
+		assertEquals("branch", text(store.get("branches/x/sub/a", 4)));
+		assertEquals("trunk", text(store.get("trunk/sub/a", 4)));
+		assertEquals("one", text(store.get("tags/t/sub/a", 5)));
+		assertEquals(Arrays.asList("tags/t", "tags/t/sub", "tags/t/sub/a"), new ArrayList<>(store.getTree("tags/t", 5).keySet()));
+		assertNull(store.get("branches/x/sub/b", 4));
+	}
+
+	@Test
+	public void testCopyThenDeleteBelow() throws IOException {
+		store.put("trunk", 1, dir());
+		store.put("trunk/a", 1, file("one"));
+		store.put("trunk/b", 1, file("two"));
+		store.copy("trunk", 1, "branches/x", 2);
+		store.delete("branches/x/a", 2);
+
+		assertNull(store.get("branches/x/a", 2));
+		assertEquals("two", text(store.get("branches/x/b", 2)));
+		assertEquals(Collections.singleton("branches/x/b"), store.delete("branches/x", 3).keySet());
+		assertNull(store.get("branches/x/b", 3));
+
+		// copied again, the older versions below are hidden
+		store.copy("trunk", 1, "branches/x", 4);
+		assertEquals("one", text(store.get("branches/x/a", 4)));
+		assertEquals(2, store.delete("branches/x", 5).size());
+	}
+
+	@Test
+	public void testDelete() throws IOException {
+		store.put("trunk", 1, dir());
+		store.put("trunk/a", 1, file("one"));
+		store.put("trunk/sub", 1, dir());
+		store.put("trunk/sub/b", 1, file("two"));
+
+		assertEquals(2, store.delete("trunk", 2).size());
+		assertNull(store.get("trunk/a", 2));
+		assertTrue(store.getTree("trunk", 2).isEmpty());
+		// still available as copy source
+		assertEquals(4, store.getTree("trunk", 1).size());
+		assertEquals("two", text(store.get("trunk/sub/b", 1)));
+
+		store.put("trunk", 3, dir());
+		store.put("trunk/a", 3, file("again"));
+		assertNull(store.get("trunk/a", 2));
+		assertEquals("again", text(store.get("trunk/a", 3)));
+	}
+
+	@Test
+	public void testMissingParent() throws IOException {
+		// a partial dump
+		store.put("branches/x/a", 3, file("one"));
+		assertEquals("one", text(store.get("branches/x/a", 3)));
+		assertEquals(Arrays.asList("", "branches/x/a"), new ArrayList<>(store.getTree("", 3).keySet()));
+	}
+
+	@Test
+	public void testOlderVersions() throws IOException {
+		store.put("a", 2, file("two"));
+		store.put("a", 5, file("five"));
+		store.put("a", 7, file("seven"));
+
+		assertNull(store.get("a", 1));
+		assertEquals("two", text(store.get("a", 2)));
+		assertEquals("two", text(store.get("a", 4)));
+		assertEquals("five", text(store.get("a", 6)));
+		assertEquals("seven", text(store.get("a", 100)));
+		assertEquals("native", store.get("a", 3).props.get("svn:eol-style"));
+	}
+
+	@Test
+	public void testSameRevisionReplacesVersion() throws IOException {
+		store.put("a", 1, file("one"));
+		store.put("a", 2, file("first"));
+		store.put("a", 2, file("second"));
+		assertEquals("one", text(store.get("a", 1)));
+		assertEquals("second", text(store.get("a", 2)));
+	}
+
+	@Test
+	public void testSharedStateSpilledOnce() throws IOException {
+		NodeState shared = file("shared");
+		store.put("a", 1, shared);
+		store.put("b", 1, shared);
+		store.put("a", 2, file("x"));
+		store.put("b", 2, file("y"));
+		assertArrayEquals(shared.content, store.get("a", 1).content);
+		assertEquals(store.get("a", 1).spillOffset, store.get("b", 1).spillOffset);
+	}
+}
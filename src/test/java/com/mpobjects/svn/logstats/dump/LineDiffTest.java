@@ -0,0 +1,67 @@
+package com.mpobjects.svn.logstats.dump;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+public class LineDiffTest {
+
+	private static LineDiff diff(String aOld, String aNew) {
+		return LineDiff.compute(aOld.getBytes(StandardCharsets.UTF_8), aNew.getBytes(StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void testAddedAtEnd() {
+		LineDiff diff = diff("a\nb\n", "a\nb\nc\nd\n");
+		assertEquals(2, diff.getLinesAdded());
+		assertEquals(0, diff.getLinesRemoved());
+		assertEquals(2, diff.getLinesChanged());
+	}
+
+	@Test
+	public void testChangedLine() {
+		LineDiff diff = diff("a\nb\nc\n", "a\nx\nc\n");
+		assertEquals(1, diff.getLinesAdded());
+		assertEquals(1, diff.getLinesRemoved());
+		assertEquals(1, diff.getLinesChanged());
+	}
+
+	@Test
+	public void testCountLines() {
+		assertEquals(0, LineDiff.countLines(new byte[0]));
+		assertEquals(2, LineDiff.countLines("a\nb\n".getBytes(StandardCharsets.UTF_8)));
+		assertEquals(2, LineDiff.countLines("a\nb".getBytes(StandardCharsets.UTF_8)));
+	}
+
+	@Test
+	public void testIdentical() {
+		LineDiff diff = diff("a\nb\nc\n", "a\nb\nc\n");
+		assertEquals(0, diff.getLinesAdded());
+		assertEquals(0, diff.getLinesRemoved());
+		assertEquals(0, diff.getLinesChanged());
+	}
+
+	@Test
+	public void testNewFile() {
+		LineDiff diff = diff("", "a\nb\nc");
+		assertEquals(3, diff.getLinesAdded());
+		assertEquals(0, diff.getLinesRemoved());
+	}
+
+	@Test
+	public void testSeparateRuns() {
+		LineDiff diff = diff("a\nb\nc\nd\ne\n", "a\nc\nd\nx\ny\ne\n");
+		assertEquals(2, diff.getLinesAdded());
+		assertEquals(1, diff.getLinesRemoved());
+		assertEquals(3, diff.getLinesChanged());
+	}
+
+	@Test
+	public void testWhitespaceIgnored() {
+		LineDiff diff = diff("a b\n\tc\n", "ab\r\n c \n");
+		assertEquals(0, diff.getLinesAdded());
+		assertEquals(0, diff.getLinesRemoved());
+	}
+}
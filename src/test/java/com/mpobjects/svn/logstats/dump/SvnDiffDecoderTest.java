@@ -0,0 +1,97 @@
+package com.mpobjects.svn.logstats.dump;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Deflater;
+
+import org.junit.Test;
+
+public class SvnDiffDecoderTest {
+
+	private static byte[] bytes(String aValue) {
+		return aValue.getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static byte[] compress(byte[] aData) {
+		Deflater deflater = new Deflater();
+		deflater.setInput(aData);
+		deflater.finish();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		out.write(aData.length);
+		byte[] buffer = new byte[256];
+		while (!deflater.finished()) {
+			out.write(buffer, 0, deflater.deflate(buffer));
+		}
+		deflater.end();
+		return out.toByteArray();
+	}
+
+	private static byte[] delta(int aVersion, int aSviewOffset, int aSviewLen, int aTviewLen, byte[] aIns, byte[] aNew) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		out.write('S');
+		out.write('V');
+		out.write('N');
+		out.write(aVersion);
+		// all values below 128, single byte varints
+		out.write(aSviewOffset);
+		out.write(aSviewLen);
+		out.write(aTviewLen);
+		out.write(aIns.length);
+		out.write(aNew.length);
+		out.write(aIns, 0, aIns.length);
+		out.write(aNew, 0, aNew.length);
+		return out.toByteArray();
+	}
+
+	@Test
+	public void testCompressedWindow() throws IOException {
+		byte[] text = bytes("abcdefghijklmnopqrstuvwxyzabcdefghijklmnopqrstuvwxyz");
+		byte[] ins = new byte[] { (byte) (0x80 | 0), (byte) text.length };
+		byte[] delta = delta(1, 0, 0, text.length, compress(ins), compress(text));
+		assertArrayEquals(text, SvnDiffDecoder.apply(new byte[0], delta));
+	}
+
+	@Test
+	public void testCopyFromSourceAndNewData() throws IOException {
+		// copy 5 bytes at source offset 0, then 6 new bytes
+		byte[] ins = new byte[] { 0x05, 0x00, (byte) 0x86 };
+		byte[] delta = delta(0, 0, 5, 11, ins, bytes(" world"));
+		assertEquals("hello world", new String(SvnDiffDecoder.apply(bytes("hello"), delta), StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void testCopyFromTargetOverlapping() throws IOException {
+		// 2 new bytes, then 6 bytes copied from target offset 0 while they are written
+		byte[] ins = new byte[] { (byte) 0x82, 0x46, 0x00 };
+		byte[] delta = delta(0, 0, 0, 8, ins, bytes("ab"));
+		assertEquals("abababab", new String(SvnDiffDecoder.apply(new byte[0], delta), StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void testEmptyDelta() throws IOException {
+		assertEquals(0, SvnDiffDecoder.apply(bytes("old"), new byte[0]).length);
+	}
+
+	@Test(expected = IOException.class)
+	public void testNotSvnDiff() throws IOException {
+		SvnDiffDecoder.apply(new byte[0], bytes("XYZ\0"));
+	}
+
+	@Test(expected = IOException.class)
+	public void testSourceViewOutOfRange() throws IOException {
+		SvnDiffDecoder.apply(bytes("abc"), delta(0, 0, 5, 5, new byte[] { 0x05, 0x00 }, new byte[0]));
+	}
+
+	@Test
+	public void testUncompressedSvnDiff1() throws IOException {
+		// svndiff1 sections keep the raw data after the original length when compression does not help
+		byte[] ins = new byte[] { 0x01, (byte) 0x83 };
+		byte[] data = new byte[] { 0x03, 'a', 'b', 'c' };
+		byte[] delta = delta(1, 0, 0, 3, ins, data);
+		assertEquals("abc", new String(SvnDiffDecoder.apply(new byte[0], delta), StandardCharsets.UTF_8));
+	}
+}
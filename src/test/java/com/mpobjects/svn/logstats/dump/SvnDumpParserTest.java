@@ -0,0 +1,232 @@
+package com.mpobjects.svn.logstats.dump;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+import org.junit.Test;
+
+import com.mpobjects.svn.logstats.RevisionReporter;
+import com.mpobjects.svn.logstats.RevisionReporterException;
+import com.mpobjects.svn.logstats.SvnLogParser;
+import com.mpobjects.svn.logstats.model.FileChange;
+import com.mpobjects.svn.logstats.model.Revision;
+
+public class SvnDumpParserTest {
+
+	/**
+	 * Describes every revision when it is reported, the log parser reuses the instances.
+	 */
+	private static class DescribingReporter implements RevisionReporter {
+		final List<String> revisions = new ArrayList<>();
+
+		@Override
+		public void flush() throws RevisionReporterException {
+		}
+
+		@Override
+		public void report(@Nonnull Revision aRevision) throws RevisionReporterException {
+			StringBuilder sb = new StringBuilder();
+			sb.append('r').append(aRevision.getId()).append(' ').append(aRevision.getAuthor()).append(' ').append(aRevision.getTimestamp().getMillis());
+			sb.append(' ').append(aRevision.getComment()).append(' ').append(aRevision.getMergeStatus()).append(' ').append(aRevision.getMergeInfo());
+			for (FileChange change : new TreeMap<>(aRevision.getFileChanges()).values()) {
+				sb.append("\n  ").append(change.getChangeType()).append(' ').append(change.getFilename());
+				if (change.getFromPath() != null) {
+					sb.append(" from ").append(change.getFromPath()).append('@').append(change.getFromRevision());
+				}
+				sb.append(change.isInManifest() ? "" : " (not in manifest)");
+				sb.append(" +").append(change.getLinesAdded()).append(" -").append(change.getLinesRemoved()).append(" ~").append(change.getLinesChanged());
+			}
+			revisions.add(sb.toString());
+		}
+
+		@Override
+		public boolean retainsRevisions() {
+			return false;
+		}
+	}
+
+	private static final String SEPARATOR = "------------------------------------------------------------------------";
+
+	private static byte[] bytes(String aValue) {
+		return aValue.getBytes(StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Add, delta modification, directory copy, change on the copy, merge and delete, oldest first.
+	 */
+	private static byte[] createDump() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		out.write(bytes("SVN-fs-dump-format-version: 3\n\nUUID: 0b0f4f4c-0000-0000-0000-000000000000\n\n"));
+		revision(out, 0, null, null, null);
+
+		revision(out, 1, "alice", "2020-01-01T09:00:00.000000Z", "initial");
+		node(out, "trunk", "dir", "add", null, 0, null, null, false);
+		node(out, "branches", "dir", "add", null, 0, null, null, false);
+		node(out, "trunk/A.java", "file", "add", null, 0, "", bytes("a\nb\nc\n"), false);
+
+		revision(out, 2, "bob", "2020-01-02T09:00:00.000000Z", "modify");
+		// copy "a\n", new "B\n", copy "c\n", new "d\n"
+		byte[] ins = new byte[] { 0x02, 0x00, (byte) 0x82, 0x02, 0x04, (byte) 0x82 };
+		byte[] data = bytes("B\nd\n");
+		ByteArrayOutputStream delta = new ByteArrayOutputStream();
+		delta.write(new byte[] { 'S', 'V', 'N', 0, 0, 6, 8, (byte) ins.length, (byte) data.length });
+		delta.write(ins);
+		delta.write(data);
+		node(out, "trunk/A.java", "file", "change", null, 0, null, delta.toByteArray(), true);
+
+		revision(out, 3, "alice", "2020-01-03T09:00:00.000000Z", "branch");
+		node(out, "branches/x", "dir", "add", "trunk", 2, null, null, false);
+
+		revision(out, 4, "bob", "2020-01-04T09:00:00.000000Z", "change on branch");
+		node(out, "branches/x/A.java", "file", "change", null, 0, null, bytes("a\nB\nc\nd\ne\n"), false);
+
+		revision(out, 5, "alice", "2020-01-05T09:00:00.000000Z", "merge x");
+		node(out, "trunk", "dir", "change", null, 0, "K 13\nsvn:mergeinfo\nV 13\n/branches/x:4\n", null, false);
+		node(out, "trunk/A.java", "file", "change", null, 0, null, bytes("a\nB\nc\nd\ne\n"), false);
+
+		revision(out, 6, "bob", "2020-01-06T09:00:00.000000Z", "remove");
+		node(out, "trunk/A.java", null, "delete", null, 0, null, null, false);
+		node(out, "branches/x", null, "delete", null, 0, null, null, false);
+		return out.toByteArray();
+	}
+
+	/**
+	 * The same revisions as <code>svn log -v --diff -r 1:HEAD</code> shows them.
+	 */
+	private static void logOutput(SvnLogParser aParser) {
+		entry(aParser, 1, "alice", "2020-01-01", "initial", "   A /branches", "   A /trunk", "   A /trunk/A.java");
+		diff(aParser, "trunk/A.java", "@@ -0,0 +1,3 @@", "+a", "+b", "+c");
+		entry(aParser, 2, "bob", "2020-01-02", "modify", "   M /trunk/A.java");
+		diff(aParser, "trunk/A.java", "@@ -1,3 +1,4 @@", " a", "-b", "+B", " c", "+d");
+		entry(aParser, 3, "alice", "2020-01-03", "branch", "   A /branches/x (from /trunk:2)");
+		entry(aParser, 4, "bob", "2020-01-04", "change on branch", "   M /branches/x/A.java");
+		diff(aParser, "branches/x/A.java", "@@ -2,3 +2,4 @@", " B", " c", " d", "+e");
+		entry(aParser, 5, "alice", "2020-01-05", "merge x", "   M /trunk", "   M /trunk/A.java");
+		diff(aParser, "trunk/A.java", "@@ -2,3 +2,4 @@", " B", " c", " d", "+e");
+		aParser.parse("Index: trunk");
+		aParser.parse("===================================================================");
+		aParser.parse("--- trunk\t(revision 4)");
+		aParser.parse("+++ trunk\t(revision 5)");
+		aParser.parse("");
+		aParser.parse("Property changes on: trunk");
+		aParser.parse("___________________________________________________________________");
+		aParser.parse("Added: svn:mergeinfo");
+		aParser.parse("## -0,0 +0,1 ##");
+		aParser.parse("   Merged /branches/x:r4");
+		entry(aParser, 6, "bob", "2020-01-06", "remove", "   D /branches/x", "   D /trunk/A.java");
+		diff(aParser, "branches/x/A.java (deleted)", "@@ -1,5 +0,0 @@", "-a", "-B", "-c", "-d", "-e");
+		diff(aParser, "trunk/A.java", "@@ -1,5 +0,0 @@", "-a", "-B", "-c", "-d", "-e");
+		aParser.parse(SEPARATOR);
+		aParser.flush();
+	}
+
+	private static void diff(SvnLogParser aParser, String aIndex, String... aLines) {
+		aParser.parse("Index: " + aIndex);
+		aParser.parse("===================================================================");
+		aParser.parse("--- " + aIndex);
+		aParser.parse("+++ " + aIndex);
+		for (String line : aLines) {
+			aParser.parse(line);
+		}
+		aParser.parse("");
+	}
+
+	private static void entry(SvnLogParser aParser, int aId, String aAuthor, String aDay, String aComment, String... aPaths) {
+		aParser.parse(SEPARATOR);
+		aParser.parse("r" + aId + " | " + aAuthor + " | " + aDay + " 10:00:00 +0100 (Wed, 01 Jan 2020) | 1 line");
+		aParser.parse("Changed paths:");
+		for (String path : aPaths) {
+			aParser.parse(path);
+		}
+		aParser.parse("");
+		aParser.parse(aComment);
+		aParser.parse("");
+	}
+
+	private static void node(ByteArrayOutputStream aOut, String aPath, @CheckForNull String aKind, String aAction, @CheckForNull String aCopyFromPath,
+			int aCopyFromRevision, @CheckForNull String aProps, @CheckForNull byte[] aText, boolean aDelta) throws IOException {
+		byte[] props = aProps == null ? null : bytes(aProps + "PROPS-END\n");
+		StringBuilder headers = new StringBuilder();
+		headers.append("Node-path: ").append(aPath).append('\n');
+		if (aKind != null) {
+			headers.append("Node-kind: ").append(aKind).append('\n');
+		}
+		headers.append("Node-action: ").append(aAction).append('\n');
+		if (aCopyFromPath != null) {
+			headers.append("Node-copyfrom-rev: ").append(aCopyFromRevision).append('\n');
+			headers.append("Node-copyfrom-path: ").append(aCopyFromPath).append('\n');
+		}
+		if (aDelta) {
+			headers.append("Text-delta: true\n");
+		}
+		int length = 0;
+		if (props != null) {
+			headers.append("Prop-content-length: ").append(props.length).append('\n');
+			length += props.length;
+		}
+		if (aText != null) {
+			headers.append("Text-content-length: ").append(aText.length).append('\n');
+			length += aText.length;
+		}
+		if (props != null || aText != null) {
+			headers.append("Content-length: ").append(length).append('\n');
+		}
+		aOut.write(bytes(headers.append('\n').toString()));
+		if (props != null) {
+			aOut.write(props);
+		}
+		if (aText != null) {
+			aOut.write(aText);
+		}
+		aOut.write(bytes("\n\n"));
+	}
+
+	private static void revision(ByteArrayOutputStream aOut, int aId, @CheckForNull String aAuthor, @CheckForNull String aDate, @CheckForNull String aLog)
+			throws IOException {
+		Map<String, String> values = new TreeMap<>();
+		if (aAuthor != null) {
+			values.put("svn:author", aAuthor);
+			values.put("svn:date", aDate);
+			values.put("svn:log", aLog);
+		}
+		StringBuilder props = new StringBuilder();
+		for (Map.Entry<String, String> entry : values.entrySet()) {
+			props.append("K ").append(entry.getKey().length()).append('\n').append(entry.getKey()).append('\n');
+			props.append("V ").append(bytes(entry.getValue()).length).append('\n').append(entry.getValue()).append('\n');
+		}
+		byte[] data = bytes(props.append("PROPS-END\n").toString());
+		aOut.write(bytes("Revision-number: " + aId + "\nProp-content-length: " + data.length + "\nContent-length: " + data.length + "\n\n"));
+		aOut.write(data);
+		aOut.write('\n');
+	}
+
+	@Test
+	public void testSameAsLog() throws IOException {
+		DescribingReporter fromDump = new DescribingReporter();
+		try (SvnDumpParser parser = new SvnDumpParser(fromDump)) {
+			parser.parse(new ByteArrayInputStream(createDump()));
+			parser.flush();
+		}
+		DescribingReporter fromLog = new DescribingReporter();
+		logOutput(new SvnLogParser(fromLog));
+
+		assertEquals(6, fromDump.revisions.size());
+		assertEquals(fromLog.revisions, fromDump.revisions);
+		assertEquals("r2 bob 1577955600000 modify NORMAL {}\n  MODIFIED trunk/A.java +2 -1 ~2", fromDump.revisions.get(1));
+		assertEquals("r5 alice 1578214800000 merge x MERGED {branches/x=r4}\n  MODIFIED trunk +0 -0 ~0\n  MODIFIED trunk/A.java +1 -0 ~1",
+				fromDump.revisions.get(4));
+		assertEquals("r6 bob 1578301200000 remove NORMAL {}\n  DELETED branches/x +0 -0 ~0\n  DELETED branches/x/A.java (not in manifest) +0 -5 ~5"
+				+ "\n  DELETED trunk/A.java +0 -5 ~5", fromDump.revisions.get(5));
+	}
+}
@@ -0,0 +1,79 @@
+package com.mpobjects.svn.logstats.history;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.joda.time.DateTime;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.mpobjects.svn.logstats.RevisionReporterException;
+import com.mpobjects.svn.logstats.model.ChangeType;
+import com.mpobjects.svn.logstats.model.FileChange;
+import com.mpobjects.svn.logstats.model.Revision;
+
+public class PathHistoryIndexTest {
+
+	private static Revision revision(int aId, String aPath, String aFromPath, int aFromRevision) {
+		Revision revision = new Revision(aId, "bob", new DateTime(2020, 1, 1, 0, 0));
+		FileChange change = new FileChange(aPath, ChangeType.ADDED);
+		change.setFromPath(aFromPath);
+		change.setFromRevision(aFromRevision);
+		change.setLinesAdded(3);
+		revision.addFileChange(change);
+		return revision;
+	}
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testFailedWriteNotIndexed() throws IOException {
+		PathHistoryIndex index = new PathHistoryIndex();
+		index.output = new DataOutputStream(new OutputStream() {
+			@Override
+			public void write(int aByte) throws IOException {
+				throw new IOException("disk full");
+			}
+		});
+		try {
+			index.report(revision(5, "trunk/a", null, 0));
+			fail();
+		} catch (RevisionReporterException e) {
+			// expected
+		}
+		assertFalse(index.isIndexed(5));
+		assertEquals(0, index.getLastRevision());
+		assertTrue(index.events.isEmpty());
+	}
+
+	@Test
+	public void testReopen() throws IOException, RevisionReporterException {
+		File file = new File(folder.getRoot(), "history.idx");
+		try (PathHistoryIndex index = PathHistoryIndex.open(file)) {
+			index.report(revision(1, "trunk/a", null, 0));
+			index.report(revision(3, "branches/x/a", "trunk/a", 2));
+			index.flush();
+		}
+		try (PathHistoryIndex index = PathHistoryIndex.open(file)) {
+			assertEquals(3, index.getLastRevision());
+			assertTrue(index.isIndexed(1));
+			assertFalse(index.isIndexed(2));
+			PathLocation origin = index.getOrigin("/branches/x/a", 3);
+			assertEquals("trunk/a", origin.getPath());
+			assertEquals(2, origin.getRevision());
+			assertNull(index.getOrigin("trunk/a", 3));
+			assertEquals(2, index.getHistory("branches/x/a", 3).size());
+			assertEquals(6, index.getLifetimeChurn("branches/x/a", 3).getLinesAdded());
+		}
+	}
+}
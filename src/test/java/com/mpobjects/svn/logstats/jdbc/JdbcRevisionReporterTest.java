@@ -0,0 +1,92 @@
+package com.mpobjects.svn.logstats.jdbc;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.apache.commons.configuration2.BaseConfiguration;
+import org.joda.time.DateTime;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.mpobjects.svn.logstats.RevisionReporterException;
+import com.mpobjects.svn.logstats.model.ChangeType;
+import com.mpobjects.svn.logstats.model.FileChange;
+import com.mpobjects.svn.logstats.model.Revision;
+
+public class JdbcRevisionReporterTest {
+
+	private static final String URL = "jdbc:h2:mem:jdbcreportertest";
+
+	private static Revision revision(int aId, int aLinesAdded) {
+		Revision revision = new Revision(aId, "bob", new DateTime(2020, 1, 1, 12, 0));
+		revision.setComment("ABC-" + aId + " fix");
+		FileChange change = new FileChange("/trunk/a.txt", ChangeType.MODIFIED);
+		change.setLinesAdded(aLinesAdded);
+		revision.addFileChange(change);
+		return revision;
+	}
+
+	private BaseConfiguration config;
+
+	/**
+	 * Keeps the in-memory database alive between the reporters
+	 */
+	private Connection keepAlive;
+
+	@Before
+	public void setUp() throws SQLException {
+		keepAlive = DriverManager.getConnection(URL);
+		config = new BaseConfiguration();
+		config.setProperty("jdbc.url", URL);
+		config.setProperty("jdbc.batch.size", 2);
+		config.setProperty("pattern.issue", "([A-Z]+-\\d+)");
+		config.setProperty("pattern.project", "([A-Z]+)-.*");
+	}
+
+	@After
+	public void tearDown() throws SQLException {
+		try (Statement stmt = keepAlive.createStatement()) {
+			stmt.execute("DROP ALL OBJECTS");
+		}
+		keepAlive.close();
+	}
+
+	@Test
+	public void testRerunReplacesRevisions() throws IOException, RevisionReporterException, SQLException {
+		try (JdbcRevisionReporter reporter = JdbcRevisionReporter.open(config)) {
+			for (int id = 10; id >= 1; --id) {
+				reporter.report(revision(id, 1));
+			}
+			reporter.flush();
+		}
+		// overlapping run, skipping some revisions of the earlier run
+		try (JdbcRevisionReporter reporter = JdbcRevisionReporter.open(config)) {
+			for (int id = 15; id >= 5; id -= 2) {
+				reporter.report(revision(id, 2));
+			}
+			reporter.flush();
+		}
+
+		assertEquals(13, count("SELECT COUNT(*) FROM revision"));
+		assertEquals(13, count("SELECT COUNT(*) FROM revision_issue"));
+		assertEquals(13, count("SELECT COUNT(*) FROM revision_project"));
+		assertEquals(13, count("SELECT COUNT(*) FROM file_change"));
+		assertEquals(2, count("SELECT lines_added FROM revision WHERE id = 7"));
+		assertEquals(2, count("SELECT lines_added FROM file_change WHERE revision = 7"));
+		assertEquals(1, count("SELECT lines_added FROM file_change WHERE revision = 6"));
+	}
+
+	private int count(String aQuery) throws SQLException {
+		try (Statement stmt = keepAlive.createStatement(); ResultSet rs = stmt.executeQuery(aQuery)) {
+			rs.next();
+			return rs.getInt(1);
+		}
+	}
+}
@@ -0,0 +1,77 @@
+package com.mpobjects.svn.logstats.linetype;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.mpobjects.svn.logstats.model.LineType;
+
+public class LineClassifierTest {
+
+	@Test
+	public void testBlankLines() {
+		LineClassifier classifier = new LineClassifier(LineSyntax.JAVA);
+		assertEquals(LineType.BLANK, classifier.classify("", 0));
+		assertEquals(LineType.BLANK, classifier.classify("+ \t ", 1));
+	}
+
+	@Test
+	public void testBlockComment() {
+		LineClassifier classifier = new LineClassifier(LineSyntax.JAVA);
+		assertEquals(LineType.COMMENT, classifier.classify("+/**", 1));
+		assertTrue(classifier.isInBlockComment());
+		assertEquals(LineType.COMMENT, classifier.classify("+ * text", 1));
+		assertEquals(LineType.BLANK, classifier.classify("+", 1));
+		assertEquals(LineType.COMMENT, classifier.classify("+ */", 1));
+		assertFalse(classifier.isInBlockComment());
+		assertEquals(LineType.CODE, classifier.classify("+/* a */ int b;", 1));
+		assertEquals(LineType.CODE, classifier.classify("+int a; /* start", 1));
+		assertEquals(LineType.CODE, classifier.classify("+end */ int c;", 1));
+	}
+
+	@Test
+	public void testCommentMarkersInStrings() {
+		LineClassifier classifier = new LineClassifier(LineSyntax.JAVA);
+		assertEquals(LineType.CODE, classifier.classify(" String s = \"/* not a comment\";", 1));
+		assertFalse(classifier.isInBlockComment());
+		assertEquals(LineType.CODE, classifier.classify(" String s = \"\\\" // still a string\";", 1));
+		assertEquals(LineType.CODE, classifier.classify(" char c = '\"';", 1));
+		assertFalse(classifier.isInBlockComment());
+	}
+
+	@Test
+	public void testLineComment() {
+		LineClassifier classifier = new LineClassifier(LineSyntax.JAVA);
+		assertEquals(LineType.COMMENT, classifier.classify("-  // comment", 1));
+		assertEquals(LineType.CODE, classifier.classify("-int a; // comment", 1));
+		assertFalse(classifier.isInBlockComment());
+	}
+
+	@Test
+	public void testReset() {
+		LineClassifier classifier = new LineClassifier(LineSyntax.XML);
+		assertEquals(LineType.COMMENT, classifier.classify("<!-- open", 0));
+		classifier.reset();
+		assertEquals(LineType.CODE, classifier.classify("<a/>", 0));
+	}
+
+	@Test
+	public void testSql() {
+		LineClassifier classifier = new LineClassifier(LineSyntax.SQL);
+		// a removed SQL comment line in a diff
+		assertEquals(LineType.COMMENT, classifier.classify("--- comment", 1));
+		assertEquals(LineType.CODE, classifier.classify("+select '--' from dual;", 1));
+		// no escapes, the backslash does not hide the closing quote
+		assertEquals(LineType.CODE, classifier.classify("+select 'a\\' -- comment", 1));
+	}
+
+	@Test
+	public void testXml() {
+		LineClassifier classifier = new LineClassifier(LineSyntax.XML);
+		assertEquals(LineType.COMMENT, classifier.classify("  <!-- a", 0));
+		assertEquals(LineType.COMMENT, classifier.classify("  b -->", 0));
+		assertEquals(LineType.CODE, classifier.classify("<a href=\"x\">//</a>", 0));
+	}
+}
@@ -0,0 +1,98 @@
+package com.mpobjects.svn.logstats.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+public class RevisionRangeSetTest {
+
+	@Test
+	public void testAddAscending() {
+		RevisionRangeSet set = new RevisionRangeSet();
+		set.add(1, 3);
+		set.add(4, 5);
+		set.add(5, 8);
+		set.add(10, 10);
+		assertEquals("r1-8,r10", set.toString());
+		assertEquals(9, set.cardinality());
+	}
+
+	@Test
+	public void testAddOutOfOrder() {
+		RevisionRangeSet set = new RevisionRangeSet();
+		set.add(50, 60);
+		set.add(10, 20);
+		set.add(30, 30);
+		assertEquals("r10-20,r30,r50-60", set.toString());
+		// touches both neighbours
+		set.add(21, 29);
+		assertEquals("r10-30,r50-60", set.toString());
+		// spans several ranges
+		set.add(5, 55);
+		assertEquals("r5-60", set.toString());
+		set.add(1, 2);
+		set.add(3, 3);
+		assertEquals("r1-3,r5-60", set.toString());
+		assertEquals(2, set.rangeCount());
+	}
+
+	@Test
+	public void testAndNot() {
+		RevisionRangeSet set = RevisionRangeSet.parse("1-10,20-30");
+		assertEquals("r1-4,r8-10,r26-30", set.andNot(RevisionRangeSet.parse("5-7,15-25")).toString());
+		assertTrue(set.andNot(RevisionRangeSet.parse("1-30")).isEmpty());
+	}
+
+	@Test
+	public void testContains() {
+		RevisionRangeSet set = RevisionRangeSet.parse("r100-200,205*,300");
+		assertFalse(set.contains(99));
+		assertTrue(set.contains(100));
+		assertTrue(set.contains(200));
+		assertFalse(set.contains(201));
+		assertTrue(set.contains(205));
+		assertTrue(set.contains(300));
+		assertFalse(set.contains(301));
+	}
+
+	@Test
+	public void testParse() {
+		assertEquals("r100-200,r205", RevisionRangeSet.parse("r100-r200, 205*").toString());
+		assertEquals("r3-7", RevisionRangeSet.parse("5-7,3-4").toString());
+		assertTrue(RevisionRangeSet.parse("").isEmpty());
+		assertTrue(RevisionRangeSet.parse("x,0,7-5").isEmpty());
+	}
+
+	@Test
+	public void testRandomAgainstSet() {
+		Random random = new Random(42);
+		RevisionRangeSet set = new RevisionRangeSet();
+		TreeSet<Integer> expected = new TreeSet<>();
+		for (int i = 0; i < 2000; ++i) {
+			int start = 1 + random.nextInt(5000);
+			int end = start + random.nextInt(5);
+			set.add(start, end);
+			for (int rev = start; rev <= end; ++rev) {
+				expected.add(rev);
+			}
+		}
+		assertEquals(expected.size(), set.cardinality());
+		for (int rev = 0; rev <= 5010; ++rev) {
+			assertEquals(Integer.toString(rev), expected.contains(rev), set.contains(rev));
+		}
+		int ranges = 0;
+		Integer previous = null;
+		for (Integer rev : expected) {
+			if (previous == null || rev > previous + 1) {
+				++ranges;
+			}
+			previous = rev;
+		}
+		assertEquals(ranges, set.rangeCount());
+	}
+}
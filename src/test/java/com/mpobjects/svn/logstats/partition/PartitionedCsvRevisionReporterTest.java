@@ -0,0 +1,66 @@
+package com.mpobjects.svn.logstats.partition;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.apache.commons.configuration2.BaseConfiguration;
+import org.joda.time.DateTime;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.mpobjects.svn.logstats.RevisionReporterException;
+import com.mpobjects.svn.logstats.model.ChangeType;
+import com.mpobjects.svn.logstats.model.FileChange;
+import com.mpobjects.svn.logstats.model.Revision;
+
+public class PartitionedCsvRevisionReporterTest {
+
+	private static Revision revision(int aId, int aDay) {
+		Revision revision = new Revision(aId, "bob", new DateTime(2020, 1, aDay, 12, 0));
+		revision.addFileChange(new FileChange("/trunk/a.txt", ChangeType.MODIFIED));
+		return revision;
+	}
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private long openPartitions(PartitionedCsvRevisionReporter aReporter) {
+		return aReporter.partitions.values().stream().filter(p -> p.reporter != null).count();
+	}
+
+	@Test
+	public void testOnePartitionOpen() throws IOException, RevisionReporterException {
+		BaseConfiguration config = new BaseConfiguration();
+		config.setProperty("partition.dir", folder.getRoot().getPath());
+		config.setProperty("partition.period", "day");
+		config.setProperty("csv.normalize.issues", false);
+
+		try (PartitionedCsvRevisionReporter reporter = new PartitionedCsvRevisionReporter(config)) {
+			int id = 100;
+			for (int day = 20; day >= 1; --day) {
+				reporter.report(revision(id--, day));
+				reporter.report(revision(id--, day));
+				assertEquals(1, openPartitions(reporter));
+			}
+			// a revision with a skewed clock reopens its partition
+			reporter.report(revision(id--, 15));
+			assertEquals(1, openPartitions(reporter));
+			reporter.flush();
+		}
+
+		List<String> lines = Files.readAllLines(new File(folder.getRoot(), "svnstats-2020-01-15.csv").toPath(), StandardCharsets.UTF_8);
+		assertEquals(4, lines.size());
+		assertTrue(lines.get(0).startsWith("Revision"));
+		assertTrue(lines.get(3).startsWith("60,"));
+		List<String> manifest = Files.readAllLines(new File(folder.getRoot(), "manifest.csv").toPath(), StandardCharsets.UTF_8);
+		assertEquals(21, manifest.size());
+		assertTrue(manifest.get(15).startsWith("2020-01-15,svnstats-2020-01-15.csv,3,60,"));
+	}
+}
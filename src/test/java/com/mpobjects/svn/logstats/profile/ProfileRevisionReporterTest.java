@@ -0,0 +1,162 @@
+package com.mpobjects.svn.logstats.profile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.configuration2.BaseConfiguration;
+import org.apache.commons.configuration2.Configuration;
+import org.joda.time.DateTime;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.mpobjects.svn.logstats.CompositeRevisionReporter;
+import com.mpobjects.svn.logstats.RevisionReporter;
+import com.mpobjects.svn.logstats.RevisionReporterException;
+import com.mpobjects.svn.logstats.SvnLog;
+import com.mpobjects.svn.logstats.SvnLogParser;
+import com.mpobjects.svn.logstats.model.ChangeType;
+import com.mpobjects.svn.logstats.model.FileChange;
+import com.mpobjects.svn.logstats.model.Revision;
+import com.mpobjects.svn.logstats.survival.LineSurvivalReporter;
+
+public class ProfileRevisionReporterTest {
+
+	private static final String SEPARATOR = "------------------------------------------------------------------------";
+
+	/**
+	 * Adds a file of three lines in r1, replaces its second line in r2.
+	 */
+	private static void parse(SvnLogParser aParser) {
+		aParser.parse(SEPARATOR);
+		aParser.parse("r1 | bob | 2020-01-01 10:00:00 +0100 (Wed, 01 Jan 2020) | 1 line");
+		aParser.parse("Changed paths:");
+		aParser.parse("   A /trunk/A.java");
+		aParser.parse("");
+		aParser.parse("add");
+		aParser.parse("");
+		aParser.parse("Index: trunk/A.java");
+		aParser.parse("===================================================================");
+		aParser.parse("--- trunk/A.java	(nonexistent)");
+		aParser.parse("+++ trunk/A.java	(revision 1)");
+		aParser.parse("@@ -0,0 +1,3 @@");
+		aParser.parse("+a");
+		aParser.parse("+b");
+		aParser.parse("+c");
+		aParser.parse("");
+		aParser.parse(SEPARATOR);
+		aParser.parse("r2 | alice | 2020-01-11 10:00:00 +0100 (Sat, 11 Jan 2020) | 1 line");
+		aParser.parse("Changed paths:");
+		aParser.parse("   M /trunk/A.java");
+		aParser.parse("");
+		aParser.parse("modify");
+		aParser.parse("");
+		aParser.parse("Index: trunk/A.java");
+		aParser.parse("===================================================================");
+		aParser.parse("--- trunk/A.java	(revision 1)");
+		aParser.parse("+++ trunk/A.java	(revision 2)");
+		aParser.parse("@@ -1,3 +1,3 @@");
+		aParser.parse(" a");
+		aParser.parse("-b");
+		aParser.parse("+B");
+		aParser.parse(" c");
+		aParser.parse("");
+		aParser.parse(SEPARATOR);
+		aParser.flush();
+	}
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testProfileConfiguration() {
+		BaseConfiguration config = new BaseConfiguration();
+		config.setProperty("output", new File("out", "svnstats.csv").getPath());
+		config.setProperty("csv.format", "RFC4180");
+		config.addProperty("profile", "wide");
+		config.addProperty("profile", " wide ");
+		config.addProperty("profile", "narrow");
+		config.setProperty("profile.narrow.csv.format", "EXCEL");
+		config.setProperty("profile.narrow.output", "narrow.csv");
+
+		assertEquals(Arrays.asList("wide", "narrow"), ProfileRevisionReporter.getProfileNames(config));
+		Configuration wide = ProfileRevisionReporter.createProfileConfiguration(config, "wide");
+		assertEquals(new File("out", "wide-svnstats.csv").getPath(), wide.getString("output"));
+		assertEquals("RFC4180", wide.getString("csv.format"));
+		Configuration narrow = ProfileRevisionReporter.createProfileConfiguration(config, "narrow");
+		assertEquals("narrow.csv", narrow.getString("output"));
+		assertEquals("EXCEL", narrow.getString("csv.format"));
+	}
+
+	@Test
+	public void testDiffListener() throws IOException, RevisionReporterException {
+		BaseConfiguration config = new BaseConfiguration();
+		config.setProperty("output", new File(folder.getRoot(), "survival.csv").getPath());
+		config.setProperty("profile", "csv");
+		config.setProperty("profile.csv.output.format", "csv");
+
+		StringBuilder direct = new StringBuilder();
+		parse(new SvnLogParser(new LineSurvivalReporter(direct, config)));
+		assertTrue(direct.toString().contains("Total,,Removed,1,"));
+		assertTrue(direct.toString().contains("Total,,Alive,3,"));
+
+		// the main survival reporter still receives the diff lines with a profile
+		StringBuilder profiled = new StringBuilder();
+		try (ProfileRevisionReporter reporter = new ProfileRevisionReporter(new LineSurvivalReporter(profiled, config), config)) {
+			parse(new SvnLogParser(reporter));
+		}
+		assertEquals(direct.toString(), profiled.toString());
+		assertEquals(3, Files.readAllLines(new File(folder.getRoot(), "csv-survival.csv").toPath(), StandardCharsets.UTF_8).size());
+
+		StringBuilder composite = new StringBuilder();
+		parse(new SvnLogParser(new CompositeRevisionReporter(new LineSurvivalReporter(composite, config))));
+		assertEquals(direct.toString(), composite.toString());
+	}
+
+	@Test
+	public void testReport() throws IOException, RevisionReporterException {
+		File output = new File(folder.getRoot(), "svnstats.csv");
+		BaseConfiguration config = new BaseConfiguration();
+		config.setProperty("output", output.getPath());
+		config.setProperty("output.format", "csv");
+		config.setProperty("csv.normalize.issues", false);
+		config.setProperty("profile", "wide");
+		config.setProperty("profile.queue", 1);
+		config.setProperty("profile.wide.pattern.issue", "([A-Z]+-\\d+)");
+		config.setProperty("profile.wide.filegroup", "Code");
+		config.setProperty("profile.wide.filegroup.Code", ".java");
+
+		RevisionReporter main = SvnLog.createReporter(config);
+		try (ProfileRevisionReporter reporter = new ProfileRevisionReporter(main, config)) {
+			for (int id = 3; id >= 1; --id) {
+				Revision revision = new Revision(id, "bob", new DateTime(2020, 1, id, 12, 0));
+				revision.setComment("ABC-" + id + " fix");
+				revision.addFileChange(new FileChange("trunk/A.java", ChangeType.MODIFIED));
+				reporter.report(revision);
+			}
+			reporter.flush();
+		} finally {
+			((Closeable) main).close();
+		}
+
+		List<String> mainLines = Files.readAllLines(output.toPath(), StandardCharsets.UTF_8);
+		List<String> wideLines = Files.readAllLines(new File(folder.getRoot(), "wide-svnstats.csv").toPath(), StandardCharsets.UTF_8);
+		assertEquals(4, mainLines.size());
+		assertEquals(4, wideLines.size());
+		assertFalse(mainLines.get(0).contains("Code Files Affected"));
+		assertTrue(wideLines.get(0).contains("Code Files Affected"));
+		// the issues found with the profile settings do not leak into the main output
+		assertTrue(mainLines.stream().noneMatch(l -> l.contains("ABC-")));
+		assertTrue(wideLines.get(1).contains("ABC-3"));
+		assertTrue(wideLines.get(3).contains("ABC-1"));
+	}
+}
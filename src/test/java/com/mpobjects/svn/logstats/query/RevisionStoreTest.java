@@ -0,0 +1,104 @@
+package com.mpobjects.svn.logstats.query;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.apache.commons.configuration2.BaseConfiguration;
+import org.joda.time.DateTime;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.mpobjects.svn.logstats.RevisionReporterException;
+import com.mpobjects.svn.logstats.model.ChangeType;
+import com.mpobjects.svn.logstats.model.FileChange;
+import com.mpobjects.svn.logstats.model.Revision;
+
+public class RevisionStoreTest {
+
+	private static Revision revision(int aId, String aAuthor, String aDay, String aComment, String aPath, int aLinesAdded) {
+		Revision revision = new Revision(aId, aAuthor, DateTime.parse(aDay + "T12:00:00"));
+		revision.setComment(aComment);
+		FileChange change = new FileChange(aPath, ChangeType.MODIFIED);
+		change.setLinesAdded(aLinesAdded);
+		revision.addFileChange(change);
+		return revision;
+	}
+
+	private RevisionStore store;
+
+	@Before
+	public void setUp() throws RevisionReporterException {
+		BaseConfiguration config = new BaseConfiguration();
+		config.setProperty("pattern.issue", "([A-Z]+-\\d+)");
+		config.setProperty("pattern.project", "([A-Z]+)-.*");
+		config.setProperty("filegroup", "Code");
+		config.setProperty("filegroup.Code", ".java");
+		store = new RevisionStore(config);
+
+		Revision first = revision(1, "bob", "2020-01-06", "ABC-1 fix", "/trunk/A.java", 2);
+		FileChange text = new FileChange("/trunk/b.txt", ChangeType.MODIFIED);
+		text.setLinesAdded(3);
+		first.addFileChange(text);
+		store.report(first);
+		store.report(revision(2, "alice", "2020-01-08", "XYZ-2 fix", "/trunk/C.java", 5));
+		store.report(revision(3, "bob", "2020-02-03", "ABC-3 and XYZ-3", "/trunk/A.java", 1));
+		store.flush();
+	}
+
+	@Test
+	public void testFilter() {
+		List<QueryResult.Row> rows = store.execute(Query.parse("from=2020-01-07 to=2020-01-31 group=author")).getRows();
+		assertEquals(1, rows.size());
+		assertArrayEquals(new String[] { "alice" }, rows.get(0).getGroup());
+
+		rows = store.execute(Query.parse("filegroup=code group=author")).getRows();
+		assertEquals(2, rows.size());
+		assertArrayEquals(new long[] { 2, 2, 3, 0, 0 }, rows.get(1).getValues());
+
+		// filter values which never occurred
+		assertTrue(store.execute(Query.parse("author=nobody")).getRows().isEmpty());
+		assertTrue(store.execute(Query.parse("issue=ABC-2")).getRows().isEmpty());
+	}
+
+	@Test
+	public void testGroupByAuthor() {
+		assertEquals(3, store.getRevisionCount());
+		List<QueryResult.Row> rows = store.execute(Query.parse("group=author")).getRows();
+		assertEquals(2, rows.size());
+		assertArrayEquals(new String[] { "alice" }, rows.get(0).getGroup());
+		assertArrayEquals(new long[] { 1, 1, 5, 0, 0 }, rows.get(0).getValues());
+		assertArrayEquals(new String[] { "bob" }, rows.get(1).getGroup());
+		assertArrayEquals(new long[] { 2, 3, 6, 0, 0 }, rows.get(1).getValues());
+	}
+
+	@Test
+	public void testGroupByMultiValued() {
+		// a revision counts for every project it refers to
+		List<QueryResult.Row> rows = store.execute(Query.parse("group=project")).getRows();
+		assertEquals(2, rows.size());
+		assertArrayEquals(new String[] { "ABC" }, rows.get(0).getGroup());
+		assertArrayEquals(new long[] { 2, 3, 6, 0, 0 }, rows.get(0).getValues());
+		assertArrayEquals(new String[] { "XYZ" }, rows.get(1).getGroup());
+		assertArrayEquals(new long[] { 2, 2, 6, 0, 0 }, rows.get(1).getValues());
+
+		rows = store.execute(Query.parse("project=abc group=month,filegroup")).getRows();
+		assertEquals(3, rows.size());
+		assertArrayEquals(new String[] { "2020-01", "" }, rows.get(0).getGroup());
+		assertArrayEquals(new String[] { "2020-01", "Code" }, rows.get(1).getGroup());
+		assertArrayEquals(new long[] { 1, 1, 2, 0, 0 }, rows.get(1).getValues());
+		assertArrayEquals(new String[] { "2020-02", "Code" }, rows.get(2).getGroup());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testParseUnknownTerm() {
+		Query.parse("color=red");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnknownFileGroup() {
+		store.execute(Query.parse("filegroup=Docs"));
+	}
+}
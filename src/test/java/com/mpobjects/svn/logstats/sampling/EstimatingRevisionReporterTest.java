@@ -0,0 +1,65 @@
+package com.mpobjects.svn.logstats.sampling;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.configuration2.BaseConfiguration;
+import org.joda.time.DateTime;
+import org.junit.Test;
+
+import com.mpobjects.svn.logstats.RevisionReporterException;
+import com.mpobjects.svn.logstats.model.ChangeType;
+import com.mpobjects.svn.logstats.model.FileChange;
+import com.mpobjects.svn.logstats.model.Revision;
+
+public class EstimatingRevisionReporterTest {
+
+	private static List<String> estimate(RevisionSampler aSampler, int aLinesAdded) throws RevisionReporterException {
+		RevisionSample sample = aSampler.select();
+		StringBuilder output = new StringBuilder();
+		EstimatingRevisionReporter reporter = new EstimatingRevisionReporter(output, new BaseConfiguration(), sample);
+		for (int id : sample.getIds()) {
+			Revision revision = new Revision(id, id % 2 == 0 ? "alice" : "bob", new DateTime(2017, 1, 1, 12, 0));
+			FileChange change = new FileChange("trunk/a.txt", ChangeType.MODIFIED);
+			change.setLinesAdded(aLinesAdded < 0 ? id : aLinesAdded);
+			revision.addFileChange(change);
+			reporter.report(revision);
+		}
+		// not part of the sample
+		reporter.report(new Revision(1000, "carol", new DateTime(2017, 1, 1, 12, 0)));
+		reporter.flush();
+		return Arrays.asList(output.toString().split("\r\n"));
+	}
+
+	@Test
+	public void testCensus() throws RevisionReporterException {
+		RevisionSampler sampler = new RevisionSampler(SamplingStrategy.UNIFORM, 1, 1, 42);
+		for (int id = 4; id >= 1; --id) {
+			sampler.add(id, id % 2 == 0 ? "alice" : "bob", "2017-01");
+		}
+		List<String> rows = estimate(sampler, -1);
+
+		// every revision is sampled, so the estimates are exact
+		assertTrue(rows.contains("Total,,Lines Added,4,10,0,10,10"));
+		assertTrue(rows.contains("Author,alice,Lines Added,2,6,0,6,6"));
+		assertTrue(rows.contains("Author,bob,Revisions,2,2,0,2,2"));
+		assertTrue(rows.stream().noneMatch(r -> r.contains("carol")));
+	}
+
+	@Test
+	public void testUniform() throws RevisionReporterException {
+		RevisionSampler sampler = new RevisionSampler(SamplingStrategy.UNIFORM, 5, 1, 42);
+		for (int id = 100; id >= 1; --id) {
+			sampler.add(id, "bob", "2017-01");
+		}
+		List<String> rows = estimate(sampler, 3);
+
+		assertEquals("Domain,Key,Metric,Sample Size,Estimate,Std Error,CI Low,CI High", rows.get(0));
+		assertTrue(rows.contains("Total,,Revisions,20,100,0,100,100"));
+		assertTrue(rows.contains("Total,,Lines Added,20,300,0,300,300"));
+		assertTrue(rows.contains("Month,2017-01,Files,20,100,0,100,100"));
+	}
+}
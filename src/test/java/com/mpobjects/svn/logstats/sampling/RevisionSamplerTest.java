@@ -0,0 +1,79 @@
+package com.mpobjects.svn.logstats.sampling;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class RevisionSamplerTest {
+
+	private static void assertNewestFirst(RevisionSample aSample) {
+		int[] ids = aSample.getIds();
+		for (int i = 1; i < ids.length; ++i) {
+			assertTrue(ids[i - 1] > ids[i]);
+		}
+	}
+
+	@Test
+	public void testParse() {
+		RevisionSampler sampler = new RevisionSampler(SamplingStrategy.MONTH, 1, 1, 42);
+		sampler.parse("------------------------------------------------------------------------");
+		sampler.parse("r12 | bob | 2017-03-01 10:00:00 +0100 (Wed, 01 Mar 2017)");
+		sampler.parse("r11 | alice | 2017-02-28 10:00:00 +0100 (Tue, 28 Feb 2017)");
+		RevisionSample sample = sampler.select();
+
+		assertEquals(2, sample.size());
+		assertEquals("2017-03", sample.getStratum(12));
+		assertEquals("2017-02", sample.getStratum(11));
+	}
+
+	@Test
+	public void testReservoir() {
+		RevisionSampler sampler = new RevisionSampler(SamplingStrategy.RESERVOIR, 1, 5, 42);
+		for (int id = 100; id >= 1; --id) {
+			sampler.add(id, "bob", "2017-01");
+		}
+		RevisionSample sample = sampler.select();
+
+		assertEquals(5, sample.size());
+		assertEquals(Integer.valueOf(100), sample.getPopulation().get("all"));
+		assertEquals(5, Arrays.stream(sample.getIds()).distinct().count());
+		assertNewestFirst(sample);
+	}
+
+	@Test
+	public void testStratified() {
+		RevisionSampler sampler = new RevisionSampler(SamplingStrategy.AUTHOR, 10, 1, 42);
+		for (int id = 1; id <= 33; ++id) {
+			sampler.add(id, id <= 30 ? "alice" : "bob", "2017-01");
+		}
+		RevisionSample sample = sampler.select();
+
+		assertEquals(Integer.valueOf(30), sample.getPopulation().get("alice"));
+		assertEquals(Integer.valueOf(3), sample.getPopulation().get("bob"));
+		assertEquals(3, sample.getSampleSize("alice"));
+		// at least two, so the variance can be estimated
+		assertEquals(2, sample.getSampleSize("bob"));
+		assertNewestFirst(sample);
+	}
+
+	@Test
+	public void testUniform() {
+		RevisionSampler sampler = new RevisionSampler(SamplingStrategy.UNIFORM, 10, 1, 42);
+		for (int id = 100; id >= 1; --id) {
+			sampler.add(id, "bob", "2017-01");
+		}
+		RevisionSample sample = sampler.select();
+
+		assertEquals(10, sample.size());
+		assertEquals(10, sample.getSampleSize("all"));
+		assertNewestFirst(sample);
+		for (int i = 1; i < sample.size(); ++i) {
+			assertEquals(10, sample.getIds()[i - 1] - sample.getIds()[i]);
+		}
+		assertNull(sample.getStratum(sample.getIds()[0] + 1));
+	}
+}
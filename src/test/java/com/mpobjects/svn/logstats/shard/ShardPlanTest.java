@@ -0,0 +1,76 @@
+package com.mpobjects.svn.logstats.shard;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.mpobjects.svn.logstats.shard.ShardPlan.Shard;
+
+public class ShardPlanTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testCreate() {
+		List<Shard> shards = ShardPlan.create(folder.getRoot().toPath(), 1, 10, 3).getShards();
+		assertEquals(3, shards.size());
+		// newest first, covering the range without gaps
+		assertEquals("10:8", shards.get(0).getRange());
+		assertEquals("7:5", shards.get(1).getRange());
+		assertEquals("4:1", shards.get(2).getRange());
+		for (int i = 0; i < shards.size(); ++i) {
+			assertEquals(i, shards.get(i).getIndex());
+		}
+	}
+
+	@Test
+	public void testCreateMoreShardsThanRevisions() {
+		List<Shard> shards = ShardPlan.create(folder.getRoot().toPath(), 5, 6, 8).getShards();
+		assertEquals(2, shards.size());
+		assertEquals("6:6", shards.get(0).getRange());
+		assertEquals("5:5", shards.get(1).getRange());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testCreateEmpty() {
+		ShardPlan.create(folder.getRoot().toPath(), 10, 9, 2);
+	}
+
+	@Test
+	public void testSaveLoad() throws IOException {
+		Path dir = folder.getRoot().toPath().resolve("shards");
+		assertNull(ShardPlan.load(dir));
+		ShardPlan plan = ShardPlan.create(dir, 1, 1000, 4);
+		plan.save();
+
+		ShardPlan loaded = ShardPlan.load(dir);
+		assertNotNull(loaded);
+		assertTrue(plan.isSame(loaded));
+		assertFalse(plan.isSame(ShardPlan.create(dir, 1, 1001, 4)));
+		assertFalse(plan.isSame(ShardPlan.create(dir, 1, 1000, 5)));
+
+		Shard shard = loaded.getShard(2);
+		assertEquals(dir.resolve("shard-0002.csv"), loaded.getChunkFile(shard));
+		assertFalse(loaded.isDone(shard));
+		Files.createFile(loaded.getDoneFile(shard));
+		assertTrue(loaded.isDone(shard));
+		assertFalse(loaded.isDone(loaded.getShard(1)));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnknownShard() {
+		ShardPlan.create(folder.getRoot().toPath(), 1, 10, 2).getShard(2);
+	}
+}
@@ -0,0 +1,67 @@
+package com.mpobjects.svn.logstats.sketch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.mpobjects.svn.logstats.util.Hashing;
+
+public class HyperLogLogTest {
+
+	private static HyperLogLog sketch(int aPrecision, int aFrom, int aTo) {
+		HyperLogLog result = new HyperLogLog(aPrecision);
+		for (int i = aFrom; i < aTo; ++i) {
+			result.add(Hashing.hash64("/trunk/file" + i));
+		}
+		return result;
+	}
+
+	private static void assertEstimate(long aExpected, HyperLogLog aSketch) {
+		// four standard errors
+		double tolerance = 4 * aSketch.getRelativeError() * aExpected;
+		assertTrue(aSketch.estimate() + " not close to " + aExpected, Math.abs(aSketch.estimate() - aExpected) <= tolerance);
+	}
+
+	@Test
+	public void testDuplicatesIgnored() {
+		HyperLogLog sketch = sketch(10, 0, 1000);
+		long estimate = sketch.estimate();
+		for (int i = 0; i < 1000; ++i) {
+			sketch.add(Hashing.hash64("/trunk/file" + i));
+		}
+		assertEquals(estimate, sketch.estimate());
+	}
+
+	@Test
+	public void testEmpty() {
+		assertEquals(0, new HyperLogLog(10).estimate());
+	}
+
+	@Test
+	public void testLargeRange() {
+		assertEstimate(100000, sketch(12, 0, 100000));
+	}
+
+	@Test
+	public void testMerge() {
+		HyperLogLog sketch = sketch(10, 0, 3000);
+		sketch.merge(sketch(10, 2000, 5000));
+		assertEstimate(5000, sketch);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testMergeDifferentPrecision() {
+		new HyperLogLog(10).merge(new HyperLogLog(11));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testPrecisionOutOfRange() {
+		new HyperLogLog(HyperLogLog.MAX_PRECISION + 1);
+	}
+
+	@Test
+	public void testSmallRange() {
+		assertEstimate(50, sketch(10, 0, 50));
+	}
+}
@@ -0,0 +1,47 @@
+package com.mpobjects.svn.logstats.sketch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.commons.configuration2.BaseConfiguration;
+import org.joda.time.DateTime;
+import org.junit.Test;
+
+import com.mpobjects.svn.logstats.RevisionReporterException;
+import com.mpobjects.svn.logstats.model.ChangeType;
+import com.mpobjects.svn.logstats.model.FileChange;
+import com.mpobjects.svn.logstats.model.Revision;
+
+public class SketchRevisionReporterTest {
+
+	private static Revision revision(int aId, String aAuthor, int aFiles) {
+		Revision revision = new Revision(aId, aAuthor, new DateTime(2020, 1, 1, 0, 0));
+		for (int i = 0; i < aFiles; ++i) {
+			revision.addFileChange(new FileChange("/trunk/" + aAuthor + i, ChangeType.MODIFIED));
+		}
+		return revision;
+	}
+
+	@Test
+	public void testDistinctKeysBounded() throws RevisionReporterException {
+		BaseConfiguration config = new BaseConfiguration();
+		config.setProperty("sketch.distinct.capacity", 3);
+		StringBuilder out = new StringBuilder();
+		SketchRevisionReporter reporter = new SketchRevisionReporter(out, config);
+		reporter.report(revision(1, "Bob", 40));
+		reporter.report(revision(2, "bob", 30));
+		for (int i = 0; i < 20; ++i) {
+			reporter.report(revision(3 + i, "user" + i, 1));
+		}
+		assertEquals(3, reporter.distinctPerAuthor.sketches.size());
+		// the busiest authors keep their sketch, and differ only in case
+		assertTrue(reporter.distinctPerAuthor.sketches.containsKey("Bob\t2020-01"));
+		assertTrue(reporter.distinctPerAuthor.sketches.containsKey("bob\t2020-01"));
+		assertEquals(40, reporter.distinctPerAuthor.sketches.get("Bob\t2020-01").estimate(), 2);
+
+		reporter.flush();
+		assertTrue(out.toString().contains("Distinct Files per Author,Bob,2020-01,"));
+		assertFalse(out.toString().contains("Distinct Files per Author,user0,"));
+	}
+}
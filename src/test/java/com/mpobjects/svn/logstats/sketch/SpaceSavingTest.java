@@ -0,0 +1,79 @@
+package com.mpobjects.svn.logstats.sketch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+
+public class SpaceSavingTest {
+
+	@Test
+	public void testEviction() {
+		SpaceSaving summary = new SpaceSaving(2);
+		assertNull(summary.add("a", 5));
+		assertNull(summary.add("b", 1));
+		assertEquals("b", summary.add("c", 2));
+
+		List<SpaceSaving.Counter> top = summary.top(10);
+		assertEquals(2, top.size());
+		assertEquals("a", top.get(0).getItem());
+		assertEquals("c", top.get(1).getItem());
+		// inherits the count of the evicted item as error
+		assertEquals(3, top.get(1).getCount());
+		assertEquals(1, top.get(1).getError());
+		assertEquals(8, summary.getTotal());
+	}
+
+	@Test
+	public void testExactWithinCapacity() {
+		SpaceSaving summary = new SpaceSaving(10);
+		summary.add("a", 1);
+		summary.add("b", 3);
+		summary.add("a", 4);
+		assertNull(summary.add("c", 0));
+
+		List<SpaceSaving.Counter> top = summary.top(10);
+		assertEquals(2, top.size());
+		assertEquals("a", top.get(0).getItem());
+		assertEquals(5, top.get(0).getCount());
+		assertEquals(0, top.get(0).getError());
+		assertEquals(1, summary.top(1).size());
+	}
+
+	@Test
+	public void testHeavyHittersFound() {
+		SpaceSaving summary = new SpaceSaving(20);
+		for (int i = 0; i < 10000; ++i) {
+			summary.add("noise" + i, 1);
+			if (i % 10 == 0) {
+				summary.add("hot", 5);
+			}
+		}
+		SpaceSaving.Counter hot = summary.top(1).get(0);
+		assertEquals("hot", hot.getItem());
+		assertTrue(hot.getCount() - hot.getError() <= 5000);
+		assertTrue(hot.getCount() >= 5000);
+		assertTrue(hot.getError() <= summary.getTotal() / summary.getCapacity());
+	}
+
+	@Test
+	public void testMerge() {
+		SpaceSaving first = new SpaceSaving(10);
+		first.add("a", 5);
+		first.add("b", 2);
+		SpaceSaving second = new SpaceSaving(10);
+		second.add("a", 1);
+		second.add("c", 4);
+		first.merge(second);
+
+		List<SpaceSaving.Counter> top = first.top(10);
+		assertEquals(3, top.size());
+		assertEquals("a", top.get(0).getItem());
+		assertEquals(6, top.get(0).getCount());
+		assertEquals("c", top.get(1).getItem());
+		assertEquals(12, first.getTotal());
+	}
+}
@@ -0,0 +1,108 @@
+package com.mpobjects.svn.logstats.survival;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class LineMapTest {
+
+	private static int[] lengths(LineMap aMap) {
+		int[] result = new int[aMap.size()];
+		for (int i = 0; i < result.length; ++i) {
+			result[i] = aMap.getLength(i);
+		}
+		return result;
+	}
+
+	private static int[] origins(LineMap aMap) {
+		int[] result = new int[aMap.size()];
+		for (int i = 0; i < result.length; ++i) {
+			result[i] = aMap.getOrigin(i);
+		}
+		return result;
+	}
+
+	@Test
+	public void testEdit() {
+		LineMap.Editor editor = new LineMap.Editor();
+		editor.start(LineMap.EMPTY);
+		editor.add(1);
+		editor.add(1);
+		editor.add(1);
+		LineMap added = editor.finish();
+		assertArrayEquals(new int[] { 3 }, lengths(added));
+		assertArrayEquals(new int[] { 1 }, origins(added));
+		assertFalse(added.isOpenEnded());
+
+		editor.start(added);
+		editor.keep(1);
+		assertEquals(1, editor.remove());
+		editor.add(2);
+		editor.add(2);
+		assertEquals(2, editor.getOldLines());
+		LineMap modified = editor.finish();
+		assertArrayEquals(new int[] { 1, 2, 1 }, lengths(modified));
+		assertArrayEquals(new int[] { 1, 2, 1 }, origins(modified));
+		// the source is left untouched
+		assertArrayEquals(new int[] { 3 }, lengths(added));
+	}
+
+	@Test
+	public void testMergeRuns() {
+		LineMap.Editor editor = new LineMap.Editor();
+		editor.start(LineMap.EMPTY);
+		editor.add(1);
+		editor.add(2);
+		editor.add(1);
+		LineMap map = editor.finish();
+		assertEquals(3, map.size());
+
+		editor.start(map);
+		editor.keep(1);
+		assertEquals(2, editor.remove());
+		map = editor.finish();
+		assertArrayEquals(new int[] { 2 }, lengths(map));
+		assertArrayEquals(new int[] { 1 }, origins(map));
+	}
+
+	@Test
+	public void testRemoveAll() {
+		LineMap.Editor editor = new LineMap.Editor();
+		editor.start(LineMap.EMPTY);
+		editor.add(1);
+		editor.add(2);
+		LineMap map = editor.finish();
+
+		editor.start(map);
+		assertEquals(1, editor.remove());
+		assertEquals(2, editor.remove());
+		assertSame(LineMap.EMPTY, editor.finish());
+	}
+
+	@Test
+	public void testUnknownContent() {
+		LineMap.Editor editor = new LineMap.Editor();
+		editor.start(LineMap.UNKNOWN_CONTENT);
+		editor.keep(5);
+		editor.add(3);
+		assertEquals(LineMap.UNKNOWN, editor.remove());
+		assertEquals(6, editor.getOldLines());
+		LineMap map = editor.finish();
+		assertArrayEquals(new int[] { 5, 1 }, lengths(map));
+		assertArrayEquals(new int[] { LineMap.UNKNOWN, 3 }, origins(map));
+		assertTrue(map.isOpenEnded());
+
+		// the known runs are followed by unknown lines
+		editor.start(map);
+		editor.keep(7);
+		editor.add(4);
+		map = editor.finish();
+		assertArrayEquals(new int[] { 5, 1, 1, 1 }, lengths(map));
+		assertArrayEquals(new int[] { LineMap.UNKNOWN, 3, LineMap.UNKNOWN, 4 }, origins(map));
+		assertTrue(map.isOpenEnded());
+	}
+}
@@ -0,0 +1,154 @@
+package com.mpobjects.svn.logstats.survival;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.commons.configuration2.BaseConfiguration;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.mpobjects.svn.logstats.RevisionReporterException;
+import com.mpobjects.svn.logstats.model.ChangeType;
+import com.mpobjects.svn.logstats.model.FileChange;
+import com.mpobjects.svn.logstats.model.Revision;
+
+public class LineSurvivalReporterTest {
+
+	private static FileChange change(String aPath, ChangeType aType) {
+		return new FileChange(aPath, aType);
+	}
+
+	private static FileChange copy(String aPath, String aFromPath, int aFromRevision) {
+		FileChange change = new FileChange(aPath, ChangeType.ADDED);
+		change.setFromPath(aFromPath);
+		change.setFromRevision(aFromRevision);
+		return change;
+	}
+
+	private static Revision revision(int aId, String aAuthor, int aDay, FileChange... aChanges) {
+		Revision revision = new Revision(aId, aAuthor, new DateTime(2020, 1, 1, 0, 0, DateTimeZone.UTC).plusDays(aDay));
+		for (FileChange change : aChanges) {
+			revision.addFileChange(change);
+		}
+		return revision;
+	}
+
+	private StringBuilder output;
+
+	private LineSurvivalReporter reporter;
+
+	@Before
+	public void setUp() throws RevisionReporterException {
+		BaseConfiguration config = new BaseConfiguration();
+		config.addProperty("survival.buckets", Arrays.asList(7, 35));
+		config.addProperty("filegroup", "Code");
+		config.addProperty("filegroup.Code", ".java");
+		output = new StringBuilder();
+		reporter = new LineSurvivalReporter(output, config);
+	}
+
+	@Test
+	public void testAgeBuckets() throws RevisionReporterException, IOException {
+		Revision r1 = revision(1, "alice", 0, change("A.java", ChangeType.ADDED));
+		diff(r1, "A.java", 0, 0, 1, 3, "+++");
+		reporter.report(r1);
+		Revision r2 = revision(2, "bob", 5, change("A.java", ChangeType.MODIFIED));
+		diff(r2, "A.java", 1, 1, 1, 1, "-+");
+		reporter.report(r2);
+		Revision r3 = revision(3, "bob", 40, change("A.java", ChangeType.MODIFIED));
+		diff(r3, "A.java", 1, 2, 1, 1, "--+");
+		reporter.report(r3);
+		reporter.flush();
+
+		String[] lines = output.toString().split("\r\n");
+		// removed at 5 days (alice), at 40 days (alice) and at 35 days (bob)
+		assertEquals("Total,,Removed,3,26.7,1,0,2", lines[1]);
+		// the last alice line at 40 days and the new bob line at 0 days
+		assertEquals("Total,,Alive,2,20.0,1,0,1", lines[2]);
+		assertEquals("Author,alice,Removed,2,22.5,1,0,1", lines[3]);
+		assertEquals("Author,bob,Removed,1,35.0,0,0,1", lines[5]);
+	}
+
+	@Test
+	public void testCopyMoveAndDirectoryDelete() throws RevisionReporterException, IOException {
+		Revision r1 = revision(1, "alice", 0, change("trunk/A.java", ChangeType.ADDED));
+		diff(r1, "trunk/A.java", 0, 0, 1, 2, "++");
+		reporter.report(r1);
+
+		// branch, and move B to C, which keeps the lines of B
+		Revision r2 = revision(2, "bob", 10, change("trunk/B.java", ChangeType.ADDED));
+		diff(r2, "trunk/B.java", 0, 0, 1, 1, "+");
+		reporter.report(r2);
+		Revision r3 = revision(3, "carol", 20, copy("branches/x", "trunk", 2), copy("trunk/C.java", "trunk/B.java", 2),
+				change("trunk/B.java", ChangeType.DELETED));
+		diff(r3, "trunk/B.java", 1, 1, 0, 0, "-");
+		reporter.report(r3);
+
+		// the branch copy has its own lines
+		Revision r4 = revision(4, "dave", 30, change("branches/x/A.java", ChangeType.MODIFIED));
+		diff(r4, "branches/x/A.java", 1, 2, 1, 1, " -");
+		reporter.report(r4);
+
+		// the lines of a deleted directory are dropped, also when svn shows their diffs
+		FileChange below = change("branches/x/A.java", ChangeType.DELETED);
+		below.setInManifest(false);
+		Revision r5 = revision(5, "erin", 40, change("branches/x", ChangeType.DELETED), below);
+		diff(r5, "branches/x/A.java", 1, 1, 0, 0, "-");
+		reporter.report(r5);
+		reporter.flush();
+
+		String[] lines = output.toString().split("\r\n");
+		// only the alice line removed on the branch, at 30 days
+		assertEquals("Total,,Removed,1,30.0,0,1,0", lines[1]);
+		// trunk/A.java 2 alice lines, trunk/C.java 1 bob line
+		assertEquals("Total,,Alive,3,36.7,0,1,2", lines[2]);
+		assertEquals("Author,bob,Alive,1,30.0,0,1,0", lines[6]);
+		assertEquals("File Group,Code,Alive,3,36.7,0,1,2", lines[14]);
+	}
+
+	@Test
+	public void testInsertAfterLine() throws RevisionReporterException, IOException {
+		Revision r1 = revision(1, "alice", 0, change("A.java", ChangeType.ADDED));
+		diff(r1, "A.java", 0, 0, 1, 2, "++");
+		reporter.report(r1);
+
+		// an empty old range starts after the given line: a, b, a
+		Revision r2 = revision(2, "bob", 10, change("A.java", ChangeType.MODIFIED));
+		diff(r2, "A.java", 1, 0, 2, 1, "+");
+		reporter.report(r2);
+
+		// remove the first line, which is still an alice line
+		Revision r3 = revision(3, "carol", 20, change("A.java", ChangeType.MODIFIED));
+		diff(r3, "A.java", 1, 1, 0, 0, "-");
+		reporter.report(r3);
+		reporter.flush();
+
+		assertEquals(Arrays.asList("Dimension,Key,Status,Lines,Mean Age (days),Age < 7d,Age < 35d,Age >= 35d", //
+				"Total,,Removed,1,20.0,0,1,0", //
+				"Total,,Alive,2,15.0,0,2,0", //
+				"Author,alice,Removed,1,20.0,0,1,0", //
+				"Author,alice,Alive,1,20.0,0,1,0", //
+				"Author,bob,Removed,0,,0,0,0", //
+				"Author,bob,Alive,1,10.0,0,1,0", //
+				"Author,carol,Removed,0,,0,0,0", //
+				"Author,carol,Alive,0,,0,0,0", //
+				"File Group,Code,Removed,1,20.0,0,1,0", //
+				"File Group,Code,Alive,2,15.0,0,2,0"), Arrays.asList(output.toString().split("\r\n")));
+	}
+
+	/**
+	 * Feed a single hunk, one character per line: '+', '-' or ' '.
+	 */
+	private void diff(Revision aRevision, String aPath, int aOldStart, int aOldCount, int aNewStart, int aNewCount, String aLines) {
+		reporter.startDiff(aRevision, aRevision.getFileChanges().get(aPath));
+		reporter.hunk(aOldStart, aOldCount, aNewStart, aNewCount);
+		for (char type : aLines.toCharArray()) {
+			reporter.line(type);
+		}
+		reporter.endDiff();
+	}
+}
@@ -0,0 +1,70 @@
+package com.mpobjects.svn.logstats.tree;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.configuration2.BaseConfiguration;
+import org.joda.time.DateTime;
+import org.junit.Test;
+
+import com.mpobjects.svn.logstats.RevisionReporterException;
+import com.mpobjects.svn.logstats.model.ChangeType;
+import com.mpobjects.svn.logstats.model.FileChange;
+import com.mpobjects.svn.logstats.model.Revision;
+
+public class DirectoryTreeReporterTest {
+
+	private static FileChange change(String aPath, int aLinesAdded) {
+		FileChange change = new FileChange(aPath, ChangeType.MODIFIED);
+		change.setLinesAdded(aLinesAdded);
+		return change;
+	}
+
+	private static List<String> report(BaseConfiguration aConfig) throws RevisionReporterException {
+		StringBuilder output = new StringBuilder();
+		DirectoryTreeReporter reporter = new DirectoryTreeReporter(output, aConfig);
+		Revision first = new Revision(1, "bob", new DateTime(2020, 1, 1, 12, 0));
+		first.addFileChange(change("trunk/src/A.java", 2));
+		first.addFileChange(change("trunk/src/B.java", 3));
+		reporter.report(first);
+		Revision second = new Revision(2, "alice", new DateTime(2020, 1, 2, 12, 0));
+		second.addFileChange(change("branches/x/src/A.java", 4));
+		second.addFileChange(change("trunk/doc/readme.txt", 1));
+		reporter.report(second);
+		reporter.flush();
+		return Arrays.asList(output.toString().split("\r\n"));
+	}
+
+	@Test
+	public void testPerAuthor() throws RevisionReporterException {
+		BaseConfiguration config = new BaseConfiguration();
+		config.setProperty("branchpath", "branches/*");
+		config.setProperty("tree.depth", 2);
+		List<String> rows = report(config);
+
+		assertEquals(16, rows.size());
+		assertEquals("\"/\",0,,2,4,0,10,0,0", rows.get(1));
+		assertEquals("\"/\",0,alice,1,2,0,5,0,0", rows.get(2));
+		assertEquals("\"/\",0,bob,1,2,0,5,0,0", rows.get(3));
+		assertEquals("doc,1,,1,1,0,1,0,0", rows.get(4));
+		// the branch rolls up into the same tree as trunk
+		assertEquals("src,1,,2,3,0,9,0,0", rows.get(8));
+		assertEquals("src/A.java,2,,2,2,0,6,0,0", rows.get(11));
+		assertEquals("src/A.java,2,alice,1,1,0,4,0,0", rows.get(12));
+		assertEquals("src/B.java,2,bob,1,1,0,3,0,0", rows.get(15));
+	}
+
+	@Test
+	public void testWithoutAuthorsAndBranches() throws RevisionReporterException {
+		BaseConfiguration config = new BaseConfiguration();
+		config.setProperty("branchpath", "branches/*");
+		config.setProperty("tree.depth", 1);
+		config.setProperty("tree.authors", false);
+		config.setProperty("tree.branches", false);
+		List<String> rows = report(config);
+
+		assertEquals(Arrays.asList("\"/\",0,,2,4,0,10,0,0", "branches,1,,1,1,0,4,0,0", "trunk,1,,2,3,0,6,0,0"), rows.subList(1, rows.size()));
+	}
+}
@@ -0,0 +1,92 @@
+package com.mpobjects.svn.logstats.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class LongIntHashMapTest {
+
+	private static void assertSame(Map<Long, Integer> aExpected, LongIntHashMap aMap) {
+		assertEquals(aExpected.size(), aMap.size());
+		for (Map.Entry<Long, Integer> entry : aExpected.entrySet()) {
+			assertTrue(aMap.containsKey(entry.getKey()));
+			assertEquals(entry.getValue().intValue(), aMap.get(entry.getKey(), -1));
+		}
+		Map<Long, Integer> actual = new HashMap<>();
+		aMap.forEach(actual::put);
+		assertEquals(aExpected, actual);
+	}
+
+	@Test
+	public void testAddTo() {
+		LongIntHashMap map = new LongIntHashMap();
+		assertEquals(3, map.addTo(42, 3));
+		assertEquals(5, map.addTo(42, 2));
+		assertEquals(5, map.get(42, 0));
+		assertEquals(-1, map.get(43, -1));
+		assertEquals(1, map.size());
+	}
+
+	@Test
+	public void testPrune() {
+		LongIntHashMap map = new LongIntHashMap();
+		for (int i = 0; i < 100; ++i) {
+			map.put(i, i % 10);
+		}
+		assertEquals(50, map.prune(4));
+		assertEquals(50, map.size());
+		assertFalse(map.containsKey(0));
+		assertFalse(map.containsKey(14));
+		assertEquals(5, map.get(15, 0));
+		assertEquals(9, map.get(99, 0));
+	}
+
+	@Test
+	public void testRandomAgainstHashMap() {
+		Random random = new Random(7);
+		LongIntHashMap map = new LongIntHashMap(4);
+		Map<Long, Integer> expected = new HashMap<>();
+		for (int i = 0; i < 100000; ++i) {
+			// small key range, so removes and probe sequences collide often
+			long key = random.nextInt(2000) - 1000;
+			switch (random.nextInt(3)) {
+				case 0:
+					map.addTo(key, 1);
+					expected.merge(key, 1, Integer::sum);
+					break;
+				case 1:
+					map.put(key, i);
+					expected.put(key, i);
+					break;
+				default:
+					assertEquals(expected.remove(key) != null, map.remove(key));
+			}
+		}
+		assertSame(expected, map);
+	}
+
+	@Test
+	public void testZeroKey() {
+		LongIntHashMap map = new LongIntHashMap();
+		assertFalse(map.containsKey(0));
+		map.addTo(0, 4);
+		assertTrue(map.containsKey(0));
+		assertEquals(4, map.get(0, -1));
+		assertEquals(1, map.size());
+		assertTrue(map.remove(0));
+		assertFalse(map.remove(0));
+		assertTrue(map.isEmpty());
+
+		map.put(0, 7);
+		map.put(1, 1);
+		map.clear();
+		assertTrue(map.isEmpty());
+		assertEquals(-1, map.get(0, -1));
+	}
+}